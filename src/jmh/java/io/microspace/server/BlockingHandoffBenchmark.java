@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Compares the latency distribution of handing requests off from event loops to the blocking threads
+ * through the ring buffer of {@link BlockingTaskDispatcher} and through a {@link ThreadPoolExecutor}.
+ * Every benchmark thread stands for an event loop, which hands a task off and waits until the
+ * completion of the task has run on its event loop. The benchmark threads outnumber the blocking
+ * threads, so the tasks queue up as they do when the blocking services are saturated.
+ *
+ * <p>{@link BlockingTaskWaitStrategy#BUSY_SPIN} occupies a core per blocking thread, so it is left out
+ * by default. Add {@code -p handoff=DISRUPTOR_BUSY_SPIN} on a machine with enough spare cores.
+ *
+ * @author i1619kHz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(BlockingHandoffBenchmark.NUM_EVENT_LOOPS)
+@Fork(1)
+public class BlockingHandoffBenchmark {
+    static final int NUM_EVENT_LOOPS = 8;
+    private static final int NUM_BLOCKING_THREADS = 2;
+    private static final int BUFFER_SIZE = 1024;
+    // The CPU time consumed by every task, in the arbitrary units of Blackhole.consumeCPU().
+    private static final long WORK = 1000;
+
+    public enum Handoff {
+        DISRUPTOR_BLOCKING,
+        DISRUPTOR_YIELDING,
+        DISRUPTOR_BUSY_SPIN,
+        THREAD_POOL_EXECUTOR
+    }
+
+    @Param({ "DISRUPTOR_BLOCKING", "DISRUPTOR_YIELDING", "THREAD_POOL_EXECUTOR" })
+    private Handoff handoff;
+
+    private BlockingTaskDispatcher dispatcher;
+    private ThreadPoolExecutor executor;
+
+    @Setup
+    public void setUp() {
+        switch (handoff) {
+            case DISRUPTOR_BLOCKING:
+                dispatcher = newDispatcher(BlockingTaskWaitStrategy.BLOCKING);
+                break;
+            case DISRUPTOR_YIELDING:
+                dispatcher = newDispatcher(BlockingTaskWaitStrategy.YIELDING);
+                break;
+            case DISRUPTOR_BUSY_SPIN:
+                dispatcher = newDispatcher(BlockingTaskWaitStrategy.BUSY_SPIN);
+                break;
+            default:
+                executor = new ThreadPoolExecutor(NUM_BLOCKING_THREADS, NUM_BLOCKING_THREADS,
+                                                  0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(BUFFER_SIZE),
+                                                  new DefaultThreadFactory("executor-blocking", true));
+        }
+    }
+
+    private static BlockingTaskDispatcher newDispatcher(BlockingTaskWaitStrategy waitStrategy) {
+        return new BlockingTaskDispatcher(Server.builder()
+                                                .blockingTaskThreadCount(NUM_BLOCKING_THREADS)
+                                                .blockingTaskBufferSize(BUFFER_SIZE)
+                                                .blockingTaskWaitStrategy(waitStrategy)
+                                                .virtualThreadMode(VirtualThreadMode.DISABLED)
+                                                .build()
+                                                .serverConfig());
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EventLoopState {
+        EventLoop eventLoop;
+
+        @Setup
+        public void setUp() {
+            eventLoop = new DefaultEventLoop();
+        }
+
+        @TearDown
+        public void tearDown() {
+            eventLoop.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Benchmark
+    public Object handoff(EventLoopState state) {
+        final EventLoop eventLoop = state.eventLoop;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final Runnable completion = () -> future.complete(eventLoop);
+        if (dispatcher != null) {
+            // The ServiceConfig is used only by the virtual threads.
+            if (!dispatcher.dispatch(null, () -> {
+                Blackhole.consumeCPU(WORK);
+                dispatcher.complete(eventLoop, completion);
+            })) {
+                throw new IllegalStateException("rejected");
+            }
+        } else {
+            executor.execute(() -> {
+                Blackhole.consumeCPU(WORK);
+                eventLoop.execute(completion);
+            });
+        }
+        return future.join();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.microspace.internal.FreePortFinder;
+
+/**
+ * Compares persistent connections with a new connection per request, which is how the server
+ * behaved before keep-alive was supported, over the loopback interface. The throughput mode reports the
+ * requests per millisecond and the sample mode reports the latency percentiles, e.g. {@code p0.99}.
+ * Run more client threads with {@code -t}.
+ *
+ * @author i1619kHz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class KeepAliveBenchmark {
+    private static final String REQUEST = RawHttpClient.get("/hello");
+    private static final String CLOSE_REQUEST = RawHttpClient.get("/hello", "connection: close");
+
+    private Server server;
+    private int port;
+
+    @Setup
+    public void startServer() {
+        server = Server.builder()
+                       .http(FreePortFinder.findFreeLocalPort())
+                       .get("/hello", req -> HttpResponse.of("world"))
+                       .build();
+        server.start().join();
+        port = server.activeLocalPort();
+    }
+
+    @TearDown
+    public void stopServer() {
+        server.stop().join();
+    }
+
+    @State(Scope.Thread)
+    public static class Connection {
+        private RawHttpClient client;
+
+        @Setup
+        public void connect(KeepAliveBenchmark benchmark) throws IOException {
+            client = new RawHttpClient(benchmark.port);
+        }
+
+        @TearDown
+        public void disconnect() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public String keepAlive(Connection connection) throws IOException {
+        return connection.client.send(REQUEST).read().content();
+    }
+
+    @Benchmark
+    public String closePerRequest() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(port)) {
+            return client.send(CLOSE_REQUEST).read().content();
+        }
+    }
+}
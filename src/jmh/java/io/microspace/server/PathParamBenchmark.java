@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares extracting the path parameters of {@code "/users/{id}/orders/{orderId}"} as the offsets
+ * captured by {@link ParameterizedPathMapping}, which are parsed in place, with materializing them into
+ * a {@link Map} of {@link String}s first. Run with {@code -prof gc} to compare the garbage per request.
+ *
+ * @author i1619kHz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathParamBenchmark {
+    private final ParameterizedPathMapping mapping =
+            new ParameterizedPathMapping("/users/{id}/orders/{orderId}");
+    private final String path = "/users/1234567/orders/987654321";
+    private final int[] offsets = new int[mapping.paramNames().size() * 2];
+
+    @Benchmark
+    public long offsets() {
+        if (!mapping.capture(path, offsets)) {
+            return -1;
+        }
+        return Long.parseLong(path, offsets[0], offsets[1], 10) +
+               Long.parseLong(path, offsets[2], offsets[3], 10);
+    }
+
+    @Benchmark
+    public long stringMap() {
+        final int[] offsets = new int[mapping.paramNames().size() * 2];
+        if (!mapping.capture(path, offsets)) {
+            return -1;
+        }
+        final Map<String, String> params = new HashMap<>();
+        int i = 0;
+        for (String name : mapping.paramNames()) {
+            params.put(name, path.substring(offsets[i], offsets[i + 1]));
+            i += 2;
+        }
+        return Long.parseLong(params.get("id")) + Long.parseLong(params.get("orderId"));
+    }
+}
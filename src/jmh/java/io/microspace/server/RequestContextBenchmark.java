@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reactivestreams.Publisher;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+
+/**
+ * Measures the garbage produced by the request contexts passed to the services, by running the same
+ * requests on an event loop, where the contexts are pooled, and on a plain thread, where every request
+ * creates a new context. Run with {@code -prof gc} and compare {@code gc.churn.*.norm}, which is steadier
+ * than {@code gc.alloc.rate.norm} when the garbage is produced by another thread than the benchmark thread.
+ *
+ * <p>A batch of requests is served by every task, so that the handoff to the thread does not dominate
+ * the measurement.
+ *
+ * @author i1619kHz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestContextBenchmark {
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String[] IPS = { "192.168.0.10" };
+
+    private static final Publisher<ByteBuf> EMPTY_CONTENT = subscriber -> {};
+
+    private final PathMapping pathMapping = new ParameterizedPathMapping("/users/{id}/orders/{orderId}");
+    private final io.netty.handler.codec.http.HttpRequest req = new DefaultHttpRequest(
+            HttpVersion.HTTP_1_1, HttpMethod.GET, "/users/42/orders/1001?expand=items");
+
+    private final Callable<Long> batch = () -> {
+        long sum = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            sum += serve();
+        }
+        return sum;
+    };
+
+    private EventLoop eventLoop;
+    private ExecutorService plainThread;
+
+    @Setup
+    public void setUp() {
+        eventLoop = new DefaultEventLoop();
+        plainThread = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        eventLoop.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        plainThread.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long pooled() throws InterruptedException, ExecutionException {
+        return eventLoop.submit(batch).get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long unpooled() throws InterruptedException, ExecutionException {
+        return plainThread.submit(batch).get();
+    }
+
+    private long serve() {
+        final io.microspace.server.DefaultHttpRequest request = io.microspace.server.DefaultHttpRequest.of(
+                req, EMPTY_CONTENT, IPS, false, 0, System.nanoTime(), pathMapping);
+        final long result = request.pathParamAsLong("id", -1) + request.pathParamAsLong("orderId", -1) +
+                            request.method().length();
+        request.release();
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.microspace.server.RoutePredicate.Condition;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+
+/**
+ * Routes a request among {@value #NUM_ROUTES} routes of the same path which differ only by their header
+ * predicates, {@code x-variant=v<i>} and {@code !x-debug}. The request matches the last route, so all
+ * routes are tried:
+ * <ul>
+ *   <li>{@code compiled} tests the routes with {@link CompiledRoutePredicates}, which looks each header
+ *       up once.</li>
+ *   <li>{@code sequential} tests the conditions of every route against the headers one by one, which
+ *       looks the same headers up again for every route.</li>
+ *   <li>{@code routers} routes the request through {@link Routers}, including the lookup of the path.</li>
+ * </ul>
+ *
+ * @author i1619kHz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutePredicateBenchmark {
+    private static final int NUM_ROUTES = 50;
+
+    private final io.netty.handler.codec.http.HttpHeaders headers =
+            new DefaultHttpHeaders().add("accept", "application/json")
+                                    .add("user-agent", "benchmark")
+                                    .add("x-variant", "v" + (NUM_ROUTES - 1));
+    private final List<List<Condition>> conditions = new ArrayList<>();
+    private final int[][] compiled = new int[NUM_ROUTES][];
+    private CompiledRoutePredicates predicates;
+    private Routers routers;
+
+    @Setup
+    public void setUp() {
+        final CompiledRoutePredicates.Builder predicatesBuilder = CompiledRoutePredicates.builder();
+        final ServerBuilder serverBuilder = Server.builder().routeCacheSize(0);
+        final HttpService service = request -> HttpResponse.of("ok");
+        for (int i = 0; i < NUM_ROUTES; i++) {
+            final DefaultRoute route = (DefaultRoute) Route.builder()
+                                                           .pathPattern("/search")
+                                                           .methods(HttpMethod.GET)
+                                                           .matchesHeaders("x-variant=v" + i, "!x-debug")
+                                                           .build();
+            compiled[i] = predicatesBuilder.add(route);
+            final List<Condition> routeConditions = new ArrayList<>();
+            for (RoutePredicate<HttpHeaders> predicate : route.headerPredicates()) {
+                routeConditions.add(predicate.condition());
+            }
+            conditions.add(routeConditions);
+            serverBuilder.service(route, service);
+        }
+        predicates = predicatesBuilder.build();
+        routers = Routers.ofServer(serverBuilder.build().serverConfig());
+    }
+
+    @Benchmark
+    public int compiled() {
+        final CompiledRoutePredicates.Evaluation evaluation =
+                predicates.evaluation(HttpMethod.GET, headers, null);
+        for (int i = 0; i < compiled.length; i++) {
+            if (evaluation.test(compiled[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public int sequential() {
+        for (int i = 0; i < conditions.size(); i++) {
+            if (matchesAll(conditions.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matchesAll(List<Condition> conditions) {
+        for (int i = 0; i < conditions.size(); i++) {
+            final Condition condition = conditions.get(i);
+            final boolean matches = condition.value() != null ?
+                                    headers.contains(condition.name(), condition.value(), false) :
+                                    headers.contains(condition.name());
+            if (matches == condition.isNegated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    public Object routers() {
+        return routers.find("/search", HttpMethod.GET, headers, null);
+    }
+}
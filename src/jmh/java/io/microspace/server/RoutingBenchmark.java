@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+
+/**
+ * Measures how long {@link Routers} takes to route a request as the number of the routes grows. Half of
+ * the routes are exact and the other half are parameterized, and the route cache is disabled so that
+ * every request is looked up from the {@link RoutingTrie}.
+ *
+ * @author i1619kHz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+    @Param({ "10", "1000", "100000" })
+    private int numRoutes;
+
+    private Routers routers;
+    private String exactPath;
+    private String parameterizedPath;
+    private String unknownPath;
+
+    @Setup
+    public void setUp() {
+        final ServerBuilder builder = Server.builder().routeCacheSize(0);
+        final HttpService service = request -> HttpResponse.of("ok");
+        for (int i = 0; i < numRoutes; i++) {
+            if (i % 2 == 0) {
+                builder.get("/api/v1/resource" + i + "/items", service);
+            } else {
+                builder.get("/api/v1/resource" + i + "/items/{id}", service);
+            }
+        }
+        routers = Routers.ofServer(builder.build().serverConfig());
+
+        // Somewhere in the middle of the routes, so that neither is the first or the last one added.
+        final int exact = numRoutes / 2 & ~1;
+        exactPath = "/api/v1/resource" + exact + "/items";
+        parameterizedPath = "/api/v1/resource" + (exact + 1) + "/items/12345";
+        unknownPath = "/api/v1/resource" + numRoutes + "/items";
+    }
+
+    @Benchmark
+    public Object exact() {
+        return find(exactPath);
+    }
+
+    @Benchmark
+    public Object parameterized() {
+        return find(parameterizedPath);
+    }
+
+    @Benchmark
+    public Object notFound() {
+        return find(unknownPath);
+    }
+
+    private Object find(String path) {
+        return routers.find(path, HttpMethod.GET, EmptyHttpHeaders.INSTANCE, null);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.microspace.internal.Flags;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Measures the TLS handshakes per second of the server context with the JDK and the OpenSSL engines,
+ * for both full handshakes and the ones resuming a session. The engines exchange the handshake messages
+ * in memory, so only the CPU cost of the handshakes is measured.
+ *
+ * @author i1619kHz
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+// The OpenSSL client engine caches the sessions to resume only when asked to.
+@Fork(value = 1, jvmArgsAppend = "-Dio.netty.handler.ssl.openssl.sessionCacheClient=true")
+public class TlsHandshakeBenchmark {
+    private static final String PEER_HOST = "localhost";
+    private static final int PEER_PORT = 8443;
+    private static final int NET_BUFFER_SIZE = 64 * 1024;
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+    private static final byte[] RESPONSE =
+            "HTTP/1.1 200 OK\r\ncontent-length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    @Param({ "JDK", "OPENSSL" })
+    private SslProvider provider;
+
+    private SslContext serverContext;
+    private SslContext clientContext;
+    // A new peer port for every full handshake, so the client has no session to resume.
+    private int nextPeerPort = PEER_PORT + 1;
+
+    // The records sent by each side and not consumed by its peer yet.
+    private final ByteBuffer clientOut = ByteBuffer.allocate(NET_BUFFER_SIZE);
+    private final ByteBuffer serverOut = ByteBuffer.allocate(NET_BUFFER_SIZE);
+    private final ByteBuffer appIn = ByteBuffer.allocate(NET_BUFFER_SIZE);
+
+    @Setup
+    public void setUp() throws SSLException {
+        serverContext = TlsKeyMaterial.ofSelfSigned().newSslContext(
+                provider, Flags.defaultTlsSessionCacheSize(), Flags.defaultTlsSessionTimeoutSeconds());
+        clientContext = SslContextBuilder.forClient()
+                                         .sslProvider(provider)
+                                         .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                                         .build();
+        if (serverContext.sessionContext() instanceof OpenSslSessionContext sessionContext) {
+            // Enables the session tickets like Server does.
+            new SessionTicketKeyRotator(sessionContext).run();
+        }
+        // Caches the session to resume.
+        handshake(PEER_PORT);
+    }
+
+    @Benchmark
+    public SSLEngine fullHandshake() throws SSLException {
+        if (nextPeerPort == 0xFFFF) {
+            nextPeerPort = PEER_PORT + 1;
+        }
+        return handshake(nextPeerPort++);
+    }
+
+    @Benchmark
+    public SSLEngine resumedHandshake(CachedSession unused) throws SSLException {
+        return handshake(PEER_PORT);
+    }
+
+    /**
+     * Makes sure the client has a session to resume. The OpenSSL client engine keeps no session after
+     * resuming one, so it needs a full handshake before every other resumed handshake.
+     */
+    @State(Scope.Thread)
+    public static class CachedSession {
+        @Setup(Level.Invocation)
+        public void cacheSession(TlsHandshakeBenchmark benchmark) throws SSLException {
+            if (!benchmark.clientContext.sessionContext().getIds().hasMoreElements()) {
+                benchmark.handshake(PEER_PORT);
+            }
+        }
+    }
+
+    private SSLEngine handshake(int peerPort) throws SSLException {
+        final SSLEngine client = clientContext.newEngine(ByteBufAllocator.DEFAULT, PEER_HOST, peerPort);
+        final SSLEngine server = serverContext.newEngine(ByteBufAllocator.DEFAULT);
+        try {
+            clientOut.clear();
+            serverOut.clear();
+            client.beginHandshake();
+            server.beginHandshake();
+            exchange(client, server, EMPTY_BUFFER);
+            // BoringSSL sends the TLS 1.3 session tickets together with the first response.
+            exchange(client, server, ByteBuffer.wrap(RESPONSE));
+            if (client.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING ||
+                server.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING) {
+                throw new IllegalStateException("handshake stalled");
+            }
+            return client;
+        } finally {
+            ReferenceCountUtil.release(client);
+            ReferenceCountUtil.release(server);
+        }
+    }
+
+    /**
+     * Runs the handshake, or writes the specified response once the handshake is done, until both sides
+     * have nothing more to say.
+     */
+    private void exchange(SSLEngine client, SSLEngine server, ByteBuffer response) throws SSLException {
+        for (;;) {
+            boolean progress = wrap(client, EMPTY_BUFFER, clientOut);
+            progress |= wrap(server, response, serverOut);
+            progress |= unwrap(server, clientOut);
+            progress |= unwrap(client, serverOut);
+            if (!progress) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Appends the TLS records produced by the specified engine from the specified data to the specified
+     * buffer.
+     *
+     * @return whether any record was produced
+     */
+    private static boolean wrap(SSLEngine engine, ByteBuffer src, ByteBuffer out) throws SSLException {
+        boolean produced = false;
+        for (;;) {
+            final SSLEngineResult result = engine.wrap(src, out);
+            runDelegatedTasks(engine, result);
+            if (result.bytesProduced() == 0 && result.getHandshakeStatus() != HandshakeStatus.NEED_TASK) {
+                return produced;
+            }
+            produced = true;
+        }
+    }
+
+    /**
+     * Feeds the TLS records in the specified buffer to the specified engine, as many as it takes
+     * before it needs to respond.
+     *
+     * @return whether any record was consumed
+     */
+    private boolean unwrap(SSLEngine engine, ByteBuffer in) throws SSLException {
+        boolean consumed = false;
+        in.flip();
+        try {
+            while (in.hasRemaining()) {
+                appIn.clear();
+                final SSLEngineResult result = engine.unwrap(in, appIn);
+                runDelegatedTasks(engine, result);
+                if (result.bytesConsumed() == 0 && result.getHandshakeStatus() != HandshakeStatus.NEED_TASK) {
+                    break;
+                }
+                consumed = true;
+            }
+        } finally {
+            in.compact();
+        }
+        return consumed;
+    }
+
+    private static void runDelegatedTasks(SSLEngine engine, SSLEngineResult result) {
+        if (result.getHandshakeStatus() != HandshakeStatus.NEED_TASK) {
+            return;
+        }
+        for (Runnable task = engine.getDelegatedTask(); task != null; task = engine.getDelegatedTask()) {
+            task.run();
+        }
+    }
+}
@@ -23,9 +23,15 @@
  */
 package io.microspace.internal;
 
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 import io.microspace.internal.banner.BannerFont;
+import io.microspace.server.BlockingTaskWaitStrategy;
+import io.microspace.server.MediaType;
 import io.microspace.server.ServerPort;
 import io.microspace.server.SessionProtocol;
+import io.microspace.server.VirtualThreadMode;
 
 /**
  * @author i1619kHz
@@ -35,9 +41,9 @@ public final class Flags {
     private static final int DEFAULT_HTTP2_INITIAL_CONNECTION_WINDOWS_SIZE = 0;
     private static final int DEFAULT_HTTP2_INITIAL_STREAM_WINDOW_SIZE = 0;
     private static final int DEFAULT_HTTP2_MAX_FRAME_SIZE = 0;
-    private static final int DEFAULT_HTTP1_MAX_INITIAL_LINE_LENGTH = 0;
-    private static final int DEFAULT_HTTP1_MAX_HEADER_SIZE = 0;
-    private static final int DEFAULT_HTTP1_MAX_CHUNK_SIZE = 0;
+    private static final int DEFAULT_HTTP1_MAX_INITIAL_LINE_LENGTH = 4096;
+    private static final int DEFAULT_HTTP1_MAX_HEADER_SIZE = 8192;
+    private static final int DEFAULT_HTTP1_MAX_CHUNK_SIZE = 8192;
     private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 0;
     private static final long DEFAULT_PING_INTERVAL_MILLIS = 0;
     private static final long DEFAULT_MAX_CONNECTION_AGE_MILLIS = 0;
@@ -45,7 +51,7 @@ public final class Flags {
     private static final long DEFAULT_HTTP2_MAX_STREAMS_PER_CONNECTION = 0;
 
     private static final long SHUTDOWN_QUIET_PERIOD = 0;
-    private static final long SHUTDOWN_TIMEOUT = 0;
+    private static final long SHUTDOWN_TIMEOUT = 30000;
     private static final long DEFAULT_MAX_REQUEST_LENGTH = 10 * 1024 * 1024;
     private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 10000;
     private static final boolean SHUTDOWN_WORKER_GROUP_ON_STOP = true;
@@ -59,6 +65,7 @@ public final class Flags {
     private static final String DEFAULT_PROFILES = "";
     private static final boolean SESSION_ENABLE = false;
     private static final boolean IO_USING_ENABLE = false;
+    private static final boolean STREAMING_REQUEST_BODY_ENABLE = false;
     private static final boolean USE_SSL = false;
     private static final boolean USE_EPOLL = Epolls.epollIsAvailable();
     private static final int DEFAULT_PORT = 8080;
@@ -66,6 +73,35 @@ public final class Flags {
     private static final int MAX_CONNECTION_COUNT = DEFAULT_MAX_CONNECTION_COUNT;
     private static final int ACCEPT_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
     private static final int IO_THREAD_COUNT = Runtime.getRuntime().availableProcessors() * 2;
+    private static final long DEFAULT_HTTP3_MAX_STREAMS_PER_CONNECTION = 100;
+    private static final long DEFAULT_HTTP3_INITIAL_CONNECTION_WINDOW_SIZE = 10 * 1024 * 1024;
+    private static final long DEFAULT_HTTP3_INITIAL_STREAM_WINDOW_SIZE = 1024 * 1024;
+    private static final boolean RESPONSE_COMPRESSION_ENABLE = false;
+    private static final int DEFAULT_COMPRESSION_MIN_LENGTH = 1024;
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final long DEFAULT_COMPRESSION_CACHE_SIZE = 16 * 1024 * 1024;
+    private static final Set<MediaType> DEFAULT_COMPRESSIBLE_MEDIA_TYPES =
+            Set.of(MediaType.ANY_TEXT_TYPE, MediaType.JSON_UTF_8, MediaType.APPLICATION_XML_UTF_8,
+                   MediaType.JAVASCRIPT_UTF_8, MediaType.XHTML_UTF_8, MediaType.SVG_UTF_8);
+    private static final long DEFAULT_TLS_SESSION_CACHE_SIZE = 20480;
+    private static final long DEFAULT_TLS_SESSION_TIMEOUT_SECONDS = 86400;
+    private static final long DEFAULT_TLS_SESSION_TICKET_KEY_ROTATION_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK = 1024 * 1024;
+    private static final int DEFAULT_WRITE_BUFFER_LOW_WATER_MARK = 512 * 1024;
+    private static final double DEFAULT_TRAFFIC_CAPTURE_SAMPLING_RATE = 0.0;
+    private static final int DEFAULT_TRAFFIC_CAPTURE_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_TRAFFIC_CAPTURE_MAX_CONTENT_LENGTH = 256;
+    private static final boolean REQUEST_CONTEXT_LEAK_DETECTION =
+            Boolean.getBoolean("microspace.requestContextLeakDetection");
+    private static final int DEFAULT_BLOCKING_TASK_THREAD_COUNT = 200;
+    private static final int DEFAULT_BLOCKING_TASK_BUFFER_SIZE = 1024;
+    private static final BlockingTaskWaitStrategy DEFAULT_BLOCKING_TASK_WAIT_STRATEGY =
+            BlockingTaskWaitStrategy.BLOCKING;
+    private static final VirtualThreadMode DEFAULT_VIRTUAL_THREAD_MODE = VirtualThreadMode.DISABLED;
+    private static final long DEFAULT_VIRTUAL_THREAD_PINNING_THRESHOLD_MILLIS = 20;
+    private static final int DEFAULT_ROUTE_CACHE_SIZE = 4096;
+    private static final Set<String> DEFAULT_TRAFFIC_CAPTURE_REDACTED_HEADERS =
+            Set.of("authorization", "cookie", "set-cookie", "proxy-authorization");
     private static final ServerPort DEFAULT_SERVER_PORT = new ServerPort(Flags.defaultPort(),
                                                                          SessionProtocol.HTTP);
 
@@ -117,6 +153,10 @@ public final class Flags {
         return IO_USING_ENABLE;
     }
 
+    public static boolean useStreamingRequestBody() {
+        return STREAMING_REQUEST_BODY_ENABLE;
+    }
+
     public static String profiles() {
         return DEFAULT_PROFILES;
     }
@@ -216,4 +256,104 @@ public final class Flags {
     public static long defaultMaxRequestLength() {
         return DEFAULT_MAX_REQUEST_LENGTH;
     }
+
+    public static long defaultHttp3MaxStreamsPerConnection() {
+        return DEFAULT_HTTP3_MAX_STREAMS_PER_CONNECTION;
+    }
+
+    public static long defaultHttp3InitialConnectionWindowSize() {
+        return DEFAULT_HTTP3_INITIAL_CONNECTION_WINDOW_SIZE;
+    }
+
+    public static long defaultHttp3InitialStreamWindowSize() {
+        return DEFAULT_HTTP3_INITIAL_STREAM_WINDOW_SIZE;
+    }
+
+    public static boolean useResponseCompression() {
+        return RESPONSE_COMPRESSION_ENABLE;
+    }
+
+    public static int defaultCompressionMinLength() {
+        return DEFAULT_COMPRESSION_MIN_LENGTH;
+    }
+
+    public static int defaultCompressionLevel() {
+        return DEFAULT_COMPRESSION_LEVEL;
+    }
+
+    public static long defaultCompressionCacheSize() {
+        return DEFAULT_COMPRESSION_CACHE_SIZE;
+    }
+
+    public static Set<MediaType> defaultCompressibleMediaTypes() {
+        return DEFAULT_COMPRESSIBLE_MEDIA_TYPES;
+    }
+
+    public static long defaultTlsSessionCacheSize() {
+        return DEFAULT_TLS_SESSION_CACHE_SIZE;
+    }
+
+    public static long defaultTlsSessionTimeoutSeconds() {
+        return DEFAULT_TLS_SESSION_TIMEOUT_SECONDS;
+    }
+
+    public static long defaultTlsSessionTicketKeyRotationMillis() {
+        return DEFAULT_TLS_SESSION_TICKET_KEY_ROTATION_MILLIS;
+    }
+
+    public static int defaultWriteBufferHighWaterMark() {
+        return DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK;
+    }
+
+    public static int defaultWriteBufferLowWaterMark() {
+        return DEFAULT_WRITE_BUFFER_LOW_WATER_MARK;
+    }
+
+    public static double defaultTrafficCaptureSamplingRate() {
+        return DEFAULT_TRAFFIC_CAPTURE_SAMPLING_RATE;
+    }
+
+    public static int defaultTrafficCaptureBufferSize() {
+        return DEFAULT_TRAFFIC_CAPTURE_BUFFER_SIZE;
+    }
+
+    public static int defaultTrafficCaptureMaxContentLength() {
+        return DEFAULT_TRAFFIC_CAPTURE_MAX_CONTENT_LENGTH;
+    }
+
+    /**
+     * Returns whether the pooled request contexts are kept out of the pool once released, so that
+     * any use after the release fails. Enabled with {@code -Dmicrospace.requestContextLeakDetection=true}.
+     */
+    public static boolean requestContextLeakDetection() {
+        return REQUEST_CONTEXT_LEAK_DETECTION;
+    }
+
+    public static int defaultBlockingTaskThreadCount() {
+        return DEFAULT_BLOCKING_TASK_THREAD_COUNT;
+    }
+
+    public static int defaultBlockingTaskBufferSize() {
+        return DEFAULT_BLOCKING_TASK_BUFFER_SIZE;
+    }
+
+    public static BlockingTaskWaitStrategy defaultBlockingTaskWaitStrategy() {
+        return DEFAULT_BLOCKING_TASK_WAIT_STRATEGY;
+    }
+
+    public static VirtualThreadMode defaultVirtualThreadMode() {
+        return DEFAULT_VIRTUAL_THREAD_MODE;
+    }
+
+    public static long defaultVirtualThreadPinningThresholdMillis() {
+        return DEFAULT_VIRTUAL_THREAD_PINNING_THRESHOLD_MILLIS;
+    }
+
+    public static int defaultRouteCacheSize() {
+        return DEFAULT_ROUTE_CACHE_SIZE;
+    }
+
+    public static Set<String> defaultTrafficCaptureRedactedHeaders() {
+        return DEFAULT_TRAFFIC_CAPTURE_REDACTED_HEADERS;
+    }
 }
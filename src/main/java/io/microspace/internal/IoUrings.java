@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.internal;
+
+import javax.annotation.Nullable;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
+
+/**
+ * @author i1619kHz
+ */
+public final class IoUrings {
+    private static final Class<? extends EventLoopGroup> IO_URING_EVENT_LOOP_CLASS;
+
+    static {
+        try {
+            //noinspection unchecked
+            IO_URING_EVENT_LOOP_CLASS = (Class<? extends EventLoopGroup>)
+                    Class.forName("io.netty.incubator.channel.uring.IOUringEventLoop", false,
+                                  IOUringEventLoopGroup.class.getClassLoader());
+        } catch (Exception e) {
+            throw new IllegalStateException("failed to locate IOUringEventLoop class", e);
+        }
+    }
+
+    /**
+     * Returns whether io_uring can be used, i.e. the native library could be loaded and
+     * the running kernel supports it.
+     */
+    public static boolean ioUringIsAvailable() {
+        try {
+            Object obj = Class.forName("io.netty.incubator.channel.uring.IOUring")
+                              .getMethod("isAvailable").invoke(null);
+            return null != obj && Boolean.parseBoolean(obj.toString())
+                   && System.getProperty("os.name").toLowerCase().contains("linux");
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the reason why io_uring is not available, or {@code null} if it is available.
+     */
+    @Nullable
+    public static Throwable unavailabilityCause() {
+        try {
+            return (Throwable) Class.forName("io.netty.incubator.channel.uring.IOUring")
+                                    .getMethod("unavailabilityCause").invoke(null);
+        } catch (Throwable e) {
+            return e;
+        }
+    }
+
+    public static Class<? extends EventLoopGroup> ioUringEventLoopClass() {
+        return IO_URING_EVENT_LOOP_CLASS;
+    }
+
+    private IoUrings() {/* nothing */}
+}
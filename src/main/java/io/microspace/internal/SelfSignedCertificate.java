@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.internal;
+
+import static java.util.Objects.requireNonNull;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.x509.X509V3CertificateGenerator;
+
+/**
+ * A self-signed certificate which is generated on the fly, so that a TLS port can be tried out
+ * without preparing a certificate. Never use it in production because the clients cannot verify it.
+ *
+ * <p>The certificate is generated with the {@code bcprov} library which is always in the classpath,
+ * unlike Netty's {@code SelfSignedCertificate} which requires either {@code bcpkix} or the JDK internal
+ * {@code sun.security.x509} package.
+ *
+ * @author i1619kHz
+ */
+@SuppressWarnings("deprecation")
+public final class SelfSignedCertificate {
+    private static final int KEY_SIZE = 2048;
+    private static final long VALIDITY_MILLIS = TimeUnit.DAYS.toMillis(365);
+    private static final String SIGNATURE_ALGORITHM = "SHA256WithRSA";
+
+    private final PrivateKey privateKey;
+    private final X509Certificate certificate;
+
+    private SelfSignedCertificate(PrivateKey privateKey, X509Certificate certificate) {
+        this.privateKey = privateKey;
+        this.certificate = certificate;
+    }
+
+    /**
+     * Generates a new RSA key pair and a certificate for the specified fully qualified domain name,
+     * which is valid from now on for a year.
+     */
+    public static SelfSignedCertificate generate(String fqdn) throws GeneralSecurityException {
+        requireNonNull(fqdn, "fqdn");
+        final SecureRandom random = new SecureRandom();
+        final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(KEY_SIZE, random);
+        final KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        final long now = System.currentTimeMillis();
+        final X500Principal owner = new X500Principal("CN=" + fqdn);
+        final X509V3CertificateGenerator generator = new X509V3CertificateGenerator();
+        generator.setSerialNumber(new BigInteger(64, random));
+        generator.setIssuerDN(owner);
+        generator.setSubjectDN(owner);
+        // Tolerate the clock skew of the clients on the same machine.
+        generator.setNotBefore(new Date(now - TimeUnit.DAYS.toMillis(1)));
+        generator.setNotAfter(new Date(now + VALIDITY_MILLIS));
+        generator.setPublicKey(keyPair.getPublic());
+        generator.setSignatureAlgorithm(SIGNATURE_ALGORITHM);
+
+        final X509Certificate certificate = generator.generate(keyPair.getPrivate(), random);
+        certificate.verify(keyPair.getPublic());
+        return new SelfSignedCertificate(keyPair.getPrivate(), certificate);
+    }
+
+    public PrivateKey privateKey() {
+        return privateKey;
+    }
+
+    public X509Certificate certificate() {
+        return certificate;
+    }
+}
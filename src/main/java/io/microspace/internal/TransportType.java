@@ -30,12 +30,17 @@ import java.util.function.Function;
 
 import javax.annotation.Nullable;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.common.base.Ascii;
 import com.google.common.collect.ImmutableSet;
 
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollDatagramChannel;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollServerSocketChannel;
@@ -47,6 +52,11 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.incubator.channel.uring.IOUringChannelOption;
+import io.netty.incubator.channel.uring.IOUringDatagramChannel;
+import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
+import io.netty.incubator.channel.uring.IOUringServerSocketChannel;
+import io.netty.incubator.channel.uring.IOUringSocketChannel;
 
 /**
  * Native transport types.
@@ -57,17 +67,40 @@ public enum TransportType {
         NioEventLoopGroup::new, NioEventLoopGroup.class, NioEventLoop.class),
 
     EPOLL(EpollServerSocketChannel.class, EpollSocketChannel.class, EpollDatagramChannel.class,
-          EpollEventLoopGroup::new, EpollEventLoopGroup.class, Epolls.epollEventLoopClass());
+          EpollEventLoopGroup::new, EpollEventLoopGroup.class, Epolls.epollEventLoopClass()),
+
+    IO_URING(IOUringServerSocketChannel.class, IOUringSocketChannel.class, IOUringDatagramChannel.class,
+             IOUringEventLoopGroup::new, IOUringEventLoopGroup.class, IoUrings.ioUringEventLoopClass());
+
+    private static final Logger logger = LoggerFactory.getLogger(TransportType.class);
 
     /**
      * Returns the available {@link TransportType}.
      */
     public static TransportType detectTransportType() {
-        if (Epolls.epollIsAvailable()) {
+        return detectTransportType(Flags.useIoUsing(), Flags.useEpoll());
+    }
+
+    /**
+     * Returns the {@link TransportType} to use. {@link #IO_URING} is preferred if {@code useIoUring} is
+     * enabled, then {@link #EPOLL} if {@code useEpoll} is enabled, and {@link #NIO} is used when neither
+     * of them is requested or available on the running kernel.
+     */
+    public static TransportType detectTransportType(boolean useIoUring, boolean useEpoll) {
+        if (useIoUring) {
+            if (IoUrings.ioUringIsAvailable()) {
+                return IO_URING;
+            }
+            if (logger.isWarnEnabled()) {
+                logger.warn("io_uring is not available; falling back to {}",
+                            useEpoll && Epolls.epollIsAvailable() ? EPOLL : NIO,
+                            IoUrings.unavailabilityCause());
+            }
+        }
+        if (useEpoll && Epolls.epollIsAvailable()) {
             return EPOLL;
-        } else {
-            return NIO;
         }
+        return NIO;
     }
 
     /**
@@ -160,6 +193,26 @@ public enum TransportType {
         return serverChannelType;
     }
 
+    /**
+     * Returns the {@link DatagramChannel} class that is available for this transport type.
+     */
+    public Class<? extends DatagramChannel> datagramChannelType() {
+        return datagramChannelType;
+    }
+
+    /**
+     * Returns the {@link ChannelOption} which enables {@code SO_REUSEPORT} for this transport type,
+     * or {@code null} if this transport type does not support it.
+     */
+    @Nullable
+    public ChannelOption<Boolean> reusePortOption() {
+        return switch (this) {
+            case EPOLL -> EpollChannelOption.SO_REUSEPORT;
+            case IO_URING -> IOUringChannelOption.SO_REUSEPORT;
+            default -> null;
+        };
+    }
+
     /**
      * Returns lowercase name of {@link TransportType}.
      * This method is a shortcut for:
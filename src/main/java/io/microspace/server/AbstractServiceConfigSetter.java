@@ -39,6 +39,9 @@ abstract class AbstractServiceConfigSetter implements ServiceConfigSetter {
     private Long requestTimeoutMillis;
     private Long maxRequestLength;
     private Boolean verboseResponses;
+    private Boolean trafficCapture;
+    private Boolean trafficCaptureContent;
+    private Integer maxConcurrentVirtualThreads;
     private Function<? super HttpService, ? extends HttpService> decorator;
 
     @Override
@@ -70,6 +73,24 @@ abstract class AbstractServiceConfigSetter implements ServiceConfigSetter {
         return this;
     }
 
+    @Override
+    public ServiceConfigSetter trafficCapture(boolean trafficCapture) {
+        this.trafficCapture = trafficCapture;
+        return this;
+    }
+
+    @Override
+    public ServiceConfigSetter trafficCaptureContent(boolean trafficCaptureContent) {
+        this.trafficCaptureContent = trafficCaptureContent;
+        return this;
+    }
+
+    @Override
+    public ServiceConfigSetter maxConcurrentVirtualThreads(int maxConcurrentVirtualThreads) {
+        this.maxConcurrentVirtualThreads = maxConcurrentVirtualThreads;
+        return this;
+    }
+
     @Override
     public ServiceConfigSetter defaultServiceName(String defaultServiceName) {
         this.defaultServiceName = defaultServiceName;
@@ -111,6 +132,15 @@ abstract class AbstractServiceConfigSetter implements ServiceConfigSetter {
         if (verboseResponses != null) {
             serviceConfigBuilder.verboseResponses(verboseResponses);
         }
+        if (trafficCapture != null) {
+            serviceConfigBuilder.trafficCapture(trafficCapture);
+        }
+        if (trafficCaptureContent != null) {
+            serviceConfigBuilder.trafficCaptureContent(trafficCaptureContent);
+        }
+        if (maxConcurrentVirtualThreads != null) {
+            serviceConfigBuilder.maxConcurrentVirtualThreads(maxConcurrentVirtualThreads);
+        }
         return serviceConfigBuilder;
     }
 
@@ -122,6 +152,9 @@ abstract class AbstractServiceConfigSetter implements ServiceConfigSetter {
                           .add("requestTimeoutMillis", requestTimeoutMillis)
                           .add("maxRequestLength", maxRequestLength)
                           .add("verboseResponses", verboseResponses)
+                          .add("trafficCapture", trafficCapture)
+                          .add("trafficCaptureContent", trafficCaptureContent)
+                          .add("maxConcurrentVirtualThreads", maxConcurrentVirtualThreads)
                           .toString();
     }
 }
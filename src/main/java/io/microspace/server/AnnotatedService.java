@@ -27,15 +27,19 @@ import static java.util.Objects.requireNonNull;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletionStage;
 
+import javax.annotation.Nullable;
+
 import com.google.common.base.MoreObjects;
 
 import io.microspace.internal.AnnotationUtil;
 import io.microspace.server.annotation.ExceptionHandlerFunction;
+import io.microspace.server.annotation.PathVariable;
 import io.microspace.server.annotation.RequestConverterFunction;
 import io.microspace.server.annotation.ResponseConverterFunction;
 import io.microspace.server.annotation.ServiceName;
@@ -44,8 +48,13 @@ import io.microspace.server.annotation.ServiceName;
  * @author i1619kHz
  */
 final class AnnotatedService implements HttpService {
+    private static final Object[] EMPTY_ARGUMENTS = new Object[0];
+
     private final Object target;
     private final Method method;
+    @Nullable
+    private final Invoker invoker;
+    private final ParameterResolver[] parameterResolvers;
     private final boolean needToUseBlockingTaskExecutor;
     private final Map<String, Set<String>> addedHeaders;
     private final List<RequestConverterFunction> requestConverterFunctions;
@@ -54,7 +63,7 @@ final class AnnotatedService implements HttpService {
     private final String defaultServiceName;
     private final ResponseType responseType;
 
-    AnnotatedService(Object target, Method method,
+    AnnotatedService(Object target, Method method, @Nullable Invoker invoker,
                      boolean needToUseBlockingTaskExecutor,
                      Map<String, Set<String>> addedHeaders,
                      List<RequestConverterFunction> requestConverterFunctions,
@@ -62,6 +71,8 @@ final class AnnotatedService implements HttpService {
                      List<ExceptionHandlerFunction> exceptionHandlerFunctions) {
         this.target = requireNonNull(target, "target");
         this.method = requireNonNull(method, "method");
+        this.invoker = invoker;
+        parameterResolvers = parameterResolvers(method);
         this.addedHeaders = requireNonNull(addedHeaders, "addedHeaders");
         this.needToUseBlockingTaskExecutor = needToUseBlockingTaskExecutor;
         this.requestConverterFunctions = requireNonNull(requestConverterFunctions, "requestConverterFunctions");
@@ -106,17 +117,57 @@ final class AnnotatedService implements HttpService {
         return method;
     }
 
+    /**
+     * Returns whether the method may block, so that it must not be invoked by an event loop.
+     */
+    boolean needToUseBlockingTaskExecutor() {
+        return needToUseBlockingTaskExecutor;
+    }
+
     @Override
     public HttpResponse serve(Request request) {
+        final Object[] arguments;
         try {
-            Object invoke = method.invoke(target);
-            return HttpResponse.of((String) invoke);
+            arguments = resolveParameters(request);
+        } catch (NumberFormatException | ArithmeticException e) {
+            // A path variable of the request is not a number of the type of its parameter.
+            return HttpResponse.of(HttpStatus.BAD_REQUEST, HttpStatus.BAD_REQUEST.toString());
+        }
+        try {
+            final Object invoke = invoker != null ? invokeDirectly(invoker)
+                                                  : method.invoke(target, arguments);
+            return HttpResponse.of(invoke != null ? (String) invoke : "");
         } catch (IllegalAccessException | InvocationTargetException e) {
             e.printStackTrace();
         }
         return HttpResponse.of("");
     }
 
+    private Object[] resolveParameters(Request request) {
+        final ParameterResolver[] parameterResolvers = this.parameterResolvers;
+        if (parameterResolvers.length == 0) {
+            return EMPTY_ARGUMENTS;
+        }
+        final Object[] arguments = new Object[parameterResolvers.length];
+        for (int i = 0; i < parameterResolvers.length; i++) {
+            arguments[i] = parameterResolvers[i].resolve(request);
+        }
+        return arguments;
+    }
+
+    /**
+     * Invokes the method via the specified {@link Invoker}, wrapping what the method throws the same way
+     * {@link Method#invoke(Object, Object...)} does.
+     */
+    @Nullable
+    private Object invokeDirectly(Invoker invoker) throws InvocationTargetException {
+        try {
+            return invoker.invoke(target);
+        } catch (Exception e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
@@ -125,6 +176,98 @@ final class AnnotatedService implements HttpService {
                           .toString();
     }
 
+    /**
+     * Invokes the annotated {@link Method} without reflection, e.g. via a generated
+     * {@link AnnotatedServiceIndex}.
+     */
+    @FunctionalInterface
+    interface Invoker {
+        @Nullable
+        Object invoke(Object target) throws Exception;
+    }
+
+    /**
+     * Returns the {@link ParameterResolver}s of the parameters of the specified {@link Method}. A
+     * {@link PathVariable} is read from the {@link Request} only when the method is invoked, and a numeric
+     * one is parsed from the path directly without creating a {@link String}. A numeric one which is not
+     * a number, or which overflows an {@code int}, results in {@link HttpStatus#BAD_REQUEST}.
+     */
+    private static ParameterResolver[] parameterResolvers(Method method) {
+        final Parameter[] parameters = method.getParameters();
+        final ParameterResolver[] resolvers = new ParameterResolver[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            final Parameter parameter = parameters[i];
+            final Class<?> type = parameter.getType();
+            final PathVariable pathVariable = parameter.getAnnotation(PathVariable.class);
+            if (pathVariable != null) {
+                resolvers[i] = pathVariableResolver(method, parameter, pathVariable);
+            } else if (type.isAssignableFrom(DefaultHttpRequest.class)) {
+                resolvers[i] = request -> request;
+            } else {
+                final Object defaultValue = defaultValue(type);
+                resolvers[i] = request -> defaultValue;
+            }
+        }
+        return resolvers;
+    }
+
+    private static ParameterResolver pathVariableResolver(Method method, Parameter parameter,
+                                                          PathVariable pathVariable) {
+        final String name;
+        if (!pathVariable.value().isEmpty()) {
+            name = pathVariable.value();
+        } else if (parameter.isNamePresent()) {
+            name = parameter.getName();
+        } else {
+            throw new IllegalArgumentException(
+                    "the name of the path variable " + parameter + " of " + method +
+                    " must be specified unless the class is compiled with '-parameters'");
+        }
+        final String defaultValue = pathVariable.defaultValue();
+        final Class<?> type = parameter.getType();
+        if (type == String.class || type == CharSequence.class || type == Object.class) {
+            return request -> {
+                final String value = request.pathParam(name);
+                return value != null ? value : defaultValue;
+            };
+        }
+        if (type == long.class || type == Long.class) {
+            final long defaultLong = defaultValue.isEmpty() ? 0 : Long.parseLong(defaultValue);
+            return request -> request.pathParamAsLong(name, defaultLong);
+        }
+        if (type == int.class || type == Integer.class) {
+            final int defaultInt = defaultValue.isEmpty() ? 0 : Integer.parseInt(defaultValue);
+            return request -> Math.toIntExact(request.pathParamAsLong(name, defaultInt));
+        }
+        throw new IllegalArgumentException("unsupported type of the path variable " + parameter + " of " +
+                                           method + ": " + type.getName() +
+                                           " (expected: String, int, long or their wrappers)");
+    }
+
+    @Nullable
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        // Widened to the parameter type by Method.invoke().
+        return (byte) 0;
+    }
+
+    /**
+     * Resolves an argument of the annotated {@link Method} from a {@link Request}.
+     */
+    @FunctionalInterface
+    private interface ParameterResolver {
+        @Nullable
+        Object resolve(Request request);
+    }
+
     /**
      * Response type classification of the annotated {@link Method}.
      */
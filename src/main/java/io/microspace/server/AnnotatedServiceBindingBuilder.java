@@ -135,6 +135,24 @@ final class AnnotatedServiceBindingBuilder extends AbstractServiceConfigSetter {
         return this;
     }
 
+    @Override
+    public AnnotatedServiceBindingBuilder trafficCapture(boolean trafficCapture) {
+        super.trafficCapture(trafficCapture);
+        return this;
+    }
+
+    @Override
+    public AnnotatedServiceBindingBuilder trafficCaptureContent(boolean trafficCaptureContent) {
+        super.trafficCaptureContent(trafficCaptureContent);
+        return this;
+    }
+
+    @Override
+    public AnnotatedServiceBindingBuilder maxConcurrentVirtualThreads(int maxConcurrentVirtualThreads) {
+        super.maxConcurrentVirtualThreads(maxConcurrentVirtualThreads);
+        return this;
+    }
+
     @Override
     public AnnotatedServiceBindingBuilder defaultServiceName(String defaultServiceName) {
         super.defaultServiceName(defaultServiceName);
@@ -125,6 +125,16 @@ public class AnnotatedServiceFactory {
                                                      List<RequestConverterFunction> requestConverterFunctions,
                                                      List<ResponseConverterFunction> responseConverterFunctions,
                                                      List<ExceptionHandlerFunction> exceptionHandlerFunctions) {
+        final AnnotatedServiceIndex index = routeIndex(object.getClass());
+        if (index != null) {
+            final List<AnnotatedServiceElement> elements =
+                    createFromIndex(pathPrefix, object, index, requestConverterFunctions,
+                                    responseConverterFunctions, exceptionHandlerFunctions);
+            if (elements != null) {
+                return elements;
+            }
+        }
+
         final List<Method> requestMappingMethods = requestMappingMethods(object);
         return requestMappingMethods.stream().flatMap((method) -> requireNonNull(
                                             create(pathPrefix, object, method,
@@ -150,24 +160,117 @@ public class AnnotatedServiceFactory {
         final String computedPathPrefix = computePathPrefix(clazz, prefix);
         final Set<MediaType> consumableMediaTypes = consumableMediaTypes(method, clazz);
         final Set<MediaType> producibleMediaTypes = producibleMediaTypes(method, clazz);
-        final List<Route> routes = new ArrayList<>();
+        final List<String> matchesParamPredicates =
+                predicates(method, clazz, MatchesParam.class, MatchesParam::value);
+        final List<String> matchesHeaderPredicates =
+                predicates(method, clazz, MatchesHeader.class, MatchesHeader::value);
+        final List<Route> routes = routes(methodListMap, computedPathPrefix, consumableMediaTypes,
+                                          producibleMediaTypes, matchesParamPredicates,
+                                          matchesHeaderPredicates, statusCode);
+        final boolean needToUseBlockingTaskExecutor = findFirst(
+                method, Blocking.class) != null || findFirst(service.getClass(), Blocking.class) != null;
+
+        return elements(service, method, null, needToUseBlockingTaskExecutor, routes,
+                        baseRequestConverterFunctions, baseResponseConverterFunctions,
+                        baseExceptionHandlerFunctions);
+    }
+
+    /**
+     * Returns the list of {@link AnnotatedService} built from the specified {@link AnnotatedServiceIndex}
+     * which was generated at compile time, or {@code null} if the index does not match the class of
+     * the specified {@code service}.
+     */
+    @Nullable
+    private static List<AnnotatedServiceElement> createFromIndex(
+            String prefix, Object service, AnnotatedServiceIndex index,
+            List<RequestConverterFunction> baseRequestConverterFunctions,
+            List<ResponseConverterFunction> baseResponseConverterFunctions,
+            List<ExceptionHandlerFunction> baseExceptionHandlerFunctions) {
+        final Class<?> clazz = service.getClass();
+        final List<AnnotatedServiceIndex.Entry> entries = index.entries();
+        final List<Method> methods = new ArrayList<>(entries.size());
+        for (AnnotatedServiceIndex.Entry entry : entries) {
+            try {
+                methods.add(clazz.getMethod(entry.methodName(), entry.parameterTypes()));
+            } catch (NoSuchMethodException e) {
+                logger.warn("The route index of {} does not match the class; scanning the class instead.",
+                            clazz.getName(), e);
+                return null;
+            }
+        }
+
+        final String computedPathPrefix = computePathPrefix(prefix, index.pathPrefix());
+        final ImmutableList.Builder<AnnotatedServiceElement> builder = ImmutableList.builder();
+        for (int i = 0; i < entries.size(); i++) {
+            final AnnotatedServiceIndex.Entry entry = entries.get(i);
+            final Map<HttpMethod, List<String>> methodListMap = new EnumMap<>(HttpMethod.class);
+            methodListMap.putAll(entry.pathPatterns());
+            final List<Route> routes = routes(methodListMap, computedPathPrefix,
+                                              entry.consumes().stream().map(MediaType::parse)
+                                                   .collect(toImmutableSet()),
+                                              entry.produces().stream().map(MediaType::parse)
+                                                   .collect(toImmutableSet()),
+                                              entry.matchesParams(), entry.matchesHeaders(),
+                                              statusCode(entry.statusCode()));
+            final int position = i;
+            final AnnotatedService.Invoker invoker =
+                    entry.isInvocable() ? target -> index.invoke(target, position) : null;
+            builder.addAll(elements(service, methods.get(i), invoker, entry.isBlocking(), routes,
+                                    baseRequestConverterFunctions, baseResponseConverterFunctions,
+                                    baseExceptionHandlerFunctions));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the {@link AnnotatedServiceIndex} generated for the specified {@code clazz} by
+     * {@link io.microspace.server.annotation.processor.AnnotatedServiceIndexProcessor}, or {@code null}
+     * if the class was not indexed.
+     */
+    @Nullable
+    private static AnnotatedServiceIndex routeIndex(Class<?> clazz) {
+        final Class<?> indexClass;
+        try {
+            indexClass = Class.forName(clazz.getName() + AnnotatedServiceIndex.CLASS_NAME_SUFFIX,
+                                       true, clazz.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        try {
+            return (AnnotatedServiceIndex) indexClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            logger.warn("Failed to load the route index of {}; scanning the class instead.",
+                        clazz.getName(), e);
+            return null;
+        }
+    }
 
+    private static List<Route> routes(Map<HttpMethod, List<String>> methodListMap, String pathPrefix,
+                                      Set<MediaType> consumableMediaTypes,
+                                      Set<MediaType> producibleMediaTypes,
+                                      List<String> matchesParamPredicates,
+                                      List<String> matchesHeaderPredicates, HttpStatus statusCode) {
+        final List<Route> routes = new ArrayList<>();
         methodListMap.forEach((httpMethod, pathMappings) -> {
             for (String pathMapping : pathMappings) {
-                List<String> matchesParamPredicates =
-                        predicates(method, clazz, MatchesParam.class, MatchesParam::value);
-
-                List<String> matchesHeaderPredicates =
-                        predicates(method, clazz, MatchesHeader.class, MatchesHeader::value);
                 routes.add(Route.builder().pathPattern(pathMapping)
-                                .pathPrefix(computedPathPrefix)
+                                .pathPrefix(pathPrefix)
                                 .methods(httpMethod).consumes(consumableMediaTypes)
                                 .produces(producibleMediaTypes).matchesParams(matchesParamPredicates)
                                 .matchesHeaders(matchesHeaderPredicates).statusCode(statusCode)
                                 .build());
             }
         });
+        return routes;
+    }
 
+    private static List<AnnotatedServiceElement> elements(
+            Object service, Method method, AnnotatedService.@Nullable Invoker invoker,
+            boolean needToUseBlockingTaskExecutor, List<Route> routes,
+            List<RequestConverterFunction> baseRequestConverterFunctions,
+            List<ResponseConverterFunction> baseResponseConverterFunctions,
+            List<ExceptionHandlerFunction> baseExceptionHandlerFunctions) {
+        final Class<?> clazz = service.getClass();
         final List<RequestConverterFunction> requestConverterFunctions =
                 getAnnotatedInstances(method, clazz, RequestConverter.class,
                                       RequestConverterFunction.class)
@@ -200,12 +303,9 @@ public class AnnotatedServiceFactory {
         setAdditionalHeader(method, "trailer", methodAlias, "method",
                             AdditionalTrailer.class, AdditionalTrailer::name, AdditionalTrailer::value);
 
-        final boolean needToUseBlockingTaskExecutor = findFirst(
-                method, Blocking.class) != null || findFirst(service.getClass(), Blocking.class) != null;
-
         return routes.stream().map(route -> new AnnotatedServiceElement(
                              route, new AnnotatedService(
-                             service, method, needToUseBlockingTaskExecutor,
+                             service, method, invoker, needToUseBlockingTaskExecutor,
                              addedHeaders, requestConverterFunctions,
                              responseConverterFunctions, exceptionHandlerFunctions)))
                      .collect(toImmutableList());
@@ -342,20 +442,27 @@ public class AnnotatedServiceFactory {
             return returnType == Void.class ||
                    returnType == void.class ? HttpStatus.NO_CONTENT : HttpStatus.OK;
         }
-        final int statusCode = statusCodeAnnotation.value();
+        return statusCode(statusCodeAnnotation.value());
+    }
+
+    private static HttpStatus statusCode(int statusCode) {
         checkArgument(statusCode >= 0,
                       "invalid HTTP status code: %s (expected: >= 0)", statusCode);
         return HttpStatus.valueOf(statusCode);
     }
 
     private static String computePathPrefix(Class<?> clazz, String pathPrefix) {
-        ensureAbsolutePath(pathPrefix, "pathPrefix");
         final PathPrefix pathPrefixAnnotation = findFirst(clazz, PathPrefix.class);
-        if (null == pathPrefixAnnotation) {
+        return computePathPrefix(pathPrefix, pathPrefixAnnotation != null ? pathPrefixAnnotation.value()
+                                                                          : null);
+    }
+
+    private static String computePathPrefix(String pathPrefix, @Nullable String pathPrefixValue) {
+        ensureAbsolutePath(pathPrefix, "pathPrefix");
+        if (null == pathPrefixValue) {
             return pathPrefix;
         }
 
-        final String pathPrefixValue = pathPrefixAnnotation.value();
         ensureAbsolutePath(pathPrefixValue, "pathPrefixValue");
         if (pathPrefix.equals("/") && pathPrefixValue.equals("/")) {
             return pathPrefix;
@@ -0,0 +1,160 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import io.microspace.server.annotation.processor.AnnotatedServiceIndexProcessor;
+
+/**
+ * A route table of an annotated service class which is generated at compile time by
+ * {@link AnnotatedServiceIndexProcessor}, so that the routes of the service can be built without
+ * scanning the methods and annotations of the class via reflection. The generated class is named after
+ * the binary name of the service class followed by {@value #CLASS_NAME_SUFFIX}.
+ *
+ * <p>This interface is not meant to be implemented by hand.
+ *
+ * @author i1619kHz
+ */
+public interface AnnotatedServiceIndex {
+    /**
+     * The suffix which is appended to the binary name of a service class to name its index class.
+     */
+    String CLASS_NAME_SUFFIX = "$$MicrospaceRouteIndex";
+
+    /**
+     * Returns the value of the {@link io.microspace.server.annotation.PathPrefix} annotation of the
+     * service class, or {@code null} if the class is not annotated.
+     */
+    @Nullable
+    String pathPrefix();
+
+    /**
+     * Returns the route methods of the service class, sorted by their
+     * {@link io.microspace.server.annotation.Order}.
+     */
+    List<Entry> entries();
+
+    /**
+     * Invokes the method of the {@link Entry} at the specified {@code index} of {@link #entries()}
+     * on the specified {@code target} directly, without reflection. Must not be invoked for an
+     * {@link Entry} which is not {@linkplain Entry#isInvocable() invocable}.
+     */
+    @Nullable
+    Object invoke(Object target, int index) throws Exception;
+
+    /**
+     * A route method of a service class and the routing attributes resolved from its annotations and
+     * the annotations of its class.
+     */
+    final class Entry {
+        private final String methodName;
+        private final Class<?>[] parameterTypes;
+        private final boolean invocable;
+        private final Map<HttpMethod, List<String>> pathPatterns;
+        private final int statusCode;
+        private final List<String> consumes;
+        private final List<String> produces;
+        private final List<String> matchesParams;
+        private final List<String> matchesHeaders;
+        private final boolean blocking;
+
+        public Entry(String methodName, Class<?>[] parameterTypes, boolean invocable,
+                     Map<HttpMethod, List<String>> pathPatterns, int statusCode,
+                     List<String> consumes, List<String> produces,
+                     List<String> matchesParams, List<String> matchesHeaders, boolean blocking) {
+            this.methodName = requireNonNull(methodName, "methodName");
+            this.parameterTypes = requireNonNull(parameterTypes, "parameterTypes").clone();
+            this.invocable = invocable;
+            this.pathPatterns = ImmutableMap.copyOf(requireNonNull(pathPatterns, "pathPatterns"));
+            this.statusCode = statusCode;
+            this.consumes = ImmutableList.copyOf(requireNonNull(consumes, "consumes"));
+            this.produces = ImmutableList.copyOf(requireNonNull(produces, "produces"));
+            this.matchesParams = ImmutableList.copyOf(requireNonNull(matchesParams, "matchesParams"));
+            this.matchesHeaders = ImmutableList.copyOf(requireNonNull(matchesHeaders, "matchesHeaders"));
+            this.blocking = blocking;
+        }
+
+        String methodName() {
+            return methodName;
+        }
+
+        Class<?>[] parameterTypes() {
+            return parameterTypes.clone();
+        }
+
+        /**
+         * Returns whether the method can be invoked by {@link AnnotatedServiceIndex#invoke(Object, int)}.
+         */
+        boolean isInvocable() {
+            return invocable;
+        }
+
+        Map<HttpMethod, List<String>> pathPatterns() {
+            return pathPatterns;
+        }
+
+        int statusCode() {
+            return statusCode;
+        }
+
+        List<String> consumes() {
+            return consumes;
+        }
+
+        List<String> produces() {
+            return produces;
+        }
+
+        List<String> matchesParams() {
+            return matchesParams;
+        }
+
+        List<String> matchesHeaders() {
+            return matchesHeaders;
+        }
+
+        boolean isBlocking() {
+            return blocking;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                              .add("methodName", methodName)
+                              .add("pathPatterns", pathPatterns)
+                              .add("invocable", invocable)
+                              .toString();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.WorkHandler;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+
+import io.micrometer.core.instrument.Counter;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Hands the requests to the services annotated with {@code @Blocking} off from the event loops to
+ * other threads, and their completions back to the event loops:
+ * <ul>
+ *   <li>Unless {@link ServerConfig#virtualThreadMode()} is enabled, an event loop publishes a task into
+ *       a preallocated slot of a lock-free ring buffer, which is consumed by
+ *       {@link ServerConfig#blockingTaskThreadCount()} threads waiting with
+ *       {@link ServerConfig#blockingTaskWaitStrategy()}. A task published while the ring buffer is full
+ *       is rejected.</li>
+ *   <li>Otherwise, every task runs on a new virtual thread. A task of a service which already runs
+ *       {@link ServiceConfig#maxConcurrentVirtualThreads()} tasks is rejected.</li>
+ *   <li>The rejected tasks are counted in {@code microspace.blocking.tasks.rejected}, so a saturated
+ *       service never blocks an event loop.</li>
+ *   <li>The completions of the tasks are queued per event loop, and a single event loop task runs all
+ *       the completions queued by the time it runs, so a busy pool wakes up an event loop once per
+ *       batch rather than once per response.</li>
+ * </ul>
+ * A server without any blocking service creates no {@link BlockingTaskDispatcher} at all.
+ *
+ * @author i1619kHz
+ */
+final class BlockingTaskDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(BlockingTaskDispatcher.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final int MAX_PUBLISH_ATTEMPTS = 3;
+
+    private final VirtualThreadMode virtualThreadMode;
+    @Nullable
+    private final Disruptor<TaskSlot> disruptor;
+    @Nullable
+    private final RingBuffer<TaskSlot> ringBuffer;
+    @Nullable
+    private final ExecutorService virtualThreads;
+    @Nullable
+    private final VirtualThreadPinningMonitor pinningMonitor;
+    /**
+     * The numbers of the running tasks of the services whose concurrent virtual threads are limited.
+     */
+    private final Map<ServiceConfig, AtomicInteger> runningTasks = new IdentityHashMap<>();
+    private final Map<EventExecutor, CompletionBatch> completionBatches = new ConcurrentHashMap<>();
+    private final Counter rejectedTasks;
+
+    BlockingTaskDispatcher(ServerConfig config) {
+        requireNonNull(config, "config");
+        virtualThreadMode = config.virtualThreadMode();
+        if (virtualThreadMode == VirtualThreadMode.DISABLED) {
+            disruptor = new Disruptor<>(TaskSlot::new, config.blockingTaskBufferSize(),
+                                        new DefaultThreadFactory("microspace-blocking", true),
+                                        ProducerType.MULTI,
+                                        newWaitStrategy(config.blockingTaskWaitStrategy()));
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            final WorkHandler<TaskSlot>[] workers = new WorkHandler[config.blockingTaskThreadCount()];
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = TaskSlot::run;
+            }
+            disruptor.setDefaultExceptionHandler(new TaskExceptionHandler());
+            disruptor.handleEventsWithWorkerPool(workers);
+            ringBuffer = disruptor.start();
+            virtualThreads = null;
+            pinningMonitor = null;
+        } else {
+            disruptor = null;
+            ringBuffer = null;
+            virtualThreads = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("microspace-virtual-", 0).factory());
+            pinningMonitor = new VirtualThreadPinningMonitor(config);
+            for (ServiceConfig serviceConfig : config.serviceConfigs()) {
+                if (serviceConfig.maxConcurrentVirtualThreads() > 0) {
+                    runningTasks.put(serviceConfig, new AtomicInteger());
+                }
+            }
+        }
+        rejectedTasks = Counter.builder("microspace.blocking.tasks.rejected")
+                               .description("The number of the requests to the blocking services rejected " +
+                                            "because the services were saturated")
+                               .register(config.meterRegistry());
+    }
+
+    private static WaitStrategy newWaitStrategy(BlockingTaskWaitStrategy strategy) {
+        switch (strategy) {
+            case YIELDING:
+                return new YieldingWaitStrategy();
+            case BUSY_SPIN:
+                return new BusySpinWaitStrategy();
+            default:
+                return new BlockingWaitStrategy();
+        }
+    }
+
+    /**
+     * Returns whether the specified server has a service which must be served by a dispatcher.
+     */
+    static boolean isNeeded(ServerConfig config) {
+        final VirtualThreadMode mode = config.virtualThreadMode();
+        return config.serviceConfigs().stream()
+                     .anyMatch(serviceConfig -> handles(mode, serviceConfig.service()));
+    }
+
+    private static boolean handles(VirtualThreadMode mode, HttpService service) {
+        if (!(service instanceof AnnotatedService annotated)) {
+            return false;
+        }
+        return annotated.needToUseBlockingTaskExecutor() || mode == VirtualThreadMode.ANNOTATED_SERVICES;
+    }
+
+    /**
+     * Returns whether the specified service must be served by this dispatcher rather than by an event
+     * loop.
+     */
+    boolean handles(HttpService service) {
+        return handles(virtualThreadMode, service);
+    }
+
+    /**
+     * Runs the specified task, which serves a request to the specified service, by another thread.
+     *
+     * @return {@code false} if the task was rejected because the service is saturated
+     */
+    boolean dispatch(ServiceConfig serviceConfig, Runnable task) {
+        final boolean dispatched = virtualThreads != null ? startVirtualThread(serviceConfig, task)
+                                                          : publish(task);
+        if (!dispatched) {
+            rejectedTasks.increment();
+        }
+        return dispatched;
+    }
+
+    private boolean startVirtualThread(ServiceConfig serviceConfig, Runnable task) {
+        assert virtualThreads != null;
+        final AtomicInteger running = runningTasks.get(serviceConfig);
+        if (running == null) {
+            return execute(virtualThreads, task);
+        }
+        final int maxRunning = serviceConfig.maxConcurrentVirtualThreads();
+        for (;;) {
+            final int numRunning = running.get();
+            if (numRunning >= maxRunning) {
+                return false;
+            }
+            if (running.compareAndSet(numRunning, numRunning + 1)) {
+                break;
+            }
+        }
+        if (!execute(virtualThreads, () -> {
+            try {
+                task.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        })) {
+            running.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean execute(ExecutorService executor, Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Closed already.
+            return false;
+        }
+    }
+
+    private boolean publish(Runnable task) {
+        assert ringBuffer != null;
+        long sequence;
+        for (int attempt = 1;; attempt++) {
+            try {
+                sequence = ringBuffer.tryNext();
+                break;
+            } catch (InsufficientCapacityException e) {
+                // A worker sets its sequence from the claimed sequence it read before, so a worker
+                // preempted in between makes the ring buffer look full until it runs again.
+                if (attempt == MAX_PUBLISH_ATTEMPTS) {
+                    return false;
+                }
+                Thread.yield();
+            }
+        }
+        try {
+            ringBuffer.get(sequence).task = task;
+        } finally {
+            ringBuffer.publish(sequence);
+        }
+        return true;
+    }
+
+    /**
+     * Runs the specified completion of a task by the specified event loop, together with the other
+     * completions queued for it.
+     */
+    void complete(EventExecutor eventLoop, Runnable completion) {
+        completionBatches.computeIfAbsent(eventLoop, CompletionBatch::new).add(completion);
+    }
+
+    /**
+     * Waits for the tasks left and stops the blocking threads.
+     */
+    void close() {
+        if (disruptor != null) {
+            try {
+                disruptor.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                logger.warn("Failed to complete the blocking tasks in {} seconds. Abandoning the rest.",
+                            SHUTDOWN_TIMEOUT_SECONDS);
+                disruptor.halt();
+            }
+        }
+        if (virtualThreads != null) {
+            virtualThreads.shutdown();
+            try {
+                if (!virtualThreads.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    logger.warn("Failed to complete the blocking tasks in {} seconds. Interrupting the rest.",
+                                SHUTDOWN_TIMEOUT_SECONDS);
+                    virtualThreads.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                virtualThreads.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (pinningMonitor != null) {
+            pinningMonitor.close();
+        }
+    }
+
+    /**
+     * A slot of the ring buffer, which is reused for every task published to it.
+     */
+    private static final class TaskSlot {
+        @Nullable
+        Runnable task;
+
+        void run() {
+            final Runnable task = this.task;
+            // Do not keep the request reachable until the slot is reused.
+            this.task = null;
+            if (task != null) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * The completions waiting to be run by an event loop.
+     */
+    private static final class CompletionBatch implements Runnable {
+        private final EventExecutor eventLoop;
+        private final Queue<Runnable> completions = PlatformDependent.newMpscQueue();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        CompletionBatch(EventExecutor eventLoop) {
+            this.eventLoop = eventLoop;
+        }
+
+        void add(Runnable completion) {
+            completions.add(completion);
+            if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+                eventLoop.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            // Cleared before draining, so that a completion added after the last poll schedules a new run.
+            scheduled.set(false);
+            for (;;) {
+                final Runnable completion = completions.poll();
+                if (completion == null) {
+                    return;
+                }
+                try {
+                    completion.run();
+                } catch (Throwable cause) {
+                    logger.warn("Unexpected exception while completing a blocking task:", cause);
+                }
+            }
+        }
+    }
+
+    private static final class TaskExceptionHandler implements ExceptionHandler<TaskSlot> {
+        @Override
+        public void handleEventException(Throwable cause, long sequence, TaskSlot slot) {
+            // A failed task must not stop its thread.
+            logger.warn("Unexpected exception from a blocking task:", cause);
+        }
+
+        @Override
+        public void handleOnStartException(Throwable cause) {
+            logger.warn("Failed to start a blocking thread:", cause);
+        }
+
+        @Override
+        public void handleOnShutdownException(Throwable cause) {
+            logger.warn("Failed to stop a blocking thread:", cause);
+        }
+    }
+}
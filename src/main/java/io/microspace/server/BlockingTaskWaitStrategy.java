@@ -0,0 +1,48 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+/**
+ * The strategies the threads which run the blocking services use to wait for the requests published
+ * by the event loops.
+ *
+ * @author i1619kHz
+ */
+public enum BlockingTaskWaitStrategy {
+    /**
+     * Parks the idle threads on a lock and wakes them up whenever a request is published. Uses no CPU
+     * while idle at the cost of the latency of waking up a thread.
+     */
+    BLOCKING,
+    /**
+     * Spins and then yields the idle threads. Lower latency than {@link #BLOCKING}, but keeps the idle
+     * threads runnable, so it suits only the servers with spare cores.
+     */
+    YIELDING,
+    /**
+     * Spins the idle threads. The lowest latency, but occupies a core per thread, so it suits only the
+     * servers whose blocking threads are fewer than the cores left by the event loops.
+     */
+    BUSY_SPIN
+}
@@ -0,0 +1,348 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.microspace.server.RoutePredicate.Condition;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * The param and header predicates of all {@link Route}s, compiled into a single decision structure.
+ *
+ * <p>The {@linkplain Condition conditions} of the predicates are deduplicated and grouped by the
+ * name of the header or the param they test. When a {@link Route} is tried, its conditions are
+ * looked up from the {@link Evaluation} of the request, which evaluates all conditions of a name at
+ * once the first time one of them is needed. So a header or a param is looked up at most once per
+ * request no matter how many {@link Route}s of the same path test it, and the values which are
+ * compared with {@code name=value} are matched with a single hash lookup per value.
+ *
+ * @author i1619kHz
+ */
+final class CompiledRoutePredicates {
+    private static final Logger logger = LoggerFactory.getLogger(CompiledRoutePredicates.class);
+
+    private static final int[] NO_PREDICATES = new int[0];
+
+    private static final FastThreadLocal<Evaluation> evaluations = new FastThreadLocal<Evaluation>() {
+        @Override
+        protected Evaluation initialValue() {
+            return new Evaluation();
+        }
+    };
+
+    /**
+     * The {@link Group} of every condition, indexed by the ID of the condition.
+     */
+    private final Group[] conditionGroups;
+    private final int groupCount;
+
+    private CompiledRoutePredicates(Group[] conditionGroups, int groupCount) {
+        this.conditionGroups = conditionGroups;
+        this.groupCount = groupCount;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the {@link Evaluation} of a request of the specified method, headers and query, which is
+     * reused by the requests routed by the current thread.
+     *
+     * @param queryDecoder the decoder of the query of the request, whose params are decoded only if
+     *                     a param predicate is evaluated, or {@code null} if the request has no params
+     */
+    Evaluation evaluation(@Nullable HttpMethod method, io.netty.handler.codec.http.HttpHeaders headers,
+                          @Nullable QueryStringDecoder queryDecoder) {
+        final Evaluation evaluation = evaluations.get();
+        evaluation.reset(this, method, requireNonNull(headers, "headers"), queryDecoder);
+        return evaluation;
+    }
+
+    /**
+     * Builds {@link CompiledRoutePredicates}, assigning an ID to every distinct {@link Condition}.
+     */
+    static final class Builder {
+        private final Map<String, Group> headerGroups = new LinkedHashMap<>();
+        private final Map<String, Group> paramGroups = new LinkedHashMap<>();
+        private final List<Group> conditionGroups = new ArrayList<>();
+
+        private Builder() {}
+
+        /**
+         * Adds the predicates of the specified {@link DefaultRoute} and returns them compiled, which is
+         * passed to {@link Evaluation#test(int[])} to test whether a request matches the predicates.
+         */
+        int[] add(DefaultRoute route) {
+            requireNonNull(route, "route");
+            final int size = route.headerPredicates().size() + route.paramPredicates().size();
+            if (size == 0) {
+                return NO_PREDICATES;
+            }
+            final int[] compiled = new int[size];
+            int i = 0;
+            for (RoutePredicate<HttpHeaders> predicate : route.headerPredicates()) {
+                compiled[i++] = add(headerGroups, true, predicate.condition());
+            }
+            for (RoutePredicate<QueryParams> predicate : route.paramPredicates()) {
+                compiled[i++] = add(paramGroups, false, predicate.condition());
+            }
+            return compiled;
+        }
+
+        /**
+         * Returns the ID of the specified {@link Condition} shifted left by one, whose lowest bit tells
+         * whether the condition is negated.
+         */
+        private int add(Map<String, Group> groups, boolean header, Condition condition) {
+            final Group group = groups.computeIfAbsent(
+                    condition.name(), name -> new Group(name, header, groupCount()));
+            final int id;
+            if (condition.valuePredicate() != null) {
+                // A predicate can't be compared with the others, so it always has its own ID.
+                id = newId(group);
+                group.valuePredicates.add(condition.valuePredicate());
+                group.valuePredicateIds.add(id);
+            } else if (condition.value() != null) {
+                final Integer existingId = group.equalsIds.get(condition.value());
+                if (existingId != null) {
+                    id = existingId;
+                } else {
+                    id = newId(group);
+                    group.equalsIds.put(condition.value(), id);
+                }
+            } else {
+                if (group.containsId < 0) {
+                    group.containsId = newId(group);
+                }
+                id = group.containsId;
+            }
+            return id << 1 | (condition.isNegated() ? 1 : 0);
+        }
+
+        private int groupCount() {
+            return headerGroups.size() + paramGroups.size();
+        }
+
+        private int newId(Group group) {
+            conditionGroups.add(group);
+            return conditionGroups.size() - 1;
+        }
+
+        CompiledRoutePredicates build() {
+            return new CompiledRoutePredicates(conditionGroups.toArray(new Group[0]), groupCount());
+        }
+    }
+
+    /**
+     * The conditions which test the same header or param.
+     */
+    private static final class Group {
+        private final String name;
+        private final boolean header;
+        private final int index;
+        private int containsId = -1;
+        private final Map<String, Integer> equalsIds = new HashMap<>();
+        private final List<Predicate<? super String>> valuePredicates = new ArrayList<>();
+        private final List<Integer> valuePredicateIds = new ArrayList<>();
+
+        Group(String name, boolean header, int index) {
+            this.name = name;
+            this.header = header;
+            this.index = index;
+        }
+
+        /**
+         * Returns whether the conditions need only to know whether there's a value.
+         */
+        boolean testsPresenceOnly() {
+            return equalsIds.isEmpty() && valuePredicates.isEmpty();
+        }
+    }
+
+    /**
+     * The state of matching a request against {@link CompiledRoutePredicates}, which remembers the
+     * conditions evaluated so far. An instance is reused by the requests routed by the same thread, so
+     * it must not be kept after routing the request.
+     */
+    static final class Evaluation {
+        @Nullable
+        private CompiledRoutePredicates predicates;
+        @Nullable
+        private HttpMethod method;
+        @Nullable
+        private io.netty.handler.codec.http.HttpHeaders headers;
+        @Nullable
+        private QueryStringDecoder queryDecoder;
+        @Nullable
+        private Map<String, List<String>> params;
+        private long[] evaluatedGroups = new long[1];
+        private long[] satisfiedConditions = new long[1];
+        private boolean evaluated;
+
+        private Evaluation() {}
+
+        private void reset(CompiledRoutePredicates predicates, @Nullable HttpMethod method,
+                           io.netty.handler.codec.http.HttpHeaders headers,
+                           @Nullable QueryStringDecoder queryDecoder) {
+            this.predicates = predicates;
+            this.method = method;
+            this.headers = headers;
+            this.queryDecoder = queryDecoder;
+            params = null;
+            evaluatedGroups = clear(evaluatedGroups, predicates.groupCount);
+            satisfiedConditions = clear(satisfiedConditions, predicates.conditionGroups.length);
+            evaluated = false;
+        }
+
+        private static long[] clear(long[] bits, int size) {
+            final int words = (size + 63) >>> 6;
+            if (bits.length < words) {
+                return new long[words];
+            }
+            Arrays.fill(bits, 0, words, 0L);
+            return bits;
+        }
+
+        /**
+         * Returns the method of the request, or {@code null} if it is not one of the known
+         * {@link HttpMethod}s.
+         */
+        @Nullable
+        HttpMethod method() {
+            return method;
+        }
+
+        /**
+         * Returns whether the request matches all of the specified
+         * {@linkplain Builder#add(DefaultRoute) compiled predicates}, stopping at the first one it
+         * does not match.
+         */
+        boolean test(int[] compiled) {
+            for (int ref : compiled) {
+                final int id = ref >>> 1;
+                final Group group = predicates.conditionGroups[id];
+                if (!isSet(evaluatedGroups, group.index)) {
+                    evaluate(group);
+                }
+                if (isSet(satisfiedConditions, id) == ((ref & 1) != 0)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns whether a predicate has been evaluated, which means that the result of the routing
+         * depends on the headers or the params of the request.
+         */
+        boolean hasEvaluated() {
+            return evaluated;
+        }
+
+        private void evaluate(Group group) {
+            set(evaluatedGroups, group.index);
+            evaluated = true;
+            if (group.header) {
+                if (group.testsPresenceOnly()) {
+                    if (headers.contains(group.name)) {
+                        set(satisfiedConditions, group.containsId);
+                    }
+                    return;
+                }
+                final Iterator<String> it = headers.valueStringIterator(group.name);
+                while (it.hasNext()) {
+                    accept(group, it.next());
+                }
+            } else {
+                final List<String> values = params().get(group.name);
+                if (values == null) {
+                    return;
+                }
+                for (int i = 0; i < values.size(); i++) {
+                    accept(group, values.get(i));
+                }
+            }
+        }
+
+        private Map<String, List<String>> params() {
+            Map<String, List<String>> params = this.params;
+            if (params == null) {
+                params = this.params = queryDecoder != null ? queryDecoder.parameters() : Map.of();
+            }
+            return params;
+        }
+
+        private void accept(Group group, String value) {
+            if (group.containsId >= 0) {
+                set(satisfiedConditions, group.containsId);
+            }
+            final Integer equalsId = group.equalsIds.get(value);
+            if (equalsId != null) {
+                set(satisfiedConditions, equalsId);
+            }
+            for (int i = 0; i < group.valuePredicates.size(); i++) {
+                final int id = group.valuePredicateIds.get(i);
+                if (!isSet(satisfiedConditions, id) && test(group, group.valuePredicates.get(i), value)) {
+                    set(satisfiedConditions, id);
+                }
+            }
+        }
+
+        private static boolean test(Group group, Predicate<? super String> valuePredicate, String value) {
+            try {
+                return valuePredicate.test(value);
+            } catch (Throwable cause) {
+                logger.warn("Failed to evaluate the value of header or param '{}'. " +
+                            "You MUST catch and handle this exception properly: " +
+                            "input={}", group.name, value, cause);
+                return false;
+            }
+        }
+
+        private static boolean isSet(long[] bits, int index) {
+            return (bits[index >>> 6] & 1L << index) != 0;
+        }
+
+        private static void set(long[] bits, int index) {
+            bits[index >>> 6] |= 1L << index;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+/**
+ * A {@link RuntimeException} raised when the content of a request exceeds the
+ * {@code maxRequestLength} of the service it is routed to.
+ *
+ * @author i1619kHz
+ */
+public class ContentTooLargeException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long maxContentLength;
+
+    public ContentTooLargeException(long maxContentLength) {
+        super("content length exceeds " + maxContentLength + " bytes");
+        this.maxContentLength = maxContentLength;
+    }
+
+    /**
+     * Returns the maximum allowed length of the content which was exceeded.
+     */
+    public long maxContentLength() {
+        return maxContentLength;
+    }
+}
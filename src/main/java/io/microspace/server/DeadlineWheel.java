@@ -0,0 +1,205 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.ScheduledFuture;
+
+/**
+ * Tracks the deadlines of the in-flight requests of an event loop in a hashed timer wheel, so that
+ * adding and cancelling a deadline take constant time regardless of the number of the requests,
+ * unlike scheduling a task on the event loop for each of them.
+ *
+ * <p>The wheel is driven by a single task scheduled on the event loop every {@link #TICK_MILLIS}
+ * milliseconds, which runs only while the wheel has a deadline, so an idle event loop is never woken up.
+ * A deadline expires within a tick after it has passed. All methods but {@link Deadline#remainingNanos()}
+ * must be invoked from the event loop.
+ *
+ * @author i1619kHz
+ */
+final class DeadlineWheel {
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineWheel.class);
+
+    private static final long TICK_MILLIS = 10;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+
+    /**
+     * The number of the buckets, which covers about 5 seconds per round of the wheel. A deadline further
+     * than a round stays in its bucket until the round it expires in.
+     */
+    private static final int NUM_BUCKETS = 512;
+    private static final int BUCKET_MASK = NUM_BUCKETS - 1;
+
+    private static final FastThreadLocal<DeadlineWheel> wheels = new FastThreadLocal<>();
+
+    /**
+     * Returns the wheel of the specified event loop, which must be the current thread.
+     */
+    static DeadlineWheel get(EventExecutor eventLoop) {
+        assert eventLoop.inEventLoop();
+        DeadlineWheel wheel = wheels.get();
+        if (wheel == null) {
+            wheel = new DeadlineWheel(eventLoop);
+            wheels.set(wheel);
+        }
+        return wheel;
+    }
+
+    private final EventExecutor eventLoop;
+    private final Deadline[] buckets = new Deadline[NUM_BUCKETS];
+    @Nullable
+    private ScheduledFuture<?> ticker;
+    private long startNanos;
+    private long currentTick;
+    private int size;
+
+    private DeadlineWheel(EventExecutor eventLoop) {
+        this.eventLoop = eventLoop;
+    }
+
+    /**
+     * Adds a deadline which passes after the specified timeout.
+     *
+     * @param onExpiry the task run by the event loop when the deadline expires before it is cancelled
+     */
+    Deadline add(long timeoutNanos, Runnable onExpiry) {
+        requireNonNull(onExpiry, "onExpiry");
+        final long nowNanos = System.nanoTime();
+        if (ticker == null) {
+            startNanos = nowNanos;
+            currentTick = 0;
+            ticker = eventLoop.scheduleAtFixedRate(this::tick, TICK_NANOS, TICK_NANOS, TimeUnit.NANOSECONDS);
+        }
+        final long deadlineNanos = nowNanos + timeoutNanos;
+        // Rounded up, and never in a bucket which has been expired already.
+        final long expiryTick = Math.max((deadlineNanos - startNanos + TICK_NANOS - 1) / TICK_NANOS,
+                                         currentTick + 1);
+        final Deadline deadline = new Deadline(this, deadlineNanos, expiryTick, onExpiry);
+        final int bucket = (int) (expiryTick & BUCKET_MASK);
+        final Deadline head = buckets[bucket];
+        if (head != null) {
+            head.prev = deadline;
+            deadline.next = head;
+        }
+        buckets[bucket] = deadline;
+        size++;
+        return deadline;
+    }
+
+    private void tick() {
+        final long targetTick = (System.nanoTime() - startNanos) / TICK_NANOS;
+        while (currentTick < targetTick && size > 0) {
+            currentTick++;
+            expire((int) (currentTick & BUCKET_MASK));
+        }
+        if (size == 0 && ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+    }
+
+    private void expire(int bucket) {
+        Deadline deadline = buckets[bucket];
+        while (deadline != null) {
+            final Deadline next = deadline.next;
+            if (deadline.expiryTick <= currentTick) {
+                remove(deadline);
+                try {
+                    deadline.onExpiry.run();
+                } catch (Throwable cause) {
+                    logger.warn("Unexpected exception while expiring a deadline:", cause);
+                }
+            }
+            // Start over if the task cancelled the next deadline, which is no longer linked to the rest.
+            deadline = next != null && next.removed ? buckets[bucket] : next;
+        }
+    }
+
+    private void remove(Deadline deadline) {
+        final Deadline prev = deadline.prev;
+        final Deadline next = deadline.next;
+        if (prev != null) {
+            prev.next = next;
+        } else {
+            buckets[(int) (deadline.expiryTick & BUCKET_MASK)] = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        deadline.prev = null;
+        deadline.next = null;
+        deadline.removed = true;
+        size--;
+    }
+
+    /**
+     * The deadline of a request.
+     */
+    static final class Deadline {
+        private final DeadlineWheel wheel;
+        private final long deadlineNanos;
+        private final long expiryTick;
+        private final Runnable onExpiry;
+        @Nullable
+        private Deadline prev;
+        @Nullable
+        private Deadline next;
+        private boolean removed;
+
+        private Deadline(DeadlineWheel wheel, long deadlineNanos, long expiryTick, Runnable onExpiry) {
+            this.wheel = wheel;
+            this.deadlineNanos = deadlineNanos;
+            this.expiryTick = expiryTick;
+            this.onExpiry = onExpiry;
+        }
+
+        /**
+         * Returns the time left until this deadline passes, which is negative once it has passed. Can be
+         * invoked from any thread.
+         */
+        long remainingNanos() {
+            return deadlineNanos - System.nanoTime();
+        }
+
+        /**
+         * Removes this deadline from its wheel, so that it never expires. Does nothing if it has expired
+         * or been cancelled already.
+         */
+        void cancel() {
+            if (!removed) {
+                wheel.remove(this);
+            }
+        }
+    }
+}
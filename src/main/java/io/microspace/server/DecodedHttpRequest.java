@@ -0,0 +1,65 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import javax.annotation.Nullable;
+
+import io.netty.handler.codec.http.HttpRequest;
+
+/**
+ * The headers of a request decoded by {@link HttpRequestBodyHandler}, along with the {@link RoutingResult}
+ * of the request and its content.
+ *
+ * @author i1619kHz
+ */
+final class DecodedHttpRequest extends io.netty.handler.codec.http.DefaultHttpRequest {
+    private final RoutingResult routingResult;
+    private final HttpRequestBody body;
+
+    DecodedHttpRequest(HttpRequest headers, RoutingResult routingResult, HttpRequestBody body) {
+        super(headers.protocolVersion(), headers.method(), headers.uri(), headers.headers());
+        setDecoderResult(headers.decoderResult());
+        this.routingResult = requireNonNull(routingResult, "routingResult");
+        this.body = requireNonNull(body, "body");
+    }
+
+    RoutingResult routingResult() {
+        return routingResult;
+    }
+
+    /**
+     * Returns the {@link ServiceConfig} of the service which serves this request, or {@code null} if
+     * no service matches it.
+     */
+    @Nullable
+    ServiceConfig serviceConfig() {
+        return routingResult.serviceConfig();
+    }
+
+    HttpRequestBody body() {
+        return body;
+    }
+}
@@ -23,14 +23,151 @@
  */
 package io.microspace.server;
 
+import static java.util.Objects.requireNonNull;
+
 import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.reactivestreams.Publisher;
 
 import com.google.common.collect.ImmutableList;
 
+import io.microspace.internal.Flags;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.Recycler;
+import io.netty.util.concurrent.FastThreadLocalThread;
+
 /**
+ * The {@link HttpRequest} passed to a service. The instances are pooled per event loop and recycled
+ * as soon as the response of the request has been produced, so a service must not keep a reference
+ * to its request after returning the response. The instances created by the other threads, e.g. the
+ * short-lived virtual threads serving the blocking services, are not pooled because every such thread
+ * would set up a pool of its own.
+ *
+ * <p>When {@link Flags#requestContextLeakDetection()} is enabled, a released request is never reused
+ * and any access to it fails with an {@link IllegalStateException} which points at where it was
+ * released.
+ *
  * @author i1619kHz
  */
 public class DefaultHttpRequest implements HttpRequest {
+    private static final boolean leakDetection = Flags.requestContextLeakDetection();
+
+    private static final int[] EMPTY_OFFSETS = new int[0];
+
+    private static final Recycler<DefaultHttpRequest> recycler = new Recycler<DefaultHttpRequest>() {
+        @Override
+        protected DefaultHttpRequest newObject(Handle<DefaultHttpRequest> handle) {
+            return new DefaultHttpRequest(handle);
+        }
+    };
+
+    @Nullable
+    private final Recycler.Handle<DefaultHttpRequest> handle;
+    @Nullable
+    private io.netty.handler.codec.http.HttpRequest req;
+    @Nullable
+    private Publisher<ByteBuf> content;
+    @Nullable
+    private QueryStringDecoder queryStringDecoder;
+    @Nullable
+    private String[] ips;
+    @Nullable
+    private PathMapping pathMapping;
+    // The start and end offsets of the path parameters in the path, which is reused across the requests.
+    private int[] pathParamOffsets = EMPTY_OFFSETS;
+    private boolean pathParamsCaptured;
+    private boolean secure;
+    private long timeoutNanos;
+    private long receivedNanos;
+    private boolean released;
+    @Nullable
+    private Throwable releasedAt;
+
+    private DefaultHttpRequest(@Nullable Recycler.Handle<DefaultHttpRequest> handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Returns a pooled instance, which must be {@linkplain #release() released} once the response of
+     * the request has been produced.
+     *
+     * @param ips the addresses of the client, starting from the original client and followed by
+     *            the proxies in between, which are shared by all requests of a connection
+     * @param secure whether the client connected over TLS
+     * @param timeoutMillis the timeout of the request, or {@code 0} if it never times out
+     * @param receivedNanos the {@link System#nanoTime()} when the request was received
+     * @param pathMapping the {@link PathMapping} of the route, which extracts the path parameters
+     */
+    static DefaultHttpRequest of(io.netty.handler.codec.http.HttpRequest req, Publisher<ByteBuf> content,
+                                 String[] ips, boolean secure, long timeoutMillis, long receivedNanos,
+                                 @Nullable PathMapping pathMapping) {
+        final DefaultHttpRequest request = Thread.currentThread() instanceof FastThreadLocalThread ?
+                                           recycler.get() : new DefaultHttpRequest(null);
+        request.req = requireNonNull(req, "req");
+        request.content = requireNonNull(content, "content");
+        request.ips = requireNonNull(ips, "ips");
+        request.secure = secure;
+        request.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        request.receivedNanos = receivedNanos;
+        request.pathMapping = pathMapping;
+        request.pathParamsCaptured = false;
+        request.released = false;
+        return request;
+    }
+
+    /**
+     * Clears this request and returns it to the pool of the current event loop if it was pooled.
+     *
+     * @throws IllegalStateException if this request has been released already
+     */
+    void release() {
+        ensureNotReleased();
+        req = null;
+        content = null;
+        queryStringDecoder = null;
+        ips = null;
+        pathMapping = null;
+        released = true;
+        if (leakDetection) {
+            // Keep the released instance out of the pool, so that any later access fails.
+            releasedAt = new Exception("The request was released here.");
+        } else if (handle != null) {
+            handle.recycle(this);
+        }
+    }
+
+    private void ensureNotReleased() {
+        if (released) {
+            throw new IllegalStateException("The request has been released after its response was " +
+                                            "produced. Do not keep a reference to a request.", releasedAt);
+        }
+    }
+
+    private io.netty.handler.codec.http.HttpRequest req() {
+        ensureNotReleased();
+        assert req != null;
+        return req;
+    }
+
+    private QueryStringDecoder queryStringDecoder() {
+        QueryStringDecoder queryStringDecoder = this.queryStringDecoder;
+        if (queryStringDecoder == null) {
+            queryStringDecoder = this.queryStringDecoder = new QueryStringDecoder(req().uri());
+        }
+        return queryStringDecoder;
+    }
+
+    @Override
+    public Publisher<ByteBuf> content() {
+        ensureNotReleased();
+        return content;
+    }
+
     @Override
     public Cookie cookie(String cookieKey) {
         return null;
@@ -53,7 +190,7 @@ public class DefaultHttpRequest implements HttpRequest {
 
     @Override
     public String uri() {
-        return null;
+        return req().uri();
     }
 
     @Override
@@ -68,12 +205,66 @@ public class DefaultHttpRequest implements HttpRequest {
 
     @Override
     public String method() {
-        return null;
+        return req().method().name();
     }
 
     @Override
     public String path() {
-        return null;
+        return queryStringDecoder().path();
+    }
+
+    @Nullable
+    @Override
+    public String pathParam(String name) {
+        final int index = pathParamIndex(name);
+        if (index < 0 || pathParamOffsets[index] < 0) {
+            return null;
+        }
+        return path().substring(pathParamOffsets[index], pathParamOffsets[index + 1]);
+    }
+
+    @Override
+    public long pathParamAsLong(String name, long defaultValue) {
+        final int index = pathParamIndex(name);
+        if (index < 0 || pathParamOffsets[index] < 0) {
+            return defaultValue;
+        }
+        return Long.parseLong(path(), pathParamOffsets[index], pathParamOffsets[index + 1], 10);
+    }
+
+    /**
+     * Returns the index of the start offset of the specified path parameter in {@link #pathParamOffsets},
+     * or {@code -1} if the path of the route has no such parameter. The offsets of all path parameters
+     * are captured by a single match when a path parameter is read for the first time.
+     */
+    private int pathParamIndex(String name) {
+        requireNonNull(name, "name");
+        ensureNotReleased();
+        final PathMapping pathMapping = this.pathMapping;
+        if (pathMapping == null) {
+            return -1;
+        }
+        int index = 0;
+        for (String paramName : pathMapping.paramNames()) {
+            if (paramName.equals(name)) {
+                break;
+            }
+            index += 2;
+        }
+        final int length = pathMapping.paramNames().size() * 2;
+        if (index == length) {
+            return -1;
+        }
+        if (!pathParamsCaptured) {
+            if (pathParamOffsets.length < length) {
+                pathParamOffsets = new int[length];
+            }
+            if (!pathMapping.capture(path(), pathParamOffsets)) {
+                Arrays.fill(pathParamOffsets, 0, length, -1);
+            }
+            pathParamsCaptured = true;
+        }
+        return index;
     }
 
     @Override
@@ -83,7 +274,7 @@ public class DefaultHttpRequest implements HttpRequest {
 
     @Override
     public String queryString() {
-        return null;
+        return queryStringDecoder().rawQuery();
     }
 
     @Override
@@ -93,7 +284,7 @@ public class DefaultHttpRequest implements HttpRequest {
 
     @Override
     public String host() {
-        return null;
+        return req().headers().get(HttpHeaderNames.HOST);
     }
 
     @Override
@@ -123,22 +314,41 @@ public class DefaultHttpRequest implements HttpRequest {
 
     @Override
     public String protocol() {
-        return null;
+        return req().protocolVersion().text();
     }
 
     @Override
     public boolean secure() {
-        return false;
+        ensureNotReleased();
+        return secure;
+    }
+
+    @Override
+    public long remainingTimeoutMillis() {
+        ensureNotReleased();
+        if (timeoutNanos == 0) {
+            return Long.MAX_VALUE;
+        }
+        final long remainingNanos = timeoutNanos - (System.nanoTime() - receivedNanos);
+        return remainingNanos > 0 ? TimeUnit.NANOSECONDS.toMillis(remainingNanos) : 0;
+    }
+
+    @Override
+    public boolean isTimedOut() {
+        ensureNotReleased();
+        return timeoutNanos != 0 && System.nanoTime() - receivedNanos >= timeoutNanos;
     }
 
     @Override
     public String ip() {
-        return null;
+        ensureNotReleased();
+        return ips.length > 0 ? ips[0] : null;
     }
 
     @Override
     public String[] ips() {
-        return new String[0];
+        ensureNotReleased();
+        return ips.clone();
     }
 
     @Override
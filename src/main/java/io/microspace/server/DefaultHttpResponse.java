@@ -23,14 +23,31 @@
  */
 package io.microspace.server;
 
+import static java.util.Objects.requireNonNull;
+
 import java.time.LocalDateTime;
 
+import javax.annotation.Nullable;
+
+import com.google.common.base.Utf8;
+
 /**
  * @author i1619kHz
  */
 public class DefaultHttpResponse implements HttpResponse {
+    private final HttpStatus status;
+    @Nullable
+    private final MediaType contentType;
+    private final String content;
+
+    DefaultHttpResponse(HttpStatus status, @Nullable MediaType contentType, String content) {
+        this.status = requireNonNull(status, "status");
+        this.contentType = contentType;
+        this.content = requireNonNull(content, "content");
+    }
+
     public HttpResponse of(String content) {
-        return null;
+        return HttpResponse.of(content);
     }
 
     @Override
@@ -50,22 +67,22 @@ public class DefaultHttpResponse implements HttpResponse {
 
     @Override
     public int status() {
-        return 0;
+        return status.code();
     }
 
     @Override
     public String message() {
-        return null;
+        return status.reasonPhrase();
     }
 
     @Override
     public String body() {
-        return null;
+        return content;
     }
 
     @Override
     public int length() {
-        return 0;
+        return Utf8.encodedLength(content);
     }
 
     @Override
@@ -89,8 +106,9 @@ public class DefaultHttpResponse implements HttpResponse {
     }
 
     @Override
+    @Nullable
     public String type() {
-        return null;
+        return contentType != null ? contentType.toString() : null;
     }
 
     @Override
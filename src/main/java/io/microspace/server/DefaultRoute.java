@@ -41,6 +41,7 @@ import com.google.common.collect.Sets;
  */
 final class DefaultRoute implements Route {
     private final String prefix;
+    private final String fullPath;
     private final HttpStatus statusCode;
     private final PathMapping pathMapping;
     private final Set<HttpMethod> methods;
@@ -71,6 +72,7 @@ final class DefaultRoute implements Route {
         this.paramPredicates = ImmutableList.copyOf(requireNonNull(paramPredicates, "paramPredicates"));
         this.headerPredicates = ImmutableList.copyOf(requireNonNull(headerPredicates, "headerPredicates"));
         this.statusCode = statusCode;
+        fullPath = pathMapping.path();
 
         hashCode = Objects.hash(this.pathMapping, this.methods, this.consumes, this.produces,
                                 this.paramPredicates, this.headerPredicates);
@@ -78,7 +80,7 @@ final class DefaultRoute implements Route {
 
     @Override
     public String fullPath() {
-        return (prefix + pathMapping.path());
+        return fullPath;
     }
 
     @Override
@@ -88,42 +90,64 @@ final class DefaultRoute implements Route {
 
     @Override
     public Set<String> paramNames() {
-        return null;
+        return pathMapping.paramNames();
     }
 
     @Override
     public String patternString() {
-        return null;
+        return pathMapping.path();
     }
 
     @Override
     public RoutePathType pathType() {
-        return null;
+        return pathMapping.pathType();
     }
 
     @Override
     public List<String> paths() {
-        return null;
+        return pathMapping.paths();
     }
 
     @Override
     public int complexity() {
-        return 0;
+        int complexity = paramPredicates.size() + headerPredicates.size();
+        if (!consumes.isEmpty()) {
+            complexity++;
+        }
+        if (!produces.isEmpty()) {
+            complexity++;
+        }
+        return complexity;
+    }
+
+    /**
+     * Returns the {@link PathMapping} which matches the path of a request against this {@link Route}.
+     */
+    PathMapping pathMapping() {
+        return pathMapping;
+    }
+
+    List<RoutePredicate<QueryParams>> paramPredicates() {
+        return paramPredicates;
+    }
+
+    List<RoutePredicate<HttpHeaders>> headerPredicates() {
+        return headerPredicates;
     }
 
     @Override
     public Set<HttpMethod> methods() {
-        return null;
+        return methods;
     }
 
     @Override
     public Set<MediaType> consumes() {
-        return null;
+        return consumes;
     }
 
     @Override
     public Set<MediaType> produces() {
-        return null;
+        return produces;
     }
 
     @Override
@@ -23,13 +23,67 @@
  */
 package io.microspace.server;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
 /**
+ * A {@link PathMapping} which matches a single path exactly, e.g. {@code "/foo/bar"}.
+ *
  * @author i1619kHz
  */
 public final class ExactPathMapping implements PathMapping {
+    private final String path;
+    private final List<String> paths;
+
+    public ExactPathMapping(String path) {
+        requireNonNull(path, "path");
+        checkArgument(!path.isEmpty() && path.charAt(0) == '/',
+                      "path: %s (expected: an absolute path starting with '/')", path);
+        this.path = path;
+        paths = ImmutableList.of(path, path);
+    }
 
     @Override
     public String path() {
-        return null;
+        return path;
+    }
+
+    @Override
+    public RoutePathType pathType() {
+        return RoutePathType.EXACT;
+    }
+
+    @Override
+    public List<String> paths() {
+        return paths;
+    }
+
+    @Override
+    public Set<String> paramNames() {
+        return ImmutableSet.of();
+    }
+
+    @Override
+    public boolean matches(CharSequence path) {
+        return this.path.contentEquals(path);
+    }
+
+    @Override
+    public boolean capture(CharSequence path, int[] offsets) {
+        return matches(path);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                          .add("path", path)
+                          .toString();
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.ImmutableList;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.netty.util.concurrent.ScheduledFuture;
+
+/**
+ * Drains the connections of a server which is shutting down, without polling: every connection
+ * closes itself as soon as it has no request in flight.
+ * <ul>
+ *   <li>An HTTP/1 connection is sent {@link #DRAIN}. {@link HttpServerHandler} closes it at once if it
+ *       is idle, or responds to its last in-flight request with {@code connection: close} and then
+ *       closes it.</li>
+ *   <li>An HTTP/2 connection is closed by its codec, which sends a {@code GOAWAY} frame and closes the
+ *       connection once its active streams are finished.</li>
+ *   <li>A connection which has not received a request yet is closed at once.</li>
+ * </ul>
+ * A connection which has not closed by the timeout is closed regardless of its in-flight requests.
+ *
+ * @author i1619kHz
+ */
+final class GracefulShutdown {
+    /**
+     * The user event fired at an HTTP/1 connection when the server starts shutting down.
+     */
+    static final Object DRAIN = new Object() {
+        @Override
+        public String toString() {
+            return "GracefulShutdown.DRAIN";
+        }
+    };
+
+    /**
+     * Drains the specified connections.
+     *
+     * @param timeoutMillis the time after which the connections left are closed, or {@code 0} to wait
+     *                      for them forever
+     * @return the {@link CompletionStage} which completes once all connections are closed
+     */
+    static CompletionStage<Void> drain(Iterable<? extends Channel> connections, long timeoutMillis) {
+        final List<Channel> connectionsCopy = ImmutableList.copyOf(connections);
+        if (connectionsCopy.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final AtomicInteger numConnectionsToClose = new AtomicInteger(connectionsCopy.size());
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        for (Channel ch : connectionsCopy) {
+            ch.closeFuture().addListener(unused -> {
+                if (numConnectionsToClose.decrementAndGet() == 0) {
+                    future.complete(null);
+                }
+            });
+            ch.eventLoop().execute(() -> drain(ch, timeoutMillis));
+        }
+        return future;
+    }
+
+    private static void drain(Channel ch, long timeoutMillis) {
+        if (!ch.isActive()) {
+            return;
+        }
+        if (timeoutMillis > 0) {
+            final ScheduledFuture<?> timeoutFuture =
+                    ch.eventLoop().schedule(() -> ch.close(), timeoutMillis, TimeUnit.MILLISECONDS);
+            ch.closeFuture().addListener(unused -> timeoutFuture.cancel(false));
+        }
+        final ChannelPipeline pipeline = ch.pipeline();
+        if (pipeline.get(HttpServerHandler.class) != null) {
+            pipeline.fireUserEventTriggered(DRAIN);
+        } else {
+            // Closed from the tail of the pipeline, so that the HTTP/2 codec sends a GOAWAY frame first.
+            ch.close();
+        }
+    }
+
+    private GracefulShutdown() {}
+}
@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.incubator.codec.quic.QuicTokenHandler;
+
+/**
+ * Validates the addresses of the QUIC clients with the tokens of the {@code Retry} packets, so that a
+ * spoofed source address can't make the server send its handshake to a victim.
+ *
+ * <p>A token consists of its expiry time, an HMAC-SHA256 of the expiry time, the client address and the
+ * original destination connection ID, and the connection ID itself. A token is accepted only before it
+ * expires and only from the address it was issued to. The key is generated randomly and is shared by
+ * all the datagram channels of a server, so a token can't be forged or used with another server.
+ *
+ * <p>A {@link Mac} is not thread-safe, so every QUIC codec has its own instance of this handler.
+ *
+ * @author i1619kHz
+ */
+final class HmacQuicTokenHandler implements QuicTokenHandler {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+    private static final int PREFIX_LENGTH = Long.BYTES + MAC_LENGTH;
+
+    /**
+     * The maximum length of a QUIC connection ID, as defined in RFC 9000.
+     */
+    private static final int MAX_CONNECTION_ID_LENGTH = 20;
+
+    /**
+     * The time a client has to answer a {@code Retry} packet, which takes a single round trip.
+     */
+    private static final long TOKEN_LIFETIME_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final Mac mac;
+    private final byte[] expectedMac = new byte[MAC_LENGTH];
+    private final byte[] actualMac = new byte[MAC_LENGTH];
+
+    HmacQuicTokenHandler(byte[] key) {
+        requireNonNull(key, "key");
+        try {
+            mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key, ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("failed to initialize " + ALGORITHM, e);
+        }
+    }
+
+    @Override
+    public boolean writeToken(ByteBuf out, ByteBuf dcid, InetSocketAddress address) {
+        final long expiryMillis = System.currentTimeMillis() + TOKEN_LIFETIME_MILLIS;
+        computeMac(expiryMillis, address, dcid, dcid.readerIndex(), dcid.readableBytes(), expectedMac);
+        out.writeLong(expiryMillis)
+           .writeBytes(expectedMac)
+           .writeBytes(dcid, dcid.readerIndex(), dcid.readableBytes());
+        return true;
+    }
+
+    @Override
+    public int validateToken(ByteBuf token, InetSocketAddress address) {
+        final int length = token.readableBytes();
+        if (length <= PREFIX_LENGTH || length > maxTokenLength()) {
+            return -1;
+        }
+        final int index = token.readerIndex();
+        final long expiryMillis = token.getLong(index);
+        if (expiryMillis < System.currentTimeMillis()) {
+            return -1;
+        }
+        token.getBytes(index + Long.BYTES, actualMac);
+        computeMac(expiryMillis, address, token, index + PREFIX_LENGTH, length - PREFIX_LENGTH,
+                   expectedMac);
+        // Compared in constant time, so that the MAC can't be guessed byte by byte.
+        return MessageDigest.isEqual(expectedMac, actualMac) ? PREFIX_LENGTH : -1;
+    }
+
+    @Override
+    public int maxTokenLength() {
+        return PREFIX_LENGTH + MAX_CONNECTION_ID_LENGTH;
+    }
+
+    private void computeMac(long expiryMillis, InetSocketAddress address,
+                            ByteBuf dcid, int dcidIndex, int dcidLength, byte[] dst) {
+        for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            mac.update((byte) (expiryMillis >>> shift));
+        }
+        mac.update(address.getAddress().getAddress());
+        mac.update((byte) (address.getPort() >>> Byte.SIZE));
+        mac.update((byte) address.getPort());
+        mac.update(dcid.nioBuffer(dcidIndex, dcidLength));
+        try {
+            mac.doFinal(dst, 0);
+        } catch (GeneralSecurityException e) {
+            // Never happens because the destination is always long enough.
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -23,18 +23,649 @@
  */
 package io.microspace.server;
 
-import io.netty.channel.ChannelDuplexHandler;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.DecoderResult;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMessage;
 import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.TooLongHttpHeaderException;
+import io.netty.handler.codec.http.TooLongHttpLineException;
+import io.netty.util.AsciiString;
+import io.netty.util.ByteProcessor;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.MathUtil;
 
 /**
+ * Decodes the HTTP/1 requests of a connection into an {@link io.netty.handler.codec.http.HttpRequest}
+ * followed by zero or more {@link io.netty.handler.codec.http.HttpContent}s and a {@link LastHttpContent},
+ * just like {@link io.netty.handler.codec.http.HttpRequestDecoder} does, with less garbage:
+ * <ul>
+ *   <li>The header block of a request is copied out of the inbound buffer at once, and every header
+ *       name and value is an {@link AsciiString} slice of the copy. No {@link String} is created for
+ *       a header until it is asked for.</li>
+ *   <li>The well-known header names are replaced with the instances in {@link HttpHeaderNames}, which
+ *       are looked up in a static index without allocating.</li>
+ *   <li>The well-known methods and versions are matched without decoding them.</li>
+ *   <li>The content is passed on as retained slices of the inbound buffer.</li>
+ * </ul>
+ *
+ * <p>A request line longer than {@code maxInitialLineLength} or a header block larger than
+ * {@code maxHeaderSize} is decoded into a request whose {@link DecoderResult} is a failure, after which
+ * the rest of the connection is discarded. The content is split into the chunks of at most
+ * {@code maxChunkSize} bytes.
+ *
  * @author i1619kHz
  */
-final class Http1RequestDecoder extends ChannelDuplexHandler {
+final class Http1RequestDecoder extends ByteToMessageDecoder {
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte SP = ' ';
+    private static final byte HT = '\t';
+    private static final byte COLON = ':';
+
+    private static final byte DEL = 0x7f;
+
+    private static final ByteProcessor CONTROL_CHARS = value -> value >= 0 && value <= SP;
+
+    /**
+     * Whether an ASCII character is a {@code tchar}, which may appear in a header name (RFC 9110,
+     * Section 5.6.2).
+     */
+    private static final boolean[] TOKEN_CHARS = new boolean[128];
+
+    private static final AsciiString HTTP_1_1 = AsciiString.cached("HTTP/1.1");
+    private static final AsciiString HTTP_1_0 = AsciiString.cached("HTTP/1.0");
+
+    private static final io.netty.handler.codec.http.HttpMethod[] KNOWN_METHODS = {
+            io.netty.handler.codec.http.HttpMethod.GET, io.netty.handler.codec.http.HttpMethod.POST,
+            io.netty.handler.codec.http.HttpMethod.PUT, io.netty.handler.codec.http.HttpMethod.DELETE,
+            io.netty.handler.codec.http.HttpMethod.HEAD, io.netty.handler.codec.http.HttpMethod.OPTIONS,
+            io.netty.handler.codec.http.HttpMethod.PATCH, io.netty.handler.codec.http.HttpMethod.TRACE,
+            io.netty.handler.codec.http.HttpMethod.CONNECT
+    };
+
+    /**
+     * An open addressing table of the header names in {@link HttpHeaderNames}, indexed by their
+     * case-insensitive {@link AsciiString#hashCode()}.
+     */
+    private static final AsciiString[] knownNames;
+    private static final int knownNamesMask;
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            TOKEN_CHARS[c] = true;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            TOKEN_CHARS[c] = true;
+            TOKEN_CHARS[c - 'a' + 'A'] = true;
+        }
+        for (char c : "!#$%&'*+-.^_`|~".toCharArray()) {
+            TOKEN_CHARS[c] = true;
+        }
+
+        final Set<AsciiString> names = HttpHeaderNames.knownNames();
+        knownNames = new AsciiString[MathUtil.findNextPositivePowerOfTwo(names.size() * 4)];
+        knownNamesMask = knownNames.length - 1;
+        for (AsciiString name : names) {
+            int i = name.hashCode() & knownNamesMask;
+            while (knownNames[i] != null) {
+                i = i + 1 & knownNamesMask;
+            }
+            knownNames[i] = name;
+        }
+    }
+
+    private enum State {
+        SKIP_CONTROL_CHARS,
+        READ_INITIAL,
+        READ_HEADERS,
+        READ_FIXED_LENGTH_CONTENT,
+        READ_CHUNK_SIZE,
+        READ_CHUNKED_CONTENT,
+        READ_CHUNK_DELIMITER,
+        READ_TRAILERS,
+        BAD_MESSAGE
+    }
+
+    private final int maxInitialLineLength;
+    private final int maxHeaderSize;
+    private final int maxChunkSize;
+
+    private State state = State.SKIP_CONTROL_CHARS;
+    @Nullable
+    private HttpMessage message;
+    /**
+     * The number of bytes after the reader index which have been scanned for the end of the current
+     * line or header block, so that they are not scanned again when more bytes arrive.
+     */
+    private int scannedBytes;
+    /**
+     * The number of bytes left in the content of the current request or the current chunk.
+     */
+    private long remainingBytes;
+    /**
+     * Whether the content of the current request is encoded with the chunked transfer coding.
+     */
+    private boolean chunked;
+
+    Http1RequestDecoder(int maxInitialLineLength, int maxHeaderSize, int maxChunkSize) {
+        checkArgument(maxInitialLineLength > 0, "maxInitialLineLength must > 0");
+        checkArgument(maxHeaderSize > 0, "maxHeaderSize must > 0");
+        checkArgument(maxChunkSize > 0, "maxChunkSize must > 0");
+        this.maxInitialLineLength = maxInitialLineLength;
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxChunkSize = maxChunkSize;
+    }
+
     @Override
-    public void channelRead(ChannelHandlerContext ctx, Object msg) {
-        if (!(msg instanceof HttpObject)) {
-            ctx.fireChannelRead(msg);
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        switch (state) {
+            case SKIP_CONTROL_CHARS: {
+                // Tolerate the empty lines sent between the requests.
+                final int start = in.forEachByte(CONTROL_CHARS);
+                if (start < 0) {
+                    in.skipBytes(in.readableBytes());
+                    return;
+                }
+                in.readerIndex(start);
+                state = State.READ_INITIAL;
+            }
+            // Fall through
+            case READ_INITIAL: {
+                final int lf = findLineEnd(in, maxInitialLineLength);
+                if (lf < 0) {
+                    if (lf == -2) {
+                        fail(in, out, new TooLongHttpLineException(
+                                "An HTTP line is larger than " + maxInitialLineLength + " bytes."));
+                    }
+                    return;
+                }
+                message = decodeInitialLine(in, lf);
+                in.readerIndex(lf + 1);
+                if (message == null) {
+                    fail(in, out, new IllegalArgumentException("invalid initial line"));
+                    return;
+                }
+                state = State.READ_HEADERS;
+            }
+            // Fall through
+            case READ_HEADERS: {
+                final byte[] block = readHeaderBlock(in);
+                if (block == null) {
+                    if (scannedBytes > maxHeaderSize) {
+                        fail(in, out, new TooLongHttpHeaderException(
+                                "HTTP header is larger than " + maxHeaderSize + " bytes."));
+                    }
+                    return;
+                }
+                assert message != null;
+                final long contentLength = decodeHeaders(block, message.headers(), false);
+                if (contentLength == -2) {
+                    fail(in, out, new IllegalArgumentException("invalid header"));
+                    return;
+                }
+                out.add(message);
+                if (chunked) {
+                    state = State.READ_CHUNK_SIZE;
+                } else if (contentLength > 0) {
+                    remainingBytes = contentLength;
+                    state = State.READ_FIXED_LENGTH_CONTENT;
+                } else {
+                    out.add(LastHttpContent.EMPTY_LAST_CONTENT);
+                    reset();
+                }
+                return;
+            }
+            case READ_FIXED_LENGTH_CONTENT: {
+                final int toRead = (int) Math.min(Math.min(remainingBytes, maxChunkSize), in.readableBytes());
+                if (toRead == 0) {
+                    return;
+                }
+                final ByteBuf content = in.readRetainedSlice(toRead);
+                remainingBytes -= toRead;
+                if (remainingBytes == 0) {
+                    out.add(new DefaultLastHttpContent(content, false));
+                    reset();
+                } else {
+                    out.add(new DefaultHttpContent(content));
+                }
+                return;
+            }
+            case READ_CHUNK_SIZE: {
+                final int lf = findLineEnd(in, maxInitialLineLength);
+                if (lf < 0) {
+                    if (lf == -2) {
+                        fail(in, out, new TooLongHttpLineException(
+                                "An HTTP line is larger than " + maxInitialLineLength + " bytes."));
+                    }
+                    return;
+                }
+                final long chunkSize = decodeChunkSize(in, lf);
+                in.readerIndex(lf + 1);
+                if (chunkSize < 0) {
+                    fail(in, out, new NumberFormatException("invalid chunk size"));
+                    return;
+                }
+                if (chunkSize == 0) {
+                    state = State.READ_TRAILERS;
+                    return;
+                }
+                remainingBytes = chunkSize;
+                state = State.READ_CHUNKED_CONTENT;
+            }
+            // Fall through
+            case READ_CHUNKED_CONTENT: {
+                final int toRead = (int) Math.min(Math.min(remainingBytes, maxChunkSize), in.readableBytes());
+                if (toRead == 0) {
+                    return;
+                }
+                out.add(new DefaultHttpContent(in.readRetainedSlice(toRead)));
+                remainingBytes -= toRead;
+                if (remainingBytes > 0) {
+                    return;
+                }
+                state = State.READ_CHUNK_DELIMITER;
+            }
+            // Fall through
+            case READ_CHUNK_DELIMITER: {
+                if (in.readableBytes() < 2) {
+                    return;
+                }
+                // The chunk must end exactly where its size says, or the content is framed ambiguously.
+                final int start = in.readerIndex();
+                if (in.getByte(start) != CR || in.getByte(start + 1) != LF) {
+                    fail(in, out, new IllegalArgumentException("invalid chunk delimiter"));
+                    return;
+                }
+                in.skipBytes(2);
+                state = State.READ_CHUNK_SIZE;
+                return;
+            }
+            case READ_TRAILERS: {
+                final byte[] block = readHeaderBlock(in);
+                if (block == null) {
+                    if (scannedBytes > maxHeaderSize) {
+                        fail(in, out, new TooLongHttpHeaderException(
+                                "HTTP header is larger than " + maxHeaderSize + " bytes."));
+                    }
+                    return;
+                }
+                if (block.length <= 2) {
+                    out.add(LastHttpContent.EMPTY_LAST_CONTENT);
+                } else {
+                    final LastHttpContent trailers = new DefaultLastHttpContent(Unpooled.EMPTY_BUFFER, false);
+                    if (decodeHeaders(block, trailers.trailingHeaders(), true) == -2) {
+                        fail(in, out, new IllegalArgumentException("invalid trailer"));
+                        return;
+                    }
+                    out.add(trailers);
+                }
+                reset();
+                return;
+            }
+            case BAD_MESSAGE: {
+                // See fail().
+                in.skipBytes(in.readableBytes());
+                return;
+            }
+            default:
+                throw new Error("unexpected state: " + state);
+        }
+    }
+
+    /**
+     * Returns the index of the line feed which ends the line at the reader index, {@code -1} if more
+     * bytes are needed or {@code -2} if the line is longer than the specified {@code maxLength}.
+     */
+    private int findLineEnd(ByteBuf in, int maxLength) {
+        final int start = in.readerIndex();
+        final int lf = in.indexOf(start + scannedBytes, in.writerIndex(), LF);
+        if (lf < 0) {
+            scannedBytes = in.readableBytes();
+            // A carriage return may precede the line feed which hasn't been received yet.
+            return scannedBytes > maxLength + 1 ? -2 : -1;
+        }
+        scannedBytes = 0;
+        final int length = lf > start && in.getByte(lf - 1) == CR ? lf - 1 - start : lf - start;
+        return length > maxLength ? -2 : lf;
+    }
+
+    /**
+     * Copies the header block at the reader index, including the empty line which ends it, into a new
+     * array. Returns {@code null} if more bytes are needed, in which case {@link #scannedBytes} is
+     * greater than {@link #maxHeaderSize} if the header block is too large.
+     */
+    @Nullable
+    private byte[] readHeaderBlock(ByteBuf in) {
+        final int start = in.readerIndex();
+        final int end = in.writerIndex();
+        int lineStart = start + scannedBytes;
+        for (;;) {
+            final int lf = in.indexOf(lineStart, end, LF);
+            if (lf < 0) {
+                scannedBytes = lineStart - start;
+                if (end - start > maxHeaderSize) {
+                    scannedBytes = end - start;
+                }
+                return null;
+            }
+            if (lf + 1 - start > maxHeaderSize) {
+                scannedBytes = lf + 1 - start;
+                return null;
+            }
+            if (lf == lineStart || lf == lineStart + 1 && in.getByte(lineStart) == CR) {
+                scannedBytes = 0;
+                final byte[] block = new byte[lf + 1 - start];
+                in.readBytes(block);
+                return block;
+            }
+            lineStart = lf + 1;
+        }
+    }
+
+    @Nullable
+    private static HttpMessage decodeInitialLine(ByteBuf in, int lf) {
+        final int start = in.readerIndex();
+        final int end = lf > start && in.getByte(lf - 1) == CR ? lf - 1 : lf;
+        final int methodEnd = in.indexOf(start, end, SP);
+        if (methodEnd <= start) {
+            return null;
+        }
+        int versionStart = end;
+        while (versionStart > methodEnd && in.getByte(versionStart - 1) != SP) {
+            versionStart--;
+        }
+        int uriStart = methodEnd + 1;
+        int uriEnd = versionStart - 1;
+        while (uriStart < uriEnd && in.getByte(uriStart) == SP) {
+            uriStart++;
+        }
+        while (uriEnd > uriStart && in.getByte(uriEnd - 1) == SP) {
+            uriEnd--;
+        }
+        if (uriStart >= uriEnd || versionStart == end) {
+            return null;
+        }
+
+        final io.netty.handler.codec.http.HttpMethod method = decodeMethod(in, start, methodEnd - start);
+        final HttpVersion version = decodeVersion(in, versionStart, end - versionStart);
+        if (method == null || version == null) {
+            return null;
+        }
+        final String uri = in.toString(uriStart, uriEnd - uriStart, CharsetUtil.ISO_8859_1);
+        return new DefaultHttpRequest(version, method, uri, new DefaultHttpHeaders(false));
+    }
+
+    @Nullable
+    private static io.netty.handler.codec.http.HttpMethod decodeMethod(ByteBuf in, int index, int length) {
+        for (io.netty.handler.codec.http.HttpMethod method : KNOWN_METHODS) {
+            if (contentEquals(in, index, length, method.asciiName())) {
+                return method;
+            }
         }
+        try {
+            return io.netty.handler.codec.http.HttpMethod.valueOf(
+                    in.toString(index, length, CharsetUtil.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static HttpVersion decodeVersion(ByteBuf in, int index, int length) {
+        if (contentEquals(in, index, length, HTTP_1_1)) {
+            return HttpVersion.HTTP_1_1;
+        }
+        if (contentEquals(in, index, length, HTTP_1_0)) {
+            return HttpVersion.HTTP_1_0;
+        }
+        try {
+            return HttpVersion.valueOf(in.toString(index, length, CharsetUtil.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean contentEquals(ByteBuf in, int index, int length, AsciiString value) {
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (in.getByte(index + i) != value.byteAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the header lines in the specified block into the specified {@link HttpHeaders}, and
+     * updates {@link #chunked} unless decoding the trailers.
+     *
+     * <p>A header name must consist of the {@code tchar}s only, and a header value must not contain
+     * a control character other than a horizontal tab, such as a bare carriage return or a NUL, which
+     * another server could interpret differently.
+     *
+     * <p>The framing of the content must be unambiguous, or another server in front of this one could
+     * read a different request from the same bytes (RFC 9112, Section 6.3). So the block is malformed if
+     * the {@code content-length} or the {@code transfer-encoding} is folded, if both of them are present,
+     * or if the final transfer coding is not {@code chunked}.
+     *
+     * @return the value of the {@code content-length} header, {@code -1} if there's none or
+     *         {@code -2} if the block is malformed
+     */
+    private long decodeHeaders(byte[] block, HttpHeaders headers, boolean trailers) {
+        long contentLength = -1;
+        AsciiString transferEncoding = null;
+        if (!trailers) {
+            chunked = false;
+        }
+        AsciiString name = null;
+        AsciiString value = null;
+        int lineStart = 0;
+        for (;;) {
+            int lineEnd = lineStart;
+            while (block[lineEnd] != LF) {
+                lineEnd++;
+            }
+            final int next = lineEnd + 1;
+            if (lineEnd > lineStart && block[lineEnd - 1] == CR) {
+                lineEnd--;
+            }
+            if (lineEnd == lineStart) {
+                break;
+            }
+
+            if (block[lineStart] == SP || block[lineStart] == HT) {
+                // An obsolete line folding, which continues the value of the previous header.
+                if (name == null) {
+                    return -2;
+                }
+                if (!trailers && (name == HttpHeaderNames.CONTENT_LENGTH ||
+                                  name == HttpHeaderNames.TRANSFER_ENCODING)) {
+                    return -2;
+                }
+                if (!isValidValue(block, lineStart, lineEnd)) {
+                    return -2;
+                }
+                final AsciiString continuation = trim(block, lineStart, lineEnd);
+                value = value.isEmpty() ? continuation : value.concat(" ").concat(continuation);
+            } else {
+                if (name != null) {
+                    headers.add(name, value);
+                }
+                int colon = lineStart;
+                while (colon < lineEnd && block[colon] != COLON) {
+                    final byte b = block[colon];
+                    // Also rejects the whitespace between the header name and the colon.
+                    if (b < 0 || !TOKEN_CHARS[b]) {
+                        return -2;
+                    }
+                    colon++;
+                }
+                if (colon == lineStart || colon == lineEnd || !isValidValue(block, colon + 1, lineEnd)) {
+                    return -2;
+                }
+                name = knownName(block, lineStart, colon - lineStart);
+                value = trim(block, colon + 1, lineEnd);
+            }
+
+            // The trailers can't affect the framing of the content which has been received.
+            if (!trailers && name == HttpHeaderNames.CONTENT_LENGTH) {
+                final long length = parseContentLength(value);
+                if (length < 0 || contentLength >= 0 && contentLength != length) {
+                    // Reject the conflicting lengths which could be used for request smuggling.
+                    return -2;
+                }
+                contentLength = length;
+            } else if (!trailers && name == HttpHeaderNames.TRANSFER_ENCODING) {
+                // The codings of all lines form a single list, whose last one is the final coding.
+                transferEncoding = value;
+            }
+            lineStart = next;
+        }
+        if (name != null) {
+            headers.add(name, value);
+        }
+
+        if (transferEncoding != null) {
+            if (contentLength >= 0 || !endsWithChunked(transferEncoding)) {
+                // The length of the content can't be determined reliably.
+                return -2;
+            }
+            chunked = true;
+        }
+        return contentLength;
+    }
+
+    private static AsciiString knownName(byte[] block, int start, int length) {
+        final AsciiString name = new AsciiString(block, start, length, false);
+        int i = name.hashCode() & knownNamesMask;
+        for (;;) {
+            final AsciiString known = knownNames[i];
+            if (known == null) {
+                return name;
+            }
+            if (known.contentEqualsIgnoreCase(name)) {
+                return known;
+            }
+            i = i + 1 & knownNamesMask;
+        }
+    }
+
+    /**
+     * Returns whether the specified range contains no control character but a horizontal tab. The
+     * {@code obs-text}, i.e. the bytes above {@code 0x7f}, is allowed.
+     */
+    private static boolean isValidValue(byte[] block, int start, int end) {
+        for (int i = start; i < end; i++) {
+            final byte b = block[i];
+            if (b >= 0 && b < SP && b != HT || b == DEL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static AsciiString trim(byte[] block, int start, int end) {
+        while (start < end && (block[start] == SP || block[start] == HT)) {
+            start++;
+        }
+        while (end > start && (block[end - 1] == SP || block[end - 1] == HT)) {
+            end--;
+        }
+        return start == end ? AsciiString.EMPTY_STRING : new AsciiString(block, start, end - start, false);
+    }
+
+    private static long parseContentLength(AsciiString value) {
+        if (value.isEmpty() || value.length() > 18) {
+            return -1;
+        }
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final byte b = value.byteAt(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            length = length * 10 + b - '0';
+        }
+        return length;
+    }
+
+    private static boolean endsWithChunked(AsciiString value) {
+        final AsciiString token = HttpHeaderValues.CHUNKED;
+        final int offset = value.length() - token.length();
+        return offset >= 0 && value.regionMatches(true, offset, token, 0, token.length()) &&
+               (offset == 0 || value.byteAt(offset - 1) == ',' || value.byteAt(offset - 1) == SP ||
+                value.byteAt(offset - 1) == HT);
+    }
+
+    /**
+     * Returns the size of the chunk declared in the line which ends at the specified line feed, or
+     * {@code -1} if it's malformed. The chunk extensions are ignored.
+     */
+    private static long decodeChunkSize(ByteBuf in, int lf) {
+        long size = 0;
+        int digits = 0;
+        for (int i = in.readerIndex(); i < lf; i++) {
+            final byte b = in.getByte(i);
+            final int digit = Character.digit(b, 16);
+            if (digit < 0) {
+                if (b == ';' || b == SP || b == HT || b == CR) {
+                    break;
+                }
+                return -1;
+            }
+            if (++digits > 15) {
+                return -1;
+            }
+            size = size << 4 | digit;
+        }
+        return digits > 0 ? size : -1;
+    }
+
+    private void fail(ByteBuf in, List<Object> out, Exception cause) {
+        // Discard the rest of the connection, which can't be decoded reliably anymore. Some input must be
+        // read as well, or ByteToMessageDecoder rejects the failed message.
+        in.skipBytes(in.readableBytes());
+        final HttpObject failed;
+        if (state == State.SKIP_CONTROL_CHARS || state == State.READ_INITIAL || state == State.READ_HEADERS) {
+            // The headers of the request have not been passed on yet.
+            failed = new DefaultFullHttpRequest(HttpVersion.HTTP_1_0,
+                                                io.netty.handler.codec.http.HttpMethod.GET,
+                                                "/bad-request", Unpooled.EMPTY_BUFFER, false);
+        } else {
+            failed = new DefaultLastHttpContent(Unpooled.EMPTY_BUFFER, false);
+        }
+        failed.setDecoderResult(DecoderResult.failure(cause));
+        out.add(failed);
+        state = State.BAD_MESSAGE;
+        message = null;
+    }
+
+    private void reset() {
+        state = State.SKIP_CONTROL_CHARS;
+        message = null;
+        scannedBytes = 0;
+        remainingBytes = 0;
+        chunked = false;
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.AsciiString;
+
+/**
+ * Encodes the HTTP/1 responses. The responses written by {@link HttpServerHandler} are encoded by
+ * {@link #write(ChannelHandlerContext, FullHttpResponse, ChannelPromise)} from the bytes prepared at
+ * startup and pass through this handler as they are. The other messages, such as {@code 100 Continue}
+ * and the responses of the protocol upgrades, are encoded by {@link HttpResponseEncoder}.
+ *
+ * @author i1619kHz
+ */
+final class Http1ResponseEncoder extends HttpResponseEncoder {
+    private static final int CRLF_SHORT = ('\r' << 8) | '\n';
+    private static final int COLON_AND_SPACE_SHORT = (':' << 8) | ' ';
+
+    /**
+     * The initial capacity of the buffer of a status line and headers, which fits the usual responses.
+     */
+    private static final int INITIAL_HEAD_CAPACITY = 256;
+
+    /**
+     * The encoded status lines, e.g. {@code "HTTP/1.1 200 OK\r\n"}, indexed by their status code.
+     */
+    private static final byte[][] statusLines = new byte[1000][];
+
+    /**
+     * The encoded names of the known headers followed by {@code ": "}.
+     */
+    private static final Map<AsciiString, byte[]> headerNames;
+
+    static {
+        for (int code = 100; code < statusLines.length; code++) {
+            statusLines[code] = statusLine(code, HttpStatus.valueOf(code).reasonPhrase());
+        }
+
+        final ImmutableMap.Builder<AsciiString, byte[]> builder = ImmutableMap.builder();
+        for (AsciiString name : HttpHeaderNames.knownNames()) {
+            builder.put(name, (name + ": ").getBytes(US_ASCII));
+        }
+        headerNames = builder.build();
+    }
+
+    private static byte[] statusLine(int code, String reasonPhrase) {
+        return ("HTTP/1.1 " + code + ' ' + reasonPhrase + "\r\n").getBytes(US_ASCII);
+    }
+
+    /**
+     * Writes the status line and headers of the specified response into a pooled buffer, followed by
+     * the content of the response. The two buffers are written with a single gathering write when
+     * flushed. The {@code date} header is added by this method.
+     */
+    static void write(ChannelHandlerContext ctx, FullHttpResponse res, ChannelPromise promise) {
+        final ByteBuf head = ctx.alloc().directBuffer(INITIAL_HEAD_CAPACITY);
+        writeStatusLine(head, res.status());
+        for (Iterator<Entry<CharSequence, CharSequence>> it = res.headers().iteratorCharSequence();
+             it.hasNext();) {
+            final Entry<CharSequence, CharSequence> header = it.next();
+            writeHeader(head, header.getKey(), header.getValue());
+        }
+        head.writeBytes(HttpDateHeader.current().http1Line());
+        head.writeShort(CRLF_SHORT);
+
+        final ByteBuf content = res.content();
+        if (content.isReadable()) {
+            ctx.write(head, ctx.voidPromise());
+            ctx.write(content, promise);
+        } else {
+            content.release();
+            ctx.write(head, promise);
+        }
+    }
+
+    private static void writeStatusLine(ByteBuf buf, HttpResponseStatus status) {
+        final int code = status.code();
+        if (code >= 100 && code < statusLines.length) {
+            buf.writeBytes(statusLines[code]);
+        } else {
+            buf.writeBytes(statusLine(code, status.reasonPhrase()));
+        }
+    }
+
+    private static void writeHeader(ByteBuf buf, CharSequence name, CharSequence value) {
+        final byte[] encodedName = name instanceof AsciiString ? headerNames.get(name) : null;
+        if (encodedName != null) {
+            buf.writeBytes(encodedName);
+        } else {
+            ByteBufUtil.writeAscii(buf, name);
+            buf.writeShort(COLON_AND_SPACE_SHORT);
+        }
+        ByteBufUtil.writeAscii(buf, value);
+        buf.writeShort(CRLF_SHORT);
+    }
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        // Let the responses encoded by write() pass through.
+        return !(msg instanceof ByteBuf) && super.acceptOutboundMessage(msg);
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableSet;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.handler.codec.DecoderResult;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.incubator.codec.http3.DefaultHttp3DataFrame;
+import io.netty.incubator.codec.http3.DefaultHttp3Headers;
+import io.netty.incubator.codec.http3.DefaultHttp3HeadersFrame;
+import io.netty.incubator.codec.http3.Http3DataFrame;
+import io.netty.incubator.codec.http3.Http3Headers;
+import io.netty.incubator.codec.http3.Http3HeadersFrame;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Converts the frames of an HTTP/3 request stream into the HTTP objects the HTTP/1 codec produces and
+ * vice versa, so that a request stream can be served by {@link HttpRequestBodyHandler} and
+ * {@link HttpServerHandler}.
+ *
+ * <p>The headers of a request are held back until its first data frame or the end of the stream,
+ * so that a request without content is passed on as a single {@link DefaultFullHttpRequest}.
+ *
+ * @author i1619kHz
+ */
+final class Http3RequestStreamCodec extends ChannelDuplexHandler {
+    /**
+     * The connection-specific header fields which must not appear in an HTTP/3 message.
+     */
+    private static final Set<AsciiString> CONNECTION_SPECIFIC_HEADERS = ImmutableSet.of(
+            HttpHeaderNames.CONNECTION, AsciiString.cached("keep-alive"),
+            AsciiString.cached("proxy-connection"), HttpHeaderNames.TRANSFER_ENCODING,
+            HttpHeaderNames.UPGRADE);
+
+    @Nullable
+    private HttpRequest pendingHeaders;
+    private boolean receivedLast;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Http3HeadersFrame headersFrame) {
+            if (pendingHeaders == null && !receivedLast) {
+                pendingHeaders = toHttpRequest(headersFrame.headers());
+            } else {
+                // Trailers
+                receivedLast = true;
+                final LastHttpContent last = new DefaultLastHttpContent(Unpooled.EMPTY_BUFFER, false);
+                copyHeaders(headersFrame.headers(), last.trailingHeaders());
+                ctx.fireChannelRead(last);
+            }
+            return;
+        }
+
+        if (msg instanceof Http3DataFrame dataFrame) {
+            if (receivedLast) {
+                dataFrame.release();
+                return;
+            }
+            flushPendingHeaders(ctx);
+            ctx.fireChannelRead(new DefaultHttpContent(dataFrame.content()));
+            return;
+        }
+
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt == ChannelInputShutdownEvent.INSTANCE && !receivedLast) {
+            receivedLast = true;
+            if (pendingHeaders != null) {
+                final HttpRequest req = pendingHeaders;
+                pendingHeaders = null;
+                ctx.fireChannelRead(new DefaultFullHttpRequest(
+                        req.protocolVersion(), req.method(), req.uri(), Unpooled.EMPTY_BUFFER,
+                        req.headers(), DefaultHttpHeaders.EMPTY_HEADERS));
+            } else {
+                ctx.fireChannelRead(LastHttpContent.EMPTY_LAST_CONTENT);
+            }
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    private void flushPendingHeaders(ChannelHandlerContext ctx) {
+        final HttpRequest req = pendingHeaders;
+        if (req == null) {
+            return;
+        }
+        pendingHeaders = null;
+        if (!HttpUtil.isContentLengthSet(req)) {
+            // The length of the content is known only when the stream ends.
+            HttpUtil.setTransferEncodingChunked(req, true);
+        }
+        ctx.fireChannelRead(req);
+    }
+
+    private static HttpRequest toHttpRequest(Http3Headers headers) {
+        final CharSequence method = headers.method();
+        final CharSequence path = headers.path();
+        final HttpHeaders httpHeaders = new DefaultHttpHeaders();
+        copyHeaders(headers, httpHeaders);
+        final CharSequence authority = headers.authority();
+        if (authority != null && !httpHeaders.contains(HttpHeaderNames.HOST)) {
+            httpHeaders.set(HttpHeaderNames.HOST, authority);
+        }
+
+        if (method == null || path == null) {
+            final HttpRequest req = new io.netty.handler.codec.http.DefaultHttpRequest(
+                    HTTP_1_1, io.netty.handler.codec.http.HttpMethod.GET, "/", httpHeaders);
+            req.setDecoderResult(DecoderResult.failure(
+                    new IllegalArgumentException("missing :method or :path pseudo-header")));
+            return req;
+        }
+        return new io.netty.handler.codec.http.DefaultHttpRequest(
+                HTTP_1_1, io.netty.handler.codec.http.HttpMethod.valueOf(method.toString()),
+                path.toString(), httpHeaders);
+    }
+
+    private static void copyHeaders(Http3Headers from, HttpHeaders to) {
+        for (Entry<CharSequence, CharSequence> e : from) {
+            final CharSequence name = e.getKey();
+            if (name.length() > 0 && name.charAt(0) != ':') {
+                to.add(name, e.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!(msg instanceof HttpObject)) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        final List<Object> frames = new ArrayList<>(3);
+        boolean endOfStream = false;
+        try {
+            boolean informational = false;
+            if (msg instanceof HttpResponse res) {
+                informational = res.status().codeClass() == HttpStatusClass.INFORMATIONAL;
+                final Http3Headers headers = new DefaultHttp3Headers();
+                headers.status(res.status().codeAsText());
+                copyHeaders(res.headers(), headers);
+                frames.add(new DefaultHttp3HeadersFrame(headers));
+            }
+            if (msg instanceof HttpContent content && content.content().isReadable()) {
+                frames.add(new DefaultHttp3DataFrame(content.content().retain()));
+            }
+            if (msg instanceof LastHttpContent last && !informational) {
+                if (!last.trailingHeaders().isEmpty()) {
+                    final Http3Headers trailers = new DefaultHttp3Headers();
+                    copyHeaders(last.trailingHeaders(), trailers);
+                    frames.add(new DefaultHttp3HeadersFrame(trailers));
+                }
+                endOfStream = true;
+            }
+        } finally {
+            ReferenceCountUtil.release(msg);
+        }
+
+        if (frames.isEmpty()) {
+            if (endOfStream) {
+                promise.addListener(QuicStreamChannel.SHUTDOWN_OUTPUT);
+            }
+            promise.setSuccess();
+            return;
+        }
+
+        final int lastIndex = frames.size() - 1;
+        for (int i = 0; i < lastIndex; i++) {
+            ctx.write(frames.get(i));
+        }
+        ctx.write(frames.get(lastIndex), promise);
+        if (endOfStream) {
+            promise.addListener(QuicStreamChannel.SHUTDOWN_OUTPUT);
+        }
+    }
+
+    private static void copyHeaders(HttpHeaders from, Http3Headers to) {
+        final Iterator<Entry<CharSequence, CharSequence>> it = from.iteratorCharSequence();
+        while (it.hasNext()) {
+            final Entry<CharSequence, CharSequence> e = it.next();
+            final AsciiString name = AsciiString.of(e.getKey()).toLowerCase();
+            if (!CONNECTION_SPECIFIC_HEADERS.contains(name)) {
+                to.add(name, e.getValue());
+            }
+        }
+    }
+}
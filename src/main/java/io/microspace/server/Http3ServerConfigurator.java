@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.incubator.codec.http3.Http3;
+import io.netty.incubator.codec.http3.Http3ServerConnectionHandler;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicServerCodecBuilder;
+import io.netty.incubator.codec.quic.QuicSslContext;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+
+/**
+ * Configures the QUIC connections accepted by an HTTP/3 listener. Every request stream is served by
+ * its own {@link QuicStreamChannel} whose pipeline converts the HTTP/3 frames into the same HTTP objects
+ * as HTTP/1, so all protocols share the routing and service layer.
+ *
+ * @author i1619kHz
+ */
+final class Http3ServerConfigurator extends ChannelInitializer<QuicChannel> {
+    private static final Logger logger = LoggerFactory.getLogger(Http3ServerConfigurator.class);
+
+    private static final int TOKEN_KEY_LENGTH = 32;
+
+    private final ServerConfig serverConfig;
+    private final Routers routers;
+    @Nullable
+    private final HttpResponseCompressor compressor;
+    @Nullable
+    private final TrafficCapture trafficCapture;
+    @Nullable
+    private final BlockingTaskDispatcher blockingTaskDispatcher;
+    private final AtomicInteger numConnections = new AtomicInteger();
+    private final byte[] tokenKey = new byte[TOKEN_KEY_LENGTH];
+
+    Http3ServerConfigurator(ServerConfig serverConfig, Routers routers,
+                            @Nullable HttpResponseCompressor compressor,
+                            @Nullable TrafficCapture trafficCapture,
+                            @Nullable BlockingTaskDispatcher blockingTaskDispatcher) {
+        this.serverConfig = requireNonNull(serverConfig, "serverConfig");
+        this.compressor = compressor;
+        this.trafficCapture = trafficCapture;
+        this.blockingTaskDispatcher = blockingTaskDispatcher;
+        this.routers = requireNonNull(routers, "routers");
+        new SecureRandom().nextBytes(tokenKey);
+    }
+
+    /**
+     * Returns a new QUIC codec to be added to the pipeline of a datagram channel. The codec validates the
+     * client addresses with the {@code Retry} tokens of an {@link HmacQuicTokenHandler}.
+     */
+    ChannelHandler newCodec(QuicSslContext sslContext) {
+        final QuicServerCodecBuilder builder =
+                Http3.newQuicServerCodecBuilder()
+                     .sslContext(requireNonNull(sslContext, "sslContext"))
+                     .initialMaxData(serverConfig.http3InitialConnectionWindowSize())
+                     .initialMaxStreamDataBidirectionalLocal(serverConfig.http3InitialStreamWindowSize())
+                     .initialMaxStreamDataBidirectionalRemote(serverConfig.http3InitialStreamWindowSize())
+                     .initialMaxStreamsBidirectional(serverConfig.http3MaxStreamsPerConnection())
+                     .tokenHandler(new HmacQuicTokenHandler(tokenKey))
+                     .handler(this);
+        if (serverConfig.idleTimeoutMillis() > 0) {
+            builder.maxIdleTimeout(serverConfig.idleTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+        return builder.build();
+    }
+
+    @Override
+    protected void initChannel(QuicChannel ch) {
+        // QUIC connections are not accepted by a server channel, so ConnectionLimitHandler can't see them.
+        if (numConnections.incrementAndGet() > serverConfig.maxNumConnections()) {
+            numConnections.decrementAndGet();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Dropped a QUIC connection from {} to keep the open connections under {}",
+                             ch.remoteAddress(), serverConfig.maxNumConnections());
+            }
+            ch.close();
+            return;
+        }
+        ch.closeFuture().addListener(unused -> numConnections.decrementAndGet());
+
+        ch.pipeline().addLast(new Http3ServerConnectionHandler(new ChannelInitializer<QuicStreamChannel>() {
+            @Override
+            protected void initChannel(QuicStreamChannel ch) {
+                // Keep the stream writable after the client finished sending the request.
+                ch.config().setAllowHalfClosure(true);
+
+                final ChannelPipeline pipeline = ch.pipeline();
+                pipeline.addLast(new Http3RequestStreamCodec());
+                pipeline.addLast(new HttpRequestBodyHandler(routers, serverConfig.useStreamingRequestBody()));
+                pipeline.addLast(new HttpServerHandler(serverConfig, compressor, trafficCapture,
+                                                       blockingTaskDispatcher, null));
+            }
+        }));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.util.Date;
+
+import io.netty.handler.codec.DateFormatter;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * The value of the {@code date} header of the responses written by an event loop. The value is formatted
+ * at most once a second per event loop instead of once per response.
+ *
+ * @author i1619kHz
+ */
+final class HttpDateHeader {
+    private static final FastThreadLocal<HttpDateHeader> current = new FastThreadLocal<HttpDateHeader>() {
+        @Override
+        protected HttpDateHeader initialValue() {
+            return new HttpDateHeader();
+        }
+    };
+
+    /**
+     * Returns the {@code date} header of the current second.
+     */
+    static HttpDateHeader current() {
+        final HttpDateHeader header = current.get();
+        final long currentSecond = System.currentTimeMillis() / 1000;
+        if (header.second != currentSecond) {
+            header.update(currentSecond);
+        }
+        return header;
+    }
+
+    private long second = -1;
+    private AsciiString value = AsciiString.EMPTY_STRING;
+    private byte[] http1Line = {};
+
+    private HttpDateHeader() {}
+
+    private void update(long second) {
+        final String formatted = DateFormatter.format(new Date(second * 1000));
+        this.second = second;
+        value = new AsciiString(formatted);
+        http1Line = (HttpHeaderNames.DATE + ": " + formatted + "\r\n").getBytes(US_ASCII);
+    }
+
+    /**
+     * Returns the header value, e.g. {@code "Sat, 17 Oct 2026 09:30:00 GMT"}.
+     */
+    AsciiString value() {
+        return value;
+    }
+
+    /**
+     * Returns the encoded HTTP/1 header line including the trailing {@code CRLF}.
+     */
+    byte[] http1Line() {
+        return http1Line;
+    }
+}
@@ -42,9 +42,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.BitSet;
 import java.util.Map;
+import java.util.Set;
 
 import com.google.common.base.Ascii;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.math.IntMath;
 
 import io.microspace.internal.Flags;
@@ -310,6 +312,11 @@ public final class HttpHeaderNames {
      * The HTTP {@code "Allow"} header field name.
      */
     public static final AsciiString ALLOW = create("Allow");
+    /**
+     * The HTTP <a href="https://datatracker.ietf.org/doc/html/rfc7838">{@code "Alt-Svc"}</a>
+     * header field name.
+     */
+    public static final AsciiString ALT_SVC = create("Alt-Svc");
     /**
      * The HTTP {@code "Content-Base"} header field name.
      */
@@ -637,6 +644,13 @@ public final class HttpHeaderNames {
         return validate(lowerCased);
     }
 
+    /**
+     * Returns all header names defined in this class.
+     */
+    static Set<AsciiString> knownNames() {
+        return ImmutableSet.copyOf(map.values());
+    }
+
     private HttpHeaderNames() {}
 
     private static AsciiString create(String name) {
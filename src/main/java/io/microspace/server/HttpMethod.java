@@ -139,6 +139,14 @@ public enum HttpMethod {
 
     }
 
+    /**
+     * Returns the {@link HttpMethod} whose name is the specified {@link String}, or {@link #UNKNOWN}
+     * if it is not one of the supported method names.
+     */
+    public static HttpMethod tryParse(String value) {
+        return isSupported(value) ? valueOf(value) : UNKNOWN;
+    }
+
     /**
      * Returns the <a href="https://developer.mozilla.org/en-US/docs/Glossary/Idempotent">idempotent</a>
      * HTTP methods - {@link #GET}, {@link #HEAD}, {@link #PUT} and {@link #DELETE}.
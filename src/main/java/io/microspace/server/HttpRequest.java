@@ -23,9 +23,19 @@
  */
 package io.microspace.server;
 
+import org.reactivestreams.Publisher;
+
+import io.netty.buffer.ByteBuf;
+
 /**
  * @author i1619kHz
  */
 public interface HttpRequest extends Request {
-
+    /**
+     * Returns the content of this request. The content is published as it is read from the connection,
+     * and the connection stops reading while the {@link org.reactivestreams.Subscriber} has no
+     * outstanding demand. The {@link org.reactivestreams.Subscriber} must release every {@link ByteBuf}
+     * it receives.
+     */
+    Publisher<ByteBuf> content();
 }
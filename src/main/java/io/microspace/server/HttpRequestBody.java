@@ -0,0 +1,291 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import javax.annotation.Nullable;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.google.common.math.LongMath;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+
+/**
+ * The content of an {@link HttpRequest}, published as a stream of {@link ByteBuf}s. Only a single
+ * {@link Subscriber} is allowed. The {@link Subscriber} takes the ownership of every published buffer
+ * and must release it.
+ *
+ * <p>The connection stops reading while the {@link Subscriber} has no outstanding demand, so at most
+ * a single read of the content is held in memory no matter how large the content is.
+ *
+ * @author i1619kHz
+ */
+final class HttpRequestBody implements Publisher<ByteBuf> {
+    private static final Subscription NOOP_SUBSCRIPTION = new Subscription() {
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {}
+    };
+
+    private final EventLoop eventLoop;
+    @Nullable
+    private final Channel channel;
+    private final Queue<ByteBuf> queue = new ArrayDeque<>();
+
+    @Nullable
+    private Subscriber<? super ByteBuf> subscriber;
+    @Nullable
+    private Throwable cause;
+    private long demand;
+    private boolean subscribed;
+    private boolean completed;
+    private boolean done;
+    private boolean draining;
+    private boolean readingSuspended;
+
+    private HttpRequestBody(EventLoop eventLoop, @Nullable Channel channel) {
+        this.eventLoop = requireNonNull(eventLoop, "eventLoop");
+        this.channel = channel;
+    }
+
+    /**
+     * Returns a new {@link HttpRequestBody} which is fed by the decoder while the content of a request
+     * is read from the specified {@link Channel}.
+     */
+    static HttpRequestBody streaming(Channel channel) {
+        requireNonNull(channel, "channel");
+        return new HttpRequestBody(channel.eventLoop(), channel);
+    }
+
+    /**
+     * Returns a new {@link HttpRequestBody} which publishes the specified content that has been
+     * received completely.
+     */
+    static HttpRequestBody of(EventLoop eventLoop, ByteBuf content) {
+        requireNonNull(content, "content");
+        final HttpRequestBody body = new HttpRequestBody(eventLoop, null);
+        if (content.isReadable()) {
+            body.queue.add(content);
+        } else {
+            content.release();
+        }
+        body.completed = true;
+        return body;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuf> subscriber) {
+        requireNonNull(subscriber, "subscriber");
+        execute(() -> subscribe0(subscriber));
+    }
+
+    private void subscribe0(Subscriber<? super ByteBuf> subscriber) {
+        if (subscribed || done) {
+            subscriber.onSubscribe(NOOP_SUBSCRIPTION);
+            subscriber.onError(new IllegalStateException(
+                    subscribed ? "only one subscriber is allowed" : "the content has been discarded"));
+            return;
+        }
+        subscribed = true;
+        this.subscriber = subscriber;
+        subscriber.onSubscribe(new BodySubscription());
+        drain();
+    }
+
+    /**
+     * Publishes the specified chunk of the content. Invoked by the decoder from the event loop.
+     */
+    void onData(ByteBuf data) {
+        if (done) {
+            data.release();
+            return;
+        }
+        queue.add(data);
+        drain();
+        if (!queue.isEmpty()) {
+            suspendReading();
+        }
+    }
+
+    /**
+     * Signals that the content has been received completely. Invoked by the decoder from the event loop.
+     */
+    void onComplete() {
+        completed = true;
+        drain();
+    }
+
+    /**
+     * Signals that the content could not be received completely. Invoked by the decoder from the
+     * event loop.
+     */
+    void onError(Throwable cause) {
+        if (completed) {
+            return;
+        }
+        this.cause = requireNonNull(cause, "cause");
+        completed = true;
+        drain();
+    }
+
+    /**
+     * Aborts the content, e.g. because the request timed out. The content read so far and the rest of
+     * it are released, and the {@link Subscriber} is signalled the specified cause. Invoked from the
+     * event loop.
+     */
+    void abort(Throwable cause) {
+        requireNonNull(cause, "cause");
+        final Subscriber<? super ByteBuf> subscriber = this.subscriber;
+        if (done) {
+            return;
+        }
+        cancel0();
+        if (subscriber != null) {
+            subscriber.onError(cause);
+        }
+    }
+
+    /**
+     * Discards the content if no {@link Subscriber} has subscribed to it, e.g. because the service
+     * responded without looking at the content. The rest of the content is released as soon as it is
+     * read. Once subscribed, the content belongs to the {@link Subscriber} until it cancels.
+     */
+    void discardIfUnsubscribed() {
+        execute(() -> {
+            if (!subscribed) {
+                cancel0();
+            }
+        });
+    }
+
+    private void drain() {
+        final Subscriber<? super ByteBuf> subscriber = this.subscriber;
+        if (subscriber == null || draining) {
+            return;
+        }
+
+        draining = true;
+        try {
+            while (demand > 0 && !queue.isEmpty()) {
+                demand--;
+                subscriber.onNext(queue.poll());
+                if (done) {
+                    // Cancelled by the subscriber.
+                    return;
+                }
+            }
+        } finally {
+            draining = false;
+        }
+
+        if (!queue.isEmpty()) {
+            return;
+        }
+        if (completed) {
+            done = true;
+            this.subscriber = null;
+            resumeReading();
+            if (cause != null) {
+                subscriber.onError(cause);
+            } else {
+                subscriber.onComplete();
+            }
+        } else if (demand > 0) {
+            resumeReading();
+        }
+    }
+
+    private void cancel0() {
+        if (done) {
+            return;
+        }
+        done = true;
+        subscriber = null;
+        ByteBuf data;
+        while ((data = queue.poll()) != null) {
+            data.release();
+        }
+        resumeReading();
+    }
+
+    private void suspendReading() {
+        if (channel != null && !readingSuspended) {
+            readingSuspended = true;
+            ReadSuppressingHandler.suspendReading(channel, ReadSuppressingHandler.REQUEST_CONTENT);
+        }
+    }
+
+    private void resumeReading() {
+        if (channel != null && readingSuspended) {
+            readingSuspended = false;
+            ReadSuppressingHandler.resumeReading(channel, ReadSuppressingHandler.REQUEST_CONTENT);
+        }
+    }
+
+    private void execute(Runnable task) {
+        if (eventLoop.inEventLoop()) {
+            task.run();
+        } else {
+            eventLoop.execute(task);
+        }
+    }
+
+    private final class BodySubscription implements Subscription {
+        @Override
+        public void request(long n) {
+            execute(() -> {
+                if (done) {
+                    return;
+                }
+                if (n <= 0) {
+                    final Subscriber<? super ByteBuf> subscriber = HttpRequestBody.this.subscriber;
+                    cancel0();
+                    if (subscriber != null) {
+                        subscriber.onError(new IllegalArgumentException(
+                                "n: " + n + " (expected: > 0, see Reactive Streams specification rule 3.9)"));
+                    }
+                    return;
+                }
+                demand = LongMath.saturatedAdd(demand, n);
+                drain();
+            });
+        }
+
+        @Override
+        public void cancel() {
+            execute(HttpRequestBody.this::cancel0);
+        }
+    }
+}
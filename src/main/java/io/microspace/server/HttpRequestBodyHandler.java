@@ -0,0 +1,256 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static java.util.Objects.requireNonNull;
+
+import java.nio.channels.ClosedChannelException;
+
+import javax.annotation.Nullable;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.DecoderResult;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+
+/**
+ * Routes the requests decoded by the HTTP codec and collects their content, replacing the
+ * {@link io.netty.handler.codec.http.HttpObjectAggregator}. Each request is passed on as a
+ * {@link DecodedHttpRequest} once:
+ * <ul>
+ *   <li>its headers are received, if it has no content or the streaming mode is enabled, or</li>
+ *   <li>its whole content is received, otherwise.</li>
+ * </ul>
+ * The {@code maxRequestLength} of the matched service is enforced while the content is decoded,
+ * so a request declaring a larger {@code content-length} is rejected before any of its content is read.
+ * The content of a request no service matches is never buffered.
+ *
+ * @author i1619kHz
+ */
+final class HttpRequestBodyHandler extends ChannelInboundHandlerAdapter {
+    private static final int MAX_COMPONENTS = 1024;
+
+    private static final FullHttpResponse CONTINUE =
+            new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.CONTINUE, Unpooled.EMPTY_BUFFER);
+
+    private final Routers routers;
+    private final boolean streaming;
+
+    @Nullable
+    private HttpRequest aggregatingHeaders;
+    @Nullable
+    private RoutingResult aggregatingRoutingResult;
+    @Nullable
+    private CompositeByteBuf aggregatingContent;
+    @Nullable
+    private HttpRequestBody streamingBody;
+    private long maxContentLength;
+    private long contentLength;
+    private boolean ignoringContent;
+
+    HttpRequestBodyHandler(Routers routers, boolean streaming) {
+        this.routers = requireNonNull(routers, "routers");
+        this.streaming = streaming;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof HttpRequest req) {
+            onHeaders(ctx, req);
+        } else if (msg instanceof HttpContent content) {
+            onContent(ctx, content);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    private void onHeaders(ChannelHandlerContext ctx, HttpRequest req) {
+        reset();
+        if (req.decoderResult().isFailure()) {
+            // The decoder discards the rest of the message by itself.
+            fireWithoutContent(ctx, req, RoutingResult.notFound());
+            return;
+        }
+
+        final QueryStringDecoder queryDecoder = new QueryStringDecoder(req.uri());
+        final RoutingResult routingResult = routers.find(
+                queryDecoder.path(), HttpMethod.tryParse(req.method().name()), req.headers(), queryDecoder);
+        final ServiceConfig serviceConfig = routingResult.serviceConfig();
+        if (serviceConfig == null) {
+            // Nothing would consume the content, so respond right away and drop the content as it arrives.
+            if (HttpUtil.is100ContinueExpected(req)) {
+                // The client may or may not send the content, so the connection can't be reused.
+                HttpUtil.setKeepAlive(req, false);
+            }
+            fireWithoutContent(ctx, req, routingResult);
+            return;
+        }
+
+        maxContentLength = serviceConfig.maxRequestLength();
+        final long declaredLength;
+        if (req instanceof FullHttpRequest full) {
+            declaredLength = full.content().readableBytes();
+        } else {
+            declaredLength = HttpUtil.getContentLength(req, -1L);
+        }
+        if (maxContentLength > 0 && declaredLength > maxContentLength) {
+            HttpUtil.setKeepAlive(req, false);
+            req.setDecoderResult(DecoderResult.failure(new ContentTooLargeException(maxContentLength)));
+            fireWithoutContent(ctx, req, routingResult);
+            return;
+        }
+
+        if (req instanceof FullHttpRequest full) {
+            ctx.fireChannelRead(new DecodedHttpRequest(
+                    full, routingResult, HttpRequestBody.of(ctx.channel().eventLoop(), full.content())));
+            return;
+        }
+
+        if (HttpUtil.is100ContinueExpected(req)) {
+            req.headers().remove(HttpHeaderNames.EXPECT);
+            ctx.writeAndFlush(CONTINUE.retainedDuplicate());
+        }
+
+        if (!HttpUtil.isTransferEncodingChunked(req) && declaredLength <= 0) {
+            // No need to wait for the empty last content.
+            fireWithoutContent(ctx, req, routingResult);
+            return;
+        }
+
+        if (streaming) {
+            streamingBody = HttpRequestBody.streaming(ctx.channel());
+            ctx.fireChannelRead(new DecodedHttpRequest(req, routingResult, streamingBody));
+        } else {
+            aggregatingHeaders = req;
+            aggregatingRoutingResult = routingResult;
+            aggregatingContent = ctx.alloc().compositeBuffer(MAX_COMPONENTS);
+        }
+    }
+
+    private void onContent(ChannelHandlerContext ctx, HttpContent content) {
+        try {
+            if (!ignoringContent) {
+                final ByteBuf data = content.content();
+                contentLength += data.readableBytes();
+                if (content.decoderResult().isFailure()) {
+                    // The decoder failed in the middle of the content, e.g. due to a malformed chunk.
+                    abortContent(ctx, content.decoderResult().cause());
+                } else if (maxContentLength > 0 && contentLength > maxContentLength) {
+                    abortContent(ctx, new ContentTooLargeException(maxContentLength));
+                } else if (data.isReadable()) {
+                    if (streamingBody != null) {
+                        streamingBody.onData(data.retain());
+                    } else if (aggregatingContent != null) {
+                        aggregatingContent.addComponent(true, data.retain());
+                    }
+                }
+            }
+
+            if (content instanceof LastHttpContent) {
+                onLastContent(ctx);
+            }
+        } finally {
+            content.release();
+        }
+    }
+
+    private void onLastContent(ChannelHandlerContext ctx) {
+        if (!ignoringContent) {
+            if (streamingBody != null) {
+                streamingBody.onComplete();
+            } else if (aggregatingHeaders != null) {
+                final CompositeByteBuf content = aggregatingContent;
+                assert content != null;
+                aggregatingContent = null;
+                HttpUtil.setTransferEncodingChunked(aggregatingHeaders, false);
+                HttpUtil.setContentLength(aggregatingHeaders, content.readableBytes());
+                ctx.fireChannelRead(new DecodedHttpRequest(
+                        aggregatingHeaders, aggregatingRoutingResult,
+                        HttpRequestBody.of(ctx.channel().eventLoop(), content)));
+            }
+        }
+        reset();
+    }
+
+    private void abortContent(ChannelHandlerContext ctx, Throwable cause) {
+        if (streamingBody != null) {
+            // The request has been passed on already, so only its subscriber can be notified.
+            streamingBody.onError(cause);
+        } else if (aggregatingHeaders != null) {
+            HttpUtil.setKeepAlive(aggregatingHeaders, false);
+            aggregatingHeaders.setDecoderResult(DecoderResult.failure(cause));
+            fireWithoutContent(ctx, aggregatingHeaders, aggregatingRoutingResult);
+        }
+        releaseAggregatingContent();
+        ignoringContent = true;
+    }
+
+    private void fireWithoutContent(ChannelHandlerContext ctx, HttpRequest req, RoutingResult routingResult) {
+        // Skip the content until the last one, which is sent even if the request has no content.
+        ignoringContent = !(req instanceof LastHttpContent);
+        if (req instanceof FullHttpRequest full) {
+            full.release();
+        }
+        ctx.fireChannelRead(new DecodedHttpRequest(
+                req, routingResult, HttpRequestBody.of(ctx.channel().eventLoop(), Unpooled.EMPTY_BUFFER)));
+    }
+
+    private void reset() {
+        aggregatingHeaders = null;
+        aggregatingRoutingResult = null;
+        releaseAggregatingContent();
+        streamingBody = null;
+        maxContentLength = 0;
+        contentLength = 0;
+        ignoringContent = false;
+    }
+
+    private void releaseAggregatingContent() {
+        if (aggregatingContent != null) {
+            aggregatingContent.release();
+            aggregatingContent = null;
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (streamingBody != null) {
+            streamingBody.onError(new ClosedChannelException());
+        }
+        reset();
+        super.channelInactive(ctx);
+    }
+}
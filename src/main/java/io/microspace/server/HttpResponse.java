@@ -28,11 +28,11 @@ package io.microspace.server;
  */
 public interface HttpResponse extends Response {
     static HttpResponse of(String text) {
-        return new DefaultHttpResponse();
+        return of(HttpStatus.OK, text);
     }
 
     static HttpResponse of(HttpStatus status, String text) {
-        return new DefaultHttpResponse();
+        return new DefaultHttpResponse(status, MediaType.PLAIN_TEXT_UTF_8, text);
     }
 
     HttpResponse toJson(HttpStatus status, String content);
@@ -0,0 +1,444 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nullable;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+/**
+ * Compresses the content of the responses with the encoding negotiated via {@code accept-encoding}.
+ * A single instance is shared by all connections of a {@link Server}.
+ *
+ * <p>The configured compression level is lowered to the fastest one while the event loop has many pending
+ * tasks, so that compressing a large response does not delay the other connections of the event loop.
+ * The compressed content of a response which is explicitly cacheable, i.e. has an {@code etag} or
+ * a {@code cache-control} with {@code public} or {@code max-age}, is cached, so the identical responses
+ * such as static documents are compressed only once. The cached content is looked up by the strong
+ * {@code etag} and the URI of the request, or by a SHA-256 digest of the content if there's no strong
+ * {@code etag}. A strong {@code etag} of a compressed response is made weak, because the compressed
+ * content is no longer byte-for-byte identical to the representation it validated.
+ *
+ * @author i1619kHz
+ */
+final class HttpResponseCompressor {
+    /**
+     * The number of pending tasks of an event loop above which it is considered busy.
+     */
+    private static final int BUSY_EVENT_LOOP_PENDING_TASKS = 64;
+
+    /**
+     * The maximum length of a content whose compressed form is cached.
+     */
+    private static final int MAX_CACHEABLE_CONTENT_LENGTH = 1024 * 1024;
+
+    /**
+     * The maximum number of distinct {@code content-type} values whose compressibility is memoized.
+     */
+    private static final int MAX_MEMOIZED_CONTENT_TYPES = 256;
+
+    /**
+     * Identifies the content of a cacheable response without a strong {@code etag}. A cryptographic
+     * digest is used so that a client can't craft a content which collides with the content of
+     * another response and make the server serve the wrong compressed content.
+     */
+    private static final HashFunction CONTENT_DIGEST = Hashing.sha256();
+
+    private static final String WEAK_ETAG_PREFIX = "W/";
+
+    private static final AsciiString GZIP = HttpHeaderValues.GZIP;
+    private static final AsciiString DEFLATE = HttpHeaderValues.DEFLATE;
+
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    private static final ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+
+    private static final FastThreadLocal<Deflaters> deflaters = new FastThreadLocal<Deflaters>() {
+        @Override
+        protected Deflaters initialValue() {
+            return new Deflaters();
+        }
+
+        @Override
+        protected void onRemoval(Deflaters value) {
+            value.gzip.end();
+            value.deflate.end();
+        }
+    };
+
+    private final int minLength;
+    private final int level;
+    private final Set<MediaType> compressibleMediaTypes;
+    private final Map<String, Boolean> compressibleContentTypes = new ConcurrentHashMap<>();
+    @Nullable
+    private final Cache<CacheKey, byte[]> cache;
+    private final DistributionSummary gzipRatio;
+    private final DistributionSummary deflateRatio;
+    private final Timer gzipCpuTime;
+    private final Timer deflateCpuTime;
+
+    HttpResponseCompressor(ServerConfig serverConfig) {
+        requireNonNull(serverConfig, "serverConfig");
+        minLength = serverConfig.compressionMinLength();
+        level = serverConfig.compressionLevel();
+        compressibleMediaTypes = serverConfig.compressibleMediaTypes();
+        if (serverConfig.compressionCacheSize() > 0) {
+            cache = Caffeine.newBuilder()
+                            .maximumWeight(serverConfig.compressionCacheSize())
+                            .<CacheKey, byte[]>weigher((key, value) -> value.length)
+                            .build();
+        } else {
+            cache = null;
+        }
+
+        final MeterRegistry meterRegistry = serverConfig.meterRegistry();
+        gzipRatio = newRatioSummary(meterRegistry, GZIP);
+        deflateRatio = newRatioSummary(meterRegistry, DEFLATE);
+        gzipCpuTime = newCpuTimer(meterRegistry, GZIP);
+        deflateCpuTime = newCpuTimer(meterRegistry, DEFLATE);
+    }
+
+    private static DistributionSummary newRatioSummary(MeterRegistry meterRegistry, AsciiString encoding) {
+        return DistributionSummary.builder("microspace.response.compression.ratio")
+                                  .description("The compressed length of a response content divided by " +
+                                               "its original length")
+                                  .tag("encoding", encoding.toString())
+                                  .register(meterRegistry);
+    }
+
+    private static Timer newCpuTimer(MeterRegistry meterRegistry, AsciiString encoding) {
+        return Timer.builder("microspace.response.compression.cpu.time")
+                    .description("The CPU time spent compressing a response content")
+                    .tag("encoding", encoding.toString())
+                    .register(meterRegistry);
+    }
+
+    /**
+     * Replaces the content of the specified response with its compressed form if the client accepts
+     * a supported encoding and the response is worth compressing.
+     */
+    void compress(ChannelHandlerContext ctx, HttpRequest req, FullHttpResponse res) {
+        final HttpHeaders headers = res.headers();
+        final int status = res.status().code();
+        if (status < 200 || status == 204 || status == 304 ||
+            headers.contains(HttpHeaderNames.CONTENT_ENCODING)) {
+            return;
+        }
+        final String contentType = headers.get(HttpHeaderNames.CONTENT_TYPE);
+        if (contentType == null || !isCompressible(contentType)) {
+            return;
+        }
+        // The response depends on accept-encoding from now on, even if it is not compressed.
+        if (!headers.contains(HttpHeaderNames.VARY)) {
+            headers.set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        } else if (!headers.containsValue(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING, true)) {
+            // Keep what the service varies the response by.
+            headers.add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        }
+
+        final ByteBuf content = res.content();
+        final int length = content.readableBytes();
+        final String acceptEncoding = req.headers().get(HttpHeaderNames.ACCEPT_ENCODING);
+        if (length < minLength || acceptEncoding == null) {
+            return;
+        }
+        final AsciiString encoding = negotiate(acceptEncoding);
+        if (encoding == null) {
+            return;
+        }
+
+        final byte[] compressed;
+        if (cache != null && length <= MAX_CACHEABLE_CONTENT_LENGTH && isCacheable(headers)) {
+            final CacheKey key = newCacheKey(req, headers, encoding, contentType, content);
+            final byte[] cached = cache.getIfPresent(key);
+            if (cached != null) {
+                compressed = cached;
+            } else {
+                // Compress outside the cache, which would otherwise block the other event loops looking up
+                // the same part of the cache. Two event loops may compress the same content at worst.
+                compressed = compressContent(ctx.executor(), encoding, content);
+                cache.put(key, compressed);
+            }
+        } else {
+            compressed = compressContent(ctx.executor(), encoding, content);
+        }
+        if (compressed.length >= length) {
+            // Not compressible at all, e.g. random or already compressed data.
+            return;
+        }
+
+        content.release();
+        res.replace(Unpooled.wrappedBuffer(compressed));
+        headers.set(HttpHeaderNames.CONTENT_ENCODING, encoding);
+        headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+        final String etag = headers.get(HttpHeaderNames.ETAG);
+        if (etag != null && !etag.startsWith(WEAK_ETAG_PREFIX)) {
+            headers.set(HttpHeaderNames.ETAG, WEAK_ETAG_PREFIX + etag);
+        }
+    }
+
+    private boolean isCompressible(String contentType) {
+        final Boolean cached = compressibleContentTypes.get(contentType);
+        if (cached != null) {
+            return cached;
+        }
+
+        boolean compressible = false;
+        try {
+            final MediaType mediaType = MediaType.parse(contentType).withoutParameters();
+            for (MediaType range : compressibleMediaTypes) {
+                if (mediaType.is(range.withoutParameters())) {
+                    compressible = true;
+                    break;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Do not compress a response of an unknown type.
+        }
+        if (compressibleContentTypes.size() < MAX_MEMOIZED_CONTENT_TYPES) {
+            compressibleContentTypes.put(contentType, compressible);
+        }
+        return compressible;
+    }
+
+    /**
+     * Returns whether the compressed content of a response with the specified headers may be reused
+     * for another response, which is the case only if the response is marked so explicitly. A dynamic
+     * response is rarely identical to another one, so it is not worth looking up.
+     */
+    private static boolean isCacheable(HttpHeaders headers) {
+        if (headers.contains(HttpHeaderNames.SET_COOKIE)) {
+            return false;
+        }
+        final String cacheControl = headers.get(HttpHeaderNames.CACHE_CONTROL);
+        if (cacheControl != null) {
+            if (cacheControl.contains("no-store") || cacheControl.contains("private")) {
+                return false;
+            }
+            if (cacheControl.contains("public") || cacheControl.contains("max-age")) {
+                return true;
+            }
+        }
+        return headers.contains(HttpHeaderNames.ETAG);
+    }
+
+    private static CacheKey newCacheKey(HttpRequest req, HttpHeaders headers, AsciiString encoding,
+                                        String contentType, ByteBuf content) {
+        final String etag = headers.get(HttpHeaderNames.ETAG);
+        if (etag != null && !etag.startsWith(WEAK_ETAG_PREFIX)) {
+            // A strong etag identifies the exact bytes of a representation of the resource at the URI.
+            // A weak one may be shared by different contents, so it can't identify the compressed form.
+            return new CacheKey(encoding, contentType, content.readableBytes(), req.uri() + ' ' + etag);
+        }
+        return new CacheKey(encoding, contentType, content.readableBytes(),
+                            CONTENT_DIGEST.hashBytes(content.nioBuffer()));
+    }
+
+    /**
+     * Returns the supported encoding with the highest quality value in the specified {@code accept-encoding}
+     * header, preferring {@code gzip} over {@code deflate}, or {@code null} if neither is acceptable.
+     */
+    @Nullable
+    static AsciiString negotiate(String acceptEncoding) {
+        float gzipQ = -1;
+        float deflateQ = -1;
+        float starQ = -1;
+        int start = 0;
+        while (start < acceptEncoding.length()) {
+            int end = acceptEncoding.indexOf(',', start);
+            if (end < 0) {
+                end = acceptEncoding.length();
+            }
+            final String token = acceptEncoding.substring(start, end);
+            start = end + 1;
+
+            final int semicolon = token.indexOf(';');
+            final String coding = (semicolon < 0 ? token : token.substring(0, semicolon)).trim();
+            final float q = semicolon < 0 ? 1.0f : qualityValue(token.substring(semicolon + 1));
+            if (GZIP.contentEqualsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+                gzipQ = Math.max(gzipQ, q);
+            } else if (DEFLATE.contentEqualsIgnoreCase(coding)) {
+                deflateQ = Math.max(deflateQ, q);
+            } else if ("*".equals(coding)) {
+                starQ = q;
+            }
+        }
+
+        if (gzipQ < 0) {
+            gzipQ = starQ;
+        }
+        if (deflateQ < 0) {
+            deflateQ = starQ;
+        }
+        if (gzipQ <= 0 && deflateQ <= 0) {
+            return null;
+        }
+        return gzipQ >= deflateQ ? GZIP : DEFLATE;
+    }
+
+    private static float qualityValue(String params) {
+        final int q = params.indexOf("q=");
+        if (q < 0) {
+            return 1.0f;
+        }
+        int end = params.indexOf(';', q);
+        if (end < 0) {
+            end = params.length();
+        }
+        try {
+            return Float.parseFloat(params.substring(q + 2, end).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private byte[] compressContent(EventExecutor executor, AsciiString encoding, ByteBuf content) {
+        final boolean gzip = encoding == GZIP;
+        final long startCpuTime = threadMxBean.getCurrentThreadCpuTime();
+        final byte[] input = ByteBufUtil.getBytes(content, content.readerIndex(), content.readableBytes(),
+                                                  false);
+        final Deflaters deflaters = HttpResponseCompressor.deflaters.get();
+        final Deflater deflater = gzip ? deflaters.gzip : deflaters.deflate;
+        deflater.setLevel(isBusy(executor) ? Deflater.BEST_SPEED : level);
+
+        final byte[] compressed = deflate(deflater, deflaters.buffer, input, gzip);
+        (gzip ? gzipCpuTime : deflateCpuTime).record(
+                threadMxBean.getCurrentThreadCpuTime() - startCpuTime, TimeUnit.NANOSECONDS);
+        (gzip ? gzipRatio : deflateRatio).record((double) compressed.length / input.length);
+        return compressed;
+    }
+
+    private static boolean isBusy(EventExecutor executor) {
+        return executor instanceof SingleThreadEventExecutor &&
+               ((SingleThreadEventExecutor) executor).pendingTasks() > BUSY_EVENT_LOOP_PENDING_TASKS;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] buffer, byte[] input, boolean gzip) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + GZIP_HEADER.length);
+        try {
+            if (gzip) {
+                out.writeBytes(GZIP_HEADER);
+            }
+            deflater.setInput(input);
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            if (gzip) {
+                final CRC32 crc = new CRC32();
+                crc.update(input);
+                writeIntLE(out, (int) crc.getValue());
+                writeIntLE(out, input.length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    /**
+     * The {@link Deflater}s of an event loop thread, which are reused because creating one allocates
+     * a native zlib stream.
+     */
+    private static final class Deflaters {
+        final Deflater gzip = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final Deflater deflate = new Deflater(Deflater.DEFAULT_COMPRESSION, false);
+        final byte[] buffer = new byte[8192];
+    }
+
+    private static final class CacheKey {
+        private final AsciiString encoding;
+        private final String contentType;
+        private final int length;
+        /**
+         * The URI and the strong {@code etag} of the response, or the SHA-256
+         * {@link com.google.common.hash.HashCode} of its content.
+         */
+        private final Object identity;
+
+        CacheKey(AsciiString encoding, String contentType, int length, Object identity) {
+            this.encoding = encoding;
+            this.contentType = contentType;
+            this.length = length;
+            this.identity = identity;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey that = (CacheKey) o;
+            return encoding == that.encoding && length == that.length &&
+                   contentType.equals(that.contentType) && identity.equals(that.identity);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((encoding.hashCode() * 31 + contentType.hashCode()) * 31 + length) * 31 +
+                   identity.hashCode();
+        }
+    }
+}
@@ -23,32 +23,106 @@
  */
 package io.microspace.server;
 
+import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_WINDOW_SIZE;
 import static java.util.Objects.requireNonNull;
 
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.WriteBufferWaterMark;
-import io.netty.handler.codec.http.HttpObjectAggregator;
-import io.netty.handler.codec.http.HttpServerCodec;
-import io.netty.handler.codec.http.HttpServerExpectContinueHandler;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler.SourceCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler.UpgradeCodecFactory;
+import io.netty.handler.codec.http2.DefaultHttp2WindowUpdateFrame;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
 import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
 import io.netty.handler.ssl.SslContext;
+import io.netty.util.AsciiString;
+import io.netty.util.AttributeKey;
 
 /**
+ * Configures the pipeline of an accepted connection. A TLS connection speaks HTTP/2 or HTTP/1.1 depending
+ * on the protocol negotiated via ALPN. A cleartext connection speaks HTTP/1.1 unless the client starts
+ * with the HTTP/2 connection preface (prior knowledge) or asks for an {@code h2c} upgrade.
+ *
+ * <p>HTTP/1 responses are encoded by {@link Http1ResponseEncoder} rather than {@code HttpServerCodec},
+ * so that they can be written from the pre-encoded status lines and header names.
+ *
+ * <p>Every HTTP/2 stream is served by its own child channel whose pipeline converts the frames into
+ * the same HTTP objects as HTTP/1, so both protocols share the routing and service layer.
+ *
  * @author i1619kHz
  */
 final class HttpServerConfigurator extends ChannelInitializer<Channel> {
+    /**
+     * The {@link ServerPort} of a server channel, through which a connection finds out the port which
+     * accepted it.
+     */
+    static final AttributeKey<ServerPort> SERVER_PORT =
+            AttributeKey.valueOf(HttpServerConfigurator.class, "SERVER_PORT");
+
     private static final WriteBufferWaterMark DISABLED_WRITE_BUFFER_WATERMARK =
             new WriteBufferWaterMark(0, Integer.MAX_VALUE);
 
+    /**
+     * The maximum length of the content of an HTTP/1.1 request which asks for an {@code h2c} upgrade.
+     */
+    private static final int MAX_UPGRADE_REQUEST_LENGTH = 16 * 1024;
+
+    private static final ByteBuf CONNECTION_PREFACE = Http2CodecUtil.connectionPrefaceBuf();
+
+    private static final List<Class<? extends ChannelHandler>> HTTP1_HANDLER_TYPES =
+            List.of(HttpRequestBodyHandler.class, HttpWebSocketHandler.class, HttpServerHandler.class);
+
+    @Nullable
     private final SslContext sslContext;
     private final ServerConfig serverConfig;
+    private final Routers routers;
 
-    HttpServerConfigurator(ServerConfig serverConfig, SslContext sslContext) {
+    /**
+     * The ports which also accept HTTP/3 connections. The set is updated while the ports are bound.
+     */
+    private final Set<Integer> http3Ports;
+    @Nullable
+    private final HttpResponseCompressor compressor;
+    @Nullable
+    private final TrafficCapture trafficCapture;
+    @Nullable
+    private final BlockingTaskDispatcher blockingTaskDispatcher;
+
+    HttpServerConfigurator(ServerConfig serverConfig, Routers routers, @Nullable SslContext sslContext,
+                           Set<Integer> http3Ports, @Nullable HttpResponseCompressor compressor,
+                           @Nullable TrafficCapture trafficCapture,
+                           @Nullable BlockingTaskDispatcher blockingTaskDispatcher) {
         requireNonNull(serverConfig, "serverConfig");
         this.sslContext = sslContext;
         this.serverConfig = serverConfig;
+        this.http3Ports = requireNonNull(http3Ports, "http3Ports");
+        this.compressor = compressor;
+        this.trafficCapture = trafficCapture;
+        this.blockingTaskDispatcher = blockingTaskDispatcher;
+        this.routers = requireNonNull(routers, "routers");
     }
 
     @Override
@@ -56,26 +130,216 @@ final class HttpServerConfigurator extends ChannelInitializer<Channel> {
         // The remote Address method is called at least once to cache the remote address
         ch.remoteAddress();
 
-        // Disable the write buffer watermark notification because we manage backpressure by ourselves.
+        // Disable the write buffer watermark notification because we manage backpressure by ourselves,
+        // counting the bytes queued by the TLS engine and the HTTP/2 flow controller as well.
         ch.config().setWriteBufferWaterMark(DISABLED_WRITE_BUFFER_WATERMARK);
+        ch.attr(OutboundBackpressure.KEY).set(new OutboundBackpressure(
+                ch, serverConfig.writeBufferHighWaterMark(), serverConfig.writeBufferLowWaterMark()));
 
         final ChannelPipeline pipeline = ch.pipeline();
-        if (null != sslContext && serverConfig.useSsl()) {
+        final ServerPort serverPort = ch.parent() != null ? ch.parent().attr(SERVER_PORT).get() : null;
+        if (serverPort != null && serverPort.hasProxyProtocol()) {
+            // The PROXY protocol header precedes the TLS handshake.
+            pipeline.addLast(new ProxyProtocolHandler());
+        }
+
+        final boolean useSsl = null != sslContext &&
+                               (serverConfig.useSsl() || serverPort != null && serverPort.hasHttps());
+        if (useSsl) {
             pipeline.addLast(sslContext.newHandler(ch.alloc()));
         }
 
         pipeline.addLast(new FlushConsolidationHandler());
         pipeline.addLast(ReadSuppressingHandler.INSTANCE);
-        configurePipeline(pipeline);
+        if (useSsl) {
+            pipeline.addLast(new Http2OrHttpHandler());
+        } else {
+            configureCleartext(pipeline);
+        }
+    }
+
+    private void configureCleartext(ChannelPipeline pipeline) {
+        final SourceCodec sourceCodec = ctx -> {
+            ctx.pipeline().remove(Http1RequestDecoder.class);
+            ctx.pipeline().remove(Http1ResponseEncoder.class);
+        };
+        final UpgradeCodecFactory upgradeCodecFactory = protocol -> {
+            if (!AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+                return null;
+            }
+            return new Http2ServerUpgradeCodec(newHttp2FrameCodec(), newHttp2MultiplexHandler(),
+                                               new Http2SwitchHandler());
+        };
+
+        pipeline.addLast(new PriorKnowledgeHandler());
+        pipeline.addLast(newHttp1RequestDecoder());
+        pipeline.addLast(new Http1ResponseEncoder());
+        pipeline.addLast(new HttpServerUpgradeHandler(sourceCodec, upgradeCodecFactory,
+                                                      MAX_UPGRADE_REQUEST_LENGTH));
+        configureHttp1Handlers(pipeline);
+    }
+
+    private void configureHttp1(ChannelPipeline pipeline) {
+        pipeline.addLast(newHttp1RequestDecoder());
+        pipeline.addLast(new Http1ResponseEncoder());
+        configureHttp1Handlers(pipeline);
     }
 
-    private void configurePipeline(ChannelPipeline pipeline) {
-        pipeline.addLast(new HttpServerCodec());
-        pipeline.addLast(new HttpServerExpectContinueHandler());
-        pipeline.addLast(new HttpObjectAggregator(512 * 1024));
-        pipeline.addLast(new HttpServerExpectContinueHandler());
-        pipeline.addLast(TrafficLoggingHandler.SERVER);
+    private Http1RequestDecoder newHttp1RequestDecoder() {
+        return new Http1RequestDecoder(serverConfig.http1MaxInitialLineLength(),
+                                       serverConfig.http1MaxHeaderSize(), serverConfig.http1MaxChunkSize());
+    }
+
+    private void configureHttp1Handlers(ChannelPipeline pipeline) {
+        if (KeepAliveHandler.isEnabled(serverConfig)) {
+            pipeline.addLast(new KeepAliveHandler(serverConfig, false, System.nanoTime()));
+        }
+        pipeline.addLast(new HttpRequestBodyHandler(routers, serverConfig.useStreamingRequestBody()));
         pipeline.addLast(new HttpWebSocketHandler());
-        pipeline.addLast(new HttpServerHandler(serverConfig));
+        pipeline.addLast(new HttpServerHandler(serverConfig, compressor, trafficCapture,
+                                               blockingTaskDispatcher, altSvc(pipeline.channel())));
+    }
+
+    private void configureHttp2(ChannelPipeline pipeline) {
+        pipeline.addLast(newHttp2FrameCodec());
+        pipeline.addLast(newHttp2MultiplexHandler());
+        pipeline.addLast(new Http2SwitchHandler());
+    }
+
+    private Http2FrameCodec newHttp2FrameCodec() {
+        final Http2Settings settings = Http2Settings.defaultSettings();
+        // The settings left as 0 fall back to the defaults of Netty.
+        if (serverConfig.http2InitialStreamWindowSize() > 0) {
+            settings.initialWindowSize(serverConfig.http2InitialStreamWindowSize());
+        }
+        if (serverConfig.http2MaxFrameSize() > 0) {
+            settings.maxFrameSize(serverConfig.http2MaxFrameSize());
+        }
+        if (serverConfig.http2MaxHeaderListSize() > 0) {
+            settings.maxHeaderListSize(serverConfig.http2MaxHeaderListSize());
+        }
+        if (serverConfig.http2MaxStreamsPerConnection() > 0) {
+            settings.maxConcurrentStreams(serverConfig.http2MaxStreamsPerConnection());
+        }
+        final Http2FrameCodecBuilder builder = Http2FrameCodecBuilder.forServer().initialSettings(settings);
+        final long gracefulShutdownTimeoutMillis = serverConfig.gracefulShutdownTimeout().toMillis();
+        if (gracefulShutdownTimeoutMillis > 0) {
+            // Let the active streams finish within the graceful shutdown timeout after a GOAWAY frame.
+            builder.gracefulShutdownTimeoutMillis(gracefulShutdownTimeoutMillis);
+        }
+        return builder.build();
+    }
+
+    private Http2MultiplexHandler newHttp2MultiplexHandler() {
+        return new Http2MultiplexHandler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                final ChannelPipeline pipeline = ch.pipeline();
+                pipeline.addLast(new Http2StreamFrameToHttpObjectCodec(true));
+                pipeline.addLast(new HttpRequestBodyHandler(routers, serverConfig.useStreamingRequestBody()));
+                pipeline.addLast(new HttpServerHandler(serverConfig, compressor, trafficCapture,
+                                                       blockingTaskDispatcher, altSvc(ch)));
+            }
+        });
+    }
+
+    /**
+     * Returns the {@code alt-svc} header value which tells the clients that the port of the specified
+     * channel also serves HTTP/3, or {@code null} if it does not.
+     */
+    @Nullable
+    private String altSvc(Channel ch) {
+        final SocketAddress localAddress = ch.localAddress();
+        if (!(localAddress instanceof InetSocketAddress)) {
+            return null;
+        }
+        final int port = ((InetSocketAddress) localAddress).getPort();
+        return http3Ports.contains(port) ? "h3=\":" + port + "\"; ma=86400" : null;
+    }
+
+    /**
+     * Negotiates the protocol of a TLS connection via ALPN, defaulting to HTTP/1.1 for the clients
+     * which do not support ALPN.
+     */
+    private final class Http2OrHttpHandler extends ApplicationProtocolNegotiationHandler {
+        Http2OrHttpHandler() {
+            super(ApplicationProtocolNames.HTTP_1_1);
+        }
+
+        @Override
+        protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+            if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                configureHttp2(ctx.pipeline());
+                return;
+            }
+            if (ApplicationProtocolNames.HTTP_1_1.equals(protocol)) {
+                configureHttp1(ctx.pipeline());
+                return;
+            }
+            throw new IllegalStateException("unknown protocol: " + protocol);
+        }
+    }
+
+    /**
+     * Switches a cleartext connection to HTTP/2 if the client starts with the HTTP/2 connection preface,
+     * or removes itself as soon as the first bytes differ from the preface.
+     */
+    private final class PriorKnowledgeHandler extends ByteToMessageDecoder {
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+            final int prefaceLength = CONNECTION_PREFACE.readableBytes();
+            final int bytesRead = Math.min(in.readableBytes(), prefaceLength);
+            if (!ByteBufUtil.equals(CONNECTION_PREFACE, CONNECTION_PREFACE.readerIndex(),
+                                    in, in.readerIndex(), bytesRead)) {
+                ctx.pipeline().remove(this);
+                return;
+            }
+            if (bytesRead == prefaceLength) {
+                final ChannelPipeline pipeline = ctx.pipeline();
+                pipeline.remove(Http1RequestDecoder.class);
+                pipeline.remove(Http1ResponseEncoder.class);
+                pipeline.remove(HttpServerUpgradeHandler.class);
+                configureHttp2(pipeline);
+                // The cumulated bytes, including the preface, are handed over to the frame codec.
+                pipeline.remove(this);
+            }
+        }
+    }
+
+    /**
+     * Finishes switching a connection to HTTP/2 by replacing the HTTP/1 handlers left behind and
+     * enlarging the connection flow-control window to {@code http2InitialConnectionWindowSize}, which
+     * unlike the stream window can't be advertised in the initial SETTINGS frame. Added right after
+     * the frame codec, which has sent its SETTINGS frame by then.
+     */
+    private final class Http2SwitchHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            final ChannelPipeline pipeline = ctx.pipeline();
+            for (Class<? extends ChannelHandler> type : HTTP1_HANDLER_TYPES) {
+                if (pipeline.get(type) != null) {
+                    pipeline.remove(type);
+                }
+            }
+            if (KeepAliveHandler.isEnabled(serverConfig)) {
+                // Keep the age of a connection upgraded from HTTP/1.
+                final KeepAliveHandler http1KeepAliveHandler = pipeline.get(KeepAliveHandler.class);
+                final long connectionStartNanos;
+                if (http1KeepAliveHandler != null) {
+                    connectionStartNanos = http1KeepAliveHandler.connectionStartNanos();
+                    pipeline.remove(http1KeepAliveHandler);
+                } else {
+                    connectionStartNanos = System.nanoTime();
+                }
+                pipeline.addBefore(pipeline.context(Http2MultiplexHandler.class).name(), null,
+                                   new KeepAliveHandler(serverConfig, true, connectionStartNanos));
+            }
+
+            final int windowSize = serverConfig.http2InitialConnectionWindowSize();
+            if (windowSize > DEFAULT_WINDOW_SIZE) {
+                ctx.writeAndFlush(new DefaultHttp2WindowUpdateFrame(windowSize - DEFAULT_WINDOW_SIZE));
+            }
+            pipeline.remove(this);
+        }
     }
 }
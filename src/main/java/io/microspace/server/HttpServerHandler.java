@@ -23,56 +23,566 @@
  */
 package io.microspace.server;
 
-import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import static java.util.Objects.requireNonNull;
 
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import io.microspace.server.annotation.ExceptionHandlerFunction;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
-import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.DecoderResult;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.TooLongHttpHeaderException;
+import io.netty.handler.codec.http.TooLongHttpLineException;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
 import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
 
 /**
+ * Handles the decoded HTTP requests of a single connection. The connection is kept open as long as
+ * the client allows it, and the responses of pipelined requests are always written in the order of
+ * their requests.
+ *
  * @author i1619kHz
  */
-@Sharable
 final class HttpServerHandler extends ChannelInboundHandlerAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(HttpServerHandler.class);
+
+    /**
+     * Allocates the contents of the responses produced by the threads of {@link BlockingTaskDispatcher}.
+     */
+    private static final ByteBufAllocator BLOCKING_ALLOCATOR = new UnpooledByteBufAllocator(false);
+
+    /**
+     * The prebuilt responses of the common errors, whose content is shared by all of their duplicates.
+     */
+    private static final IntObjectMap<FullHttpResponse> cannedResponses = new IntObjectHashMap<>();
+
+    static {
+        for (HttpStatus status : List.of(HttpStatus.BAD_REQUEST, HttpStatus.NOT_FOUND,
+                                         HttpStatus.METHOD_NOT_ALLOWED, HttpStatus.REQUEST_ENTITY_TOO_LARGE,
+                                         HttpStatus.INTERNAL_SERVER_ERROR, HttpStatus.SERVICE_UNAVAILABLE)) {
+            final FullHttpResponse response = newCannedResponse(status);
+            cannedResponses.put(status.code(), response.replace(
+                    Unpooled.unreleasableBuffer(Unpooled.directBuffer().writeBytes(response.content()))));
+            response.release();
+        }
+    }
+
     private final ServerConfig serverConfig;
+    @Nullable
+    private final HttpResponseCompressor compressor;
+    @Nullable
+    private final TrafficCapture trafficCapture;
+    @Nullable
+    private final BlockingTaskDispatcher blockingTaskDispatcher;
+    @Nullable
+    private final String altSvc;
+
+    /**
+     * The responses which are ready but have to wait for the response of an earlier pipelined request,
+     * keyed by the sequence number of their request.
+     */
+    private final IntObjectMap<PendingResponse> pendingResponses = new IntObjectHashMap<>();
+    private boolean useHttp1Encoder;
+    @Nullable
+    private KeepAliveHandler keepAliveHandler;
+    @Nullable
+    private OutboundBackpressure backpressure;
+    /**
+     * The addresses of the client, resolved on the first request because the PROXY protocol header of
+     * the connection may be decoded after this handler is added.
+     */
+    @Nullable
+    private String[] clientIps;
+    private boolean secure;
+    private int reqSeq;
+    private int resSeq;
     private boolean isReading;
+    private boolean isClosing;
+    /**
+     * Whether the server is shutting down, so that the connection is closed after the response of the
+     * last request read.
+     */
+    private boolean isDraining;
 
-    public HttpServerHandler(ServerConfig serverConfig) {
+    /**
+     * Creates a new instance.
+     *
+     * @param compressor the compressor of the response contents, or {@code null} if the responses are
+     *                   not compressed
+     * @param trafficCapture the capture of the sampled exchanges, or {@code null} if the traffic is not
+     *                       captured
+     * @param blockingTaskDispatcher the dispatcher of the requests to the blocking services, or
+     *                               {@code null} if the server has no blocking service
+     * @param altSvc the value of the {@code alt-svc} header added to every response, or {@code null}
+     *               if no alternative service is advertised
+     */
+    HttpServerHandler(ServerConfig serverConfig, @Nullable HttpResponseCompressor compressor,
+                      @Nullable TrafficCapture trafficCapture,
+                      @Nullable BlockingTaskDispatcher blockingTaskDispatcher, @Nullable String altSvc) {
         this.serverConfig = requireNonNull(serverConfig, "config");
+        this.compressor = compressor;
+        this.trafficCapture = trafficCapture;
+        this.blockingTaskDispatcher = blockingTaskDispatcher;
+        this.altSvc = altSvc;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        useHttp1Encoder = ctx.pipeline().get(Http1ResponseEncoder.class) != null;
+        keepAliveHandler = ctx.pipeline().get(KeepAliveHandler.class);
+        backpressure = OutboundBackpressure.get(ctx.channel());
     }
 
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) {
         isReading = false;
+        // Flush the responses of all requests read in this round at once.
         ctx.flush();
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
         isReading = true; // Cleared in channelReadComplete()
-        writeResponse(ctx, "hello world");
+        try {
+            if (!(msg instanceof HttpRequest req) || isClosing) {
+                // Ignore the requests pipelined after the one that asked to close the connection.
+                if (msg instanceof DecodedHttpRequest decoded) {
+                    decoded.body().discardIfUnsubscribed();
+                }
+                return;
+            }
+
+            final boolean keepAlive = HttpUtil.isKeepAlive(req) &&
+                                      (keepAliveHandler == null || !keepAliveHandler.needsDisconnection());
+            if (!keepAlive) {
+                isClosing = true;
+            }
+            final int seq = reqSeq++;
+            if (keepAliveHandler != null) {
+                keepAliveHandler.updatePendingResponses(reqSeq - resSeq);
+            }
+            final boolean needsKeepAliveHeader = keepAlive && req.protocolVersion() == HttpVersion.HTTP_1_0;
+            if (clientIps == null) {
+                resolveClient(ctx.channel());
+            }
+            final long receivedNanos = System.nanoTime();
+            final boolean captured = trafficCapture != null && trafficCapture.sample(req);
+            final long startNanos = captured ? receivedNanos : -1;
+            if (blockingTaskDispatcher != null && req instanceof DecodedHttpRequest decoded &&
+                decoded.serviceConfig() != null && decoded.decoderResult().isSuccess() &&
+                blockingTaskDispatcher.handles(decoded.serviceConfig().service())) {
+                new DispatchedRequest(ctx, blockingTaskDispatcher, decoded, seq, keepAlive,
+                                      needsKeepAliveHeader, receivedNanos, startNanos).dispatch();
+                return;
+            }
+            final FullHttpResponse response = serve(ctx.alloc(), req, clientIps, secure, receivedNanos);
+            onResponse(ctx, req, seq, keepAlive, needsKeepAliveHeader, startNanos, response);
+        } finally {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    /**
+     * Captures, compresses and writes the response of the request with the specified sequence number.
+     *
+     * @param startNanos the time the request was read at, or {@code -1} if the exchange is not captured
+     */
+    private void onResponse(ChannelHandlerContext ctx, HttpRequest req, int seq, boolean keepAlive,
+                            boolean needsKeepAliveHeader, long startNanos, FullHttpResponse response) {
+        if (startNanos >= 0) {
+            assert trafficCapture != null;
+            trafficCapture.capture(ctx.channel(), clientIps, req, response, System.nanoTime() - startNanos);
+        }
+        if (compressor != null) {
+            compressor.compress(ctx, req, response);
+        }
+        final boolean isHead = io.netty.handler.codec.http.HttpMethod.HEAD.equals(req.method());
+        writeResponse(ctx, seq, new PendingResponse(response, keepAlive, needsKeepAliveHeader, isHead));
+    }
+
+    private void resolveClient(Channel ch) {
+        // An HTTP/2 stream or a QUIC stream belongs to the connection which is its parent.
+        final Channel connection = ch instanceof Http2StreamChannel || ch instanceof QuicStreamChannel ?
+                                   ch.parent() : ch;
+        final ProxiedConnection proxied = connection.attr(ProxiedConnection.KEY).get();
+        final String remoteIp = connection.remoteAddress() instanceof InetSocketAddress ?
+                                ((InetSocketAddress) connection.remoteAddress()).getHostString() : null;
+        if (proxied != null) {
+            final String sourceIp = proxied.sourceAddress().getHostString();
+            clientIps = remoteIp != null ? new String[] { sourceIp, remoteIp } : new String[] { sourceIp };
+            secure = proxied.isSsl();
+        } else {
+            clientIps = remoteIp != null ? new String[] { remoteIp } : new String[0];
+            secure = ch instanceof QuicStreamChannel;
+        }
+        secure |= connection.pipeline().get(SslHandler.class) != null;
+    }
+
+    private static FullHttpResponse serve(ByteBufAllocator alloc, HttpRequest req, String[] clientIps,
+                                          boolean secure, long receivedNanos) {
+        if (!(req instanceof DecodedHttpRequest decoded)) {
+            return newResponse(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        final HttpRequestBody body = decoded.body();
+        try {
+            final DecoderResult decoderResult = decoded.decoderResult();
+            if (decoderResult.isFailure()) {
+                return newResponse(decoderFailureStatus(decoderResult.cause()));
+            }
+
+            final ServiceConfig serviceConfig = decoded.serviceConfig();
+            if (serviceConfig == null) {
+                return newRoutingFailureResponse(decoded.routingResult());
+            }
+            final DefaultHttpRequest request = DefaultHttpRequest.of(
+                    decoded, body, clientIps, secure, serviceConfig.requestTimeoutMillis(), receivedNanos,
+                    serviceConfig.pathMapping());
+            try {
+                return toNettyResponse(alloc, serviceConfig.service().serve(request));
+            } finally {
+                // The response has been produced, so the service is done with the request.
+                request.release();
+            }
+        } finally {
+            body.discardIfUnsubscribed();
+        }
+    }
+
+    private static FullHttpResponse newRoutingFailureResponse(RoutingResult routingResult) {
+        final FullHttpResponse response = newResponse(routingResult.status());
+        if (routingResult.status() == HttpStatus.METHOD_NOT_ALLOWED) {
+            // The duplicate of a canned response has its own headers.
+            response.headers().set(HttpHeaderNames.ALLOW, routingResult.allowedMethods().stream()
+                                                                       .map(HttpMethod::name)
+                                                                       .collect(Collectors.joining(", ")));
+        }
+        return response;
+    }
+
+    private static HttpStatus decoderFailureStatus(Throwable cause) {
+        if (cause instanceof ContentTooLargeException) {
+            return HttpStatus.REQUEST_ENTITY_TOO_LARGE;
+        }
+        if (cause instanceof TooLongHttpLineException) {
+            return HttpStatus.REQUEST_URI_TOO_LONG;
+        }
+        if (cause instanceof TooLongHttpHeaderException) {
+            return HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE;
+        }
+        return HttpStatus.BAD_REQUEST;
+    }
+
+    private static FullHttpResponse toNettyResponse(ByteBufAllocator alloc, HttpResponse res) {
+        final String body = res.body();
+        final FullHttpResponse response = new DefaultFullHttpResponse(
+                HTTP_1_1, HttpResponseStatus.valueOf(res.status()),
+                body != null && !body.isEmpty() ? ByteBufUtil.writeUtf8(alloc, body) : Unpooled.EMPTY_BUFFER);
+        final String type = res.type();
+        if (type != null) {
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, type);
+        }
+        return response;
+    }
+
+    private static FullHttpResponse newResponse(HttpStatus status) {
+        final FullHttpResponse canned = cannedResponses.get(status.code());
+        if (canned != null) {
+            return canned.retainedDuplicate();
+        }
+        return newCannedResponse(status);
     }
 
-    private void writeResponse(ChannelHandlerContext ctx, String resp) {
+    private static FullHttpResponse newCannedResponse(HttpStatus status) {
         final FullHttpResponse response = new DefaultFullHttpResponse(
-                HTTP_1_1, OK, Unpooled.copiedBuffer(resp, CharsetUtil.UTF_8));
-        ctx.write(response).addListener(ChannelFutureListener.CLOSE);
+                HTTP_1_1, HttpResponseStatus.valueOf(status.code()),
+                Unpooled.copiedBuffer(status.toString(), CharsetUtil.UTF_8));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, MediaType.PLAIN_TEXT_UTF_8.toString());
+        return response;
+    }
+
+    /**
+     * Writes the response of the request with the specified sequence number, or defers it until the
+     * responses of all preceding requests have been written.
+     */
+    private void writeResponse(ChannelHandlerContext ctx, int seq, PendingResponse res) {
+        if (seq != resSeq) {
+            pendingResponses.put(seq, res);
+            return;
+        }
+
+        PendingResponse next = res;
+        do {
+            resSeq++;
+            if (!write(ctx, next)) {
+                break;
+            }
+            next = pendingResponses.remove(resSeq);
+        } while (next != null);
+        if (keepAliveHandler != null) {
+            keepAliveHandler.updatePendingResponses(reqSeq - resSeq);
+        }
+
         if (!isReading) {
             ctx.flush();
         }
     }
 
+    /**
+     * Writes the specified response.
+     *
+     * @return {@code false} if the connection will be closed after the response is written
+     */
+    private boolean write(ChannelHandlerContext ctx, PendingResponse res) {
+        // While draining, or once the connection has been asked to close by KeepAliveHandler, the response
+        // of the last request read closes the connection.
+        final boolean needsDisconnection =
+                isDraining || (keepAliveHandler != null && keepAliveHandler.needsDisconnection());
+        final boolean keepAlive = res.keepAlive && !(needsDisconnection && resSeq == reqSeq);
+        FullHttpResponse response = res.response;
+        final HttpHeaders headers = response.headers();
+        headers.setInt(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+        if (res.isHead) {
+            // The content-length of a HEAD response is the one of the GET response, but without content.
+            response = response.replace(Unpooled.EMPTY_BUFFER);
+            res.response.release();
+        }
+        if (altSvc != null) {
+            response.headers().set(HttpHeaderNames.ALT_SVC, altSvc);
+        }
+        if (keepAlive) {
+            if (res.needsKeepAliveHeader) {
+                response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+            }
+        } else {
+            response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+        }
+
+        final int contentLength = response.content().readableBytes();
+        final ChannelFuture future;
+        if (useHttp1Encoder) {
+            // No listener is needed for an empty keep-alive response, so save the allocation of a promise.
+            final ChannelPromise promise = keepAlive && (backpressure == null || contentLength == 0) ?
+                                           ctx.voidPromise() : ctx.newPromise();
+            Http1ResponseEncoder.write(ctx, response, promise);
+            future = promise;
+        } else {
+            response.headers().set(HttpHeaderNames.DATE, HttpDateHeader.current().value());
+            future = ctx.write(response);
+        }
+        if (backpressure != null) {
+            backpressure.add(future, contentLength);
+        }
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+        return keepAlive;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt != GracefulShutdown.DRAIN) {
+            super.userEventTriggered(ctx, evt);
+            return;
+        }
+        // Ignore the requests read from now on, which the client retries on another connection.
+        isClosing = true;
+        isDraining = true;
+        if (reqSeq == resSeq) {
+            // No request in flight.
+            ctx.close();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        pendingResponses.values().forEach(res -> ReferenceCountUtil.release(res.response));
+        pendingResponses.clear();
+        super.channelInactive(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         final ExceptionHandlerFunction function = serverConfig.exceptionServices().get(cause.getClass());
         ctx.close();
     }
+
+    /**
+     * A request served by a thread of the {@link BlockingTaskDispatcher}. Its response is written when
+     * the event loop of the channel runs the completion, or when the request times out, whichever
+     * comes first.
+     */
+    private final class DispatchedRequest implements Runnable {
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+        private static final int TIMED_OUT = 3;
+
+        private final ChannelHandlerContext ctx;
+        private final BlockingTaskDispatcher dispatcher;
+        private final DecodedHttpRequest req;
+        private final ServiceConfig serviceConfig;
+        private final int seq;
+        private final boolean keepAlive;
+        private final boolean needsKeepAliveHeader;
+        private final long receivedNanos;
+        private final long startNanos;
+        // Copied because the fields of the handler must be accessed only from the event loop.
+        private final String[] clientIps;
+        private final boolean secure;
+        @Nullable
+        private DeadlineWheel.Deadline deadline;
+        // Guarded by this.
+        private int state = PENDING;
+        @Nullable
+        private Thread runner;
+
+        DispatchedRequest(ChannelHandlerContext ctx, BlockingTaskDispatcher dispatcher,
+                          DecodedHttpRequest req, int seq, boolean keepAlive, boolean needsKeepAliveHeader,
+                          long receivedNanos, long startNanos) {
+            this.ctx = ctx;
+            this.dispatcher = dispatcher;
+            this.req = req;
+            serviceConfig = req.serviceConfig();
+            assert serviceConfig != null;
+            this.seq = seq;
+            this.keepAlive = keepAlive;
+            this.needsKeepAliveHeader = needsKeepAliveHeader;
+            this.receivedNanos = receivedNanos;
+            this.startNanos = startNanos;
+            clientIps = HttpServerHandler.this.clientIps;
+            secure = HttpServerHandler.this.secure;
+        }
+
+        /**
+         * Hands this request off to the dispatcher and starts tracking its deadline. Invoked from the
+         * event loop.
+         */
+        void dispatch() {
+            final long timeoutMillis = serviceConfig.requestTimeoutMillis();
+            if (timeoutMillis > 0) {
+                final long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis) -
+                                            (System.nanoTime() - receivedNanos);
+                deadline = DeadlineWheel.get(ctx.executor()).add(remainingNanos, this::onTimeout);
+            }
+            if (!dispatcher.dispatch(serviceConfig, this)) {
+                if (deadline != null) {
+                    deadline.cancel();
+                }
+                req.body().discardIfUnsubscribed();
+                onResponse(ctx, req, seq, keepAlive, needsKeepAliveHeader, startNanos,
+                           newResponse(HttpStatus.SERVICE_UNAVAILABLE));
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (state != PENDING) {
+                    // Timed out while waiting for a thread.
+                    return;
+                }
+                state = RUNNING;
+                runner = Thread.currentThread();
+            }
+
+            FullHttpResponse response;
+            try {
+                // The pooled allocator would set up a cache of its own for every short-lived thread.
+                response = serve(BLOCKING_ALLOCATOR, req, clientIps, secure, receivedNanos);
+            } catch (Throwable cause) {
+                // The completion must run whatever happens, or the later pipelined responses never leave.
+                logger.warn("Unexpected exception from a blocking service:", cause);
+                response = newResponse(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+
+            synchronized (this) {
+                runner = null;
+                if (state == TIMED_OUT) {
+                    // Do not let the interruption leak into the next task of this thread.
+                    Thread.interrupted();
+                    response.release();
+                    return;
+                }
+                state = DONE;
+            }
+            final FullHttpResponse res = response;
+            dispatcher.complete(ctx.executor(), () -> onComplete(res));
+        }
+
+        private void onComplete(FullHttpResponse response) {
+            if (deadline != null) {
+                deadline.cancel();
+            }
+            if (!ctx.channel().isActive()) {
+                response.release();
+                return;
+            }
+            onResponse(ctx, req, seq, keepAlive, needsKeepAliveHeader, startNanos, response);
+        }
+
+        private void onTimeout() {
+            synchronized (this) {
+                if (state == DONE) {
+                    // The completion is on its way.
+                    return;
+                }
+                if (state == RUNNING) {
+                    assert runner != null;
+                    runner.interrupt();
+                }
+                state = TIMED_OUT;
+            }
+            req.body().abort(new RequestTimeoutException(serviceConfig.requestTimeoutMillis()));
+            if (ctx.channel().isActive()) {
+                onResponse(ctx, req, seq, keepAlive, needsKeepAliveHeader, startNanos,
+                           newResponse(HttpStatus.SERVICE_UNAVAILABLE));
+            }
+        }
+    }
+
+    private static final class PendingResponse {
+        private final FullHttpResponse response;
+        private final boolean keepAlive;
+        private final boolean needsKeepAliveHeader;
+        private final boolean isHead;
+
+        PendingResponse(FullHttpResponse response, boolean keepAlive, boolean needsKeepAliveHeader,
+                        boolean isHead) {
+            this.response = response;
+            this.keepAlive = keepAlive;
+            this.needsKeepAliveHeader = needsKeepAliveHeader;
+            this.isHead = isHead;
+        }
+    }
 }
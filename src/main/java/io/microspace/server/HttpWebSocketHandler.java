@@ -103,16 +103,21 @@ final class HttpWebSocketHandler extends SimpleChannelInboundHandler<Object> {
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
         addChannel(getChannel(ctx));
+        ctx.fireChannelActive();
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
         removeChannel(getChannel(ctx));
+        // HttpServerHandler releases the responses still waiting for their turn.
+        ctx.fireChannelInactive();
     }
 
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) {
         ctx.flush();
+        // HttpServerHandler flushes the responses completed by other threads only after the read is complete.
+        ctx.fireChannelReadComplete();
     }
 
     @Override
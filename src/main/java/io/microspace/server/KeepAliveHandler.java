@@ -0,0 +1,328 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.DefaultHttp2PingFrame;
+import io.netty.handler.codec.http2.Http2PingFrame;
+
+/**
+ * Enforces {@link ServerConfig#idleTimeoutMillis()}, {@link ServerConfig#pingIntervalMillis()} and
+ * {@link ServerConfig#maxConnectionAgeMillis()} on a connection.
+ *
+ * <p>An HTTP/1 connection is placed after the HTTP/1 codec, and an HTTP/2 connection between the frame
+ * codec and the multiplex handler, so that the PING frames can be told apart from the other traffic.
+ * Only one check per limit is scheduled on the event loop at a time. The checks compare the time of
+ * the last activity instead of being rescheduled on every read and write.
+ *
+ * <p>A connection is closed gracefully: an HTTP/2 connection sends a {@code GOAWAY} frame and finishes
+ * its active streams, and an HTTP/1 connection which has a response to write is closed by
+ * {@link HttpServerHandler} after writing the last response with {@code connection: close}. An idle
+ * HTTP/1 connection is given one more idle timeout to write its responses, and is closed right away
+ * if the client stopped in the middle of a request.
+ *
+ * @author i1619kHz
+ */
+final class KeepAliveHandler extends ChannelDuplexHandler {
+    private static final Logger logger = LoggerFactory.getLogger(KeepAliveHandler.class);
+
+    /**
+     * The maximum percentage by which the age of a connection is shortened, so that the connections
+     * accepted at the same time, e.g. after a restart, are not closed at the same time.
+     */
+    private static final int MAX_CONNECTION_AGE_JITTER_PERCENT = 10;
+
+    private enum CloseReason {
+        IDLE("idle"),
+        PING_TIMEOUT("ping-timeout"),
+        MAX_CONNECTION_AGE("max-connection-age");
+
+        private final String tag;
+
+        CloseReason(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final boolean isHttp2;
+    private final long idleTimeoutNanos;
+    private final long pingIntervalNanos;
+    private final long maxConnectionAgeNanos;
+    private final long connectionStartNanos;
+
+    private long lastActivityNanos;
+    private long lastReadNanos;
+    private long pingPayload;
+    private boolean isPingInFlight;
+    private boolean isReadingRequest;
+    /**
+     * The number of the HTTP/1 requests read by {@link HttpServerHandler} whose responses have not been
+     * written yet, e.g. because a blocking service is serving them.
+     */
+    private int numPendingResponses;
+    /**
+     * The reason why the HTTP/1 connection is closed after the response of the last request read, which
+     * is counted once the connection is actually closed.
+     */
+    @Nullable
+    private CloseReason pendingCloseReason;
+
+    @Nullable
+    private ScheduledFuture<?> idleTimeoutFuture;
+    @Nullable
+    private ScheduledFuture<?> pingFuture;
+    @Nullable
+    private ScheduledFuture<?> maxConnectionAgeFuture;
+
+    /**
+     * Returns whether the specified {@link ServerConfig} has any limit enforced by this handler.
+     */
+    static boolean isEnabled(ServerConfig serverConfig) {
+        return serverConfig.idleTimeoutMillis() > 0 || serverConfig.pingIntervalMillis() > 0 ||
+               serverConfig.maxConnectionAgeMillis() > 0;
+    }
+
+    KeepAliveHandler(ServerConfig serverConfig, boolean isHttp2, long connectionStartNanos) {
+        requireNonNull(serverConfig, "serverConfig");
+        meterRegistry = serverConfig.meterRegistry();
+        this.isHttp2 = isHttp2;
+        idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(serverConfig.idleTimeoutMillis());
+        // HTTP/1 has no means of pinging the client.
+        pingIntervalNanos = isHttp2 ? TimeUnit.MILLISECONDS.toNanos(serverConfig.pingIntervalMillis()) : 0;
+        final long maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(serverConfig.maxConnectionAgeMillis());
+        maxConnectionAgeNanos = maxAgeNanos - ThreadLocalRandom.current().nextLong(
+                maxAgeNanos * MAX_CONNECTION_AGE_JITTER_PERCENT / 100 + 1);
+        this.connectionStartNanos = connectionStartNanos;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} when the connection was accepted, which is carried over when
+     * a connection switches from HTTP/1 to HTTP/2.
+     */
+    long connectionStartNanos() {
+        return connectionStartNanos;
+    }
+
+    /**
+     * Returns whether the HTTP/1 connection has to be closed after the response of the last request read.
+     */
+    boolean needsDisconnection() {
+        return pendingCloseReason != null;
+    }
+
+    /**
+     * Invoked by {@link HttpServerHandler} when it has read a request or written a response.
+     */
+    void updatePendingResponses(int numPendingResponses) {
+        this.numPendingResponses = numPendingResponses;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        if (ctx.channel().isActive()) {
+            start(ctx);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        start(ctx);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        stop();
+        if (pendingCloseReason != null) {
+            incrementClosedConnections(pendingCloseReason);
+            pendingCloseReason = null;
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        stop();
+    }
+
+    private void start(ChannelHandlerContext ctx) {
+        if (idleTimeoutFuture != null || pingFuture != null || maxConnectionAgeFuture != null) {
+            return;
+        }
+
+        lastActivityNanos = lastReadNanos = System.nanoTime();
+        if (idleTimeoutNanos > 0) {
+            idleTimeoutFuture = schedule(ctx, this::checkIdleTimeout, idleTimeoutNanos);
+        }
+        if (pingIntervalNanos > 0) {
+            pingFuture = schedule(ctx, this::checkPing, pingIntervalNanos);
+        }
+        if (maxConnectionAgeNanos > 0) {
+            final long remainingNanos = maxConnectionAgeNanos - (lastActivityNanos - connectionStartNanos);
+            maxConnectionAgeFuture = schedule(ctx, this::onMaxConnectionAge, remainingNanos);
+        }
+    }
+
+    private void stop() {
+        if (idleTimeoutFuture != null) {
+            idleTimeoutFuture.cancel(false);
+            idleTimeoutFuture = null;
+        }
+        if (pingFuture != null) {
+            pingFuture.cancel(false);
+            pingFuture = null;
+        }
+        if (maxConnectionAgeFuture != null) {
+            maxConnectionAgeFuture.cancel(false);
+            maxConnectionAgeFuture = null;
+        }
+    }
+
+    private static ScheduledFuture<?> schedule(ChannelHandlerContext ctx, Task task, long delayNanos) {
+        return ctx.executor().schedule(() -> task.run(ctx), Math.max(delayNanos, 0), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        final long currentNanos = System.nanoTime();
+        lastReadNanos = currentNanos;
+        if (msg instanceof Http2PingFrame) {
+            final Http2PingFrame ping = (Http2PingFrame) msg;
+            if (ping.ack() && ping.content() == pingPayload) {
+                isPingInFlight = false;
+            }
+        } else {
+            lastActivityNanos = currentNanos;
+            if (msg instanceof HttpRequest) {
+                isReadingRequest = true;
+            }
+            if (msg instanceof LastHttpContent) {
+                isReadingRequest = false;
+            }
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        lastActivityNanos = System.nanoTime();
+        super.write(ctx, msg, promise);
+    }
+
+    private void checkIdleTimeout(ChannelHandlerContext ctx) {
+        final long idleNanos = System.nanoTime() - lastActivityNanos;
+        if (idleNanos < idleTimeoutNanos) {
+            idleTimeoutFuture = schedule(ctx, this::checkIdleTimeout, idleTimeoutNanos - idleNanos);
+            return;
+        }
+        if (!isHttp2 && !isReadingRequest && numPendingResponses > 0 && pendingCloseReason == null) {
+            // Nothing has been written for a while because a service is still serving a request. It gets
+            // one more interval to write its response before the connection is closed anyway.
+            disconnectAfterResponse(CloseReason.IDLE);
+            idleTimeoutFuture = schedule(ctx, this::checkIdleTimeout, idleTimeoutNanos);
+            return;
+        }
+        // A client which stopped sending the request it started is not waited for.
+        idleTimeoutFuture = null;
+        close(ctx, CloseReason.IDLE);
+    }
+
+    private void checkPing(ChannelHandlerContext ctx) {
+        if (isPingInFlight) {
+            // The client did not acknowledge the previous PING within an interval.
+            pingFuture = null;
+            close(ctx, CloseReason.PING_TIMEOUT);
+            return;
+        }
+
+        final long silentNanos = System.nanoTime() - lastReadNanos;
+        if (silentNanos < pingIntervalNanos) {
+            pingFuture = schedule(ctx, this::checkPing, pingIntervalNanos - silentNanos);
+            return;
+        }
+
+        isPingInFlight = true;
+        pingPayload = ThreadLocalRandom.current().nextLong();
+        // Written from this context so that the PING does not count as an activity of the connection.
+        ctx.writeAndFlush(new DefaultHttp2PingFrame(pingPayload));
+        pingFuture = schedule(ctx, this::checkPing, pingIntervalNanos);
+    }
+
+    private void onMaxConnectionAge(ChannelHandlerContext ctx) {
+        maxConnectionAgeFuture = null;
+        if (!isHttp2 && (isReadingRequest || numPendingResponses > 0)) {
+            disconnectAfterResponse(CloseReason.MAX_CONNECTION_AGE);
+            return;
+        }
+        close(ctx, CloseReason.MAX_CONNECTION_AGE);
+    }
+
+    /**
+     * Lets {@link HttpServerHandler} close the HTTP/1 connection after the response of the last request
+     * read, which it writes with {@code connection: close}.
+     */
+    private void disconnectAfterResponse(CloseReason reason) {
+        if (pendingCloseReason == null) {
+            pendingCloseReason = reason;
+        }
+    }
+
+    private void close(ChannelHandlerContext ctx, CloseReason reason) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} Closing the connection: {}", ctx.channel(), reason.tag);
+        }
+        // Counted for the reason of this close only, even if a graceful one was pending.
+        pendingCloseReason = null;
+        incrementClosedConnections(reason);
+        stop();
+        // Closed from the tail of the pipeline, so that the HTTP/2 codec sends a GOAWAY frame first.
+        ctx.channel().close();
+    }
+
+    private void incrementClosedConnections(CloseReason reason) {
+        meterRegistry.counter("microspace.connections.closed", "reason", reason.tag).increment();
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run(ChannelHandlerContext ctx);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import javax.annotation.Nullable;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.util.AttributeKey;
+
+/**
+ * Accounts the bytes of the responses which have been handed to a connection but not written to its
+ * socket yet. The bytes are counted until the write completes, so the ones queued by the TLS engine
+ * or the HTTP/2 flow controller count as well as the ones in the outbound buffer of the connection.
+ *
+ * <p>Once the pending bytes exceed the high water mark, the connection stops reading, so that a slow
+ * client cannot make the server produce more responses, and an HTTP/1 connection becomes unwritable,
+ * so that the streaming producers which watch {@link Channel#isWritable()} pause. Both are reverted
+ * when the pending bytes drop to the low water mark.
+ *
+ * <p>All methods must be invoked from the event loop of the connection, which is also the event loop
+ * of its HTTP/2 streams.
+ *
+ * @author i1619kHz
+ */
+final class OutboundBackpressure {
+    static final AttributeKey<OutboundBackpressure> KEY =
+            AttributeKey.valueOf(OutboundBackpressure.class, "OUTBOUND_BACKPRESSURE");
+
+    /**
+     * The index of the user-defined writability flag of the outbound buffer, which is cleared while
+     * the pending bytes are above the high water mark.
+     */
+    private static final int WRITABILITY_INDEX = 1;
+
+    private final Channel connection;
+    private final long highWaterMark;
+    private final long lowWaterMark;
+    private long pendingBytes;
+    private boolean suspended;
+
+    OutboundBackpressure(Channel connection, long highWaterMark, long lowWaterMark) {
+        checkArgument(lowWaterMark <= highWaterMark, "lowWaterMark: %s (expected: <= highWaterMark: %s)",
+                      lowWaterMark, highWaterMark);
+        this.connection = requireNonNull(connection, "connection");
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+    }
+
+    /**
+     * Returns the {@link OutboundBackpressure} of the connection the specified {@link Channel} belongs
+     * to, or {@code null} if the writes of the connection are not accounted.
+     */
+    @Nullable
+    static OutboundBackpressure get(Channel ch) {
+        final Channel connection = ch instanceof Http2StreamChannel ? ch.parent() : ch;
+        return connection.attr(KEY).get();
+    }
+
+    /**
+     * Accounts the specified number of bytes until the specified write completes, whether it
+     * succeeds or not.
+     */
+    void add(ChannelFuture future, int bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        pendingBytes += bytes;
+        if (!suspended && pendingBytes > highWaterMark) {
+            suspended = true;
+            ReadSuppressingHandler.suspendReading(connection, ReadSuppressingHandler.PENDING_WRITES);
+            setWritable(false);
+        }
+        future.addListener(unused -> remove(bytes));
+    }
+
+    private void remove(int bytes) {
+        pendingBytes -= bytes;
+        if (suspended && pendingBytes <= lowWaterMark) {
+            suspended = false;
+            ReadSuppressingHandler.resumeReading(connection, ReadSuppressingHandler.PENDING_WRITES);
+            setWritable(true);
+        }
+    }
+
+    private void setWritable(boolean writable) {
+        if (connection.pipeline().get(Http2FrameCodec.class) != null) {
+            // The HTTP/2 flow controller stops writing to an unwritable connection, which would never
+            // let the pending bytes drop. The producers of the HTTP/2 streams watch the writability of
+            // their stream channels, which follows the flow control windows, instead.
+            return;
+        }
+        final ChannelOutboundBuffer buffer = connection.unsafe().outboundBuffer();
+        if (buffer != null) {
+            // Fires a channelWritabilityChanged event if the writability of the connection changes.
+            buffer.setUserDefinedWritability(WRITABILITY_INDEX, writable);
+        }
+    }
+}
@@ -23,12 +23,172 @@
  */
 package io.microspace.server;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
 /**
+ * A {@link PathMapping} whose path has path parameters, e.g. {@code "/users/{id}/orders/{orderId}"} or
+ * {@code "/users/:id/orders/:orderId"}. A path parameter takes a whole path segment and matches any
+ * non-empty segment.
+ *
  * @author i1619kHz
  */
-public class ParameterizedPathMapping implements PathMapping {
+public final class ParameterizedPathMapping implements PathMapping {
+    private final String pattern;
+    /**
+     * The path whose path parameters are replaced with {@code ':'}, e.g. {@code "/users/:/orders/:"}.
+     */
+    private final String skeleton;
+    private final Set<String> paramNames;
+    private final List<String> paths;
+
+    public ParameterizedPathMapping(String pathPattern) {
+        requireNonNull(pathPattern, "pathPattern");
+        checkArgument(!pathPattern.isEmpty() && pathPattern.charAt(0) == '/',
+                      "pathPattern: %s (expected: an absolute path starting with '/')", pathPattern);
+
+        final StringBuilder normalized = new StringBuilder(pathPattern.length());
+        final StringBuilder skeleton = new StringBuilder(pathPattern.length());
+        final Set<String> paramNames = new LinkedHashSet<>();
+        int start = 0;
+        while (start < pathPattern.length()) {
+            // Every segment starts with '/'.
+            int end = pathPattern.indexOf('/', start + 1);
+            if (end < 0) {
+                end = pathPattern.length();
+            }
+            final String segment = pathPattern.substring(start + 1, end);
+            final String paramName = paramName(segment);
+            if (paramName != null) {
+                checkArgument(!paramName.isEmpty(),
+                              "pathPattern: %s (empty path parameter name)", pathPattern);
+                checkArgument(paramNames.add(paramName),
+                              "pathPattern: %s (duplicate path parameter: %s)", pathPattern, paramName);
+                normalized.append("/:").append(paramName);
+                skeleton.append("/:");
+            } else {
+                normalized.append('/').append(segment);
+                skeleton.append('/').append(segment);
+            }
+            start = end;
+        }
+        checkArgument(!paramNames.isEmpty(), "pathPattern: %s (expected: path parameters)", pathPattern);
+
+        pattern = normalized.toString();
+        this.skeleton = skeleton.toString();
+        this.paramNames = ImmutableSet.copyOf(paramNames);
+        paths = ImmutableList.of(this.skeleton, this.skeleton);
+    }
+
+    /**
+     * Returns whether the specified {@code pathPattern} has a path parameter.
+     */
+    static boolean isParameterized(String pathPattern) {
+        int start = 0;
+        while (start < pathPattern.length()) {
+            int end = pathPattern.indexOf('/', start + 1);
+            if (end < 0) {
+                end = pathPattern.length();
+            }
+            if (paramName(pathPattern.substring(start + 1, end)) != null) {
+                return true;
+            }
+            start = end;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the name of the path parameter if the specified {@code segment} is either {@code ":name"} or
+     * {@code "{name}"}, or {@code null} if the segment is a literal.
+     */
+    @Nullable
+    private static String paramName(String segment) {
+        if (segment.startsWith(":")) {
+            return segment.substring(1);
+        }
+        if (segment.startsWith("{") && segment.endsWith("}") && segment.length() >= 2) {
+            return segment.substring(1, segment.length() - 1);
+        }
+        return null;
+    }
+
     @Override
     public String path() {
-        return null;
+        return pattern;
+    }
+
+    @Override
+    public RoutePathType pathType() {
+        return RoutePathType.PARAMETERIZED;
+    }
+
+    @Override
+    public List<String> paths() {
+        return paths;
+    }
+
+    @Override
+    public Set<String> paramNames() {
+        return paramNames;
+    }
+
+    @Override
+    public boolean matches(CharSequence path) {
+        return match(path, null);
+    }
+
+    @Override
+    public boolean capture(CharSequence path, int[] offsets) {
+        requireNonNull(offsets, "offsets");
+        checkArgument(offsets.length >= paramNames.size() * 2,
+                      "offsets.length: %s (expected: >= %s)", offsets.length, paramNames.size() * 2);
+        return match(path, offsets);
+    }
+
+    private boolean match(CharSequence path, @Nullable int[] offsets) {
+        final String skeleton = this.skeleton;
+        final int pathLength = path.length();
+        int pos = 0;
+        int offsetIndex = 0;
+        for (int i = 0; i < skeleton.length(); i++) {
+            final char c = skeleton.charAt(i);
+            if (c == ':' && skeleton.charAt(i - 1) == '/' &&
+                (i + 1 == skeleton.length() || skeleton.charAt(i + 1) == '/')) {
+                final int start = pos;
+                while (pos < pathLength && path.charAt(pos) != '/') {
+                    pos++;
+                }
+                if (pos == start) {
+                    return false;
+                }
+                if (offsets != null) {
+                    offsets[offsetIndex++] = start;
+                    offsets[offsetIndex++] = pos;
+                }
+            } else if (pos < pathLength && path.charAt(pos) == c) {
+                pos++;
+            } else {
+                return false;
+            }
+        }
+        return pos == pathLength;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                          .add("pattern", pattern)
+                          .toString();
     }
 }
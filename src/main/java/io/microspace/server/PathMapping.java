@@ -23,9 +23,51 @@
  */
 package io.microspace.server;
 
+import java.util.List;
+import java.util.Set;
+
 /**
+ * Matches the path of a request against the path pattern of a {@link Route}.
+ *
  * @author i1619kHz
  */
 public interface PathMapping {
+    /**
+     * Returns the path pattern of this mapping, including the path prefix of the {@link Route}.
+     *
+     * @see Route#patternString()
+     */
     String path();
+
+    /**
+     * Returns the type of the path pattern of this mapping.
+     */
+    RoutePathType pathType();
+
+    /**
+     * Returns the paths of this mapping.
+     *
+     * @see Route#paths()
+     */
+    List<String> paths();
+
+    /**
+     * Returns the names of the path parameters extracted by this mapping.
+     */
+    Set<String> paramNames();
+
+    /**
+     * Returns whether the specified decoded path matches this mapping.
+     */
+    boolean matches(CharSequence path);
+
+    /**
+     * Matches the specified decoded path, storing the boundaries of the path parameters into the specified
+     * {@code offsets} in the order of {@link #paramNames()}: the start offset (inclusive) and the end
+     * offset (exclusive) of each path parameter, or {@code -1} for both if it is absent. The
+     * {@code offsets} must have at least twice as many elements as {@link #paramNames()}.
+     *
+     * @return whether the path matches this mapping
+     */
+    boolean capture(CharSequence path, int[] offsets);
 }
@@ -23,13 +23,83 @@
  */
 package io.microspace.server;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
 /**
+ * A {@link PathMapping} which matches every path under a prefix, e.g. {@code "/foo/*"} which matches
+ * {@code "/foo/"} and {@code "/foo/bar/baz"}.
+ *
  * @author i1619kHz
  */
-public class PrefixPathMapping implements PathMapping {
+public final class PrefixPathMapping implements PathMapping {
+    private final String prefix;
+    private final String pattern;
+    private final List<String> paths;
+
+    /**
+     * Creates a new instance with the specified {@code prefix} which must end with {@code '/'}.
+     */
+    public PrefixPathMapping(String prefix) {
+        requireNonNull(prefix, "prefix");
+        checkArgument(!prefix.isEmpty() && prefix.charAt(0) == '/' &&
+                      prefix.charAt(prefix.length() - 1) == '/',
+                      "prefix: %s (expected: an absolute path which ends with '/')", prefix);
+        this.prefix = prefix;
+        pattern = prefix + '*';
+        paths = ImmutableList.of(prefix, pattern);
+    }
+
     @Override
     public String path() {
-        //parameterized
-        return null;
+        return pattern;
+    }
+
+    @Override
+    public RoutePathType pathType() {
+        return RoutePathType.PREFIX;
+    }
+
+    @Override
+    public List<String> paths() {
+        return paths;
+    }
+
+    @Override
+    public Set<String> paramNames() {
+        return ImmutableSet.of();
+    }
+
+    @Override
+    public boolean matches(CharSequence path) {
+        final int length = prefix.length();
+        if (path.length() < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (path.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean capture(CharSequence path, int[] offsets) {
+        return matches(path);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                          .add("prefix", prefix)
+                          .toString();
     }
 }
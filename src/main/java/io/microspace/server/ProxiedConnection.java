@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.net.InetSocketAddress;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+
+import io.netty.util.AttributeKey;
+
+/**
+ * The addresses and TLS properties of a client connection as reported by a load balancer or a reverse
+ * proxy via the <a href="https://www.haproxy.org/download/1.8/doc/proxy-protocol.txt">PROXY protocol</a>.
+ * Decoded once per connection and stored as an attribute of the connection.
+ *
+ * @author i1619kHz
+ */
+final class ProxiedConnection {
+    static final AttributeKey<ProxiedConnection> KEY =
+            AttributeKey.valueOf(ProxiedConnection.class, "PROXIED_CONNECTION");
+
+    private final InetSocketAddress sourceAddress;
+    private final InetSocketAddress destinationAddress;
+    private final boolean isSsl;
+    private final boolean isClientCertVerified;
+    @Nullable
+    private final String sslVersion;
+    @Nullable
+    private final String sslCipher;
+    @Nullable
+    private final String sslCommonName;
+
+    ProxiedConnection(InetSocketAddress sourceAddress, InetSocketAddress destinationAddress, boolean isSsl,
+                      boolean isClientCertVerified, @Nullable String sslVersion, @Nullable String sslCipher,
+                      @Nullable String sslCommonName) {
+        this.sourceAddress = requireNonNull(sourceAddress, "sourceAddress");
+        this.destinationAddress = requireNonNull(destinationAddress, "destinationAddress");
+        this.isSsl = isSsl;
+        this.isClientCertVerified = isClientCertVerified;
+        this.sslVersion = sslVersion;
+        this.sslCipher = sslCipher;
+        this.sslCommonName = sslCommonName;
+    }
+
+    /**
+     * Returns the address of the client which connected to the proxy.
+     */
+    InetSocketAddress sourceAddress() {
+        return sourceAddress;
+    }
+
+    /**
+     * Returns the address of the proxy the client connected to.
+     */
+    InetSocketAddress destinationAddress() {
+        return destinationAddress;
+    }
+
+    /**
+     * Returns whether the client connected to the proxy over TLS.
+     */
+    boolean isSsl() {
+        return isSsl;
+    }
+
+    /**
+     * Returns whether the client presented a certificate which the proxy verified.
+     */
+    boolean isClientCertVerified() {
+        return isClientCertVerified;
+    }
+
+    /**
+     * Returns the TLS version negotiated between the client and the proxy, e.g. {@code "TLSv1.3"}.
+     */
+    @Nullable
+    String sslVersion() {
+        return sslVersion;
+    }
+
+    /**
+     * Returns the cipher suite negotiated between the client and the proxy.
+     */
+    @Nullable
+    String sslCipher() {
+        return sslCipher;
+    }
+
+    /**
+     * Returns the common name of the client certificate.
+     */
+    @Nullable
+    String sslCommonName() {
+        return sslCommonName;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).omitNullValues()
+                          .add("sourceAddress", sourceAddress)
+                          .add("destinationAddress", destinationAddress)
+                          .add("isSsl", isSsl)
+                          .add("isClientCertVerified", isClientCertVerified)
+                          .add("sslVersion", sslVersion)
+                          .add("sslCipher", sslCipher)
+                          .add("sslCommonName", sslCommonName)
+                          .toString();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.ProtocolDetectionResult;
+import io.netty.handler.codec.haproxy.HAProxyCommand;
+import io.netty.handler.codec.haproxy.HAProxyMessage;
+import io.netty.handler.codec.haproxy.HAProxyMessageDecoder;
+import io.netty.handler.codec.haproxy.HAProxyProtocolVersion;
+import io.netty.handler.codec.haproxy.HAProxyProxiedProtocol;
+import io.netty.handler.codec.haproxy.HAProxySSLTLV;
+import io.netty.handler.codec.haproxy.HAProxyTLV;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Detects whether a connection accepted by a {@link SessionProtocol#PROXY} port starts with a PROXY
+ * protocol v1 or v2 header, and decodes it into a {@link ProxiedConnection}. The handlers remove
+ * themselves once the header has been decoded, so the requests of the connection pay nothing for it.
+ * A connection which does not start with the header is served as it is.
+ *
+ * @author i1619kHz
+ */
+final class ProxyProtocolHandler extends ByteToMessageDecoder {
+    private static final Logger logger = LoggerFactory.getLogger(ProxyProtocolHandler.class);
+
+    /**
+     * The type of the {@code PP2_SUBTYPE_SSL_CIPHER} TLV, which {@link HAProxyTLV.Type} does not know.
+     */
+    private static final byte PP2_SUBTYPE_SSL_CIPHER = 0x23;
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        final ProtocolDetectionResult<HAProxyProtocolVersion> result =
+                HAProxyMessageDecoder.detectProtocol(in);
+        switch (result.state()) {
+            case NEEDS_MORE_DATA:
+                return;
+            case DETECTED:
+                final ChannelPipeline pipeline = ctx.pipeline();
+                final HAProxyMessageDecoder decoder = new HAProxyMessageDecoder();
+                pipeline.addAfter(ctx.name(), null, decoder);
+                pipeline.addAfter(pipeline.context(decoder).name(), null, new HAProxyMessageHandler());
+                break;
+            case INVALID:
+            default:
+                break;
+        }
+        // The cumulated bytes are handed over to the next handler.
+        ctx.pipeline().remove(this);
+    }
+
+    private static final class HAProxyMessageHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (!(msg instanceof HAProxyMessage)) {
+                ctx.fireChannelRead(msg);
+                return;
+            }
+
+            final HAProxyMessage message = (HAProxyMessage) msg;
+            try {
+                final ProxiedConnection proxiedConnection = toProxiedConnection(message);
+                if (proxiedConnection != null) {
+                    ctx.channel().attr(ProxiedConnection.KEY).set(proxiedConnection);
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("{} Proxied connection: {}", ctx.channel(), proxiedConnection);
+                    }
+                }
+            } finally {
+                ReferenceCountUtil.release(message);
+                ctx.pipeline().remove(this);
+            }
+        }
+
+        /**
+         * Returns the {@link ProxiedConnection} of the specified message, or {@code null} if the message
+         * comes from the proxy itself, e.g. a health check, or does not carry the addresses.
+         */
+        @Nullable
+        private static ProxiedConnection toProxiedConnection(HAProxyMessage message) {
+            if (message.command() != HAProxyCommand.PROXY) {
+                return null;
+            }
+            final HAProxyProxiedProtocol.AddressFamily family = message.proxiedProtocol().addressFamily();
+            if (family != HAProxyProxiedProtocol.AddressFamily.AF_IPv4 &&
+                family != HAProxyProxiedProtocol.AddressFamily.AF_IPv6) {
+                return null;
+            }
+
+            final InetSocketAddress sourceAddress =
+                    InetSocketAddress.createUnresolved(message.sourceAddress(), message.sourcePort());
+            final InetSocketAddress destinationAddress = InetSocketAddress.createUnresolved(
+                    message.destinationAddress(), message.destinationPort());
+
+            for (HAProxyTLV tlv : message.tlvs()) {
+                if (tlv instanceof HAProxySSLTLV) {
+                    final HAProxySSLTLV sslTlv = (HAProxySSLTLV) tlv;
+                    String version = null;
+                    String cipher = null;
+                    String commonName = null;
+                    for (HAProxyTLV subTlv : sslTlv.encapsulatedTLVs()) {
+                        switch (subTlv.type()) {
+                            case PP2_TYPE_SSL_VERSION:
+                                version = contentAsString(subTlv);
+                                break;
+                            case PP2_TYPE_SSL_CN:
+                                commonName = contentAsString(subTlv);
+                                break;
+                            case OTHER:
+                                if (subTlv.typeByteValue() == PP2_SUBTYPE_SSL_CIPHER) {
+                                    cipher = contentAsString(subTlv);
+                                }
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                    final boolean hasClientCert =
+                            sslTlv.isPP2ClientCertConn() || sslTlv.isPP2ClientCertSess();
+                    return new ProxiedConnection(sourceAddress, destinationAddress, sslTlv.isPP2ClientSSL(),
+                                                 hasClientCert && sslTlv.verify() == 0,
+                                                 version, cipher, commonName);
+                }
+            }
+            return new ProxiedConnection(sourceAddress, destinationAddress, false, false, null, null, null);
+        }
+
+        private static String contentAsString(HAProxyTLV tlv) {
+            return tlv.content().toString(StandardCharsets.UTF_8);
+        }
+    }
+}
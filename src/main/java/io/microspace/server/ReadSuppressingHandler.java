@@ -23,11 +23,17 @@
  */
 package io.microspace.server;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
 
 /**
+ * Suppresses the explicit reads of a channel while its {@code autoRead} is off, so that the reading
+ * stays suspended until all the reasons to suspend it have been cleared.
+ *
  * @author i1619kHz
  */
 @Sharable
@@ -36,6 +42,53 @@ class ReadSuppressingHandler extends ChannelOutboundHandlerAdapter {
 
     public static final ReadSuppressingHandler INSTANCE = new ReadSuppressingHandler();
 
+    /**
+     * The reading is suspended because the subscriber of a request content has no demand.
+     */
+    static final int REQUEST_CONTENT = 1;
+
+    /**
+     * The reading is suspended because too many bytes of the responses are waiting to be written.
+     */
+    static final int PENDING_WRITES = 1 << 1;
+
+    private static final AttributeKey<Integer> SUSPENSION_REASONS =
+            AttributeKey.valueOf(ReadSuppressingHandler.class, "SUSPENSION_REASONS");
+
+    /**
+     * Suspends reading the specified {@link Channel} for the specified reason. Must be invoked from
+     * the event loop of the {@link Channel}.
+     */
+    static void suspendReading(Channel channel, int reason) {
+        final Attribute<Integer> attr = channel.attr(SUSPENSION_REASONS);
+        final Integer reasons = attr.get();
+        final int oldReasons = reasons != null ? reasons : 0;
+        if ((oldReasons & reason) != 0) {
+            return;
+        }
+        attr.set(oldReasons | reason);
+        if (oldReasons == 0) {
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    /**
+     * Clears the specified reason to suspend reading the specified {@link Channel}, and resumes reading
+     * if no other reason is left. Must be invoked from the event loop of the {@link Channel}.
+     */
+    static void resumeReading(Channel channel, int reason) {
+        final Attribute<Integer> attr = channel.attr(SUSPENSION_REASONS);
+        final Integer reasons = attr.get();
+        if (reasons == null || (reasons & reason) == 0) {
+            return;
+        }
+        final int newReasons = reasons & ~reason;
+        attr.set(newReasons);
+        if (newReasons == 0) {
+            channel.config().setAutoRead(true);
+        }
+    }
+
     @Override
     public final void read(ChannelHandlerContext ctx) throws Exception {
         if (ctx.channel().config().isAutoRead()) {
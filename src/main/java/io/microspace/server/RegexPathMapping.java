@@ -23,12 +23,146 @@
  */
 package io.microspace.server;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
 /**
+ * A {@link PathMapping} which matches a path with a regular expression, e.g. {@code "^/(?<foo>.*)$"},
+ * or a glob pattern, e.g. <code>"/*&#42;/foo"</code>. The named groups of the regular expression are
+ * the path parameters.
+ *
  * @author i1619kHz
  */
-public class RegexPathMapping implements PathMapping {
+public final class RegexPathMapping implements PathMapping {
+    private static final Pattern NAMED_GROUP_PATTERN = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
+
+    private final Pattern pattern;
+    @Nullable
+    private final String glob;
+    private final Set<String> paramNames;
+    private final List<String> paths;
+
+    private RegexPathMapping(Pattern pattern, @Nullable String glob) {
+        this.pattern = requireNonNull(pattern, "pattern");
+        this.glob = glob;
+        final Set<String> paramNames = new LinkedHashSet<>();
+        final Matcher matcher = NAMED_GROUP_PATTERN.matcher(pattern.pattern());
+        while (matcher.find()) {
+            paramNames.add(matcher.group(1));
+        }
+        this.paramNames = ImmutableSet.copyOf(paramNames);
+        paths = glob != null ? ImmutableList.of(pattern.pattern(), glob)
+                             : ImmutableList.of(pattern.pattern());
+    }
+
+    /**
+     * Returns a new {@link RegexPathMapping} which matches a path with the specified regular expression.
+     */
+    public static RegexPathMapping ofRegex(String regex) {
+        return new RegexPathMapping(Pattern.compile(requireNonNull(regex, "regex")), null);
+    }
+
+    /**
+     * Returns a new {@link RegexPathMapping} which matches a path with the specified glob pattern, where
+     * {@code "**"} matches any number of path segments, {@code "*"} matches any characters in a path
+     * segment and {@code "?"} matches a single character in a path segment.
+     */
+    public static RegexPathMapping ofGlob(String glob) {
+        requireNonNull(glob, "glob");
+        checkArgument(!glob.isEmpty(), "glob is empty.");
+        return new RegexPathMapping(Pattern.compile(globToRegex(glob)), glob);
+    }
+
+    private static String globToRegex(String glob) {
+        final StringBuilder regex = new StringBuilder(glob.length() + 16).append('^');
+        if (glob.charAt(0) != '/') {
+            // A relative glob pattern matches at any depth.
+            regex.append("(?:/.*)?/");
+        }
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 2 < glob.length() && glob.charAt(i + 1) == '*' && glob.charAt(i + 2) == '/') {
+                    // "**/" also matches no segment at all.
+                    regex.append("(?:.*/)?");
+                    i += 2;
+                } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^/]*");
+                }
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else if ("\\.[]{}()+-^$|".indexOf(c) >= 0) {
+                regex.append('\\').append(c);
+            } else {
+                regex.append(c);
+            }
+        }
+        return regex.append('$').toString();
+    }
+
     @Override
     public String path() {
-        return null;
+        return glob != null ? glob : pattern.pattern();
+    }
+
+    @Override
+    public RoutePathType pathType() {
+        return RoutePathType.REGEX;
+    }
+
+    @Override
+    public List<String> paths() {
+        return paths;
+    }
+
+    @Override
+    public Set<String> paramNames() {
+        return paramNames;
+    }
+
+    @Override
+    public boolean matches(CharSequence path) {
+        return pattern.matcher(path).find();
+    }
+
+    @Override
+    public boolean capture(CharSequence path, int[] offsets) {
+        requireNonNull(offsets, "offsets");
+        checkArgument(offsets.length >= paramNames.size() * 2,
+                      "offsets.length: %s (expected: >= %s)", offsets.length, paramNames.size() * 2);
+        final Matcher matcher = pattern.matcher(path);
+        if (!matcher.find()) {
+            return false;
+        }
+        int offsetIndex = 0;
+        for (String paramName : paramNames) {
+            // -1 if the group did not take part in the match.
+            offsets[offsetIndex++] = matcher.start(paramName);
+            offsets[offsetIndex++] = matcher.end(paramName);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).omitNullValues()
+                          .add("pattern", pattern)
+                          .add("glob", glob)
+                          .toString();
     }
 }
@@ -23,12 +23,102 @@
  */
 package io.microspace.server;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
 /**
+ * A {@link PathMapping} which matches the path under a prefix with a {@link RegexPathMapping}, e.g.
+ * the prefix {@code "/foo/"} and the regular expression {@code "^/(bar|baz)$"} match {@code "/foo/bar"}.
+ * The {@link RegexPathMapping} is given the rest of the path including the {@code '/'} which ends
+ * the prefix.
+ *
  * @author i1619kHz
  */
-public class RegexPrefixPathMapping implements PathMapping {
+public final class RegexPrefixPathMapping implements PathMapping {
+    private final String prefix;
+    private final RegexPathMapping mapping;
+    private final String pattern;
+    private final List<String> paths;
+
+    public RegexPrefixPathMapping(String prefix, RegexPathMapping mapping) {
+        requireNonNull(prefix, "prefix");
+        checkArgument(!prefix.isEmpty() && prefix.charAt(0) == '/' &&
+                      prefix.charAt(prefix.length() - 1) == '/',
+                      "prefix: %s (expected: an absolute path which ends with '/')", prefix);
+        this.prefix = prefix;
+        this.mapping = requireNonNull(mapping, "mapping");
+        final String path = mapping.path();
+        pattern = prefix + (path.startsWith("/") ? path.substring(1) : path);
+        paths = ImmutableList.of(mapping.paths().get(0), prefix);
+    }
+
     @Override
     public String path() {
-        return null;
+        return pattern;
+    }
+
+    @Override
+    public RoutePathType pathType() {
+        return RoutePathType.REGEX_WITH_PREFIX;
+    }
+
+    @Override
+    public List<String> paths() {
+        return paths;
+    }
+
+    @Override
+    public Set<String> paramNames() {
+        return mapping.paramNames();
+    }
+
+    @Override
+    public boolean matches(CharSequence path) {
+        return matchesPrefix(path) && mapping.matches(path.subSequence(prefix.length() - 1, path.length()));
+    }
+
+    @Override
+    public boolean capture(CharSequence path, int[] offsets) {
+        if (!matchesPrefix(path)) {
+            return false;
+        }
+        final int shift = prefix.length() - 1;
+        if (!mapping.capture(path.subSequence(shift, path.length()), offsets)) {
+            return false;
+        }
+        // Make the offsets relative to the whole path.
+        for (int i = 0; i < mapping.paramNames().size() * 2; i++) {
+            if (offsets[i] >= 0) {
+                offsets[i] += shift;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesPrefix(CharSequence path) {
+        final int length = prefix.length();
+        if (path.length() < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (path.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                          .add("prefix", prefix)
+                          .add("mapping", mapping)
+                          .toString();
     }
 }
@@ -25,6 +25,8 @@ package io.microspace.server;
 
 import java.net.URL;
 
+import javax.annotation.Nullable;
+
 /**
  * @author i1619kHz
  */
@@ -47,6 +49,22 @@ public interface Request {
 
     String path();
 
+    /**
+     * Returns the value of the specified path parameter, or {@code null} if the path of the route has
+     * no such parameter. The value is extracted from the path only when it is read.
+     */
+    @Nullable
+    String pathParam(String name);
+
+    /**
+     * Returns the value of the specified path parameter parsed as a {@code long}, or the specified
+     * {@code defaultValue} if the path of the route has no such parameter. The value is parsed directly
+     * from the path without creating a {@link String}.
+     *
+     * @throws NumberFormatException if the value is not a number
+     */
+    long pathParamAsLong(String name, long defaultValue);
+
     QueryParams query();
 
     String queryString();
@@ -67,6 +85,19 @@ public interface Request {
 
     boolean secure();
 
+    /**
+     * Returns the time left until this request times out, in milliseconds, which is {@code 0} once it
+     * has timed out, or {@link Long#MAX_VALUE} if it never times out. A service which cannot respond in
+     * time should fail fast rather than do the work whose response will be discarded.
+     */
+    long remainingTimeoutMillis();
+
+    /**
+     * Returns whether this request has timed out. The response of a request which timed out is
+     * discarded, and the thread serving it is interrupted if the service runs on a blocking thread.
+     */
+    boolean isTimedOut();
+
     String protocol();
 
     String ip();
@@ -0,0 +1,49 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+/**
+ * A {@link RuntimeException} raised when a request is not served within the {@code requestTimeout} of
+ * the service it is routed to. Signalled to the {@link org.reactivestreams.Subscriber} of the content
+ * of the request which timed out.
+ *
+ * @author i1619kHz
+ */
+public class RequestTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long timeoutMillis;
+
+    public RequestTimeoutException(long timeoutMillis) {
+        super("request timed out after " + timeoutMillis + " ms");
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Returns the timeout which was exceeded, in milliseconds.
+     */
+    public long timeoutMillis() {
+        return timeoutMillis;
+    }
+}
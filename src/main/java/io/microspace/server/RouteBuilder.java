@@ -40,25 +40,40 @@ import com.google.common.collect.ImmutableSet;
  * @author i1619kHz
  */
 public final class RouteBuilder {
+    private static final String REGEX_PREFIX = "regex:";
+    private static final String GLOB_PREFIX = "glob:";
+
     private final List<RoutePredicate<QueryParams>> paramPredicates = new ArrayList<>();
     private final List<RoutePredicate<HttpHeaders>> headerPredicates = new ArrayList<>();
+    private String pathPrefix = "/";
     private String pathPattern;
-    private PathMapping pathMapping;
     private HttpStatus statusCode;
     private Set<HttpMethod> methods = ImmutableSet.of();
     private Set<MediaType> consumes = ImmutableSet.of();
     private Set<MediaType> produces = ImmutableSet.of();
 
+    /**
+     * Sets the path of the {@link Route}, relative to the {@link #pathPrefix(String)}. An empty path
+     * matches the prefix itself. The path may be one of the following forms:
+     * <ul>
+     *   <li>an exact path, e.g. {@code "/foo"}</li>
+     *   <li>a prefix, e.g. {@code "/foo/*"}</li>
+     *   <li>a path with path parameters, e.g. {@code "/foo/{bar}"} or {@code "/foo/:bar"}</li>
+     *   <li>a regular expression, e.g. {@code "regex:^/(?<foo>.*)$"}</li>
+     *   <li>a glob pattern, e.g. <code>"glob:/*&#42;/foo"</code></li>
+     * </ul>
+     */
     public RouteBuilder pathPattern(String pathPattern) {
-        checkArgument(!Strings.isNullOrEmpty(pathPattern), "pathPrefix");
-        this.pathPattern = pathPattern;
-        pathPrefix(this.pathPattern);
+        this.pathPattern = requireNonNull(pathPattern, "pathPattern");
         return this;
     }
 
+    /**
+     * Sets the prefix which is prepended to the {@link #pathPattern(String)}. The default is {@code "/"}.
+     */
     public RouteBuilder pathPrefix(String pathPrefix) {
         checkArgument(!Strings.isNullOrEmpty(pathPrefix), "pathPrefix");
-        this.pathMapping = new ExactPathMapping();
+        this.pathPrefix = pathPrefix;
         return this;
     }
 
@@ -144,13 +159,51 @@ public final class RouteBuilder {
     }
 
     public Route build() {
-        checkState(pathMapping != null, "Must set a path before calling this.");
+        checkState(pathPattern != null, "Must set a path before calling this.");
         if ((!consumes.isEmpty() || !produces.isEmpty()) && methods.isEmpty()) {
             throw new IllegalStateException("Must set methods if consumes or produces is not empty." +
                                             " consumes: " + consumes + ", produces: " + produces);
         }
         final Set<HttpMethod> pathMethods = methods.isEmpty() ? HttpMethod.knownMethods() : methods;
-        return new DefaultRoute(pathPattern, pathMapping, pathMethods, consumes,
+        return new DefaultRoute(pathPrefix, pathMapping(), pathMethods, consumes,
                                 produces, paramPredicates, headerPredicates, statusCode);
     }
+
+    private PathMapping pathMapping() {
+        if (pathPattern.startsWith(REGEX_PREFIX) || pathPattern.startsWith(GLOB_PREFIX)) {
+            final RegexPathMapping mapping =
+                    pathPattern.startsWith(REGEX_PREFIX) ?
+                    RegexPathMapping.ofRegex(pathPattern.substring(REGEX_PREFIX.length())) :
+                    RegexPathMapping.ofGlob(pathPattern.substring(GLOB_PREFIX.length()));
+            if ("/".equals(pathPrefix)) {
+                return mapping;
+            }
+            return new RegexPrefixPathMapping(pathPrefix.endsWith("/") ? pathPrefix : pathPrefix + '/',
+                                              mapping);
+        }
+
+        final String path = concatPaths(pathPrefix, pathPattern);
+        if (path.endsWith("/*")) {
+            return new PrefixPathMapping(path.substring(0, path.length() - 1));
+        }
+        if (ParameterizedPathMapping.isParameterized(path)) {
+            return new ParameterizedPathMapping(path);
+        }
+        return new ExactPathMapping(path);
+    }
+
+    private static String concatPaths(String prefix, String path) {
+        if (path.isEmpty()) {
+            return prefix;
+        }
+        final boolean prefixEndsWithSlash = prefix.charAt(prefix.length() - 1) == '/';
+        final boolean pathStartsWithSlash = path.charAt(0) == '/';
+        if (prefixEndsWithSlash && pathStartsWithSlash) {
+            return prefix + path.substring(1);
+        }
+        if (!prefixEndsWithSlash && !pathStartsWithSlash) {
+            return prefix + '/' + path;
+        }
+        return prefix + path;
+    }
 }
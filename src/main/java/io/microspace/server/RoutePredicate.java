@@ -34,6 +34,8 @@ import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,10 +68,12 @@ public class RoutePredicate<T> implements Predicate<T> {
     private static final Pattern COMPARE_PATTERN = Pattern.compile("^\\s*([^\\s!><=]+)\\s*([><!]?=|>|<)(.*)$");
     private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s");
     private final CharSequence name;
+    private final Condition condition;
     private final Predicate<T> delegate;
 
-    RoutePredicate(CharSequence name, Predicate<T> delegate) {
+    RoutePredicate(CharSequence name, Condition condition, Predicate<T> delegate) {
         this.name = requireNonNull(name, "name");
+        this.condition = requireNonNull(condition, "condition");
         this.delegate = requireNonNull(delegate, "delegate");
     }
 
@@ -86,28 +90,37 @@ public class RoutePredicate<T> implements Predicate<T> {
     static RoutePredicate<HttpHeaders> ofHeaders(CharSequence headerName,
                                                  Predicate<? super String> valuePredicate) {
         final AsciiString name = HttpHeaderNames.of(headerName);
-        return new RoutePredicate<>(headerName, headers ->
-                headers.getAll(name).stream().anyMatch(valuePredicate));
+        return new RoutePredicate<>(headerName, Condition.matches(name.toString(), valuePredicate),
+                                    headers -> anyMatch(headers.getAll(name), valuePredicate));
     }
 
     @VisibleForTesting
     static RoutePredicate<HttpHeaders> ofHeaders(String headersPredicate) {
         requireNonNull(headersPredicate, "headersPredicate");
         return of(headersPredicate, HttpHeaderNames::of, name -> headers -> headers.contains(name),
-                  (name, value) -> headers -> headers.getAll(name).stream().anyMatch(value::equals));
+                  (name, value) -> headers -> headers.contains(name, value));
     }
 
     static RoutePredicate<QueryParams> ofParams(String paramName,
                                                 Predicate<? super String> valuePredicate) {
-        return new RoutePredicate<>(paramName, params ->
-                params.getAll(paramName).stream().anyMatch(valuePredicate));
+        return new RoutePredicate<>(paramName, Condition.matches(paramName, valuePredicate),
+                                    params -> anyMatch(params.getAll(paramName), valuePredicate));
     }
 
     @VisibleForTesting
     static RoutePredicate<QueryParams> ofParams(String paramsPredicate) {
         requireNonNull(paramsPredicate, "paramsPredicate");
         return of(paramsPredicate, Function.identity(), name -> params -> params.contains(name),
-                  (name, value) -> params -> params.getAll(name).stream().anyMatch(value::equals));
+                  (name, value) -> params -> params.contains(name, value));
+    }
+
+    private static boolean anyMatch(List<String> values, Predicate<? super String> valuePredicate) {
+        for (int i = 0; i < values.size(); i++) {
+            if (valuePredicate.test(values.get(i))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @VisibleForTesting
@@ -119,10 +132,12 @@ public class RoutePredicate<T> implements Predicate<T> {
         if (containMatcher.matches()) {
             final U name = nameConverter.apply(containMatcher.group(2));
             final Predicate<T> predicate = containsPredicateFactory.apply(name);
+            final Condition condition = Condition.contains(name.toString());
             if ("!".equals(containMatcher.group(1))) {
-                return new RoutePredicate<>("not_" + containMatcher.group(2), predicate.negate());
+                return new RoutePredicate<>("not_" + containMatcher.group(2), condition.negate(),
+                                            predicate.negate());
             } else {
-                return new RoutePredicate<>(predicateExpr, predicate);
+                return new RoutePredicate<>(predicateExpr, condition, predicate);
             }
         }
 
@@ -136,13 +151,15 @@ public class RoutePredicate<T> implements Predicate<T> {
         final String comparator = compareMatcher.group(2);
         final String value = compareMatcher.group(3);
 
-        final Predicate<T> predicate = equalsPredicateFactory.apply(nameConverter.apply(name), value);
+        final U convertedName = nameConverter.apply(name);
+        final Predicate<T> predicate = equalsPredicateFactory.apply(convertedName, value);
+        final Condition condition = Condition.equals(convertedName.toString(), value);
         final String noWsValue = WHITESPACE_PATTERN.matcher(value).replaceAll("_");
         if ("=".equals(comparator)) {
-            return new RoutePredicate<>(name + "_eq_" + noWsValue, predicate);
+            return new RoutePredicate<>(name + "_eq_" + noWsValue, condition, predicate);
         } else {
             assert "!=".equals(comparator);
-            return new RoutePredicate<>(name + "_ne_" + noWsValue, predicate.negate());
+            return new RoutePredicate<>(name + "_ne_" + noWsValue, condition.negate(), predicate.negate());
         }
     }
 
@@ -150,6 +167,14 @@ public class RoutePredicate<T> implements Predicate<T> {
         return name;
     }
 
+    /**
+     * Returns the {@link Condition} which this predicate tests, which is compiled with the conditions of
+     * the other {@link Route}s by {@link CompiledRoutePredicates}.
+     */
+    Condition condition() {
+        return condition;
+    }
+
     /**
      * Tests the specified {@code t} object.
      *
@@ -195,4 +220,84 @@ public class RoutePredicate<T> implements Predicate<T> {
                           .add("delegate", delegate)
                           .toString();
     }
+
+    /**
+     * What a {@link RoutePredicate} tests about the values of a header or a param: whether there's
+     * a value, whether a value equals to the specified one, or whether a value matches the specified
+     * {@link Predicate}, which is optionally negated.
+     */
+    static final class Condition {
+        private final String name;
+        @Nullable
+        private final String value;
+        @Nullable
+        private final Predicate<? super String> valuePredicate;
+        private final boolean negated;
+
+        private Condition(String name, @Nullable String value,
+                          @Nullable Predicate<? super String> valuePredicate, boolean negated) {
+            this.name = name;
+            this.value = value;
+            this.valuePredicate = valuePredicate;
+            this.negated = negated;
+        }
+
+        static Condition contains(String name) {
+            return new Condition(name, null, null, false);
+        }
+
+        static Condition equals(String name, String value) {
+            return new Condition(name, requireNonNull(value, "value"), null, false);
+        }
+
+        static Condition matches(String name, Predicate<? super String> valuePredicate) {
+            return new Condition(name, null, requireNonNull(valuePredicate, "valuePredicate"), false);
+        }
+
+        Condition negate() {
+            return new Condition(name, value, valuePredicate, !negated);
+        }
+
+        /**
+         * Returns the name of the header or the param, which is lower-cased if it is a header.
+         */
+        String name() {
+            return name;
+        }
+
+        /**
+         * Returns the value which a value must be equal to, or {@code null} if this condition does not
+         * compare the values.
+         */
+        @Nullable
+        String value() {
+            return value;
+        }
+
+        /**
+         * Returns the {@link Predicate} which a value must match, or {@code null} if this condition
+         * does not test the values with a {@link Predicate}.
+         */
+        @Nullable
+        Predicate<? super String> valuePredicate() {
+            return valuePredicate;
+        }
+
+        /**
+         * Returns whether this condition is satisfied when no value satisfies it.
+         */
+        boolean isNegated() {
+            return negated;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).omitNullValues()
+                              .add("name", name)
+                              .add("value", value)
+                              .add("valuePredicate", valuePredicate)
+                              .add("negated", negated)
+                              .toString();
+        }
+    }
 }
@@ -23,15 +23,223 @@
  */
 package io.microspace.server;
 
+import static java.util.Objects.requireNonNull;
+
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+import javax.annotation.Nullable;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.ImmutableList;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.microspace.server.CompiledRoutePredicates.Evaluation;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.QueryStringDecoder;
+
 /**
+ * Routes a request to the {@link ServiceConfig} whose {@link Route} matches its path and method.
+ *
+ * <p>The {@link Route}s which have a {@linkplain RoutePathType#hasTriePath() trie path} are looked up
+ * from a {@link RoutingTrie}, so that the cost of routing does not grow with the number of the routes.
+ * The {@link RoutePathType#REGEX} and {@link RoutePathType#REGEX_WITH_PREFIX} routes are tried in the
+ * order they were added only if no route in the trie matches.
+ *
+ * <p>The param and header predicates of the {@link Route}s are compiled into
+ * {@link CompiledRoutePredicates}, so that a header or a param is looked up at most once per request
+ * while the {@link Route}s of a path are tried. Among the {@link Route}s of the same trie path, the ones
+ * with more predicates are tried first, and the first {@link Route} whose predicates all match wins.
+ *
+ * <p>The results are cached by the method and the path of requests if
+ * {@link ServerConfig#routeCacheSize()} is greater than {@code 0}, so that the requests to the same
+ * resource, or to the paths which no service serves, are routed with a single lookup. A result is not
+ * cached if a predicate was evaluated to get it, because it depends on the headers or the params.
+ *
  * @author i1619kHz
  */
 class Routers {
+    private static final BiPredicate<RouteEntry, Evaluation> ROUTE_FILTER =
+            (entry, evaluation) -> entry.result.allowedMethods().contains(evaluation.method()) &&
+                                   evaluation.test(entry.predicates);
+
+    private final RoutingTrie<RouteEntry> trie;
+    private final List<FallbackRoute> fallbackRoutes;
+    private final CompiledRoutePredicates predicates;
+    @Nullable
+    private final Cache<CacheKey, RoutingResult> cache;
+
+    private Routers(List<ServiceConfig> serviceConfigs, int cacheSize, MeterRegistry meterRegistry) {
+        requireNonNull(serviceConfigs, "serviceConfigs");
+        // Try the routes of a path with more predicates first, so that a route without any predicates does
+        // not hide the routes of the same path which select requests by their headers or params.
+        final RoutingTrie.Builder<RouteEntry> trieBuilder =
+                RoutingTrie.<RouteEntry>builder()
+                           .valueOrder(Comparator.comparingInt(RouteEntry::numPredicates).reversed());
+        final ImmutableList.Builder<FallbackRoute> fallbackRoutes = ImmutableList.builder();
+        final CompiledRoutePredicates.Builder predicatesBuilder = CompiledRoutePredicates.builder();
+        for (ServiceConfig serviceConfig : serviceConfigs) {
+            final Route route = serviceConfig.route();
+            final RouteEntry entry = new RouteEntry(
+                    RoutingResult.of(serviceConfig),
+                    route instanceof DefaultRoute defaultRoute ? predicatesBuilder.add(defaultRoute)
+                                                               : new int[0]);
+            if (route.pathType().hasTriePath()) {
+                trieBuilder.add(route.paths().get(1), entry);
+            } else {
+                fallbackRoutes.add(new FallbackRoute(route, entry));
+            }
+        }
+        trie = trieBuilder.build();
+        this.fallbackRoutes = fallbackRoutes.build();
+        predicates = predicatesBuilder.build();
+
+        if (cacheSize > 0) {
+            cache = Caffeine.newBuilder()
+                            .maximumSize(cacheSize)
+                            .recordStats()
+                            .build();
+            // Exports the hits, the misses and the evictions of the cache.
+            CaffeineCacheMetrics.monitor(requireNonNull(meterRegistry, "meterRegistry"), cache,
+                                         "microspace.route.cache");
+        } else {
+            cache = null;
+        }
+    }
+
     public static Routers ofServer(ServerConfig serverConfig) {
-        return new Routers();
+        return new Routers(serverConfig.serviceConfigs(), serverConfig.routeCacheSize(),
+                           serverConfig.meterRegistry());
+    }
+
+    /**
+     * Returns the {@link ServiceConfig} whose {@link Route} matches the specified path and method,
+     * or {@code null} if there's no such service. The request is assumed to have no headers and params.
+     */
+    @Nullable
+    public ServiceConfig findServiceConfig(String path, HttpMethod method) {
+        return find(path, method, EmptyHttpHeaders.INSTANCE, null).serviceConfig();
     }
 
-    public ServiceConfig findServiceConfig(String pathPrefix) {
-        return (ServiceConfig) new Object();
+    /**
+     * Routes a request of the specified decoded path, method, headers and query. The {@code method} is
+     * {@code null} if it is not one of the known {@link HttpMethod}s, which results in
+     * {@link HttpStatus#METHOD_NOT_ALLOWED} if the path matches.
+     *
+     * @param queryDecoder the decoder of the query of the request, whose params are decoded only if
+     *                     a param predicate is evaluated, or {@code null} if the request has no params
+     */
+    RoutingResult find(CharSequence path, @Nullable HttpMethod method,
+                       io.netty.handler.codec.http.HttpHeaders headers,
+                       @Nullable QueryStringDecoder queryDecoder) {
+        requireNonNull(path, "path");
+        final Cache<CacheKey, RoutingResult> cache = this.cache;
+        if (cache == null || method == null) {
+            return find0(path, predicates.evaluation(method, headers, queryDecoder));
+        }
+
+        final CacheKey key = new CacheKey(method, path.toString());
+        RoutingResult result = cache.getIfPresent(key);
+        if (result == null) {
+            final Evaluation evaluation = predicates.evaluation(method, headers, queryDecoder);
+            result = find0(path, evaluation);
+            if (!evaluation.hasEvaluated()) {
+                cache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    private RoutingResult find0(CharSequence path, Evaluation evaluation) {
+        final HttpMethod method = evaluation.method();
+        if (method != null) {
+            final RouteEntry entry = trie.find(path, ROUTE_FILTER, evaluation);
+            if (entry != null) {
+                return entry.result;
+            }
+            for (FallbackRoute route : fallbackRoutes) {
+                if (route.entry.result.allowedMethods().contains(method) && route.mapping.matches(path) &&
+                    evaluation.test(route.entry.predicates)) {
+                    return route.entry.result;
+                }
+            }
+        }
+
+        // Find out whether the path matches a route with another method, which is rare.
+        final Set<HttpMethod> allowedMethods = EnumSet.noneOf(HttpMethod.class);
+        trie.findAll(path, entry -> allowedMethods.addAll(entry.result.allowedMethods()));
+        for (FallbackRoute route : fallbackRoutes) {
+            if (route.mapping.matches(path)) {
+                allowedMethods.addAll(route.entry.result.allowedMethods());
+            }
+        }
+        if (allowedMethods.isEmpty() || (method != null && allowedMethods.contains(method))) {
+            // No route matches the path, or the predicates of the routes with the method do not match.
+            return RoutingResult.notFound();
+        }
+        return RoutingResult.methodNotAllowed(allowedMethods);
+    }
+
+    private static final class CacheKey {
+        private final HttpMethod method;
+        private final String path;
+
+        CacheKey(HttpMethod method, String path) {
+            this.method = method;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey that)) {
+                return false;
+            }
+            return method == that.method && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return method.hashCode() * 31 + path.hashCode();
+        }
+    }
+
+    private static final class RouteEntry {
+        private final RoutingResult result;
+        /**
+         * The predicates of the {@link Route} compiled by {@link CompiledRoutePredicates.Builder}.
+         */
+        private final int[] predicates;
+
+        RouteEntry(RoutingResult result, int[] predicates) {
+            this.result = result;
+            this.predicates = predicates;
+        }
+
+        int numPredicates() {
+            return predicates.length;
+        }
+    }
+
+    private static final class FallbackRoute {
+        private final PathMapping mapping;
+        private final RouteEntry entry;
+
+        FallbackRoute(Route route, RouteEntry entry) {
+            final RegexPathMapping regex = RegexPathMapping.ofRegex(route.paths().get(0));
+            if (route.pathType() == RoutePathType.REGEX) {
+                mapping = regex;
+            } else {
+                mapping = new RegexPrefixPathMapping(route.paths().get(1), regex);
+            }
+            this.entry = entry;
+        }
     }
 }
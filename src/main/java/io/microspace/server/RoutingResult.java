@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+/**
+ * The result of routing a request with {@link Routers}, which is either the {@link ServiceConfig} of
+ * the matching service, {@link HttpStatus#NOT_FOUND} if no {@link Route} matches the path, or
+ * {@link HttpStatus#METHOD_NOT_ALLOWED} if the path matches but the method does not.
+ *
+ * @author i1619kHz
+ */
+final class RoutingResult {
+    private static final RoutingResult NOT_FOUND =
+            new RoutingResult(null, HttpStatus.NOT_FOUND, ImmutableSet.of());
+
+    @Nullable
+    private final ServiceConfig serviceConfig;
+    private final HttpStatus status;
+    private final Set<HttpMethod> allowedMethods;
+
+    private RoutingResult(@Nullable ServiceConfig serviceConfig, HttpStatus status,
+                          Set<HttpMethod> allowedMethods) {
+        this.serviceConfig = serviceConfig;
+        this.status = status;
+        this.allowedMethods = allowedMethods;
+    }
+
+    /**
+     * Returns the {@link RoutingResult} of a request which is routed to the specified
+     * {@link ServiceConfig}.
+     */
+    static RoutingResult of(ServiceConfig serviceConfig) {
+        requireNonNull(serviceConfig, "serviceConfig");
+        return new RoutingResult(serviceConfig, HttpStatus.OK, serviceConfig.route().methods());
+    }
+
+    /**
+     * Returns the {@link RoutingResult} of a request whose path matches no {@link Route}.
+     */
+    static RoutingResult notFound() {
+        return NOT_FOUND;
+    }
+
+    /**
+     * Returns the {@link RoutingResult} of a request whose path matches only the {@link Route}s of
+     * the specified {@link HttpMethod}s.
+     */
+    static RoutingResult methodNotAllowed(Set<HttpMethod> allowedMethods) {
+        return new RoutingResult(null, HttpStatus.METHOD_NOT_ALLOWED,
+                                 Sets.immutableEnumSet(requireNonNull(allowedMethods, "allowedMethods")));
+    }
+
+    /**
+     * Returns whether the request has been routed to a service.
+     */
+    boolean isPresent() {
+        return serviceConfig != null;
+    }
+
+    /**
+     * Returns the {@link ServiceConfig} of the service which serves the request, or {@code null} if
+     * the request could not be routed.
+     */
+    @Nullable
+    ServiceConfig serviceConfig() {
+        return serviceConfig;
+    }
+
+    /**
+     * Returns {@link HttpStatus#OK} if the request has been routed, or the status of the response which
+     * tells why it could not be routed.
+     */
+    HttpStatus status() {
+        return status;
+    }
+
+    /**
+     * Returns the {@link HttpMethod}s of the {@link Route}s which match the path of the request.
+     */
+    Set<HttpMethod> allowedMethods() {
+        return allowedMethods;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).omitNullValues()
+                          .add("status", status)
+                          .add("serviceConfig", serviceConfig)
+                          .toString();
+    }
+}
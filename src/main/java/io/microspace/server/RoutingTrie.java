@@ -0,0 +1,356 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A radix trie which maps the {@linkplain Route#paths() trie paths} of {@link Route}s to values. The trie
+ * paths of {@link RoutePathType#EXACT}, {@link RoutePathType#PREFIX} and
+ * {@link RoutePathType#PARAMETERIZED} routes are supported, e.g. {@code "/foo"}, {@code "/foo/*"} and
+ * {@code "/foo/:/bar"}.
+ *
+ * <p>A path is matched character by character without splitting it, so the cost of a lookup depends on
+ * the length of the path rather than the number of the paths in the trie. When more than one path matches,
+ * a literal character wins over a path parameter, which wins over a prefix.
+ *
+ * @author i1619kHz
+ */
+final class RoutingTrie<V> {
+    private final Node<V> root;
+
+    private RoutingTrie(Node<V> root) {
+        this.root = root;
+    }
+
+    static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Returns the first value of the paths matching the specified {@code path}, which is accepted by
+     * the specified {@code filter}, or {@code null} if there's no such value.
+     */
+    @Nullable
+    <T> V find(CharSequence path, BiPredicate<? super V, ? super T> filter, T filterArg) {
+        requireNonNull(path, "path");
+        return find(root, path, 0, filter, filterArg);
+    }
+
+    /**
+     * Passes the values of all paths matching the specified {@code path} to the specified {@code consumer}.
+     */
+    void findAll(CharSequence path, Consumer<? super V> consumer) {
+        requireNonNull(path, "path");
+        requireNonNull(consumer, "consumer");
+        find(root, path, 0, (value, unused) -> {
+            consumer.accept(value);
+            return false;
+        }, null);
+    }
+
+    @Nullable
+    private static <V, T> V find(Node<V> node, CharSequence path, int begin,
+                                 BiPredicate<? super V, ? super T> filter, @Nullable T filterArg) {
+        final int next;
+        switch (node.type) {
+            case EXACT:
+                final String label = node.label;
+                if (path.length() - begin < label.length()) {
+                    return null;
+                }
+                for (int i = 0; i < label.length(); i++) {
+                    if (path.charAt(begin + i) != label.charAt(i)) {
+                        return null;
+                    }
+                }
+                next = begin + label.length();
+                break;
+            case PARAMETER:
+                int end = begin;
+                while (end < path.length() && path.charAt(end) != '/') {
+                    end++;
+                }
+                if (end == begin) {
+                    // A path parameter does not match an empty segment.
+                    return null;
+                }
+                next = end;
+                break;
+            case CATCH_ALL:
+                return accept(node.values, filter, filterArg);
+            default:
+                throw new IllegalStateException("unknown node type: " + node.type);
+        }
+
+        if (next == path.length()) {
+            final V value = accept(node.values, filter, filterArg);
+            if (value != null) {
+                return value;
+            }
+        } else {
+            final Node<V> child = node.exactChild(path.charAt(next));
+            if (child != null) {
+                final V value = find(child, path, next, filter, filterArg);
+                if (value != null) {
+                    return value;
+                }
+            }
+            if (node.parameterChild != null) {
+                final V value = find(node.parameterChild, path, next, filter, filterArg);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return node.catchAllChild != null ? accept(node.catchAllChild.values, filter, filterArg) : null;
+    }
+
+    @Nullable
+    private static <V, T> V accept(List<V> values, BiPredicate<? super V, ? super T> filter,
+                                   @Nullable T filterArg) {
+        // Not using an iterator to avoid the allocation on the hot path.
+        for (int i = 0; i < values.size(); i++) {
+            final V value = values.get(i);
+            if (filter.test(value, filterArg)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private enum NodeType {
+        EXACT, PARAMETER, CATCH_ALL
+    }
+
+    private static final class Node<V> {
+        private final NodeType type;
+        private final String label;
+        private final List<V> values;
+        /**
+         * The first characters of the labels of {@link #exactChildren}, sorted in ascending order.
+         */
+        private final char[] exactChildChars;
+        private final Node<V>[] exactChildren;
+        @Nullable
+        private final Node<V> parameterChild;
+        @Nullable
+        private final Node<V> catchAllChild;
+
+        Node(NodeType type, String label, List<V> values, char[] exactChildChars, Node<V>[] exactChildren,
+             @Nullable Node<V> parameterChild, @Nullable Node<V> catchAllChild) {
+            this.type = type;
+            this.label = label;
+            this.values = values;
+            this.exactChildChars = exactChildChars;
+            this.exactChildren = exactChildren;
+            this.parameterChild = parameterChild;
+            this.catchAllChild = catchAllChild;
+        }
+
+        @Nullable
+        Node<V> exactChild(char c) {
+            final char[] chars = exactChildChars;
+            int low = 0;
+            int high = chars.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final char midChar = chars[mid];
+                if (midChar < c) {
+                    low = mid + 1;
+                } else if (midChar > c) {
+                    high = mid - 1;
+                } else {
+                    return exactChildren[mid];
+                }
+            }
+            return null;
+        }
+    }
+
+    static final class Builder<V> {
+        private final NodeBuilder<V> root = new NodeBuilder<>(NodeType.EXACT, "");
+        @Nullable
+        private Comparator<? super V> valueOrder;
+
+        /**
+         * Sets the order in which the values of the same path are looked up. The values which the
+         * specified {@link Comparator} considers equal are looked up in the order they were added.
+         */
+        Builder<V> valueOrder(Comparator<? super V> valueOrder) {
+            this.valueOrder = requireNonNull(valueOrder, "valueOrder");
+            return this;
+        }
+
+        /**
+         * Adds the specified {@code value} for the specified trie path. The values of the same path are
+         * looked up in the order they were added, unless {@link #valueOrder(Comparator)} is set.
+         */
+        Builder<V> add(String triePath, V value) {
+            requireNonNull(triePath, "triePath");
+            requireNonNull(value, "value");
+            checkArgument(!triePath.isEmpty() && triePath.charAt(0) == '/',
+                          "triePath: %s (expected: an absolute path starting with '/')", triePath);
+
+            NodeBuilder<V> node = root;
+            int literalStart = 0;
+            for (int i = 0; i < triePath.length(); i++) {
+                final char c = triePath.charAt(i);
+                final boolean segmentStart = i > 0 && triePath.charAt(i - 1) == '/';
+                final boolean segmentEnd = i + 1 == triePath.length() || triePath.charAt(i + 1) == '/';
+                if (segmentStart && segmentEnd && (c == ':' || c == '*')) {
+                    node = node.addLiteral(triePath, literalStart, i);
+                    if (c == ':') {
+                        node = node.parameterChild();
+                    } else {
+                        checkArgument(i + 1 == triePath.length(),
+                                      "triePath: %s ('*' must be the last segment)", triePath);
+                        node = node.catchAllChild();
+                    }
+                    literalStart = i + 1;
+                }
+            }
+            node = node.addLiteral(triePath, literalStart, triePath.length());
+            node.values.add(value);
+            return this;
+        }
+
+        RoutingTrie<V> build() {
+            return new RoutingTrie<>(root.build(valueOrder));
+        }
+    }
+
+    private static final class NodeBuilder<V> {
+        private final NodeType type;
+        private String label;
+        private final List<V> values = new ArrayList<>();
+        private Map<Character, NodeBuilder<V>> exactChildren = new TreeMap<>();
+        @Nullable
+        private NodeBuilder<V> parameterChild;
+        @Nullable
+        private NodeBuilder<V> catchAllChild;
+
+        NodeBuilder(NodeType type, String label) {
+            this.type = type;
+            this.label = label;
+        }
+
+        /**
+         * Adds the literal {@code path[start, end)} under this node, splitting the existing nodes if
+         * necessary, and returns the node which ends with the literal.
+         */
+        NodeBuilder<V> addLiteral(String path, int start, int end) {
+            NodeBuilder<V> node = this;
+            int pos = start;
+            while (pos < end) {
+                final char c = path.charAt(pos);
+                final NodeBuilder<V> child = node.exactChildren.get(c);
+                if (child == null) {
+                    final NodeBuilder<V> newChild =
+                            new NodeBuilder<>(NodeType.EXACT, path.substring(pos, end));
+                    node.exactChildren.put(c, newChild);
+                    return newChild;
+                }
+
+                final String childLabel = child.label;
+                int common = 0;
+                while (common < childLabel.length() && pos + common < end &&
+                       childLabel.charAt(common) == path.charAt(pos + common)) {
+                    common++;
+                }
+                if (common < childLabel.length()) {
+                    child.split(common);
+                }
+                pos += common;
+                node = child;
+            }
+            return node;
+        }
+
+        /**
+         * Splits this node so that it keeps the first {@code length} characters of its label and
+         * a new child takes the rest of the label along with the values and the children of this node.
+         */
+        void split(int length) {
+            final NodeBuilder<V> suffix = new NodeBuilder<>(NodeType.EXACT, label.substring(length));
+            suffix.values.addAll(values);
+            suffix.exactChildren = exactChildren;
+            suffix.parameterChild = parameterChild;
+            suffix.catchAllChild = catchAllChild;
+
+            label = label.substring(0, length);
+            values.clear();
+            exactChildren = new TreeMap<>();
+            exactChildren.put(suffix.label.charAt(0), suffix);
+            parameterChild = null;
+            catchAllChild = null;
+        }
+
+        NodeBuilder<V> parameterChild() {
+            if (parameterChild == null) {
+                parameterChild = new NodeBuilder<>(NodeType.PARAMETER, "");
+            }
+            return parameterChild;
+        }
+
+        NodeBuilder<V> catchAllChild() {
+            if (catchAllChild == null) {
+                catchAllChild = new NodeBuilder<>(NodeType.CATCH_ALL, "");
+            }
+            return catchAllChild;
+        }
+
+        Node<V> build(@Nullable Comparator<? super V> valueOrder) {
+            if (valueOrder != null) {
+                // A stable sort, which keeps the order of the values considered equal.
+                values.sort(valueOrder);
+            }
+            final char[] childChars = new char[exactChildren.size()];
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            final Node<V>[] children = new Node[exactChildren.size()];
+            int i = 0;
+            for (Map.Entry<Character, NodeBuilder<V>> entry : exactChildren.entrySet()) {
+                childChars[i] = entry.getKey();
+                children[i] = entry.getValue().build(valueOrder);
+                i++;
+            }
+            return new Node<>(type, label, ImmutableList.copyOf(values), childChars, children,
+                              parameterChild != null ? parameterChild.build(valueOrder) : null,
+                              catchAllChild != null ? catchAllChild.build(valueOrder) : null);
+        }
+    }
+}
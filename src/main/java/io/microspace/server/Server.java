@@ -26,31 +26,29 @@ package io.microspace.server;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static java.util.Objects.requireNonNull;
 
-import java.io.File;
 import java.net.BindException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.nio.file.Paths;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +56,7 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -65,14 +64,18 @@ import io.micrometer.core.instrument.Tag;
 import io.microspace.internal.FreePortFinder;
 import io.microspace.internal.ServerThreadNamer;
 import io.microspace.internal.TransportType;
+import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
+import io.netty.handler.ssl.OpenSslSessionContext;
 import io.netty.handler.ssl.SslContext;
+import io.netty.incubator.codec.quic.QuicSslContext;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.ImmediateEventExecutor;
 
@@ -88,17 +91,44 @@ public final class Server {
 
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
     private final Set<ServerChannel> serverChannels = new CopyOnWriteArraySet<>();
+    private final Set<Channel> http3Channels = new CopyOnWriteArraySet<>();
+    private final Set<Integer> http3Ports = ConcurrentHashMap.newKeySet();
     private final Map<InetSocketAddress, ServerPort> activePorts = new LinkedHashMap<>();
-    private final Stopwatch startupWatch = Stopwatch.createUnstarted();
     private final ServerBootstrap serverBootstrap = new ServerBootstrap();
     private final ServerConfig config;
+    @Nullable
     private final SslContext sslContext;
+    @Nullable
+    private final TlsKeyMaterial tlsKeyMaterial;
+    private final StartupProfile startupProfile;
+    private final TransportType transportType;
+    private final int numAcceptorsPerPort;
     private EventLoopGroup workerGroup;
     private ConnectionLimitHandler connectionLimitHandler;
-
-    Server(ServerConfig config, SslContext sslContext) {
+    /**
+     * Creates the QUIC codec of a datagram channel, which can't be shared by the channels.
+     */
+    @Nullable
+    private Supplier<ChannelHandler> http3CodecFactory;
+    @Nullable
+    private HttpResponseCompressor compressor;
+    @Nullable
+    private TrafficCapture trafficCapture;
+    @Nullable
+    private BlockingTaskDispatcher blockingTaskDispatcher;
+    @Nullable
+    private ScheduledFuture<?> sessionTicketKeyRotationFuture;
+
+    Server(ServerConfig config, @Nullable SslContext sslContext, @Nullable TlsKeyMaterial tlsKeyMaterial,
+           StartupProfile startupProfile) {
         this.config = config;
         this.sslContext = sslContext;
+        this.tlsKeyMaterial = tlsKeyMaterial;
+        this.startupProfile = startupProfile;
+        transportType = TransportType.detectTransportType(config.useIoUsing(), config.useEpoll());
+        // Without SO_REUSEPORT, a port can be bound by only one server channel. SO_REUSEPORT is enabled only
+        // when more than one channel is bound, so that a single acceptor still fails on a port in use.
+        numAcceptorsPerPort = transportType.reusePortOption() != null ? config.acceptThreadCount() : 1;
 
         setupMetrics();
     }
@@ -108,18 +138,6 @@ public final class Server {
         return address.isAnyLocalAddress() || address.isLoopbackAddress();
     }
 
-    /**
-     * Use the configured path if the certificate and private key are
-     * configured, otherwise use the default configuration
-     *
-     * @param keyPath         private keystore path
-     * @param defaultFilePath default private keystore path
-     * @return keystore file
-     */
-    private File setKeyCertFileAndPriKey(String keyPath, File defaultFilePath) {
-        return null != keyPath ? Paths.get(keyPath).toFile() : defaultFilePath;
-    }
-
     /**
      * Sets up the version metrics.
      */
@@ -136,69 +154,102 @@ public final class Server {
     }
 
     public CompletableFuture<Void> start() {
-        startupWatch.start();
         return start(false);
     }
 
     /**
-     * Start http server
-     * @return CompletableFuture
+     * Starts this server. All ports are bound at the same time, and the banner is printed by
+     * {@link ServerConfig#executorService()} rather than before binding them.
+     *
+     * @return the {@link CompletableFuture} which completes once all ports have been bound
      */
     public CompletableFuture<Void> start(boolean registerShutdownHook) {
-        if (!startupWatch.isRunning()) {
-            startupWatch.start();
+        long phaseStartNanos = System.nanoTime();
+        if (logger.isInfoEnabled()) {
+            logger.info("Using {} transport", transportType.lowerCasedName());
         }
+        config.executorService().execute(
+                () -> config.banner().printBanner(config.bannerText(), config.bannerFont()));
+
+        final Routers routers = Routers.ofServer(config);
+        phaseStartNanos = startupProfile.record(StartupProfile.Phase.ROUTE_COMPILATION, phaseStartNanos);
 
         final EventLoopGroup parentGroup = createParentEventLoopGroup();
         workerGroup = createWorkerEventLoopGroup();
 
         connectionLimitHandler = new ConnectionLimitHandler(config.maxNumConnections());
-        final HttpServerConfigurator initializer = new HttpServerConfigurator(config, sslContext);
+        if (config.useResponseCompression()) {
+            compressor = new HttpResponseCompressor(config);
+        }
+        if (config.trafficCaptureSamplingRate() > 0) {
+            trafficCapture = new TrafficCapture(config);
+        }
+        if (BlockingTaskDispatcher.isNeeded(config)) {
+            blockingTaskDispatcher = new BlockingTaskDispatcher(config);
+        }
+        final HttpServerConfigurator initializer = new HttpServerConfigurator(
+                config, routers, sslContext, http3Ports, compressor, trafficCapture, blockingTaskDispatcher);
+        if (config.ports().stream().anyMatch(ServerPort::hasHttp3)) {
+            http3CodecFactory = newHttp3CodecFactory(routers);
+        }
+        scheduleSessionTicketKeyRotation();
         serverBootstrap.group(parentGroup, workerGroup).handler(connectionLimitHandler)
                        .channel(transportChannel()).childHandler(initializer);
 
-        config.banner().printBanner(config.bannerText(), config.bannerFont());
+        if (numAcceptorsPerPort > 1) {
+            // Let the kernel spread the incoming connections over the server channels bound to a port.
+            serverBootstrap.option(transportType.reusePortOption(), true);
+        }
         processOptions(config.channelOptions(), serverBootstrap::option);
         processOptions(config.childChannelOptions(), serverBootstrap::option);
         registerShutdownHook(registerShutdownHook);
+        final long bindStartNanos = startupProfile.record(StartupProfile.Phase.TRANSPORT_INIT,
+                                                          phaseStartNanos);
 
-        // Initialize the server sockets asynchronously.
-        final List<ServerPort> ports = config.ports();
-        final Iterator<ServerPort> it = ports.iterator();
-        assert it.hasNext();
-
-        final ServerPort primary = it.next();
+        // Bind all ports at once, so that the startup takes as long as the slowest port only.
+        isRunning.set(true);
         final AtomicInteger attempts = new AtomicInteger(0);
+        final CompletableFuture<?>[] bindFutures = config.ports().stream()
+                                                         .map(port -> bind(port, attempts))
+                                                         .toArray(CompletableFuture[]::new);
         final CompletableFuture<Void> future = new CompletableFuture<>();
-
-        start(primary, attempts)
-                .addListener(new ServerPortStartListener(primary))
-                .addListener(new ChannelFutureListener() {
-                    @Override
-                    public void operationComplete(ChannelFuture f) {
-                        if (!f.isSuccess()) {
-                            future.completeExceptionally(f.cause());
-                            return;
-                        }
-                        if (!it.hasNext()) {
-                            future.complete(null);
-                            return;
-                        }
-
-                        final ServerPort next = it.next();
-                        start(next, attempts).addListener(new ServerPortStartListener(next))
-                                             .addListener(this);
-                        startupWatch.stop();
-                        if (logger.isInfoEnabled()) {
-                            logger.info("Serving startup time {}{}",
-                                        startupWatch.elapsed().toMillis(), "ms");
-                        }
-                    }
+        CompletableFuture.allOf(bindFutures).whenComplete((unused, cause) -> {
+            if (cause != null) {
+                // Do not leave the ports which were bound accepting the connections of a failed server.
+                closeBoundChannels().whenComplete((unused2, unused3) -> {
+                    isRunning.set(false);
+                    future.completeExceptionally(peel(cause));
                 });
-
+                return;
+            }
+            startupProfile.record(StartupProfile.Phase.BIND, bindStartNanos);
+            startupProfile.report(config.meterRegistry());
+            future.complete(null);
+        });
         return future;
     }
 
+    private CompletionStage<Void> closeBoundChannels() {
+        if (sessionTicketKeyRotationFuture != null) {
+            sessionTicketKeyRotationFuture.cancel(false);
+            sessionTicketKeyRotationFuture = null;
+        }
+        final Set<Channel> boundChannels =
+                ImmutableSet.copyOf(Iterables.concat(serverChannels, http3Channels));
+        return close(boundChannels).whenComplete((unused, unused2) -> {
+            serverChannels.clear();
+            http3Channels.clear();
+            http3Ports.clear();
+            synchronized (activePorts) {
+                activePorts.clear();
+            }
+        });
+    }
+
+    private static Throwable peel(Throwable cause) {
+        return cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+    }
+
     private void registerShutdownHook(boolean registerShutdownHook) {
         if (registerShutdownHook) {
             final Runtime runtime = Runtime.getRuntime();
@@ -211,40 +262,147 @@ public final class Server {
         }
     }
 
-    private ChannelFuture start(ServerPort serverPort, AtomicInteger attempts) {
+    /**
+     * Binds the server channels of the specified {@link ServerPort}, and the datagram channel of its
+     * HTTP/3 listener if any. A port in use is replaced with a free one as long as
+     * {@link ServerConfig#serverRestartCount()} allows.
+     */
+    private CompletableFuture<Void> bind(ServerPort serverPort, AtomicInteger attempts) {
         final String host = serverPort.host();
-        int port = serverPort.port();
-
-        try {
-            if (!isRunning.get()) {
-                isRunning.compareAndSet(false, true);
-            }
-            if (host != null) {
-                return serverBootstrap.bind(host, port).sync();
-            } else {
-                return serverBootstrap.bind(port).sync();
+        final int port = serverPort.port();
+        // Let the connections find out which port accepted them.
+        final ServerBootstrap bootstrap =
+                serverBootstrap.clone().attr(HttpServerConfigurator.SERVER_PORT, serverPort);
+        final ChannelFuture primaryFuture = host != null ? bootstrap.bind(host, port) : bootstrap.bind(port);
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        primaryFuture.addListener(new ServerPortStartListener(serverPort));
+        primaryFuture.addListener((ChannelFutureListener) f -> {
+            if (f.isSuccess()) {
+                final Channel primary = f.channel();
+                CompletableFuture<Void> bindFuture = bindAdditionalAcceptors(bootstrap, serverPort, primary);
+                if (serverPort.hasHttp3()) {
+                    bindFuture = bindFuture.thenCompose(unused -> bindHttp3(primary));
+                }
+                bindFuture.whenComplete((unused, cause) -> complete(future, cause));
+                return;
             }
-        } catch (Throwable e) {
-            final boolean isBindException = isBindException(e);
 
+            final Throwable cause = f.cause();
             if (logger.isErrorEnabled()) {
-                if (isBindException) {
+                if (isBindException(cause)) {
                     logger.error("Unable to start server. Port already {} in use.", port);
                 } else {
-                    logger.error("Error starting Microspace server: " + e.getMessage(), e);
+                    logger.error("Error starting Microspace server: " + cause.getMessage(), cause);
                 }
             }
+            if (attempts.getAndIncrement() < config.serverRestartCount()) {
+                final int freePort = FreePortFinder.findFreeLocalPort(port);
+                bind(new ServerPort(freePort, serverPort.protocols()), attempts)
+                        .whenComplete((unused, retryCause) -> complete(future, retryCause));
+            } else {
+                future.completeExceptionally(new ServerStartupException(
+                        "Unable to start Microspace server on port: " + port, cause));
+            }
+        });
+        return future;
+    }
 
-            final int attemptCount = attempts.getAndIncrement();
-            final int restartCount = config.serverRestartCount();
+    private static void complete(CompletableFuture<Void> future, @Nullable Throwable cause) {
+        if (cause != null) {
+            future.completeExceptionally(peel(cause));
+        } else {
+            future.complete(null);
+        }
+    }
 
-            if (attemptCount < restartCount) {
-                port = FreePortFinder.findFreeLocalPort(port);
-                return start(new ServerPort(port, serverPort.protocols()), attempts);
-            } else {
-                throw new ServerStartupException("Unable to start Microspace server on port: " + port, e);
+    /**
+     * Binds the remaining server channels of the specified {@link ServerPort} to the address the primary
+     * server channel was bound to, so that each acceptor thread accepts the connections of its own socket.
+     */
+    private CompletableFuture<Void> bindAdditionalAcceptors(ServerBootstrap bootstrap, ServerPort serverPort,
+                                                            Channel primary) {
+        if (numAcceptorsPerPort == 1) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final InetSocketAddress localAddress = (InetSocketAddress) primary.localAddress();
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[numAcceptorsPerPort - 1];
+        for (int i = 0; i < futures.length; i++) {
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            bootstrap.bind(localAddress).addListener((ChannelFutureListener) f -> {
+                if (!f.isSuccess()) {
+                    future.completeExceptionally(new ServerStartupException(
+                            "Unable to bind an additional acceptor to: " + localAddress, f.cause()));
+                    return;
+                }
+                new ServerPortStartListener(serverPort).operationComplete(f);
+                future.complete(null);
+            });
+            futures[i] = future;
+        }
+        return CompletableFuture.allOf(futures).whenComplete((unused, cause) -> {
+            if (cause != null) {
+                primary.close();
             }
+        });
+    }
+
+    /**
+     * Rotates the keys of the TLS session tickets periodically, so that a leaked key cannot decrypt
+     * the sessions resumed after the next rotation.
+     */
+    private void scheduleSessionTicketKeyRotation() {
+        final long rotationMillis = config.tlsSessionTicketKeyRotationMillis();
+        if (sslContext == null || rotationMillis == 0 ||
+            !(sslContext.sessionContext() instanceof OpenSslSessionContext)) {
+            return;
+        }
+        final SessionTicketKeyRotator rotator =
+                new SessionTicketKeyRotator((OpenSslSessionContext) sslContext.sessionContext());
+        // Set the first key before accepting any connection.
+        rotator.run();
+        sessionTicketKeyRotationFuture = workerGroup.next().scheduleAtFixedRate(
+                rotator, rotationMillis, rotationMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private Supplier<ChannelHandler> newHttp3CodecFactory(Routers routers) {
+        assert tlsKeyMaterial != null;
+        final QuicSslContext quicSslContext;
+        try {
+            quicSslContext = tlsKeyMaterial.newQuicSslContext();
+        } catch (Exception e) {
+            throw new ServerStartupException("Unable to create the TLS context of the HTTP/3 ports", e);
         }
+        final Http3ServerConfigurator configurator = new Http3ServerConfigurator(
+                config, routers, compressor, trafficCapture, blockingTaskDispatcher);
+        return () -> configurator.newCodec(quicSslContext);
+    }
+
+    /**
+     * Binds a datagram channel which accepts the HTTP/3 connections to the address the primary server
+     * channel was bound to, and advertises it to the clients of the TCP port via the {@code alt-svc} header.
+     */
+    private CompletableFuture<Void> bindHttp3(Channel primary) {
+        assert http3CodecFactory != null;
+        final InetSocketAddress localAddress = (InetSocketAddress) primary.localAddress();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        new Bootstrap().group(workerGroup)
+                       .channel(transportType.datagramChannelType())
+                       .handler(http3CodecFactory.get())
+                       .bind(localAddress).addListener((ChannelFutureListener) f -> {
+                           if (!f.isSuccess()) {
+                               primary.close();
+                               future.completeExceptionally(new ServerStartupException(
+                                       "Unable to bind an HTTP/3 listener to: " + localAddress, f.cause()));
+                               return;
+                           }
+                           http3Channels.add(f.channel());
+                           http3Ports.add(localAddress.getPort());
+                           if (logger.isInfoEnabled()) {
+                               logger.info("Serving HTTP/3 at {} (udp)", localAddress);
+                           }
+                           future.complete(null);
+                       });
+        return future;
     }
 
     private CompletionStage<Void> close(Iterable<? extends Channel> channels) {
@@ -265,94 +423,92 @@ public final class Server {
         return future;
     }
 
+    /**
+     * Stops this server gracefully:
+     * <ol>
+     *   <li>The server ports are closed at once, so that no new connection is accepted.</li>
+     *   <li>Every connection finishes its in-flight requests and closes itself, an HTTP/1 connection by
+     *       responding with {@code connection: close} and an HTTP/2 connection by sending a {@code GOAWAY}
+     *       frame. An idle connection is closed at once.</li>
+     *   <li>The connections left after {@link ServerConfig#gracefulShutdownTimeout()} are closed
+     *       regardless of their in-flight requests.</li>
+     * </ol>
+     * The returned future completes as soon as the last connection has been closed and the event loops
+     * have terminated.
+     */
     public CompletableFuture<Void> stop() {
         final CompletableFuture<Void> future = new CompletableFuture<>();
-        // Create a single-use thread dedicated for monitoring graceful shutdown status.
-        final ScheduledExecutorService gracefulShutdownExecutor =
-                Executors.newSingleThreadScheduledExecutor(
-                        r -> new Thread(r, "microspace-shutdown-0x" + Integer.toHexString(hashCode())));
-
-        // Check every 100 ms for the server to have completed processing requests.
-        final ScheduledFuture<?> quietPeriodFuture = gracefulShutdownExecutor.scheduleAtFixedRate(() -> {
-            stop(future, config.gracefulShutdownQuietPeriod().toMillis(),
-                 config.gracefulShutdownTimeout().toMillis(), gracefulShutdownExecutor);
-        }, 0, 100, TimeUnit.MILLISECONDS);
-
-        // Make sure the event loop stops after the timeout, regardless of what
-        // the GracefulShutdownSupport says.
-        try {
-            gracefulShutdownExecutor.schedule(() -> {
-                quietPeriodFuture.cancel(false);
-                stop(future, config.gracefulShutdownQuietPeriod().toMillis(),
-                     config.gracefulShutdownTimeout().toMillis(), gracefulShutdownExecutor);
-            }, config.gracefulShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS);
-        } catch (RejectedExecutionException e) {
-            // Can be rejected if quiet period is complete already.
-        }
-
-        return future;
-    }
-
-    public CompletableFuture<Void> stop(CompletableFuture<Void> future,
-                                        long stopQuietPeriod,
-                                        long stopTimeout,
-                                        ExecutorService gracefulShutdownExecutor) {
-        // Graceful shutdown is over. Terminate the temporary executor we created at stop0(future).
-        if (gracefulShutdownExecutor != null) {
-            gracefulShutdownExecutor.shutdownNow();
+        if (!isRunning() || workerGroup == null || !isRunning.compareAndSet(true, false)) {
+            future.complete(null);
+            return future;
         }
 
         final Stopwatch stopwatch = Stopwatch.createStarted();
-        if (isRunning() && workerGroup != null) {
-            if (isRunning.compareAndSet(true, false)) {
-                final Set<Channel> serverChannels = ImmutableSet.copyOf(Server.this.serverChannels);
-                close(serverChannels).handleAsync((unused, throwable) -> {
-                    // All server ports have been closed.
-                    synchronized (activePorts) {
-                        activePorts.clear();
-                    }
-                    close(connectionLimitHandler.childChannels()).handleAsync((unused3, unused4) -> {
-                        final Future<?> workerShutdownFuture;
-                        if (config.shutdownWorkerGroupOnStop()) {
-                            workerShutdownFuture = workerGroup.shutdownGracefully(
-                                    stopQuietPeriod, stopTimeout, TimeUnit.MILLISECONDS).addListener(
-                                    this::logShutdownErrorIfNecessary);
-                        } else {
-                            workerShutdownFuture = ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+        if (sessionTicketKeyRotationFuture != null) {
+            sessionTicketKeyRotationFuture.cancel(false);
+            sessionTicketKeyRotationFuture = null;
+        }
+        final long timeoutMillis = config.gracefulShutdownTimeout().toMillis();
+        final Set<Channel> serverChannels = ImmutableSet.copyOf(
+                Iterables.concat(Server.this.serverChannels, http3Channels));
+        close(serverChannels).thenCompose(unused -> {
+            // All server ports have been closed.
+            synchronized (activePorts) {
+                activePorts.clear();
+            }
+            http3Channels.clear();
+            http3Ports.clear();
+            return GracefulShutdown.drain(connectionLimitHandler.childChannels(), timeoutMillis);
+        }).handleAsync((unused, unused2) -> {
+            if (trafficCapture != null) {
+                // No more exchanges are captured once all connections have been closed.
+                trafficCapture.close();
+                trafficCapture = null;
+            }
+            if (blockingTaskDispatcher != null) {
+                // The completions of the tasks left are dropped by their closed channels.
+                blockingTaskDispatcher.close();
+                blockingTaskDispatcher = null;
+            }
+            // No more tasks are expected once all connections have been closed, so the event loops
+            // terminate without a quiet period.
+            final long remainingMillis = Math.max(timeoutMillis - stopwatch.elapsed().toMillis(), 0);
+            final Future<?> workerShutdownFuture;
+            if (config.shutdownWorkerGroupOnStop()) {
+                workerShutdownFuture = workerGroup.shutdownGracefully(0, remainingMillis,
+                                                                      TimeUnit.MILLISECONDS);
+                workerShutdownFuture.addListener(this::logShutdownErrorIfNecessary);
+            } else {
+                workerShutdownFuture = ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+            }
+            workerShutdownFuture.addListener(unused3 -> {
+                final Set<EventLoopGroup> bossGroups =
+                        Server.this.serverChannels
+                                .stream()
+                                .map(ch -> ch.eventLoop().parent())
+                                .collect(toImmutableSet());
+                if (bossGroups.isEmpty()) {
+                    future.complete(null);
+                    return;
+                }
+                final AtomicInteger remainingBossGroups = new AtomicInteger(bossGroups.size());
+                bossGroups.forEach(bossGroup -> {
+                    bossGroup.shutdownGracefully(0, remainingMillis, TimeUnit.MILLISECONDS)
+                             .addListener(this::logShutdownErrorIfNecessary);
+                    bossGroup.terminationFuture().addListener(unused4 -> {
+                        if (remainingBossGroups.decrementAndGet() != 0) {
+                            // There are more boss groups to terminate.
+                            return;
                         }
-                        workerShutdownFuture.addListener(unused5 -> {
-                            final Set<EventLoopGroup> bossGroups =
-                                    Server.this.serverChannels
-                                            .stream()
-                                            .map(ch -> ch.eventLoop().parent())
-                                            .collect(toImmutableSet());
-                            if (bossGroups.isEmpty()) {
-                                future.complete(null);
-                                return;
-                            }
-                            final AtomicInteger remainingBossGroups = new AtomicInteger(bossGroups.size());
-                            bossGroups.forEach(bossGroup -> {
-                                bossGroup.shutdownGracefully(stopQuietPeriod, stopTimeout,
-                                                             TimeUnit.MILLISECONDS)
-                                         .addListener(this::logShutdownErrorIfNecessary);
-                                bossGroup.terminationFuture().addListener(unused6 -> {
-                                    if (remainingBossGroups.decrementAndGet() != 0) {
-                                        // There are more boss groups to terminate.
-                                        return;
-                                    }
-                                    future.complete(null);
-                                });
-                            });
-                        });
-                        return null;
+                        future.complete(null);
                     });
-                    return null;
                 });
-            }
-        }
-        stopwatch.stop();
-        logger.info("Serving stop time {}{}", stopwatch.elapsed().toMillis(), "ms");
-        return future;
+            });
+            return null;
+        });
+        return future.whenComplete((unused, unused2) -> {
+            logger.info("Serving stop time {}{}", stopwatch.elapsed().toMillis(), "ms");
+        });
     }
 
     private void logShutdownErrorIfNecessary(Future<?> future) {
@@ -375,11 +531,11 @@ public final class Server {
     }
 
     private EventLoopGroup createWorkerEventLoopGroup() {
-        return createEventLoopGroup("worker" + config.serverThreadName());
+        return createEventLoopGroup("worker" + config.serverThreadName(), config.ioThreadCount());
     }
 
     private EventLoopGroup createParentEventLoopGroup() {
-        return createEventLoopGroup("parent" + config.serverThreadName());
+        return createEventLoopGroup("parent" + config.serverThreadName(), config.acceptThreadCount());
     }
 
     private ServerThreadNamer withThreadName(String prefix) {
@@ -387,7 +543,7 @@ public final class Server {
     }
 
     private Class<? extends ServerChannel> transportChannel() {
-        return TransportType.detectTransportType().serverChannelType();
+        return transportType.serverChannelType();
     }
 
     private String eventLoopGroupName(ServerPort port, String prefix) {
@@ -405,10 +561,8 @@ public final class Server {
                + localAddress.getPort();
     }
 
-    private EventLoopGroup createEventLoopGroup(String threadName) {
-        return TransportType.detectTransportType()
-                            .newEventLoopGroup(config.ioThreadCount(),
-                                               transportType -> withThreadName(threadName));
+    private EventLoopGroup createEventLoopGroup(String threadName, int nThreads) {
+        return transportType.newEventLoopGroup(nThreads, unused -> withThreadName(threadName));
     }
 
     public boolean isRunning() {
@@ -419,6 +573,13 @@ public final class Server {
         return config;
     }
 
+    /**
+     * Returns the {@link TransportType} this {@link Server} runs on.
+     */
+    public TransportType transportType() {
+        return transportType;
+    }
+
     public Set<ServerChannel> serverChannels() {
         return serverChannels;
     }
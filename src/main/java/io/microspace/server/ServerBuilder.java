@@ -36,6 +36,7 @@ import static io.microspace.server.SessionProtocol.HTTPS;
 import static io.microspace.server.SessionProtocol.PROXY;
 import static java.util.Objects.requireNonNull;
 
+import java.io.File;
 import java.net.InetSocketAddress;
 import java.time.Duration;
 import java.util.ArrayList;
@@ -45,12 +46,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import com.google.common.base.Ascii;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
@@ -68,6 +71,7 @@ import io.microspace.server.annotation.ExceptionHandlerFunction;
 import io.microspace.server.annotation.RequestConverterFunction;
 import io.microspace.server.annotation.ResponseConverterFunction;
 import io.netty.channel.ChannelOption;
+import io.netty.handler.ssl.SslContext;
 import io.netty.util.concurrent.GlobalEventExecutor;
 
 /**
@@ -107,6 +111,7 @@ public final class ServerBuilder {
     private boolean useEpoll = Flags.useEpoll();
     private boolean useSession = Flags.useSession();
     private boolean useIoUsing = Flags.useIoUsing();
+    private boolean useStreamingRequestBody = Flags.useStreamingRequestBody();
     private String bannerText = Flags.defaultBannerText();
     private String bannerFont = Flags.defaultBannerFont();
     private String sessionKey = Flags.defaultSessionKey();
@@ -114,6 +119,35 @@ public final class ServerBuilder {
     private String templateFolder = Flags.defaultTemplateFolder();
     private String serverThreadName = Flags.defaultServerThreadName();
     private String profiles = Flags.profiles();
+    private long http3MaxStreamsPerConnection = Flags.defaultHttp3MaxStreamsPerConnection();
+    private long http3InitialConnectionWindowSize = Flags.defaultHttp3InitialConnectionWindowSize();
+    private long http3InitialStreamWindowSize = Flags.defaultHttp3InitialStreamWindowSize();
+    private boolean useResponseCompression = Flags.useResponseCompression();
+    private int compressionMinLength = Flags.defaultCompressionMinLength();
+    private int compressionLevel = Flags.defaultCompressionLevel();
+    private long compressionCacheSize = Flags.defaultCompressionCacheSize();
+    private Set<MediaType> compressibleMediaTypes = Flags.defaultCompressibleMediaTypes();
+    private long tlsSessionCacheSize = Flags.defaultTlsSessionCacheSize();
+    private long tlsSessionTimeoutSeconds = Flags.defaultTlsSessionTimeoutSeconds();
+    private long tlsSessionTicketKeyRotationMillis = Flags.defaultTlsSessionTicketKeyRotationMillis();
+    private int writeBufferHighWaterMark = Flags.defaultWriteBufferHighWaterMark();
+    private int writeBufferLowWaterMark = Flags.defaultWriteBufferLowWaterMark();
+    private double trafficCaptureSamplingRate = Flags.defaultTrafficCaptureSamplingRate();
+    private int trafficCaptureBufferSize = Flags.defaultTrafficCaptureBufferSize();
+    private int trafficCaptureMaxContentLength = Flags.defaultTrafficCaptureMaxContentLength();
+    private Set<String> trafficCaptureRedactedHeaders = Flags.defaultTrafficCaptureRedactedHeaders();
+    private int blockingTaskThreadCount = Flags.defaultBlockingTaskThreadCount();
+    private int blockingTaskBufferSize = Flags.defaultBlockingTaskBufferSize();
+    private BlockingTaskWaitStrategy blockingTaskWaitStrategy = Flags.defaultBlockingTaskWaitStrategy();
+    private VirtualThreadMode virtualThreadMode = Flags.defaultVirtualThreadMode();
+    private long virtualThreadPinningThresholdMillis = Flags.defaultVirtualThreadPinningThresholdMillis();
+    private int routeCacheSize = Flags.defaultRouteCacheSize();
+    @Nullable
+    private File tlsKeyCertChainFile;
+    @Nullable
+    private File tlsKeyFile;
+    @Nullable
+    private String tlsKeyPassword;
     @Nullable
     private Long requestTimeoutMillis;
     @Nullable
@@ -247,7 +281,8 @@ public final class ServerBuilder {
     }
 
     /**
-     * Set io_using open state, the default is close
+     * Set io_using open state, the default is close. When enabled but the running kernel does not
+     * support io_uring, the server falls back to epoll or NIO.
      *
      * @param enable Whether to open the io_using
      * @return this
@@ -257,6 +292,20 @@ public final class ServerBuilder {
         return this;
     }
 
+    /**
+     * Set streaming request body state, the default is close. When enabled, a request is passed to its
+     * service as soon as its headers are received, and its content is published as it is read from the
+     * connection. Otherwise, the whole content is received before the request is passed to the service.
+     * Either way, the content is limited by the {@code maxRequestLength} of the service.
+     *
+     * @param enable Whether to stream the content of requests
+     * @return this
+     */
+    public ServerBuilder useStreamingRequestBody(boolean enable) {
+        this.useStreamingRequestBody = enable;
+        return this;
+    }
+
     /**
      * Set epoll open state, the default is close
      *
@@ -279,6 +328,35 @@ public final class ServerBuilder {
         return this;
     }
 
+    /**
+     * Configures the TLS ports with the PEM encoded certificate chain and PKCS#8 private key files,
+     * and enables TLS. A self-signed certificate is generated instead if TLS is enabled without them.
+     *
+     * @param keyCertChainFile an X.509 certificate chain file in PEM format
+     * @param keyFile a PKCS#8 private key file in PEM format
+     * @return this
+     */
+    public ServerBuilder tls(File keyCertChainFile, File keyFile) {
+        return tls(keyCertChainFile, keyFile, null);
+    }
+
+    /**
+     * Configures the TLS ports with the PEM encoded certificate chain and PKCS#8 private key files,
+     * and enables TLS. A self-signed certificate is generated instead if TLS is enabled without them.
+     *
+     * @param keyCertChainFile an X.509 certificate chain file in PEM format
+     * @param keyFile a PKCS#8 private key file in PEM format
+     * @param keyPassword the password of the {@code keyFile}, or {@code null} if it's not encrypted
+     * @return this
+     */
+    public ServerBuilder tls(File keyCertChainFile, File keyFile, @Nullable String keyPassword) {
+        this.tlsKeyCertChainFile = requireNonNull(keyCertChainFile, "keyCertChainFile");
+        this.tlsKeyFile = requireNonNull(keyFile, "keyFile");
+        this.tlsKeyPassword = keyPassword;
+        this.useSsl = true;
+        return this;
+    }
+
     /**
      * Sets the {@link MeterRegistry} that collects various stats.
      */
@@ -333,11 +411,11 @@ public final class ServerBuilder {
      * requests to go away before actually shutting down.
      *
      * @param quietPeriodMillis the number of milliseconds to wait for active
-     *                          requests to go end before shutting down. 0 means the server will
-     *                          stop right away without waiting.
+     *                          requests to go end before shutting down, which must not be greater than
+     *                          {@code timeoutMillis}. The connections are drained whatever it is.
      * @param timeoutMillis     the number of milliseconds to wait before shutting down the server regardless of
-     *                          active requests. This should be set to a time greater than {@code quietPeriodMillis}
-     *                          to ensure the server shuts down even if there is a stuck request.
+     *                          active requests, so that the server shuts down even if there is a stuck
+     *                          request. {@code 0} waits for the active requests forever.
      */
     public ServerBuilder gracefulShutdownTimeoutMillis(long quietPeriodMillis, long timeoutMillis) {
         return gracefulShutdownTimeout(Duration.ofMillis(quietPeriodMillis), Duration.ofMillis(timeoutMillis));
@@ -348,11 +426,11 @@ public final class ServerBuilder {
      * requests to go away before actually shutting down.
      *
      * @param quietPeriod the number of milliseconds to wait for active
-     *                    requests to go end before shutting down. {@link Duration#ZERO} means
-     *                    the server will stop right away without waiting.
-     * @param timeout     the amount of time to wait before shutting down the server regardless of active requests.
-     *                    This should be set to a time greater than {@code quietPeriod} to ensure the server
-     *                    shuts down even if there is a stuck request.
+     *                    requests to go end before shutting down, which must not be greater than
+     *                    {@code timeout}. The connections are drained whatever it is.
+     * @param timeout     the amount of time to wait before shutting down the server regardless of active requests,
+     *                    so that the server shuts down even if there is a stuck request. {@link Duration#ZERO}
+     *                    waits for the active requests forever.
      */
     public ServerBuilder gracefulShutdownTimeout(Duration quietPeriod, Duration timeout) {
         requireNonNull(quietPeriod, "quietPeriod");
@@ -716,6 +794,283 @@ public final class ServerBuilder {
         return this;
     }
 
+    /**
+     * Sets the maximum number of concurrent HTTP/3 request streams a client may open on a QUIC connection.
+     */
+    public ServerBuilder http3MaxStreamsPerConnection(long http3MaxStreamsPerConnection) {
+        checkArgument(http3MaxStreamsPerConnection > 0, "http3MaxStreamsPerConnection must > 0");
+        this.http3MaxStreamsPerConnection = http3MaxStreamsPerConnection;
+        return this;
+    }
+
+    /**
+     * Sets the number of bytes a client may send on a QUIC connection before the server grants more.
+     */
+    public ServerBuilder http3InitialConnectionWindowSize(long http3InitialConnectionWindowSize) {
+        checkArgument(http3InitialConnectionWindowSize > 0, "http3InitialConnectionWindowSize must > 0");
+        this.http3InitialConnectionWindowSize = http3InitialConnectionWindowSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of bytes a client may send on an HTTP/3 request stream before the server grants more.
+     */
+    public ServerBuilder http3InitialStreamWindowSize(long http3InitialStreamWindowSize) {
+        checkArgument(http3InitialStreamWindowSize > 0, "http3InitialStreamWindowSize must > 0");
+        this.http3InitialStreamWindowSize = http3InitialStreamWindowSize;
+        return this;
+    }
+
+    /**
+     * Sets whether the responses are compressed with the encoding negotiated via {@code accept-encoding}.
+     * Only the responses of a {@link #compressibleMediaTypes(MediaType...) compressible media type}
+     * whose content is not shorter than {@link #compressionMinLength(int)} are compressed.
+     * Disabled by default, so that the existing services do not change their responses and do not
+     * expose the secrets in a compressed content over TLS, e.g. to the BREACH attack, unless asked to.
+     */
+    public ServerBuilder useResponseCompression(boolean useResponseCompression) {
+        this.useResponseCompression = useResponseCompression;
+        return this;
+    }
+
+    /**
+     * Sets the minimum length of a response content to be compressed. A shorter content is sent as is,
+     * because the framing overhead would outweigh the saving.
+     */
+    public ServerBuilder compressionMinLength(int compressionMinLength) {
+        checkArgument(compressionMinLength >= 0, "compressionMinLength must >= 0");
+        this.compressionMinLength = compressionMinLength;
+        return this;
+    }
+
+    /**
+     * Sets the compression level used while the event loops are not busy. The fastest level is used
+     * instead while an event loop has many pending tasks, so that compression does not delay the other
+     * connections.
+     */
+    public ServerBuilder compressionLevel(int compressionLevel) {
+        checkArgument(compressionLevel >= 1 && compressionLevel <= 9, "compressionLevel must be in [1, 9]");
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * Sets the maximum total length of the compressed contents which are cached to be reused by the
+     * identical responses. {@code 0} disables the cache.
+     */
+    public ServerBuilder compressionCacheSize(long compressionCacheSize) {
+        checkArgument(compressionCacheSize >= 0, "compressionCacheSize must >= 0");
+        this.compressionCacheSize = compressionCacheSize;
+        return this;
+    }
+
+    /**
+     * Sets the media types of the responses which are compressed. The parameters such as {@code charset}
+     * are ignored when matching, and a wildcard such as {@link MediaType#ANY_TEXT_TYPE} matches all
+     * subtypes.
+     */
+    public ServerBuilder compressibleMediaTypes(MediaType... compressibleMediaTypes) {
+        return compressibleMediaTypes(ImmutableList.copyOf(requireNonNull(compressibleMediaTypes,
+                                                                          "compressibleMediaTypes")));
+    }
+
+    /**
+     * Sets the media types of the responses which are compressed.
+     *
+     * @see #compressibleMediaTypes(MediaType...)
+     */
+    public ServerBuilder compressibleMediaTypes(Iterable<MediaType> compressibleMediaTypes) {
+        requireNonNull(compressibleMediaTypes, "compressibleMediaTypes");
+        this.compressibleMediaTypes = ImmutableSet.copyOf(compressibleMediaTypes);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of the TLS sessions kept in the session cache.
+     * Specify {@code 0} to use the default of the TLS engine.
+     */
+    public ServerBuilder tlsSessionCacheSize(long tlsSessionCacheSize) {
+        checkArgument(tlsSessionCacheSize >= 0, "tlsSessionCacheSize must >= 0");
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of seconds a cached TLS session or a session ticket stays resumable.
+     * Specify {@code 0} to use the default of the TLS engine.
+     */
+    public ServerBuilder tlsSessionTimeoutSeconds(long tlsSessionTimeoutSeconds) {
+        checkArgument(tlsSessionTimeoutSeconds >= 0, "tlsSessionTimeoutSeconds must >= 0");
+        this.tlsSessionTimeoutSeconds = tlsSessionTimeoutSeconds;
+        return this;
+    }
+
+    /**
+     * Sets the interval in milliseconds at which the keys encrypting the TLS session tickets are rotated.
+     * The previous key is kept to decrypt the tickets issued before the rotation.
+     * Specify {@code 0} to disable the rotation. Only takes effect with the OpenSSL engine.
+     */
+    public ServerBuilder tlsSessionTicketKeyRotationMillis(long tlsSessionTicketKeyRotationMillis) {
+        checkArgument(tlsSessionTicketKeyRotationMillis >= 0, "tlsSessionTicketKeyRotationMillis must >= 0");
+        this.tlsSessionTicketKeyRotationMillis = tlsSessionTicketKeyRotationMillis;
+        return this;
+    }
+
+    /**
+     * Sets the number of bytes of the responses waiting to be written to a connection, above which
+     * the server stops reading the connection until the pending bytes drop to the low water mark.
+     * This keeps a slow client from piling up the responses of its requests in memory.
+     */
+    public ServerBuilder writeBufferHighWaterMark(int writeBufferHighWaterMark) {
+        checkArgument(writeBufferHighWaterMark > 0, "writeBufferHighWaterMark must > 0");
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+        return this;
+    }
+
+    /**
+     * Sets the number of bytes of the responses waiting to be written to a connection, below which
+     * the server resumes reading the connection suspended by the high water mark.
+     */
+    public ServerBuilder writeBufferLowWaterMark(int writeBufferLowWaterMark) {
+        checkArgument(writeBufferLowWaterMark >= 0, "writeBufferLowWaterMark must >= 0");
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+        return this;
+    }
+
+    /**
+     * Sets the ratio of the requests whose traffic is captured and written to the
+     * {@code io.microspace.traffic} logger by a background thread. Specify {@code 0} to disable the
+     * capture, which removes it from the request path entirely. Individual services can opt out with
+     * {@code trafficCapture(false)}.
+     */
+    public ServerBuilder trafficCaptureSamplingRate(double trafficCaptureSamplingRate) {
+        checkArgument(trafficCaptureSamplingRate >= 0 && trafficCaptureSamplingRate <= 1,
+                      "trafficCaptureSamplingRate must be in [0, 1]");
+        this.trafficCaptureSamplingRate = trafficCaptureSamplingRate;
+        return this;
+    }
+
+    /**
+     * Sets the number of the captured exchanges which can wait to be written. The exchanges captured
+     * while the buffer is full are dropped rather than slowing down the event loops.
+     */
+    public ServerBuilder trafficCaptureBufferSize(int trafficCaptureBufferSize) {
+        checkArgument(trafficCaptureBufferSize > 0 && Integer.bitCount(trafficCaptureBufferSize) == 1,
+                      "trafficCaptureBufferSize must be a power of 2");
+        this.trafficCaptureBufferSize = trafficCaptureBufferSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of the bytes of a response content which are captured. The content is
+     * captured only for the services which opt in with {@code trafficCaptureContent(true)}.
+     */
+    public ServerBuilder trafficCaptureMaxContentLength(int trafficCaptureMaxContentLength) {
+        checkArgument(trafficCaptureMaxContentLength >= 0, "trafficCaptureMaxContentLength must >= 0");
+        this.trafficCaptureMaxContentLength = trafficCaptureMaxContentLength;
+        return this;
+    }
+
+    /**
+     * Sets the names of the request and response headers whose values are replaced with
+     * {@code <redacted>} in the captured traffic. The {@code authorization}, {@code cookie},
+     * {@code set-cookie} and {@code proxy-authorization} headers are redacted by default.
+     */
+    public ServerBuilder trafficCaptureRedactedHeaders(CharSequence... trafficCaptureRedactedHeaders) {
+        return trafficCaptureRedactedHeaders(ImmutableList.copyOf(
+                requireNonNull(trafficCaptureRedactedHeaders, "trafficCaptureRedactedHeaders")));
+    }
+
+    /**
+     * Sets the names of the request and response headers whose values are replaced with
+     * {@code <redacted>} in the captured traffic.
+     *
+     * @see #trafficCaptureRedactedHeaders(CharSequence...)
+     */
+    public ServerBuilder trafficCaptureRedactedHeaders(
+            Iterable<? extends CharSequence> trafficCaptureRedactedHeaders) {
+        requireNonNull(trafficCaptureRedactedHeaders, "trafficCaptureRedactedHeaders");
+        final ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+        for (CharSequence name : trafficCaptureRedactedHeaders) {
+            requireNonNull(name, "trafficCaptureRedactedHeaders contains null");
+            builder.add(Ascii.toLowerCase(name));
+        }
+        this.trafficCaptureRedactedHeaders = builder.build();
+        return this;
+    }
+
+    /**
+     * Sets the number of the threads which run the services annotated with {@code @Blocking}, so that
+     * they never block an event loop.
+     */
+    public ServerBuilder blockingTaskThreadCount(int blockingTaskThreadCount) {
+        checkArgument(blockingTaskThreadCount > 0, "blockingTaskThreadCount must > 0");
+        this.blockingTaskThreadCount = blockingTaskThreadCount;
+        return this;
+    }
+
+    /**
+     * Sets the number of the requests to the blocking services which can wait for a thread. The requests
+     * received while all of them are waiting are rejected with {@code 503 Service Unavailable}.
+     */
+    public ServerBuilder blockingTaskBufferSize(int blockingTaskBufferSize) {
+        checkArgument(blockingTaskBufferSize > 0 && Integer.bitCount(blockingTaskBufferSize) == 1,
+                      "blockingTaskBufferSize must be a power of 2");
+        this.blockingTaskBufferSize = blockingTaskBufferSize;
+        return this;
+    }
+
+    /**
+     * Sets how the idle threads which run the blocking services wait for the requests.
+     */
+    public ServerBuilder blockingTaskWaitStrategy(BlockingTaskWaitStrategy blockingTaskWaitStrategy) {
+        this.blockingTaskWaitStrategy = requireNonNull(blockingTaskWaitStrategy, "blockingTaskWaitStrategy");
+        return this;
+    }
+
+    /**
+     * Sets which services run on virtual threads rather than on the threads of the blocking task
+     * dispatcher.
+     */
+    public ServerBuilder virtualThreadMode(VirtualThreadMode virtualThreadMode) {
+        this.virtualThreadMode = requireNonNull(virtualThreadMode, "virtualThreadMode");
+        return this;
+    }
+
+    /**
+     * Sets the duration above which a virtual thread pinned to its carrier thread is counted in
+     * {@code microspace.virtual.threads.pinned}. Only effective when the virtual threads are enabled by
+     * {@link #virtualThreadMode(VirtualThreadMode)}.
+     */
+    public ServerBuilder virtualThreadPinningThresholdMillis(long virtualThreadPinningThresholdMillis) {
+        checkArgument(virtualThreadPinningThresholdMillis >= 0,
+                      "virtualThreadPinningThresholdMillis must >= 0");
+        this.virtualThreadPinningThresholdMillis = virtualThreadPinningThresholdMillis;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of the routing results which are cached by the method and the path of
+     * requests, including the requests which are answered with 404 Not Found or 405 Method Not Allowed.
+     * {@code 0} disables the cache.
+     */
+    public ServerBuilder routeCacheSize(int routeCacheSize) {
+        checkArgument(routeCacheSize >= 0, "routeCacheSize must >= 0");
+        this.routeCacheSize = routeCacheSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of the threads which accept the connections, which defaults to the number of the
+     * available processors.
+     *
+     * <p>On the epoll and io_uring transports, a value greater than {@code 1} binds as many server
+     * channels to every port with {@code SO_REUSEPORT} enabled, so that the kernel spreads the incoming
+     * connections over the acceptor threads. With {@code SO_REUSEPORT}, another process of the same user
+     * can bind the same port without failing, and then receives a part of the connections. Specify
+     * {@code 1} to bind a single server channel per port without {@code SO_REUSEPORT}, which fails to
+     * start if the port is in use. The NIO transport always binds a single server channel per port.
+     */
     public ServerBuilder acceptThreadCount(int acceptThreadCount) {
         checkArgument(acceptThreadCount > 0, "acceptThreadCount must > 0");
         this.acceptThreadCount = acceptThreadCount;
@@ -797,6 +1152,8 @@ public final class ServerBuilder {
      * @return Http Server
      */
     public Server build(Class<?> bootCls, String[] args) {
+        final StartupProfile startupProfile = new StartupProfile();
+        long phaseStartNanos = System.nanoTime();
         this.ports.forEach(
                 port -> checkState(port.protocols().stream().anyMatch(p -> p != PROXY),
                                    "protocols: %s (expected: at least one %s or %s)",
@@ -825,6 +1182,7 @@ public final class ServerBuilder {
                 }).map(cfgBuilder -> cfgBuilder.build(
                         requestTimeoutMillis, maxRequestLength, verboseResponses))
                 .collect(toImmutableList());
+        phaseStartNanos = startupProfile.record(StartupProfile.Phase.ANNOTATION_SCANNING, phaseStartNanos);
 
         if (!ports.isEmpty()) {
             ports = resolveDistinctPorts(ports);
@@ -846,17 +1204,50 @@ public final class ServerBuilder {
             }
         }
 
-        return new Server(new ServerConfig(serviceConfigs, Map.of(), meterRegistry, bootCls,
-                                           args, bannerPrinter, channelOptions, childChannelOptions, useSsl,
-                                           useEpoll, shutdownWorkerGroupOnStop, startStopExecutor, bannerText,
-                                           bannerFont, sessionKey, viewSuffix, templateFolder, serverThreadName,
-                                           profiles, useSession, useIoUsing, ports, maxNumConnections,
-                                           http2InitialConnectionWindowSize, http2InitialStreamWindowSize,
-                                           http2MaxFrameSize, http1MaxInitialLineLength, http1MaxHeaderSize,
-                                           http1MaxChunkSize, idleTimeoutMillis, pingIntervalMillis,
-                                           maxConnectionAgeMillis, http2MaxHeaderListSize,
-                                           http2MaxStreamsPerConnection, acceptThreadCount, ioThreadCount,
-                                           serverRestartCount, gracefulShutdownQuietPeriod,
-                                           gracefulShutdownTimeout), null);
+        checkState(writeBufferLowWaterMark <= writeBufferHighWaterMark,
+                   "writeBufferLowWaterMark: %s (expected: <= writeBufferHighWaterMark: %s)",
+                   writeBufferLowWaterMark, writeBufferHighWaterMark);
+
+        final boolean needsTls = useSsl || ports.stream().anyMatch(ServerPort::hasHttps);
+        final boolean needsKeyMaterial = needsTls || ports.stream().anyMatch(ServerPort::hasHttp3);
+        final TlsKeyMaterial tlsKeyMaterial;
+        if (!needsKeyMaterial) {
+            tlsKeyMaterial = null;
+        } else if (tlsKeyCertChainFile != null && tlsKeyFile != null) {
+            tlsKeyMaterial = TlsKeyMaterial.ofFiles(tlsKeyCertChainFile, tlsKeyFile, tlsKeyPassword);
+        } else {
+            tlsKeyMaterial = TlsKeyMaterial.ofSelfSigned();
+        }
+
+        final ServerConfig config = new ServerConfig(serviceConfigs, Map.of(), meterRegistry, bootCls, args,
+                                                     bannerPrinter, channelOptions, childChannelOptions,
+                                                     useSsl, useEpoll, shutdownWorkerGroupOnStop,
+                                                     startStopExecutor, bannerText, bannerFont, sessionKey,
+                                                     viewSuffix, templateFolder, serverThreadName, profiles,
+                                                     useSession, useIoUsing, useStreamingRequestBody, ports,
+                                                     maxNumConnections, http2InitialConnectionWindowSize,
+                                                     http2InitialStreamWindowSize, http2MaxFrameSize,
+                                                     http1MaxInitialLineLength, http1MaxHeaderSize,
+                                                     http1MaxChunkSize, idleTimeoutMillis, pingIntervalMillis,
+                                                     maxConnectionAgeMillis, http2MaxHeaderListSize,
+                                                     http2MaxStreamsPerConnection, acceptThreadCount,
+                                                     ioThreadCount, serverRestartCount,
+                                                     gracefulShutdownQuietPeriod, gracefulShutdownTimeout,
+                                                     http3MaxStreamsPerConnection,
+                                                     http3InitialConnectionWindowSize,
+                                                     http3InitialStreamWindowSize, useResponseCompression,
+                                                     compressionMinLength, compressionLevel,
+                                                     compressionCacheSize, compressibleMediaTypes,
+                                                     tlsSessionCacheSize, tlsSessionTimeoutSeconds,
+                                                     tlsSessionTicketKeyRotationMillis,
+                                                     writeBufferHighWaterMark, writeBufferLowWaterMark,
+                                                     trafficCaptureSamplingRate, trafficCaptureBufferSize,
+                                                     trafficCaptureMaxContentLength, blockingTaskThreadCount,
+                                                     blockingTaskBufferSize, blockingTaskWaitStrategy,
+                                                     virtualThreadMode, virtualThreadPinningThresholdMillis,
+                                                     routeCacheSize, trafficCaptureRedactedHeaders);
+        final SslContext sslContext = needsTls ? tlsKeyMaterial.newSslContext(config) : null;
+        startupProfile.record(StartupProfile.Phase.CONFIG_BUILD, phaseStartNanos);
+        return new Server(config, sslContext, tlsKeyMaterial, startupProfile);
     }
 }
@@ -26,6 +26,7 @@ package io.microspace.server;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 
 import io.micrometer.core.instrument.MeterRegistry;
@@ -47,6 +48,7 @@ public final class ServerConfig {
     private final boolean useEpoll;
     private final boolean useSession;
     private final boolean useIoUsing;
+    private final boolean useStreamingRequestBody;
     private final boolean shutdownWorkerGroupOnStop;
     private final String bannerText;
     private final String bannerFont;
@@ -76,6 +78,29 @@ public final class ServerConfig {
     private final Class<?> bootCls;
     private final String[] args;
     private final List<ServiceConfig> serviceConfigs;
+    private final long http3MaxStreamsPerConnection;
+    private final long http3InitialConnectionWindowSize;
+    private final long http3InitialStreamWindowSize;
+    private final boolean useResponseCompression;
+    private final int compressionMinLength;
+    private final int compressionLevel;
+    private final long compressionCacheSize;
+    private final Set<MediaType> compressibleMediaTypes;
+    private final long tlsSessionCacheSize;
+    private final long tlsSessionTimeoutSeconds;
+    private final long tlsSessionTicketKeyRotationMillis;
+    private final int writeBufferHighWaterMark;
+    private final int writeBufferLowWaterMark;
+    private final double trafficCaptureSamplingRate;
+    private final int trafficCaptureBufferSize;
+    private final int trafficCaptureMaxContentLength;
+    private final int blockingTaskThreadCount;
+    private final int blockingTaskBufferSize;
+    private final BlockingTaskWaitStrategy blockingTaskWaitStrategy;
+    private final VirtualThreadMode virtualThreadMode;
+    private final long virtualThreadPinningThresholdMillis;
+    private final int routeCacheSize;
+    private final Set<String> trafficCaptureRedactedHeaders;
 
     ServerConfig(List<ServiceConfig> serviceConfigs,
                  Map<Class<? extends Throwable>, ExceptionHandlerFunction> exceptionServices,
@@ -86,14 +111,25 @@ public final class ServerConfig {
                  ExecutorService startStopExecutor,
                  String bannerText, String bannerFont, String sessionKey, String viewSuffix,
                  String templateFolder, String serverThreadName, String profiles,
-                 boolean useSession, boolean useIoUsing, List<ServerPort> ports,
+                 boolean useSession, boolean useIoUsing, boolean useStreamingRequestBody,
+                 List<ServerPort> ports,
                  int maxNumConnections, int http2InitialConnectionWindowSize, int http2InitialStreamWindowSize,
                  int http2MaxFrameSize, int http1MaxInitialLineLength, int http1MaxHeaderSize,
                  int http1MaxChunkSize, long idleTimeoutMillis, long pingIntervalMillis,
                  long maxConnectionAgeMillis, long http2MaxHeaderListSize, long http2MaxStreamsPerConnection,
                  int acceptThreadCount, int ioThreadCount, int serverRestartCount,
                  Duration gracefulShutdownQuietPeriod,
-                 Duration gracefulShutdownTimeout) {
+                 Duration gracefulShutdownTimeout, long http3MaxStreamsPerConnection,
+                 long http3InitialConnectionWindowSize, long http3InitialStreamWindowSize,
+                 boolean useResponseCompression, int compressionMinLength, int compressionLevel,
+                 long compressionCacheSize, Set<MediaType> compressibleMediaTypes, long tlsSessionCacheSize,
+                 long tlsSessionTimeoutSeconds, long tlsSessionTicketKeyRotationMillis,
+                 int writeBufferHighWaterMark, int writeBufferLowWaterMark,
+                 double trafficCaptureSamplingRate, int trafficCaptureBufferSize,
+                 int trafficCaptureMaxContentLength, int blockingTaskThreadCount,
+                 int blockingTaskBufferSize, BlockingTaskWaitStrategy blockingTaskWaitStrategy,
+                 VirtualThreadMode virtualThreadMode, long virtualThreadPinningThresholdMillis,
+                 int routeCacheSize, Set<String> trafficCaptureRedactedHeaders) {
         this.serviceConfigs = serviceConfigs;
         this.exceptionServices = exceptionServices;
         this.meterRegistry = meterRegistry;
@@ -115,6 +151,7 @@ public final class ServerConfig {
         this.profiles = profiles;
         this.useSession = useSession;
         this.useIoUsing = useIoUsing;
+        this.useStreamingRequestBody = useStreamingRequestBody;
         this.ports = ports;
         this.maxNumConnections = maxNumConnections;
         this.http2InitialConnectionWindowSize = http2InitialConnectionWindowSize;
@@ -133,6 +170,29 @@ public final class ServerConfig {
         this.serverRestartCount = serverRestartCount;
         this.gracefulShutdownQuietPeriod = gracefulShutdownQuietPeriod;
         this.gracefulShutdownTimeout = gracefulShutdownTimeout;
+        this.http3MaxStreamsPerConnection = http3MaxStreamsPerConnection;
+        this.http3InitialConnectionWindowSize = http3InitialConnectionWindowSize;
+        this.http3InitialStreamWindowSize = http3InitialStreamWindowSize;
+        this.useResponseCompression = useResponseCompression;
+        this.compressionMinLength = compressionMinLength;
+        this.compressionLevel = compressionLevel;
+        this.compressionCacheSize = compressionCacheSize;
+        this.compressibleMediaTypes = compressibleMediaTypes;
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+        this.tlsSessionTimeoutSeconds = tlsSessionTimeoutSeconds;
+        this.tlsSessionTicketKeyRotationMillis = tlsSessionTicketKeyRotationMillis;
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+        this.trafficCaptureSamplingRate = trafficCaptureSamplingRate;
+        this.trafficCaptureBufferSize = trafficCaptureBufferSize;
+        this.trafficCaptureMaxContentLength = trafficCaptureMaxContentLength;
+        this.blockingTaskThreadCount = blockingTaskThreadCount;
+        this.blockingTaskBufferSize = blockingTaskBufferSize;
+        this.blockingTaskWaitStrategy = blockingTaskWaitStrategy;
+        this.virtualThreadMode = virtualThreadMode;
+        this.virtualThreadPinningThresholdMillis = virtualThreadPinningThresholdMillis;
+        this.routeCacheSize = routeCacheSize;
+        this.trafficCaptureRedactedHeaders = trafficCaptureRedactedHeaders;
     }
 
     public Class<?> bootCls() {
@@ -291,6 +351,102 @@ public final class ServerConfig {
         return useIoUsing;
     }
 
+    public boolean useStreamingRequestBody() {
+        return useStreamingRequestBody;
+    }
+
+    public long http3MaxStreamsPerConnection() {
+        return http3MaxStreamsPerConnection;
+    }
+
+    public long http3InitialConnectionWindowSize() {
+        return http3InitialConnectionWindowSize;
+    }
+
+    public long http3InitialStreamWindowSize() {
+        return http3InitialStreamWindowSize;
+    }
+
+    public boolean useResponseCompression() {
+        return useResponseCompression;
+    }
+
+    public int compressionMinLength() {
+        return compressionMinLength;
+    }
+
+    public int compressionLevel() {
+        return compressionLevel;
+    }
+
+    public long compressionCacheSize() {
+        return compressionCacheSize;
+    }
+
+    public Set<MediaType> compressibleMediaTypes() {
+        return compressibleMediaTypes;
+    }
+
+    public long tlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    public long tlsSessionTimeoutSeconds() {
+        return tlsSessionTimeoutSeconds;
+    }
+
+    public long tlsSessionTicketKeyRotationMillis() {
+        return tlsSessionTicketKeyRotationMillis;
+    }
+
+    public int writeBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    public int writeBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public double trafficCaptureSamplingRate() {
+        return trafficCaptureSamplingRate;
+    }
+
+    public int trafficCaptureBufferSize() {
+        return trafficCaptureBufferSize;
+    }
+
+    public int trafficCaptureMaxContentLength() {
+        return trafficCaptureMaxContentLength;
+    }
+
+    public int blockingTaskThreadCount() {
+        return blockingTaskThreadCount;
+    }
+
+    public int blockingTaskBufferSize() {
+        return blockingTaskBufferSize;
+    }
+
+    public BlockingTaskWaitStrategy blockingTaskWaitStrategy() {
+        return blockingTaskWaitStrategy;
+    }
+
+    public VirtualThreadMode virtualThreadMode() {
+        return virtualThreadMode;
+    }
+
+    public long virtualThreadPinningThresholdMillis() {
+        return virtualThreadPinningThresholdMillis;
+    }
+
+    public int routeCacheSize() {
+        return routeCacheSize;
+    }
+
+    public Set<String> trafficCaptureRedactedHeaders() {
+        return trafficCaptureRedactedHeaders;
+    }
+
     static Duration validateNonNegative(Duration duration, String fieldName) {
         if (duration.isNegative()) {
             throw new IllegalArgumentException(fieldName + ": " + duration + " (expected: >= 0)");
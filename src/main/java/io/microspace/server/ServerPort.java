@@ -28,6 +28,7 @@ import static io.microspace.server.SessionProtocol.H1;
 import static io.microspace.server.SessionProtocol.H1C;
 import static io.microspace.server.SessionProtocol.H2;
 import static io.microspace.server.SessionProtocol.H2C;
+import static io.microspace.server.SessionProtocol.H3;
 import static io.microspace.server.SessionProtocol.HTTP;
 import static io.microspace.server.SessionProtocol.HTTPS;
 import static io.microspace.server.SessionProtocol.PROXY;
@@ -81,9 +82,12 @@ public final class ServerPort implements Comparable<ServerPort> {
                       "protocols: %s (must not be empty)", this.protocols);
         checkArgument(this.protocols.contains(HTTP) || this.protocols.contains(HTTPS),
                       "protocols: %s (must contain HTTP or HTTPS)", this.protocols);
-        checkArgument(this.protocols.stream().allMatch(p -> p == HTTP || p == HTTPS || p == PROXY),
-                      "protocols: %s (must not contain other than %s, %s or %s)",
-                      this.protocols, HTTP, HTTPS, PROXY);
+        checkArgument(this.protocols.stream().allMatch(p -> p == HTTP || p == HTTPS || p == PROXY || p == H3),
+                      "protocols: %s (must not contain other than %s, %s, %s or %s)",
+                      this.protocols, HTTP, HTTPS, PROXY, H3);
+        // An HTTP/3 listener is discovered via the Alt-Svc header of the HTTPS responses on the same port.
+        checkArgument(!this.protocols.contains(H3) || this.protocols.contains(HTTPS),
+                      "protocols: %s (%s requires %s)", this.protocols, H3, HTTPS);
 
         this.comparisonStr = localAddress.getAddress().getHostAddress() + '/' +
                              localAddress.getPort() + '/' + protocols;
@@ -126,6 +130,14 @@ public final class ServerPort implements Comparable<ServerPort> {
         return hasProtocol(HTTPS) || hasProtocol(H1) || hasProtocol(H2);
     }
 
+    /**
+     * Returns whether the {@link SessionProtocol#H3} is in the list of {@link SessionProtocol}s, i.e.
+     * whether a QUIC listener is bound next to the TCP listener of this port.
+     */
+    public boolean hasHttp3() {
+        return hasProtocol(H3);
+    }
+
     /**
      * Returns whether the {@link SessionProtocol#PROXY} is in the list of {@link SessionProtocol}s.
      */
@@ -177,6 +177,21 @@ public final class ServiceBindingBuilder extends AbstractBindingBuilder {
         return (ServiceBindingBuilder) super.verboseResponses(verboseResponses);
     }
 
+    @Override
+    public ServiceBindingBuilder trafficCapture(boolean trafficCapture) {
+        return (ServiceBindingBuilder) super.trafficCapture(trafficCapture);
+    }
+
+    @Override
+    public ServiceBindingBuilder trafficCaptureContent(boolean trafficCaptureContent) {
+        return (ServiceBindingBuilder) super.trafficCaptureContent(trafficCaptureContent);
+    }
+
+    @Override
+    public ServiceBindingBuilder maxConcurrentVirtualThreads(int maxConcurrentVirtualThreads) {
+        return (ServiceBindingBuilder) super.maxConcurrentVirtualThreads(maxConcurrentVirtualThreads);
+    }
+
     @Override
     public ServiceBindingBuilder defaultServiceName(String defaultServiceName) {
         return (ServiceBindingBuilder) super.defaultServiceName(defaultServiceName);
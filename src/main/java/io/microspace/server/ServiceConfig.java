@@ -34,6 +34,8 @@ import com.google.common.base.MoreObjects;
  */
 public final class ServiceConfig {
     private final Route route;
+    @Nullable
+    private final PathMapping pathMapping;
     private final HttpService service;
 
     private final String defaultServiceName;
@@ -44,13 +46,18 @@ public final class ServiceConfig {
 
     private final boolean verboseResponses;
     private final boolean handlesCorsPreflight;
+    private final boolean trafficCapture;
+    private final boolean trafficCaptureContent;
+    private final int maxConcurrentVirtualThreads;
 
     ServiceConfig(Route route, HttpService service,
                   @Nullable String defaultServiceName,
                   @Nullable String defaultLogName,
                   long requestTimeoutMillis, long maxRequestLength,
-                  boolean verboseResponses) {
+                  boolean verboseResponses, boolean trafficCapture, boolean trafficCaptureContent,
+                  int maxConcurrentVirtualThreads) {
         this.route = requireNonNull(route, "route");
+        pathMapping = route instanceof DefaultRoute defaultRoute ? defaultRoute.pathMapping() : null;
         this.service = requireNonNull(service, "service");
         this.defaultServiceName = defaultServiceName;
         this.defaultLogName = defaultLogName;
@@ -58,12 +65,24 @@ public final class ServiceConfig {
         this.maxRequestLength = maxRequestLength;
         this.verboseResponses = verboseResponses;
         this.handlesCorsPreflight = false;
+        this.trafficCapture = trafficCapture;
+        this.trafficCaptureContent = trafficCaptureContent;
+        this.maxConcurrentVirtualThreads = maxConcurrentVirtualThreads;
     }
 
     Route route() {
         return route;
     }
 
+    /**
+     * Returns the {@link PathMapping} of the {@link #route()}, which extracts the path parameters of
+     * a request, or {@code null} if the {@link Route} is not a {@link DefaultRoute}.
+     */
+    @Nullable
+    PathMapping pathMapping() {
+        return pathMapping;
+    }
+
     HttpService service() {
         return service;
     }
@@ -92,6 +111,29 @@ public final class ServiceConfig {
         return handlesCorsPreflight;
     }
 
+    /**
+     * Returns whether the traffic of this service is captured when the server samples it.
+     */
+    boolean trafficCapture() {
+        return trafficCapture;
+    }
+
+    /**
+     * Returns whether the response content of this service is captured along with its headers.
+     * Disabled unless the service opts in, because the content may carry personal data.
+     */
+    boolean trafficCaptureContent() {
+        return trafficCaptureContent;
+    }
+
+    /**
+     * Returns the maximum number of the virtual threads which serve this service at the same time, or
+     * {@code 0} if unlimited. Only effective when the service runs on virtual threads.
+     */
+    int maxConcurrentVirtualThreads() {
+        return maxConcurrentVirtualThreads;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
@@ -103,6 +145,9 @@ public final class ServiceConfig {
                           .add("maxRequestLength", maxRequestLength)
                           .add("verboseResponses", verboseResponses)
                           .add("handlesCorsPreflight", handlesCorsPreflight)
+                          .add("trafficCapture", trafficCapture)
+                          .add("trafficCaptureContent", trafficCaptureContent)
+                          .add("maxConcurrentVirtualThreads", maxConcurrentVirtualThreads)
                           .toString();
     }
 }
@@ -23,6 +23,7 @@
  */
 package io.microspace.server;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 import java.time.Duration;
@@ -49,6 +50,12 @@ final class ServiceConfigBuilder implements ServiceConfigSetter {
     private Long maxRequestLength;
     @Nullable
     private Boolean verboseResponses;
+    @Nullable
+    private Boolean trafficCapture;
+    @Nullable
+    private Boolean trafficCaptureContent;
+    @Nullable
+    private Integer maxConcurrentVirtualThreads;
 
     ServiceConfigBuilder(Route route, HttpService service) {
         this.route = requireNonNull(route, "route");
@@ -83,6 +90,25 @@ final class ServiceConfigBuilder implements ServiceConfigSetter {
         return this;
     }
 
+    @Override
+    public ServiceConfigBuilder trafficCapture(boolean trafficCapture) {
+        this.trafficCapture = trafficCapture;
+        return this;
+    }
+
+    @Override
+    public ServiceConfigBuilder trafficCaptureContent(boolean trafficCaptureContent) {
+        this.trafficCaptureContent = trafficCaptureContent;
+        return this;
+    }
+
+    @Override
+    public ServiceConfigBuilder maxConcurrentVirtualThreads(int maxConcurrentVirtualThreads) {
+        checkArgument(maxConcurrentVirtualThreads >= 0, "maxConcurrentVirtualThreads must >= 0");
+        this.maxConcurrentVirtualThreads = maxConcurrentVirtualThreads;
+        return this;
+    }
+
     @Override
     public ServiceConfigSetter defaultServiceName(String defaultServiceName) {
         this.defaultServiceName = requireNonNull(defaultServiceName, "defaultServiceName");
@@ -102,7 +128,10 @@ final class ServiceConfigBuilder implements ServiceConfigSetter {
                 route, service, defaultServiceName, defaultLogName,
                 requestTimeoutMillis != null ? requestTimeoutMillis : defaultRequestTimeoutMillis,
                 maxRequestLength != null ? maxRequestLength : defaultMaxRequestLength,
-                verboseResponses != null ? verboseResponses : defaultVerboseResponses);
+                verboseResponses != null ? verboseResponses : defaultVerboseResponses,
+                trafficCapture == null || trafficCapture,
+                trafficCaptureContent != null && trafficCaptureContent,
+                maxConcurrentVirtualThreads != null ? maxConcurrentVirtualThreads : 0);
     }
 
     @Override
@@ -115,6 +144,9 @@ final class ServiceConfigBuilder implements ServiceConfigSetter {
                           .add("requestTimeoutMillis", requestTimeoutMillis)
                           .add("maxRequestLength", maxRequestLength)
                           .add("verboseResponses", verboseResponses)
+                          .add("trafficCapture", trafficCapture)
+                          .add("trafficCaptureContent", trafficCaptureContent)
+                          .add("maxConcurrentVirtualThreads", maxConcurrentVirtualThreads)
                           .toString();
     }
 }
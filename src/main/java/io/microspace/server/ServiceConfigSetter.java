@@ -40,6 +40,12 @@ interface ServiceConfigSetter {
 
     ServiceConfigSetter verboseResponses(boolean verboseResponses);
 
+    ServiceConfigSetter trafficCapture(boolean trafficCapture);
+
+    ServiceConfigSetter trafficCaptureContent(boolean trafficCaptureContent);
+
+    ServiceConfigSetter maxConcurrentVirtualThreads(int maxConcurrentVirtualThreads);
+
     ServiceConfigSetter defaultServiceName(String defaultServiceName);
 
     ServiceConfigSetter defaultLogName(String defaultLogName);
@@ -63,6 +63,10 @@ public enum SessionProtocol implements Comparable<SessionProtocol> {
      * HTTP/2 - cleartext.
      */
     H2C("h2c", false, true, 80),
+    /**
+     * HTTP/3 - over QUIC, which is always secured with TLS.
+     */
+    H3("h3", true, true, 443),
     /**
      * <a href="https://www.haproxy.org/download/1.8/doc/proxy-protocol.txt">PROXY protocol</a> - v1 or v2.
      */
@@ -0,0 +1,72 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.security.SecureRandom;
+
+import javax.annotation.Nullable;
+
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+
+/**
+ * Replaces the key which encrypts the TLS session tickets of an OpenSSL context every time it runs.
+ * The previous key is kept for decryption only, so that the tickets issued before the rotation can be
+ * resumed until the next rotation. The JDK engine rotates the keys of its tickets by itself.
+ *
+ * @author i1619kHz
+ */
+final class SessionTicketKeyRotator implements Runnable {
+    private final OpenSslSessionContext sessionContext;
+    private final SecureRandom random = new SecureRandom();
+    @Nullable
+    private OpenSslSessionTicketKey currentKey;
+
+    SessionTicketKeyRotator(OpenSslSessionContext sessionContext) {
+        this.sessionContext = requireNonNull(sessionContext, "sessionContext");
+    }
+
+    @Override
+    public void run() {
+        final OpenSslSessionTicketKey newKey = new OpenSslSessionTicketKey(
+                randomBytes(OpenSslSessionTicketKey.NAME_SIZE),
+                randomBytes(OpenSslSessionTicketKey.HMAC_KEY_SIZE),
+                randomBytes(OpenSslSessionTicketKey.AES_KEY_SIZE));
+        // The first key encrypts the new tickets, the others only decrypt the existing ones.
+        if (currentKey == null) {
+            sessionContext.setTicketKeys(newKey);
+        } else {
+            sessionContext.setTicketKeys(newKey, currentKey);
+        }
+        currentKey = newKey;
+    }
+
+    private byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records how long each phase of the startup of a {@link Server} takes, from building its
+ * {@link ServerConfig} to binding its ports. Once all ports have been bound, the phases are recorded
+ * in the {@code microspace.startup.duration} timer tagged with their {@code phase}, and logged as a
+ * startup report.
+ *
+ * @author i1619kHz
+ */
+final class StartupProfile {
+    private static final Logger logger = LoggerFactory.getLogger(StartupProfile.class);
+
+    /**
+     * The phases of the startup, in the order they take place.
+     */
+    enum Phase {
+        ANNOTATION_SCANNING("annotation_scanning", "annotation scanning"),
+        CONFIG_BUILD("config_build", "config build"),
+        ROUTE_COMPILATION("route_compilation", "route compilation"),
+        TRANSPORT_INIT("transport_init", "transport init"),
+        BIND("bind", "bind");
+
+        private final String tag;
+        private final String displayName;
+
+        Phase(String tag, String displayName) {
+            this.tag = tag;
+            this.displayName = displayName;
+        }
+    }
+
+    private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+
+    /**
+     * Records the specified phase which started at the specified {@link System#nanoTime()} and ends now.
+     *
+     * @return the current {@link System#nanoTime()}, which is when the next phase starts
+     */
+    synchronized long record(Phase phase, long startNanos) {
+        final long nowNanos = System.nanoTime();
+        phaseNanos.merge(phase, nowNanos - startNanos, Long::sum);
+        return nowNanos;
+    }
+
+    /**
+     * Records the phases in the specified {@link MeterRegistry} and logs the startup report.
+     */
+    synchronized void report(MeterRegistry meterRegistry) {
+        long totalNanos = 0;
+        final StringBuilder buf = new StringBuilder(256);
+        for (Map.Entry<Phase, Long> entry : phaseNanos.entrySet()) {
+            final Phase phase = entry.getKey();
+            final long nanos = entry.getValue();
+            totalNanos += nanos;
+            Timer.builder("microspace.startup.duration")
+                 .description("The time each phase of the startup of the server took")
+                 .tag("phase", phase.tag)
+                 .register(meterRegistry)
+                 .record(nanos, TimeUnit.NANOSECONDS);
+            buf.append(System.lineSeparator()).append("  ")
+               .append(Strings.padEnd(phase.displayName, 20, ' '))
+               .append(Strings.padStart(String.valueOf(TimeUnit.NANOSECONDS.toMillis(nanos)), 6, ' '))
+               .append(" ms");
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Serving startup time {}ms:{}", TimeUnit.NANOSECONDS.toMillis(totalNanos), buf);
+        }
+    }
+}
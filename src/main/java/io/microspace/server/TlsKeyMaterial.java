@@ -0,0 +1,183 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.microspace.internal.SelfSignedCertificate;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolConfig.Protocol;
+import io.netty.handler.ssl.ApplicationProtocolConfig.SelectedListenerFailureBehavior;
+import io.netty.handler.ssl.ApplicationProtocolConfig.SelectorFailureBehavior;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.incubator.codec.http3.Http3;
+import io.netty.incubator.codec.quic.QuicSslContext;
+import io.netty.incubator.codec.quic.QuicSslContextBuilder;
+
+/**
+ * The private key and the certificate chain of the TLS ports, which are shared by the TCP ports and
+ * the QUIC listeners of the HTTP/3 ports.
+ *
+ * @author i1619kHz
+ */
+final class TlsKeyMaterial {
+    private static final Logger logger = LoggerFactory.getLogger(TlsKeyMaterial.class);
+
+    private static final String SELF_SIGNED_FQDN = "localhost";
+
+    private static final ApplicationProtocolConfig ALPN_CONFIG = new ApplicationProtocolConfig(
+            Protocol.ALPN,
+            // NO_ADVERTISE and ACCEPT are the only modes supported by both the OpenSSL and JDK engines.
+            SelectorFailureBehavior.NO_ADVERTISE,
+            SelectedListenerFailureBehavior.ACCEPT,
+            ApplicationProtocolNames.HTTP_2,
+            ApplicationProtocolNames.HTTP_1_1);
+
+    @Nullable
+    private final File keyCertChainFile;
+    @Nullable
+    private final File keyFile;
+    @Nullable
+    private final String keyPassword;
+    @Nullable
+    private final SelfSignedCertificate selfSignedCertificate;
+
+    private TlsKeyMaterial(@Nullable File keyCertChainFile, @Nullable File keyFile,
+                           @Nullable String keyPassword,
+                           @Nullable SelfSignedCertificate selfSignedCertificate) {
+        this.keyCertChainFile = keyCertChainFile;
+        this.keyFile = keyFile;
+        this.keyPassword = keyPassword;
+        this.selfSignedCertificate = selfSignedCertificate;
+    }
+
+    /**
+     * Returns the key material read from the PEM encoded certificate chain and PKCS#8 private key files.
+     */
+    static TlsKeyMaterial ofFiles(File keyCertChainFile, File keyFile, @Nullable String keyPassword) {
+        return new TlsKeyMaterial(requireNonNull(keyCertChainFile, "keyCertChainFile"),
+                                  requireNonNull(keyFile, "keyFile"), keyPassword, null);
+    }
+
+    /**
+     * Returns the key material of a newly generated self-signed certificate for {@code localhost}.
+     */
+    static TlsKeyMaterial ofSelfSigned() {
+        final SelfSignedCertificate ssc;
+        try {
+            ssc = SelfSignedCertificate.generate(SELF_SIGNED_FQDN);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("failed to generate a self-signed certificate", e);
+        }
+        logger.warn("No TLS certificate is configured. Using a self-signed certificate for '{}', " +
+                    "which must not be used in production.", SELF_SIGNED_FQDN);
+        return new TlsKeyMaterial(null, null, null, ssc);
+    }
+
+    /**
+     * Returns the {@link SslProvider} of the TLS engine. OpenSSL is preferred when {@code netty-tcnative}
+     * is in the classpath because its handshakes are a lot cheaper than the ones of the JDK engine.
+     */
+    static SslProvider sslProvider() {
+        return SslProvider.isAlpnSupported(SslProvider.OPENSSL) ? SslProvider.OPENSSL : SslProvider.JDK;
+    }
+
+    /**
+     * Returns a new server-side {@link SslContext} which negotiates HTTP/2 and HTTP/1.1 via ALPN and
+     * keeps the sessions in a cache of the configured size, so that the clients can resume them.
+     */
+    SslContext newSslContext(ServerConfig config) {
+        requireNonNull(config, "config");
+        return newSslContext(sslProvider(), config.tlsSessionCacheSize(), config.tlsSessionTimeoutSeconds());
+    }
+
+    /**
+     * Returns a new server-side {@link SslContext} of the specified TLS engine, which is configured like
+     * the one returned by {@link #newSslContext(ServerConfig)}.
+     */
+    SslContext newSslContext(SslProvider provider, long sessionCacheSize, long sessionTimeoutSeconds) {
+        requireNonNull(provider, "provider");
+        final SslContextBuilder builder;
+        if (selfSignedCertificate != null) {
+            builder = SslContextBuilder.forServer(selfSignedCertificate.privateKey(),
+                                                  selfSignedCertificate.certificate());
+        } else {
+            assert keyCertChainFile != null && keyFile != null;
+            builder = SslContextBuilder.forServer(keyCertChainFile, keyFile, keyPassword);
+        }
+
+        builder.sslProvider(provider)
+               .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+               .applicationProtocolConfig(ALPN_CONFIG)
+               .sessionCacheSize(sessionCacheSize)
+               .sessionTimeout(sessionTimeoutSeconds);
+        try {
+            final SslContext sslContext = builder.build();
+            if (logger.isInfoEnabled()) {
+                logger.info("Using {} TLS engine{}", provider == SslProvider.OPENSSL ? "OpenSSL" : "JDK",
+                            provider == SslProvider.OPENSSL ? " (" + OpenSsl.versionString() + ')' : "");
+            }
+            return sslContext;
+        } catch (SSLException e) {
+            throw new IllegalStateException("failed to create the TLS context", e);
+        }
+    }
+
+    /**
+     * Returns a new {@link QuicSslContext} for the HTTP/3 ports. The clients resume their sessions with
+     * a full round trip, because a request sent as 0-RTT data can be replayed by an attacker and the
+     * services can't tell such a request apart.
+     */
+    QuicSslContext newQuicSslContext() {
+        final QuicSslContextBuilder builder;
+        if (selfSignedCertificate != null) {
+            final PrivateKey privateKey = selfSignedCertificate.privateKey();
+            final X509Certificate certificate = selfSignedCertificate.certificate();
+            builder = QuicSslContextBuilder.forServer(privateKey, null, certificate);
+        } else {
+            assert keyCertChainFile != null && keyFile != null;
+            builder = QuicSslContextBuilder.forServer(keyFile, keyPassword, keyCertChainFile);
+        }
+        return builder.applicationProtocols(Http3.supportedApplicationProtocols())
+                      .earlyData(false)
+                      .build();
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+
+import io.micrometer.core.instrument.Counter;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Captures a sample of the exchanges served by the server and writes them to the
+ * {@code io.microspace.traffic} logger as JSON lines, without slowing down the event loops:
+ * <ul>
+ *   <li>The event loop only copies the fields of an exchange into a preallocated slot of a lock-free
+ *       ring buffer. The header names and values are copied by reference, so no {@link String} is
+ *       created for them.</li>
+ *   <li>A background thread formats the captured exchanges and writes all the exchanges available
+ *       at once as a single log record.</li>
+ *   <li>An exchange captured while the ring buffer is full is dropped and counted in
+ *       {@code microspace.traffic.capture.dropped}, so a slow log appender never blocks an event loop.</li>
+ * </ul>
+ * The values of the {@link ServerConfig#trafficCaptureRedactedHeaders() redacted headers} are never
+ * written, and the response content is captured only for the services which opt in with
+ * {@code trafficCaptureContent(true)}.
+ * A server whose sampling rate is {@code 0} creates no {@link TrafficCapture} at all.
+ *
+ * @author i1619kHz
+ */
+final class TrafficCapture {
+    private static final Logger logger = LoggerFactory.getLogger(TrafficCapture.class);
+    private static final Logger trafficLogger = LoggerFactory.getLogger("io.microspace.traffic");
+
+    /**
+     * The maximum number of the headers of a request or a response which are captured.
+     */
+    private static final int MAX_HEADERS = 64;
+
+    /**
+     * The length of the formatted exchanges above which they are written before the end of a batch.
+     */
+    private static final int MAX_BATCH_LENGTH = 64 * 1024;
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private static final String REDACTED = "<redacted>";
+
+    private final double samplingRate;
+    private final int maxContentLength;
+    private final Disruptor<CapturedExchange> disruptor;
+    private final RingBuffer<CapturedExchange> ringBuffer;
+    private final Counter droppedExchanges;
+
+    TrafficCapture(ServerConfig config) {
+        requireNonNull(config, "config");
+        samplingRate = config.trafficCaptureSamplingRate();
+        maxContentLength = config.trafficCaptureMaxContentLength();
+        // The sleeping wait strategy never takes a lock when an exchange is published.
+        disruptor = new Disruptor<>(() -> new CapturedExchange(maxContentLength),
+                                    config.trafficCaptureBufferSize(),
+                                    new DefaultThreadFactory("microspace-traffic-capture", true),
+                                    ProducerType.MULTI, new SleepingWaitStrategy());
+        disruptor.handleEventsWith(new BatchWriter(config.trafficCaptureRedactedHeaders()));
+        ringBuffer = disruptor.start();
+        droppedExchanges = Counter.builder("microspace.traffic.capture.dropped")
+                                  .description("The number of the sampled exchanges dropped because " +
+                                               "the traffic capture buffer was full")
+                                  .register(config.meterRegistry());
+    }
+
+    /**
+     * Returns whether the exchange of the specified request should be captured.
+     */
+    boolean sample(HttpRequest req) {
+        if (req instanceof DecodedHttpRequest decoded) {
+            final ServiceConfig serviceConfig = decoded.serviceConfig();
+            if (serviceConfig != null && !serviceConfig.trafficCapture()) {
+                return false;
+            }
+        }
+        if (samplingRate < 1 && ThreadLocalRandom.current().nextDouble() >= samplingRate) {
+            return false;
+        }
+        return trafficLogger.isInfoEnabled();
+    }
+
+    /**
+     * Copies the specified exchange into the ring buffer, or drops it if the ring buffer is full.
+     */
+    void capture(Channel ch, String[] clientIps, HttpRequest req, FullHttpResponse res, long elapsedNanos) {
+        final long sequence;
+        try {
+            sequence = ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            droppedExchanges.increment();
+            return;
+        }
+        try {
+            ringBuffer.get(sequence).set(ch, clientIps, req, res, elapsedNanos);
+        } finally {
+            ringBuffer.publish(sequence);
+        }
+    }
+
+    /**
+     * Writes the exchanges left in the ring buffer and stops the background thread.
+     */
+    void close() {
+        try {
+            disruptor.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Failed to write the captured traffic in {} seconds. Dropping the rest.",
+                        SHUTDOWN_TIMEOUT_SECONDS);
+            disruptor.halt();
+        }
+    }
+
+    /**
+     * A slot of the ring buffer, which is reused for every exchange published to it.
+     */
+    private static final class CapturedExchange {
+        long timestampMillis;
+        long elapsedNanos;
+        @Nullable
+        String channelId;
+        @Nullable
+        String clientIp;
+        @Nullable
+        String protocol;
+        @Nullable
+        String method;
+        @Nullable
+        String uri;
+        final CharSequence[] requestHeaders = new CharSequence[MAX_HEADERS * 2];
+        int numRequestHeaders;
+        int status;
+        final CharSequence[] responseHeaders = new CharSequence[MAX_HEADERS * 2];
+        int numResponseHeaders;
+        int contentLength;
+        final byte[] content;
+        boolean isContentCaptured;
+        int capturedContentLength;
+
+        CapturedExchange(int maxContentLength) {
+            content = new byte[maxContentLength];
+        }
+
+        void set(Channel ch, String[] clientIps, HttpRequest req, FullHttpResponse res, long elapsedNanos) {
+            final ServiceConfig serviceConfig =
+                    req instanceof DecodedHttpRequest decoded ? decoded.serviceConfig() : null;
+            timestampMillis = System.currentTimeMillis();
+            this.elapsedNanos = elapsedNanos;
+            channelId = (ch instanceof Http2StreamChannel ? ch.parent() : ch).id().asShortText();
+            clientIp = clientIps.length > 0 ? clientIps[0] : null;
+            protocol = ch instanceof Http2StreamChannel ? "h2" :
+                       ch instanceof QuicStreamChannel ? "h3" : req.protocolVersion().text();
+            method = req.method().name();
+            uri = req.uri();
+            numRequestHeaders = copyHeaders(req.headers(), requestHeaders);
+            status = res.status().code();
+            numResponseHeaders = copyHeaders(res.headers(), responseHeaders);
+            final ByteBuf data = res.content();
+            contentLength = data.readableBytes();
+            isContentCaptured = serviceConfig != null && serviceConfig.trafficCaptureContent();
+            if (isContentCaptured) {
+                capturedContentLength = Math.min(contentLength, content.length);
+                data.getBytes(data.readerIndex(), content, 0, capturedContentLength);
+            }
+        }
+
+        private static int copyHeaders(HttpHeaders headers, CharSequence[] dst) {
+            int i = 0;
+            final Iterator<Entry<CharSequence, CharSequence>> it = headers.iteratorCharSequence();
+            while (it.hasNext() && i < dst.length) {
+                final Entry<CharSequence, CharSequence> header = it.next();
+                dst[i++] = header.getKey();
+                dst[i++] = header.getValue();
+            }
+            return i / 2;
+        }
+
+        void clear() {
+            channelId = null;
+            clientIp = null;
+            protocol = null;
+            method = null;
+            uri = null;
+            for (int i = 0; i < numRequestHeaders * 2; i++) {
+                requestHeaders[i] = null;
+            }
+            for (int i = 0; i < numResponseHeaders * 2; i++) {
+                responseHeaders[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Formats the exchanges on the background thread and writes each batch as a single log record.
+     */
+    private static final class BatchWriter implements EventHandler<CapturedExchange> {
+        private final AsciiString[] redactedHeaders;
+        private final StringBuilder buf = new StringBuilder(1024);
+
+        BatchWriter(Set<String> redactedHeaders) {
+            this.redactedHeaders = redactedHeaders.stream().map(AsciiString::of).toArray(AsciiString[]::new);
+        }
+
+        @Override
+        public void onEvent(CapturedExchange exchange, long sequence, boolean endOfBatch) {
+            try {
+                format(exchange);
+            } finally {
+                // Do not retain the headers of the exchange until the slot is reused.
+                exchange.clear();
+            }
+            if (endOfBatch || buf.length() > MAX_BATCH_LENGTH) {
+                trafficLogger.info(buf.toString());
+                buf.setLength(0);
+            }
+        }
+
+        private void format(CapturedExchange exchange) {
+            if (buf.length() > 0) {
+                buf.append('\n');
+            }
+            buf.append("{\"timestamp\":").append(exchange.timestampMillis)
+               .append(",\"elapsedNanos\":").append(exchange.elapsedNanos)
+               .append(",\"channel\":");
+            appendString(exchange.channelId);
+            buf.append(",\"client\":");
+            appendString(exchange.clientIp);
+            buf.append(",\"protocol\":");
+            appendString(exchange.protocol);
+            buf.append(",\"method\":");
+            appendString(exchange.method);
+            buf.append(",\"uri\":");
+            appendString(exchange.uri);
+            buf.append(",\"requestHeaders\":");
+            appendHeaders(exchange.requestHeaders, exchange.numRequestHeaders);
+            buf.append(",\"status\":").append(exchange.status)
+               .append(",\"responseHeaders\":");
+            appendHeaders(exchange.responseHeaders, exchange.numResponseHeaders);
+            buf.append(",\"contentLength\":").append(exchange.contentLength)
+               .append(",\"content\":");
+            appendString(exchange.isContentCaptured ?
+                         new String(exchange.content, 0, exchange.capturedContentLength,
+                                    StandardCharsets.UTF_8) : null);
+            buf.append('}');
+        }
+
+        private void appendHeaders(CharSequence[] headers, int numHeaders) {
+            buf.append('{');
+            for (int i = 0; i < numHeaders * 2; i += 2) {
+                if (i > 0) {
+                    buf.append(',');
+                }
+                appendString(headers[i]);
+                buf.append(':');
+                appendString(isRedacted(headers[i]) ? REDACTED : headers[i + 1]);
+            }
+            buf.append('}');
+        }
+
+        private boolean isRedacted(CharSequence name) {
+            for (AsciiString redactedHeader : redactedHeaders) {
+                if (redactedHeader.contentEqualsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void appendString(@Nullable CharSequence value) {
+            if (value == null) {
+                buf.append("null");
+                return;
+            }
+            buf.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        buf.append("\\\"");
+                        break;
+                    case '\\':
+                        buf.append("\\\\");
+                        break;
+                    case '\n':
+                        buf.append("\\n");
+                        break;
+                    case '\r':
+                        buf.append("\\r");
+                        break;
+                    case '\t':
+                        buf.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            buf.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            buf.append(c);
+                        }
+                }
+            }
+            buf.append('"');
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Watches the virtual threads pinned to their carrier threads, which happens when a virtual thread
+ * blocks inside a {@code synchronized} block or below a native frame, and exports them as metrics:
+ * <ul>
+ *   <li>{@code microspace.virtual.threads.pinned}, the time the virtual threads stayed pinned for
+ *       longer than {@link ServerConfig#virtualThreadPinningThresholdMillis()}, tagged with the
+ *       {@code reason} of the pinning.</li>
+ *   <li>{@code microspace.virtual.threads.submit.failed}, the number of the virtual threads which
+ *       could not be scheduled on a carrier thread.</li>
+ * </ul>
+ * The events are read from an in-process JFR stream, whose recording costs nothing until a virtual
+ * thread is pinned for longer than the threshold.
+ *
+ * @author i1619kHz
+ */
+final class VirtualThreadPinningMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String SUBMIT_FAILED_EVENT = "jdk.VirtualThreadSubmitFailed";
+
+    /**
+     * The field which tells why a virtual thread was pinned, recorded only by the JDKs newer than 21.
+     */
+    private static final String PINNED_REASON_FIELD = "pinnedReason";
+
+    private final MeterRegistry meterRegistry;
+    @Nullable
+    private final RecordingStream stream;
+
+    VirtualThreadPinningMonitor(ServerConfig config) {
+        requireNonNull(config, "config");
+        meterRegistry = config.meterRegistry();
+        final Counter submitFailed = Counter.builder("microspace.virtual.threads.submit.failed")
+                                            .description("The number of the virtual threads which could " +
+                                                         "not be scheduled on a carrier thread")
+                                            .register(meterRegistry);
+        RecordingStream stream = null;
+        try {
+            stream = new RecordingStream();
+            stream.enable(PINNED_EVENT)
+                  .withThreshold(Duration.ofMillis(config.virtualThreadPinningThresholdMillis()))
+                  .withStackTrace();
+            stream.enable(SUBMIT_FAILED_EVENT);
+            stream.onEvent(PINNED_EVENT, this::onPinned);
+            stream.onEvent(SUBMIT_FAILED_EVENT, unused -> submitFailed.increment());
+            stream.startAsync();
+        } catch (Throwable cause) {
+            // JFR may be missing from the runtime or disabled by its security settings.
+            logger.warn("Failed to start watching the pinned virtual threads. " +
+                        "microspace.virtual.threads.pinned will not be reported:", cause);
+            if (stream != null) {
+                stream.close();
+                stream = null;
+            }
+        }
+        this.stream = stream;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        final String reason = pinnedReason(event);
+        Timer.builder("microspace.virtual.threads.pinned")
+             .description("The time the virtual threads stayed pinned to their carrier threads")
+             .tag("reason", reason)
+             .register(meterRegistry)
+             .record(event.getDuration());
+        if (logger.isDebugEnabled()) {
+            logger.debug("A virtual thread was pinned to its carrier thread for {} ms ({}):{}",
+                         event.getDuration().toMillis(), reason, stackTrace(event.getStackTrace()));
+        }
+    }
+
+    /**
+     * Returns why the virtual thread of the specified event was pinned. The JDK 21 does not record the
+     * reason, so it is told from the native frames of the stack trace.
+     */
+    private static String pinnedReason(RecordedEvent event) {
+        if (event.hasField(PINNED_REASON_FIELD)) {
+            final String reason = event.getString(PINNED_REASON_FIELD);
+            if (reason != null) {
+                return reason;
+            }
+        }
+        final RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace != null) {
+            for (RecordedFrame frame : stackTrace.getFrames()) {
+                if ("Native".equals(frame.getType())) {
+                    return "native frame";
+                }
+            }
+        }
+        return "monitor";
+    }
+
+    private static String stackTrace(@Nullable RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return " <no stack trace>";
+        }
+        final List<RecordedFrame> frames = stackTrace.getFrames();
+        final StringBuilder buf = new StringBuilder(frames.size() * 64);
+        for (RecordedFrame frame : frames) {
+            if (!frame.isJavaFrame()) {
+                continue;
+            }
+            buf.append(System.lineSeparator()).append("\tat ")
+               .append(frame.getMethod().getType().getName()).append('.')
+               .append(frame.getMethod().getName()).append(':').append(frame.getLineNumber());
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Stops watching the pinned virtual threads.
+     */
+    void close() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
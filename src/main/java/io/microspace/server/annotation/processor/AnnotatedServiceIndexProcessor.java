@@ -0,0 +1,497 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server.annotation.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+
+import io.microspace.internal.DefaultValues;
+import io.microspace.server.AnnotatedServiceIndex;
+import io.microspace.server.HttpMethod;
+import io.microspace.server.annotation.Blocking;
+import io.microspace.server.annotation.Consumes;
+import io.microspace.server.annotation.Delete;
+import io.microspace.server.annotation.Get;
+import io.microspace.server.annotation.Head;
+import io.microspace.server.annotation.MatchesHeader;
+import io.microspace.server.annotation.MatchesParam;
+import io.microspace.server.annotation.Options;
+import io.microspace.server.annotation.Order;
+import io.microspace.server.annotation.Patch;
+import io.microspace.server.annotation.Path;
+import io.microspace.server.annotation.PathPrefix;
+import io.microspace.server.annotation.Post;
+import io.microspace.server.annotation.Produces;
+import io.microspace.server.annotation.Put;
+import io.microspace.server.annotation.StatusCode;
+import io.microspace.server.annotation.Trace;
+
+/**
+ * Generates an {@link AnnotatedServiceIndex} for every class which has methods annotated with
+ * {@link Path} or HTTP method annotations such as {@link Get} and {@link Post}. The generated index holds
+ * the routes of the class and invokes its methods directly, so that binding the service does not need
+ * to scan the class via reflection.
+ *
+ * <p>A class is indexed only if all of its routing annotations are declared on the class and its own
+ * methods. Classes which extend another class, implement an annotated interface or use meta-annotations
+ * are left out, and their routes are still discovered via reflection at runtime.
+ *
+ * @author i1619kHz
+ */
+public final class AnnotatedServiceIndexProcessor extends AbstractProcessor {
+    private static final String ANNOTATION_PACKAGE = Get.class.getPackage().getName();
+
+    private static final Map<String, HttpMethod> HTTP_METHOD_ANNOTATIONS;
+
+    static {
+        final Map<String, HttpMethod> annotations = new LinkedHashMap<>();
+        annotations.put(Options.class.getCanonicalName(), HttpMethod.OPTIONS);
+        annotations.put(Get.class.getCanonicalName(), HttpMethod.GET);
+        annotations.put(Head.class.getCanonicalName(), HttpMethod.HEAD);
+        annotations.put(Post.class.getCanonicalName(), HttpMethod.POST);
+        annotations.put(Put.class.getCanonicalName(), HttpMethod.PUT);
+        annotations.put(Patch.class.getCanonicalName(), HttpMethod.PATCH);
+        annotations.put(Delete.class.getCanonicalName(), HttpMethod.DELETE);
+        annotations.put(Trace.class.getCanonicalName(), HttpMethod.TRACE);
+        HTTP_METHOD_ANNOTATIONS = Map.copyOf(annotations);
+    }
+
+    private final Set<String> processedTypes = new HashSet<>();
+    private Elements elements;
+    private Types types;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        final Set<String> supportedTypes = new LinkedHashSet<>(HTTP_METHOD_ANNOTATIONS.keySet());
+        supportedTypes.add(Path.class.getCanonicalName());
+        return supportedTypes;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final Set<TypeElement> serviceTypes = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.METHOD &&
+                    element.getEnclosingElement() instanceof TypeElement) {
+                    serviceTypes.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+        for (TypeElement serviceType : serviceTypes) {
+            if (!processedTypes.add(serviceType.getQualifiedName().toString())) {
+                continue;
+            }
+            final String unsupportedReason = unsupportedReason(serviceType);
+            if (unsupportedReason != null) {
+                processingEnv.getMessager().printMessage(
+                        Kind.NOTE, "Not indexing routes of " + serviceType.getQualifiedName() + " (" +
+                                   unsupportedReason + "); they will be discovered at runtime.", serviceType);
+                continue;
+            }
+            try {
+                writeIndex(serviceType, routeMethods(serviceType));
+            } catch (IOException | RuntimeException e) {
+                processingEnv.getMessager().printMessage(
+                        Kind.WARNING, "Failed to generate the route index of " +
+                                      serviceType.getQualifiedName() + ": " + e, serviceType);
+            }
+        }
+        // Do not claim the annotations so that other processors may see them as well.
+        return false;
+    }
+
+    /**
+     * Returns why the routes of the specified {@code serviceType} cannot be resolved from its own
+     * declarations, or {@code null} if they can.
+     */
+    @Nullable
+    private String unsupportedReason(TypeElement serviceType) {
+        if (serviceType.getKind() != ElementKind.CLASS) {
+            return "not a class";
+        }
+        if (serviceType.getModifiers().contains(Modifier.ABSTRACT)) {
+            return "abstract class";
+        }
+        if (serviceType.getNestingKind() != NestingKind.TOP_LEVEL &&
+            serviceType.getNestingKind() != NestingKind.MEMBER) {
+            return "local or anonymous class";
+        }
+        for (Element e = serviceType; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                return "private class";
+            }
+        }
+        final TypeMirror superclass = serviceType.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED &&
+            !((TypeElement) types.asElement(superclass)).getQualifiedName()
+                                                        .contentEquals("java.lang.Object")) {
+            return "extends " + superclass;
+        }
+        for (TypeMirror superInterface : serviceType.getInterfaces()) {
+            if (isAnnotatedInterface((TypeElement) types.asElement(superInterface))) {
+                return "implements an annotated interface " + superInterface;
+            }
+        }
+        if (hasMetaAnnotations(serviceType)) {
+            return "uses meta-annotations";
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(serviceType.getEnclosedElements())) {
+            if (hasMetaAnnotations(method)) {
+                return "uses meta-annotations";
+            }
+        }
+        return null;
+    }
+
+    private boolean isAnnotatedInterface(TypeElement type) {
+        if (hasAnnotationOf(type)) {
+            return true;
+        }
+        for (Element member : type.getEnclosedElements()) {
+            if (hasAnnotationOf(member)) {
+                return true;
+            }
+        }
+        for (TypeMirror superInterface : type.getInterfaces()) {
+            if (isAnnotatedInterface((TypeElement) types.asElement(superInterface))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasAnnotationOf(Element element) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (isMicrospaceAnnotation(mirror)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasMetaAnnotations(Element element) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!isMicrospaceAnnotation(mirror) &&
+                hasAnnotationOf(mirror.getAnnotationType().asElement())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMicrospaceAnnotation(AnnotationMirror mirror) {
+        final Element annotationType = mirror.getAnnotationType().asElement();
+        final Element enclosing = annotationType.getEnclosingElement();
+        return enclosing instanceof PackageElement &&
+               ((PackageElement) enclosing).getQualifiedName().contentEquals(ANNOTATION_PACKAGE);
+    }
+
+    /**
+     * Returns the public route methods of the specified {@code serviceType}, sorted by {@link Order}.
+     */
+    private List<RouteMethod> routeMethods(TypeElement serviceType) {
+        final List<RouteMethod> routeMethods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(serviceType.getEnclosedElements())) {
+            if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+                continue;
+            }
+            final Map<HttpMethod, List<String>> pathPatterns = pathPatterns(method);
+            if (pathPatterns.isEmpty()) {
+                continue;
+            }
+            final Order order = method.getAnnotation(Order.class);
+            routeMethods.add(new RouteMethod(method, order != null ? order.value() : 0, pathPatterns));
+        }
+        routeMethods.sort(Comparator.comparingInt(RouteMethod::order));
+        return routeMethods;
+    }
+
+    private Map<HttpMethod, List<String>> pathPatterns(ExecutableElement method) {
+        final Map<HttpMethod, List<String>> pathPatterns = new EnumMap<>(HttpMethod.class);
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            final String annotationName =
+                    ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+            HttpMethod httpMethod = HTTP_METHOD_ANNOTATIONS.get(annotationName);
+            if (httpMethod == null) {
+                if (!annotationName.equals(Path.class.getCanonicalName())) {
+                    continue;
+                }
+                final VariableElement constant = (VariableElement) annotationValue(mirror, "method");
+                httpMethod = HttpMethod.valueOf(constant.getSimpleName().toString());
+            }
+            final String value = (String) annotationValue(mirror, "value");
+            final List<String> patterns =
+                    pathPatterns.computeIfAbsent(httpMethod, unused -> new ArrayList<>());
+            if (DefaultValues.isSpecified(value)) {
+                patterns.add(value);
+            }
+        }
+        // Add an empty pattern if the value of an HTTP method annotation is empty or not specified.
+        pathPatterns.values().forEach(patterns -> {
+            if (patterns.isEmpty()) {
+                patterns.add("");
+            }
+        });
+        return pathPatterns;
+    }
+
+    private Object annotationValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                elements.getElementValuesWithDefaults(mirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        throw new IllegalStateException("An annotation " + mirror + " must have a '" + name + "' method");
+    }
+
+    private void writeIndex(TypeElement serviceType, List<RouteMethod> routeMethods) throws IOException {
+        final String packageName = elements.getPackageOf(serviceType).getQualifiedName().toString();
+        final String binaryName = elements.getBinaryName(serviceType).toString();
+        final String indexName = binaryName + AnnotatedServiceIndex.CLASS_NAME_SUFFIX;
+        final String simpleIndexName = packageName.isEmpty() ? indexName
+                                                             : indexName.substring(packageName.length() + 1);
+        final String serviceName = serviceType.getQualifiedName().toString();
+        final String indexInterface = AnnotatedServiceIndex.class.getCanonicalName();
+
+        final StringBuilder buf = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            buf.append("package ").append(packageName).append(";\n\n");
+        }
+        buf.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+           .append("public final class ").append(simpleIndexName).append(" implements ")
+           .append(indexInterface).append(" {\n")
+           .append("    private static final java.util.List<Entry> ENTRIES = java.util.List.of(");
+        for (int i = 0; i < routeMethods.size(); i++) {
+            buf.append(i == 0 ? "\n" : ",\n");
+            appendEntry(buf, serviceType, routeMethods.get(i).method, routeMethods.get(i).pathPatterns);
+        }
+        buf.append(");\n\n");
+
+        final PathPrefix pathPrefix = serviceType.getAnnotation(PathPrefix.class);
+        buf.append("    @Override\n")
+           .append("    public String pathPrefix() {\n")
+           .append("        return ").append(pathPrefix != null ? literal(pathPrefix.value()) : "null")
+           .append(";\n    }\n\n")
+           .append("    @Override\n")
+           .append("    public java.util.List<Entry> entries() {\n")
+           .append("        return ENTRIES;\n    }\n\n")
+           .append("    @Override\n")
+           .append("    public Object invoke(Object target, int index) throws Exception {\n")
+           .append("        switch (index) {\n");
+        for (int i = 0; i < routeMethods.size(); i++) {
+            final ExecutableElement method = routeMethods.get(i).method;
+            if (!isInvocable(method)) {
+                continue;
+            }
+            final String receiver = method.getModifiers().contains(Modifier.STATIC) ?
+                                    serviceName : "((" + serviceName + ") target)";
+            final String invocation = receiver + '.' + method.getSimpleName() + "()";
+            buf.append("            case ").append(i).append(": ");
+            if (method.getReturnType().getKind() == TypeKind.VOID) {
+                buf.append(invocation).append("; return null;\n");
+            } else {
+                buf.append("return ").append(invocation).append(";\n");
+            }
+        }
+        buf.append("            default: throw new IllegalArgumentException(\"index: \" + index);\n")
+           .append("        }\n    }\n}\n");
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(indexName, serviceType).openWriter()) {
+            writer.write(buf.toString());
+        }
+    }
+
+    private void appendEntry(StringBuilder buf, TypeElement serviceType, ExecutableElement method,
+                             Map<HttpMethod, List<String>> pathPatterns) {
+        final String httpMethod = HttpMethod.class.getCanonicalName();
+        final List<String> parameterTypes = new ArrayList<>();
+        for (VariableElement parameter : method.getParameters()) {
+            parameterTypes.add(types.erasure(parameter.asType()) + ".class");
+        }
+        final List<String> patterns = new ArrayList<>();
+        pathPatterns.forEach((key, value) -> patterns.add(
+                httpMethod + '.' + key.name() + ", " + listOf(value)));
+
+        buf.append("            new Entry(").append(literal(method.getSimpleName().toString()))
+           .append(", new Class<?>[] {").append(String.join(", ", parameterTypes)).append("}, ")
+           .append(isInvocable(method)).append(",\n")
+           .append("                      java.util.Map.of(").append(String.join(", ", patterns))
+           .append("),\n")
+           .append("                      ").append(statusCode(method)).append(", ")
+           .append(listOf(firstOf(method, serviceType, Consumes.class, Consumes::value))).append(", ")
+           .append(listOf(firstOf(method, serviceType, Produces.class, Produces::value))).append(",\n")
+           .append("                      ")
+           .append(listOf(allOf(method, serviceType, MatchesParam.class, MatchesParam::value))).append(", ")
+           .append(listOf(allOf(method, serviceType, MatchesHeader.class, MatchesHeader::value)))
+           .append(", ").append(method.getAnnotation(Blocking.class) != null ||
+                                serviceType.getAnnotation(Blocking.class) != null)
+           .append(')');
+    }
+
+    /**
+     * Returns whether the specified {@code method} can be invoked without arguments from the generated
+     * {@link AnnotatedServiceIndex#invoke(Object, int)}, which throws only {@link Exception}s.
+     */
+    private boolean isInvocable(ExecutableElement method) {
+        if (!method.getParameters().isEmpty()) {
+            return false;
+        }
+        final TypeMirror exception = elements.getTypeElement("java.lang.Exception").asType();
+        final TypeMirror error = elements.getTypeElement("java.lang.Error").asType();
+        for (TypeMirror thrownType : method.getThrownTypes()) {
+            if (!types.isAssignable(thrownType, exception) && !types.isAssignable(thrownType, error)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int statusCode(ExecutableElement method) {
+        final StatusCode statusCode = method.getAnnotation(StatusCode.class);
+        if (statusCode != null) {
+            return statusCode.value();
+        }
+        // Set a default HTTP status code for a response depending on the return type of the method.
+        final TypeMirror returnType = method.getReturnType();
+        final boolean isVoid = returnType.getKind() == TypeKind.VOID ||
+                               returnType.toString().equals("java.lang.Void");
+        return isVoid ? 204 : 200;
+    }
+
+    private static <A extends Annotation> List<String> firstOf(ExecutableElement method,
+                                                               TypeElement serviceType,
+                                                               Class<A> annotationType,
+                                                               Function<A, String> getter) {
+        A annotation = method.getAnnotation(annotationType);
+        if (annotation == null) {
+            annotation = serviceType.getAnnotation(annotationType);
+        }
+        return annotation != null ? List.of(getter.apply(annotation)) : List.of();
+    }
+
+    private static <A extends Annotation> List<String> allOf(ExecutableElement method,
+                                                             TypeElement serviceType,
+                                                             Class<A> annotationType,
+                                                             Function<A, String> getter) {
+        final List<String> values = new ArrayList<>();
+        for (A annotation : serviceType.getAnnotationsByType(annotationType)) {
+            values.add(getter.apply(annotation));
+        }
+        for (A annotation : method.getAnnotationsByType(annotationType)) {
+            values.add(getter.apply(annotation));
+        }
+        return values;
+    }
+
+    private static String listOf(List<String> values) {
+        final List<String> literals = new ArrayList<>(values.size());
+        values.forEach(value -> literals.add(literal(value)));
+        return "java.util.List.of(" + String.join(", ", literals) + ')';
+    }
+
+    private static String literal(String value) {
+        final StringBuilder buf = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    buf.append("\\\"");
+                    break;
+                case '\\':
+                    buf.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        buf.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        buf.append(c);
+                    }
+            }
+        }
+        return buf.append('"').toString();
+    }
+
+    private static final class RouteMethod {
+        private final ExecutableElement method;
+        private final int order;
+        private final Map<HttpMethod, List<String>> pathPatterns;
+
+        RouteMethod(ExecutableElement method, int order, Map<HttpMethod, List<String>> pathPatterns) {
+            this.method = method;
+            this.order = order;
+            this.pathPatterns = pathPatterns;
+        }
+
+        int order() {
+            return order;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.annotation.Nullable;
+
+import org.junit.jupiter.api.Test;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.QueryStringDecoder;
+
+/**
+ * @author i1619kHz
+ */
+class CompiledRoutePredicatesTest {
+    @Test
+    void negatedContainsMatchesAbsentHeaderOnly() {
+        final Compiled compiled = compile(Route.builder().pathPattern("/foo").matchesHeaders("!x-debug"));
+        assertThat(compiled.matchesHeaders(headers())).isTrue();
+        assertThat(compiled.matchesHeaders(headers("x-debug", "true"))).isFalse();
+        assertThat(compiled.matchesHeaders(headers("x-debug", ""))).isFalse();
+    }
+
+    @Test
+    void negatedEqualsMatchesWhenNoValueIsEqual() {
+        final Compiled compiled = compile(Route.builder().pathPattern("/foo").matchesHeaders("x-env!=prod"));
+        assertThat(compiled.matchesHeaders(headers())).isTrue();
+        assertThat(compiled.matchesHeaders(headers("x-env", "dev"))).isTrue();
+        assertThat(compiled.matchesHeaders(headers("x-env", "prod"))).isFalse();
+        assertThat(compiled.matchesHeaders(headers("x-env", "dev", "x-env", "prod"))).isFalse();
+    }
+
+    @Test
+    void negatedParamPredicates() {
+        final Compiled compiled = compile(Route.builder().pathPattern("/foo")
+                                               .matchesParams("!debug", "mode!=fast"));
+        assertThat(compiled.matchesQuery(null)).isTrue();
+        assertThat(compiled.matchesQuery("mode=slow")).isTrue();
+        assertThat(compiled.matchesQuery("debug")).isFalse();
+        assertThat(compiled.matchesQuery("debug=false")).isFalse();
+        assertThat(compiled.matchesQuery("mode=fast")).isFalse();
+        assertThat(compiled.matchesQuery("mode=slow&mode=fast")).isFalse();
+    }
+
+    @Test
+    void predicateAndItsNegationNeverMatchTogether() {
+        final CompiledRoutePredicates.Builder builder = CompiledRoutePredicates.builder();
+        final int[] prod = builder.add(route(Route.builder().pathPattern("/foo")
+                                                    .matchesHeaders("x-env=prod")));
+        final int[] notProd = builder.add(route(Route.builder().pathPattern("/foo")
+                                                       .matchesHeaders("x-env!=prod")));
+        // The negation shares the ID of the condition it negates.
+        assertThat(notProd[0] >>> 1).isEqualTo(prod[0] >>> 1);
+        final CompiledRoutePredicates predicates = builder.build();
+
+        for (io.netty.handler.codec.http.HttpHeaders headers :
+                new io.netty.handler.codec.http.HttpHeaders[] {
+                        headers(), headers("x-env", "prod"), headers("x-env", "dev"),
+                        headers("x-env", "dev", "x-env", "prod") }) {
+            final CompiledRoutePredicates.Evaluation evaluation =
+                    predicates.evaluation(HttpMethod.GET, headers, null);
+            assertThat(evaluation.test(prod)).isNotEqualTo(evaluation.test(notProd));
+        }
+    }
+
+    @Test
+    void negatedAndPlainPredicatesOfSameHeader() {
+        final Compiled compiled = compile(Route.builder().pathPattern("/foo")
+                                               .matchesHeaders("x-env", "x-env!=prod"));
+        assertThat(compiled.matchesHeaders(headers())).isFalse();
+        assertThat(compiled.matchesHeaders(headers("x-env", "dev"))).isTrue();
+        assertThat(compiled.matchesHeaders(headers("x-env", "prod"))).isFalse();
+    }
+
+    @Test
+    void matchesHeaderNamesCaseInsensitively() {
+        final Compiled compiled = compile(Route.builder().pathPattern("/foo").matchesHeaders("!X-Debug"));
+        assertThat(compiled.matchesHeaders(headers("x-debug", "true"))).isFalse();
+        assertThat(compiled.matchesHeaders(headers("X-DEBUG", "true"))).isFalse();
+    }
+
+    @Test
+    void routeWithoutPredicatesEvaluatesNothing() {
+        final CompiledRoutePredicates.Builder builder = CompiledRoutePredicates.builder();
+        final int[] compiled = builder.add(route(Route.builder().pathPattern("/foo")));
+        final CompiledRoutePredicates.Evaluation evaluation =
+                builder.build().evaluation(HttpMethod.GET, EmptyHttpHeaders.INSTANCE, null);
+        assertThat(evaluation.test(compiled)).isTrue();
+        assertThat(evaluation.hasEvaluated()).isFalse();
+    }
+
+    private static DefaultRoute route(RouteBuilder builder) {
+        return (DefaultRoute) builder.build();
+    }
+
+    private static Compiled compile(RouteBuilder builder) {
+        final CompiledRoutePredicates.Builder predicatesBuilder = CompiledRoutePredicates.builder();
+        final int[] compiled = predicatesBuilder.add(route(builder));
+        return new Compiled(predicatesBuilder.build(), compiled);
+    }
+
+    private static io.netty.handler.codec.http.HttpHeaders headers(String... namesAndValues) {
+        final io.netty.handler.codec.http.HttpHeaders headers = new DefaultHttpHeaders();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            headers.add(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return headers;
+    }
+
+    private static final class Compiled {
+        private final CompiledRoutePredicates predicates;
+        private final int[] compiled;
+
+        Compiled(CompiledRoutePredicates predicates, int[] compiled) {
+            this.predicates = predicates;
+            this.compiled = compiled;
+        }
+
+        boolean matchesHeaders(io.netty.handler.codec.http.HttpHeaders headers) {
+            return predicates.evaluation(HttpMethod.GET, headers, null).test(compiled);
+        }
+
+        boolean matchesQuery(@Nullable String query) {
+            final QueryStringDecoder queryDecoder = query != null ? new QueryStringDecoder("/foo?" + query)
+                                                                  : null;
+            return predicates.evaluation(HttpMethod.GET, EmptyHttpHeaders.INSTANCE, queryDecoder)
+                             .test(compiled);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import io.microspace.server.DeadlineWheel.Deadline;
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+
+/**
+ * @author i1619kHz
+ */
+class DeadlineWheelTest {
+    private static EventLoop eventLoop;
+
+    @BeforeAll
+    static void startEventLoop() {
+        eventLoop = new DefaultEventLoop();
+    }
+
+    @AfterAll
+    static void stopEventLoop() {
+        eventLoop.shutdownGracefully(0, 0, SECONDS).syncUninterruptibly();
+    }
+
+    @Test
+    void expiresAfterTimeout() throws Exception {
+        final CompletableFuture<Long> expired = new CompletableFuture<>();
+        final long startNanos = System.nanoTime();
+        final Deadline deadline = add(50, () -> expired.complete(System.nanoTime()));
+        assertThat(deadline.remainingNanos()).isPositive().isLessThanOrEqualTo(MILLISECONDS.toNanos(50));
+
+        assertThat(expired.get(10, SECONDS) - startNanos).isGreaterThanOrEqualTo(MILLISECONDS.toNanos(50));
+        assertThat(deadline.remainingNanos()).isNotPositive();
+    }
+
+    @Test
+    void expiresInDeadlineOrder() throws Exception {
+        final List<Integer> expired = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(3);
+        inEventLoop(() -> {
+            for (int timeoutMillis : new int[] { 60, 20, 40 }) {
+                add(timeoutMillis, () -> {
+                    expired.add(timeoutMillis);
+                    latch.countDown();
+                });
+            }
+            return null;
+        });
+
+        assertThat(latch.await(10, SECONDS)).isTrue();
+        assertThat(expired).containsExactly(20, 40, 60);
+    }
+
+    @Test
+    void cancelledDeadlineNeverExpires() throws Exception {
+        final AtomicBoolean cancelledExpired = new AtomicBoolean();
+        final CompletableFuture<Void> laterExpired = new CompletableFuture<>();
+        inEventLoop(() -> {
+            add(20, () -> cancelledExpired.set(true)).cancel();
+            add(60, () -> laterExpired.complete(null));
+            return null;
+        });
+
+        laterExpired.get(10, SECONDS);
+        assertThat(cancelledExpired).isFalse();
+    }
+
+    @Test
+    void cancelAfterExpiryDoesNothing() throws Exception {
+        final CompletableFuture<Void> expired = new CompletableFuture<>();
+        final Deadline deadline = add(20, () -> expired.complete(null));
+        expired.get(10, SECONDS);
+        inEventLoop(() -> {
+            deadline.cancel();
+            deadline.cancel();
+            return null;
+        });
+
+        // The wheel still expires the deadlines added later.
+        final CompletableFuture<Void> nextExpired = new CompletableFuture<>();
+        add(20, () -> nextExpired.complete(null));
+        nextExpired.get(10, SECONDS);
+    }
+
+    @Test
+    void expiryTaskCancelsAnotherDeadline() throws Exception {
+        final AtomicInteger numExpired = new AtomicInteger();
+        final CompletableFuture<Void> laterExpired = new CompletableFuture<>();
+        inEventLoop(() -> {
+            final Deadline[] deadlines = new Deadline[2];
+            // Most likely in the same bucket, each of which cancels the other one.
+            for (int i = 0; i < deadlines.length; i++) {
+                final int other = 1 - i;
+                deadlines[i] = add(20, () -> {
+                    numExpired.incrementAndGet();
+                    deadlines[other].cancel();
+                });
+            }
+            add(60, () -> laterExpired.complete(null));
+            return null;
+        });
+
+        laterExpired.get(10, SECONDS);
+        assertThat(numExpired).hasValue(1);
+    }
+
+    @Test
+    void doesNotExpireDeadlineOfLaterRound() throws Exception {
+        final AtomicBoolean laterRoundExpired = new AtomicBoolean();
+        final CompletableFuture<Void> expired = new CompletableFuture<>();
+        // A round of the wheel is 512 ticks of 10 milliseconds, so both are most likely in the same bucket.
+        final Deadline laterRound = inEventLoop(() -> {
+            add(20, () -> expired.complete(null));
+            return add(20 + 5120, () -> laterRoundExpired.set(true));
+        });
+
+        expired.get(10, SECONDS);
+        Thread.sleep(100);
+        inEventLoop(() -> {
+            laterRound.cancel();
+            return null;
+        });
+        assertThat(laterRoundExpired).isFalse();
+    }
+
+    private static Deadline add(long timeoutMillis, Runnable onExpiry) throws Exception {
+        if (eventLoop.inEventLoop()) {
+            return DeadlineWheel.get(eventLoop).add(MILLISECONDS.toNanos(timeoutMillis), onExpiry);
+        }
+        return inEventLoop(() -> add(timeoutMillis, onExpiry));
+    }
+
+    private static <T> T inEventLoop(Callable<T> task) throws Exception {
+        return eventLoop.submit(task).get(10, SECONDS);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.TooLongHttpHeaderException;
+import io.netty.handler.codec.http.TooLongHttpLineException;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * @author i1619kHz
+ */
+class Http1RequestDecoderTest {
+    private static final int MAX_INITIAL_LINE_LENGTH = 64;
+    private static final int MAX_HEADER_SIZE = 256;
+    private static final int MAX_CHUNK_SIZE = 4;
+
+    private EmbeddedChannel channel;
+    private final List<HttpObject> decoded = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        channel = new EmbeddedChannel(
+                new Http1RequestDecoder(MAX_INITIAL_LINE_LENGTH, MAX_HEADER_SIZE, MAX_CHUNK_SIZE));
+    }
+
+    @AfterEach
+    void tearDown() {
+        decoded.forEach(ReferenceCountUtil::release);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void decodesRequestWithoutContent() {
+        final List<HttpObject> objects = decode("GET /users?id=1 HTTP/1.1\r\n" +
+                                                "Host: example.com\r\n" +
+                                                "X-Custom:  a value \r\n" +
+                                                "\r\n");
+        assertThat(objects).hasSize(2);
+        final HttpRequest req = (HttpRequest) objects.get(0);
+        assertThat(req.decoderResult().isSuccess()).isTrue();
+        assertThat(req.method()).isSameAs(io.netty.handler.codec.http.HttpMethod.GET);
+        assertThat(req.uri()).isEqualTo("/users?id=1");
+        assertThat(req.protocolVersion()).isSameAs(HttpVersion.HTTP_1_1);
+        assertThat(req.headers().get("host")).isEqualTo("example.com");
+        assertThat(req.headers().get("x-custom")).isEqualTo("a value");
+        assertThat(objects.get(1)).isSameAs(LastHttpContent.EMPTY_LAST_CONTENT);
+    }
+
+    @Test
+    void replacesWellKnownHeaderNames() {
+        final HttpRequest req = (HttpRequest) decode("GET / HTTP/1.1\r\nCONTENT-TYPE: text/plain\r\n\r\n")
+                .get(0);
+        assertThat(req.headers().names()).hasSize(1);
+        assertThat(req.headers().iteratorCharSequence().next().getKey())
+                .isSameAs(HttpHeaderNames.CONTENT_TYPE);
+    }
+
+    @Test
+    void decodesRequestReceivedByteByByte() {
+        final String request = "POST /echo HTTP/1.1\r\nContent-Length: 5\r\n\r\nhello";
+        final List<HttpObject> objects = new ArrayList<>();
+        for (byte b : request.getBytes(US_ASCII)) {
+            objects.addAll(decode(Unpooled.wrappedBuffer(new byte[] { b })));
+        }
+        assertThat(objects.get(0)).isInstanceOf(HttpRequest.class);
+        assertThat(content(objects)).isEqualTo("hello");
+        assertThat(objects.get(objects.size() - 1)).isInstanceOf(LastHttpContent.class);
+    }
+
+    @Test
+    void splitsFixedLengthContentIntoChunks() {
+        final List<HttpObject> objects = decode("POST / HTTP/1.1\r\nContent-Length: 10\r\n\r\n0123456789");
+        // The request, then 4 + 4 + 2 bytes.
+        assertThat(objects).hasSize(4);
+        assertThat(objects.get(3)).isInstanceOf(LastHttpContent.class);
+        assertThat(content(objects)).isEqualTo("0123456789");
+    }
+
+    @Test
+    void decodesChunkedContentWithTrailers() {
+        final List<HttpObject> objects = decode("POST / HTTP/1.1\r\n" +
+                                                "Transfer-Encoding: gzip, chunked\r\n" +
+                                                "\r\n" +
+                                                "3;ext=1\r\nabc\r\n" +
+                                                "2\r\nde\r\n" +
+                                                "0\r\n" +
+                                                "X-Checksum: 42\r\n" +
+                                                "\r\n");
+        assertThat(content(objects)).isEqualTo("abcde");
+        final LastHttpContent last = (LastHttpContent) objects.get(objects.size() - 1);
+        assertThat(last.trailingHeaders().get("x-checksum")).isEqualTo("42");
+    }
+
+    @Test
+    void decodesPipelinedRequests() {
+        final List<HttpObject> objects = decode("\r\nGET /a HTTP/1.1\r\n\r\n" +
+                                                "POST /b HTTP/1.0\r\ncontent-length: 1\r\n\r\nx" +
+                                                "GET /c HTTP/1.1\r\n\r\n");
+        final List<String> uris = new ArrayList<>();
+        for (HttpObject object : objects) {
+            if (object instanceof HttpRequest req) {
+                uris.add(req.uri());
+            }
+        }
+        assertThat(uris).containsExactly("/a", "/b", "/c");
+        assertThat(content(objects)).isEqualTo("x");
+    }
+
+    @Test
+    void decodesFoldedHeaderValue() {
+        final HttpRequest req = (HttpRequest) decode("GET / HTTP/1.1\r\nX-Folded: a\r\n \tb\r\n\r\n").get(0);
+        assertThat(req.headers().get("x-folded")).isEqualTo("a b");
+    }
+
+    @Test
+    void rejectsTooLongInitialLine() {
+        final HttpObject failed = decode("GET /" + "a".repeat(MAX_INITIAL_LINE_LENGTH) + " HTTP/1.1\r\n\r\n")
+                .get(0);
+        assertThat(failed.decoderResult().cause()).isInstanceOf(TooLongHttpLineException.class);
+    }
+
+    @Test
+    void rejectsTooLargeHeaders() {
+        final HttpObject failed =
+                decode("GET / HTTP/1.1\r\nX-Large: " + "a".repeat(MAX_HEADER_SIZE) + "\r\n\r\n").get(0);
+        assertThat(failed.decoderResult().cause()).isInstanceOf(TooLongHttpHeaderException.class);
+    }
+
+    @Test
+    void rejectsTooLargeHeadersReceivedLater() {
+        assertThat(decode("GET / HTTP/1.1\r\n")).isEmpty();
+        final HttpObject failed = decode("X-Large: " + "a".repeat(MAX_HEADER_SIZE) + "\r\n\r\n").get(0);
+        assertThat(failed.decoderResult().cause()).isInstanceOf(TooLongHttpHeaderException.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "GET\r\n\r\n",
+            "GET / HTTP/1.1 \r\n\r\n",
+            "GET / HTTP/x\r\n\r\n",
+            "GET / HTTP/1.1\r\nX-Space : value\r\n\r\n",
+            "GET / HTTP/1.1\r\nX(Paren): value\r\n\r\n",
+            "GET / HTTP/1.1\r\n: value\r\n\r\n",
+            "GET / HTTP/1.1\r\nNoColon\r\n\r\n",
+            "GET / HTTP/1.1\r\n folded: first\r\n\r\n",
+            "GET / HTTP/1.1\r\nX-Value: a\rb\r\n\r\n",
+            "GET / HTTP/1.1\r\nX-Value: a\0b\r\n\r\n",
+            "GET / HTTP/1.1\r\nX-Value: a\u007fb\r\n\r\n",
+            "GET / HTTP/1.1\r\nX-Value: a\r\n b\u0001\r\n\r\n",
+            "POST / HTTP/1.1\r\nContent-Length: 1\r\nContent-Length: 2\r\n\r\nab",
+            "POST / HTTP/1.1\r\nContent-Length: -1\r\n\r\n",
+            "POST / HTTP/1.1\r\nContent-Length: 1\r\n 2\r\n\r\n",
+            "POST / HTTP/1.1\r\nContent-Length: 1\r\nTransfer-Encoding: chunked\r\n\r\n",
+            "POST / HTTP/1.1\r\nTransfer-Encoding: chunked, gzip\r\n\r\n",
+            "POST / HTTP/1.1\r\nTransfer-Encoding: xchunked\r\n\r\n",
+    })
+    void rejectsMalformedHeaders(String request) {
+        final List<HttpObject> objects = decode(request);
+        assertThat(objects).hasSize(1);
+        assertThat(objects.get(0).decoderResult().isFailure()).isTrue();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "x\r\nabc\r\n",
+            "3\r\nabcd\r\n",
+            "3\r\nabc\n0\r\n\r\n",
+            "3\r\nabc\r\r\n",
+    })
+    void rejectsMalformedChunks(String chunks) {
+        final List<HttpObject> objects =
+                decode("POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n" + chunks);
+        assertThat(objects.get(0).decoderResult().isSuccess()).isTrue();
+        final HttpObject last = objects.get(objects.size() - 1);
+        assertThat(last).isInstanceOf(LastHttpContent.class);
+        assertThat(last.decoderResult().isFailure()).isTrue();
+    }
+
+    @Test
+    void discardsConnectionAfterFailure() {
+        assertThat(decode("GET / HTTP/1.1\r\nX Bad: value\r\n\r\n")).hasSize(1);
+        assertThat(decode("GET / HTTP/1.1\r\n\r\n")).isEmpty();
+    }
+
+    private List<HttpObject> decode(String data) {
+        return decode(Unpooled.copiedBuffer(data, US_ASCII));
+    }
+
+    private List<HttpObject> decode(ByteBuf data) {
+        channel.writeInbound(data);
+        final List<HttpObject> objects = new ArrayList<>();
+        for (HttpObject object = channel.readInbound(); object != null; object = channel.readInbound()) {
+            objects.add(object);
+        }
+        decoded.addAll(objects);
+        return objects;
+    }
+
+    private static String content(List<HttpObject> objects) {
+        final StringBuilder buf = new StringBuilder();
+        for (HttpObject object : objects) {
+            if (object instanceof HttpContent content) {
+                buf.append(content.content().toString(US_ASCII));
+            }
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import io.microspace.internal.FreePortFinder;
+import io.microspace.server.RawHttpClient.Response;
+import io.microspace.server.annotation.Blocking;
+import io.microspace.server.annotation.Get;
+
+/**
+ * @author i1619kHz
+ */
+class HttpPipeliningTest {
+    private static Server server;
+
+    @BeforeAll
+    static void startServer() {
+        server = Server.builder()
+                       .http(FreePortFinder.findFreeLocalPort())
+                       .annotatedService(new PipeliningService())
+                       .build();
+        server.start().join();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop().join();
+    }
+
+    @Test
+    void writesPipelinedResponsesInRequestOrder() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.activeLocalPort())) {
+            // The blocking responses complete after the ones behind them.
+            client.send(RawHttpClient.get("/slow"), RawHttpClient.get("/fast"),
+                        RawHttpClient.get("/slow"), RawHttpClient.get("/fast"));
+            assertThat(client.read().content()).isEqualTo("slow");
+            assertThat(client.read().content()).isEqualTo("fast");
+            assertThat(client.read().content()).isEqualTo("slow");
+            assertThat(client.read().content()).isEqualTo("fast");
+        }
+    }
+
+    @Test
+    void keepsConnectionAliveBetweenRequests() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.activeLocalPort())) {
+            for (int i = 0; i < 3; i++) {
+                final Response res = client.send(RawHttpClient.get("/fast")).read();
+                assertThat(res.status()).isEqualTo(200);
+                assertThat(res.header("connection")).isNull();
+            }
+        }
+    }
+
+    @Test
+    void closesConnectionAfterConnectionClose() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.activeLocalPort())) {
+            client.send(RawHttpClient.get("/fast"), RawHttpClient.get("/slow", "connection: close"),
+                        RawHttpClient.get("/fast"));
+            assertThat(client.read().header("connection")).isNull();
+            final Response res = client.read();
+            assertThat(res.content()).isEqualTo("slow");
+            assertThat(res.header("connection")).isEqualTo("close");
+            // The request pipelined after the one that asked to close the connection is ignored.
+            assertThat(client.isClosedByServer()).isTrue();
+        }
+    }
+
+    @Test
+    void closesHttp10ConnectionByDefault() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.activeLocalPort())) {
+            final Response res = client.send("GET /fast HTTP/1.0\r\n\r\n").read();
+            assertThat(res.content()).isEqualTo("fast");
+            assertThat(client.isClosedByServer()).isTrue();
+        }
+    }
+
+    @Test
+    void keepsHttp10ConnectionAliveOnRequest() throws IOException {
+        try (RawHttpClient client = new RawHttpClient(server.activeLocalPort())) {
+            for (int i = 0; i < 2; i++) {
+                final Response res = client.send("GET /fast HTTP/1.0\r\nconnection: keep-alive\r\n\r\n")
+                                           .read();
+                assertThat(res.content()).isEqualTo("fast");
+                assertThat(res.header("connection")).isEqualToIgnoringCase("keep-alive");
+            }
+        }
+    }
+
+    static final class PipeliningService {
+        @Get("/slow")
+        @Blocking
+        public String slow() throws InterruptedException {
+            Thread.sleep(100);
+            return "slow";
+        }
+
+        @Get("/fast")
+        public String fast() {
+            return "fast";
+        }
+    }
+}
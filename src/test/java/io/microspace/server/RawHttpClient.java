@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * A blocking HTTP/1 client over a plain socket, which sends the requests exactly as they are given, so
+ * that the tests and the benchmarks can pipeline requests and observe how the connection is closed.
+ *
+ * @author i1619kHz
+ */
+final class RawHttpClient implements Closeable {
+    private static final int SO_TIMEOUT_MILLIS = 10_000;
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    RawHttpClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(SO_TIMEOUT_MILLIS);
+        in = new BufferedInputStream(socket.getInputStream());
+        out = socket.getOutputStream();
+    }
+
+    /**
+     * Returns a {@code GET} request to the specified path.
+     */
+    static String get(String path, String... headers) {
+        final StringBuilder buf = new StringBuilder();
+        buf.append("GET ").append(path).append(" HTTP/1.1\r\nhost: localhost\r\n");
+        for (String header : headers) {
+            buf.append(header).append("\r\n");
+        }
+        return buf.append("\r\n").toString();
+    }
+
+    /**
+     * Writes the specified requests at once.
+     */
+    RawHttpClient send(String... requests) throws IOException {
+        out.write(String.join("", requests).getBytes(US_ASCII));
+        out.flush();
+        return this;
+    }
+
+    /**
+     * Reads the next response, or returns {@code null} if the server closed the connection.
+     */
+    @Nullable
+    Response read() throws IOException {
+        final String statusLine = readLine();
+        if (statusLine == null) {
+            return null;
+        }
+        final String[] parts = statusLine.split(" ", 3);
+        final Map<String, String> headers = new HashMap<>();
+        for (String line = readLine(); line != null && !line.isEmpty(); line = readLine()) {
+            final int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        line.substring(colon + 1).trim());
+        }
+        final String contentLength = headers.get("content-length");
+        final byte[] content = in.readNBytes(contentLength != null ? Integer.parseInt(contentLength) : 0);
+        return new Response(parts[0], Integer.parseInt(parts[1]), headers, new String(content, UTF_8));
+    }
+
+    /**
+     * Returns whether the server closed the connection, waiting for it if necessary.
+     */
+    boolean isClosedByServer() throws IOException {
+        return in.read() < 0;
+    }
+
+    @Nullable
+    private String readLine() throws IOException {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        for (;;) {
+            final int b = in.read();
+            if (b < 0) {
+                return buf.size() == 0 ? null : buf.toString(US_ASCII);
+            }
+            if (b == '\n') {
+                final String line = buf.toString(US_ASCII);
+                return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+            }
+            buf.write(b);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    static final class Response {
+        private final String version;
+        private final int status;
+        private final Map<String, String> headers;
+        private final String content;
+
+        Response(String version, int status, Map<String, String> headers, String content) {
+            this.version = version;
+            this.status = status;
+            this.headers = headers;
+            this.content = content;
+        }
+
+        String version() {
+            return version;
+        }
+
+        int status() {
+            return status;
+        }
+
+        /**
+         * Returns the value of the header with the specified lower-case name.
+         */
+        @Nullable
+        String header(String name) {
+            return headers.get(name);
+        }
+
+        String content() {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 1619kHz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.microspace.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author i1619kHz
+ */
+class RoutingTrieTest {
+    @Test
+    void matchesExactPaths() {
+        final RoutingTrie<String> trie = RoutingTrie.<String>builder()
+                                                    .add("/abc", "abc")
+                                                    .add("/abd", "abd")
+                                                    .add("/ab", "ab")
+                                                    .add("/", "root")
+                                                    .build();
+        assertThat(find(trie, "/abc")).isEqualTo("abc");
+        assertThat(find(trie, "/abd")).isEqualTo("abd");
+        assertThat(find(trie, "/ab")).isEqualTo("ab");
+        assertThat(find(trie, "/")).isEqualTo("root");
+        assertThat(find(trie, "/a")).isNull();
+        assertThat(find(trie, "/abcd")).isNull();
+        assertThat(find(trie, "/abe")).isNull();
+    }
+
+    @Test
+    void literalWinsOverParameter() {
+        final RoutingTrie<String> trie = RoutingTrie.<String>builder()
+                                                    .add("/users/:", "user")
+                                                    .add("/users/me", "me")
+                                                    .build();
+        assertThat(find(trie, "/users/me")).isEqualTo("me");
+        assertThat(find(trie, "/users/42")).isEqualTo("user");
+        // A literal which is only a prefix of the segment does not hide the parameter.
+        assertThat(find(trie, "/users/meow")).isEqualTo("user");
+    }
+
+    @Test
+    void parameterWinsOverPrefix() {
+        final RoutingTrie<String> trie = RoutingTrie.<String>builder()
+                                                    .add("/users/*", "prefix")
+                                                    .add("/users/:", "user")
+                                                    .build();
+        assertThat(find(trie, "/users/42")).isEqualTo("user");
+        assertThat(find(trie, "/users/42/orders")).isEqualTo("prefix");
+        assertThat(find(trie, "/users/")).isEqualTo("prefix");
+        assertThat(find(trie, "/users")).isNull();
+    }
+
+    @Test
+    void longerPrefixWins() {
+        final RoutingTrie<String> trie = RoutingTrie.<String>builder()
+                                                    .add("/*", "root")
+                                                    .add("/api/*", "api")
+                                                    .build();
+        assertThat(find(trie, "/api/users")).isEqualTo("api");
+        assertThat(find(trie, "/apis")).isEqualTo("root");
+    }
+
+    @Test
+    void backtracksToParameterWhenLiteralFailsLater() {
+        final RoutingTrie<String> trie = RoutingTrie.<String>builder()
+                                                    .add("/users/me/profile", "profile")
+                                                    .add("/users/:/orders", "orders")
+                                                    .build();
+        assertThat(find(trie, "/users/me/profile")).isEqualTo("profile");
+        assertThat(find(trie, "/users/me/orders")).isEqualTo("orders");
+        assertThat(find(trie, "/users/me/other")).isNull();
+    }
+
+    @Test
+    void parameterDoesNotMatchEmptySegment() {
+        final RoutingTrie<String> trie = RoutingTrie.<String>builder()
+                                                    .add("/users/:", "user")
+                                                    .add("/users/:/orders", "orders")
+                                                    .build();
+        assertThat(find(trie, "/users/")).isNull();
+        assertThat(find(trie, "/users//orders")).isNull();
+        assertThat(find(trie, "/users/42/")).isNull();
+    }
+
+    @Test
+    void filterFallsBackToLowerPrecedence() {
+        final RoutingTrie<String> trie = RoutingTrie.<String>builder()
+                                                    .add("/users/me", "me")
+                                                    .add("/users/:", "user")
+                                                    .add("/users/*", "prefix")
+                                                    .build();
+        assertThat(trie.find("/users/me", (value, rejected) -> !value.equals(rejected), "me"))
+                .isEqualTo("user");
+        assertThat(trie.find("/users/me", (value, accepted) -> value.equals(accepted), "prefix"))
+                .isEqualTo("prefix");
+    }
+
+    @Test
+    void findsValuesOfSamePathInOrder() {
+        final RoutingTrie<String> trie = RoutingTrie.<String>builder()
+                                                    .add("/foo", "first")
+                                                    .add("/foo", "second")
+                                                    .build();
+        assertThat(find(trie, "/foo")).isEqualTo("first");
+        assertThat(trie.find("/foo", (value, rejected) -> !value.equals(rejected), "first"))
+                .isEqualTo("second");
+    }
+
+    @Test
+    void valueOrderSortsValuesOfSamePath() {
+        final RoutingTrie<String> trie = RoutingTrie.<String>builder()
+                                                    .valueOrder(Comparator.comparingInt(String::length)
+                                                                          .reversed())
+                                                    .add("/foo", "a")
+                                                    .add("/foo", "ccc")
+                                                    .add("/foo", "b")
+                                                    .add("/foo", "dd")
+                                                    .build();
+        final List<String> values = new ArrayList<>();
+        trie.findAll("/foo", values::add);
+        // The values considered equal keep the order they were added in.
+        assertThat(values).containsExactly("ccc", "dd", "a", "b");
+    }
+
+    @Test
+    void findAllVisitsMatchesInPrecedenceOrder() {
+        final RoutingTrie<String> trie = RoutingTrie.<String>builder()
+                                                    .add("/*", "root")
+                                                    .add("/users/*", "prefix")
+                                                    .add("/users/:", "user")
+                                                    .add("/users/me", "me")
+                                                    .add("/orders", "orders")
+                                                    .build();
+        final List<String> values = new ArrayList<>();
+        trie.findAll("/users/me", values::add);
+        assertThat(values).containsExactly("me", "user", "prefix", "root");
+    }
+
+    @Test
+    void rejectsInvalidTriePaths() {
+        final RoutingTrie.Builder<String> builder = RoutingTrie.builder();
+        assertThatThrownBy(() -> builder.add("foo", "foo")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> builder.add("", "empty")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> builder.add("/foo/*/bar", "bar"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Nullable
+    private static String find(RoutingTrie<String> trie, String path) {
+        return trie.find(path, (value, unused) -> true, null);
+    }
+}